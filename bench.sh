@@ -0,0 +1,66 @@
+#!/bin/bash
+#
+# Compiles and runs the JMH benchmarks in bench, headless.
+#
+# Usage: ./bench.sh [JMH options]
+#
+# Runs every benchmark with GC profiling when no options are given, e.g. ./bench.sh FigureBenchmark -prof gc
+# Output: the JMH results, including allocations per operation (gc.alloc.rate.norm)
+
+set -eu # add x for debug
+
+jmh_version="1.37"
+jmh_jars=(
+    "org/openjdk/jmh/jmh-core/$jmh_version/jmh-core-$jmh_version.jar"
+    "org/openjdk/jmh/jmh-generator-annprocess/$jmh_version/jmh-generator-annprocess-$jmh_version.jar"
+    "net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar"
+    "org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+)
+
+# checkout the Forge if it doesn't exist or it's empty
+if [[ ! -e lib/forge || ! $(ls lib/forge/* 2> /dev/null) ]]; then
+    echo "The Forge is missing from your repository, assuming you forgot to clone with --recursive and fixing up your repo..."
+    git submodule update --init --recursive
+fi
+
+# compile the Forge
+./lib/forge/build.sh
+
+# download JMH, which is kept out of lib so it isn't packed into the SensorPanel jar
+mkdir -p bench/lib
+for jar_path in "${jmh_jars[@]}"; do
+    if [[ ! -e bench/lib/$(basename $jar_path) ]]; then
+        curl -sSfL -o bench/lib/$(basename $jar_path) https://repo1.maven.org/maven2/$jar_path
+    fi
+done
+
+# the classpath separator is ; on Windows and : elsewhere
+separator=":"
+if [[ "$OSTYPE" == msys* || "$OSTYPE" == cygwin* ]]; then
+    separator=";"
+fi
+
+# build the jar file list
+classpath="."
+for jar_file in $(find lib bench/lib -type f -name "*.jar"); do
+    classpath+="$separator$jar_file"
+done
+
+# compile all files, generating the benchmark harness with JMH's annotation processor
+rm -rf bench/classes
+javac -Xlint:all,-serial,-preview,-processing \
+      --release 23 --enable-preview \
+      -d bench/classes \
+      -cp $classpath \
+      -processorpath $classpath \
+      $(find src bench -type f -name "*.java")
+
+# run the benchmarks, with res on the classpath for the icons
+args=("$@")
+if [[ ${#args[@]} -eq 0 ]]; then
+    args=(-prof gc)
+fi
+
+java --enable-preview -Djava.awt.headless=true \
+     -cp "bench/classes$separator.$separator$classpath" \
+     org.openjdk.jmh.Main "${args[@]}"
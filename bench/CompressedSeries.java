@@ -0,0 +1,469 @@
+package bench;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * A compressed, append-only series of samples, following the encoding of Facebook's Gorilla time series database.
+ *
+ * About the encoding:
+ *      • Samples are grouped into blocks of a fixed number of samples. The first sample of each block is stored in full.
+ *      • Each following timestamp is stored as the change in the time between samples (the delta-of-delta), which is zero for
+ *        samples taken at a steady rate and so costs a single bit:
+ *          ◦ '0'                      the delta-of-delta is 0
+ *          ◦ '10'   + 7 bits          the delta-of-delta is within [-64, 63]
+ *          ◦ '110'  + 9 bits          the delta-of-delta is within [-256, 255]
+ *          ◦ '1110' + 12 bits         the delta-of-delta is within [-2048, 2047]
+ *          ◦ '1111' + 64 bits         otherwise
+ *      • Each following value is stored as the XOR of its bits with the previous value's bits, which is zero for an unchanged
+ *        value and otherwise has long runs of leading and trailing zeros for a slowly changing value:
+ *          ◦ '0'                      the value is unchanged
+ *          ◦ '10' + meaningful bits   the XOR fits within the previous XOR's window of meaningful bits
+ *          ◦ '11' + 5 bits of leading zeros + 6 bits of meaningful bit count - 1 + meaningful bits
+ *
+ * About the series:
+ *      • Only the most recent blocks are kept, so memory is bounded by the number of samples the series holds
+ *      • There may be only one writer at a time. Readers decode a consistent prefix of the series concurrently without locking,
+ *        as a block's bits are only ever appended, its sample count is published after its bits, and full blocks are
+ *        immutable.
+ */
+public final class CompressedSeries
+{
+    private final int samplesPerBlock; //the number of samples in each full block
+    private final int maxBlocks; //the number of blocks to keep
+    private volatile Block[] blocks = new Block[0]; //the kept blocks, oldest first, replaced as a whole when a block is added
+
+    /**
+     * Creates a new CompressedSeries.
+     *
+     * @param samplesPerBlock The number of samples in each block
+     * @param maxBlocks The number of blocks to keep
+     */
+    public CompressedSeries(int samplesPerBlock, int maxBlocks)
+    {
+        this.samplesPerBlock = samplesPerBlock;
+        this.maxBlocks = maxBlocks;
+    }
+
+    /**
+     * Appends a sample, discarding the oldest block if the series is full. Must only be called by one thread at a time.
+     *
+     * @param timestampMillis The time of the sample, in milliseconds since the epoch
+     * @param value The value of the sample
+     */
+    public void add(long timestampMillis, double value)
+    {
+        Block[] current = this.blocks;
+        Block block = current.length == 0 ? null : current[current.length - 1];
+
+        if (block == null || block.count == this.samplesPerBlock)
+        {
+            if (block != null)
+            {
+                block.seal();
+            }
+
+            //replace the array of blocks so readers always see a consistent set
+            int kept = Math.min(current.length, this.maxBlocks - 1);
+            Block[] next = Arrays.copyOfRange(current, current.length - kept, current.length + 1);
+            block = new Block(this.samplesPerBlock);
+            next[kept] = block;
+            this.blocks = next;
+        }
+
+        block.add(timestampMillis, value);
+    }
+
+    /**
+     * Returns the number of samples in the series.
+     *
+     * @return The number of samples
+     */
+    public long size()
+    {
+        long size = 0;
+        for (Block block : this.blocks)
+        {
+            size += block.count();
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the memory used by the encoded samples of the series.
+     *
+     * @return The size of the encoded samples, in bytes
+     */
+    public long sizeBytes()
+    {
+        long size = 0;
+        for (Block block : this.blocks)
+        {
+            size += (long)block.words.length * Long.BYTES;
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns a new reader positioned before the oldest sample of the series as it is now.
+     *
+     * @return The reader
+     */
+    public Reader reader()
+    {
+        Reader reader = new Reader();
+        reader.reset(this);
+        return reader;
+    }
+
+    /**
+     * A block of compressed samples.
+     */
+    private static final class Block
+    {
+        private static final VarHandle COUNT;
+
+        static
+        {
+            try
+            {
+                COUNT = MethodHandles.lookup().findVarHandle(Block.class, "count", int.class);
+            }
+            catch (ReflectiveOperationException e)
+            {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private long[] words; //the encoded bits, most significant bit first
+        private int bits; //the number of encoded bits
+        private volatile int count; //the number of samples, published after their bits
+        private long previousTimestamp; //the time of the last sample
+        private long previousDelta; //the time between the last two samples
+        private long previousValue; //the bits of the last value
+        private int previousLeading = -1; //the leading zeros of the last stored XOR, or -1 if none
+        private int previousTrailing; //the trailing zeros of the last stored XOR
+
+        /**
+         * Creates a new Block.
+         *
+         * @param samples The number of samples the block will hold, used to estimate its size
+         */
+        private Block(int samples)
+        {
+            //most samples of slowly changing sensors take only a few bits
+            this.words = new long[Math.max(4, samples/8)];
+        }
+
+        /**
+         * Appends a sample.
+         *
+         * @param timestampMillis The time of the sample
+         * @param value The value of the sample
+         */
+        private void add(long timestampMillis, double value)
+        {
+            long valueBits = Double.doubleToRawLongBits(value);
+            int written = this.count;
+
+            if (written == 0)
+            {
+                write(timestampMillis, 64);
+                write(valueBits, 64);
+            }
+            else
+            {
+                long delta = timestampMillis - this.previousTimestamp;
+                writeDeltaOfDelta(delta - this.previousDelta);
+                writeXor(valueBits ^ this.previousValue);
+                this.previousDelta = delta;
+            }
+
+            this.previousTimestamp = timestampMillis;
+            this.previousValue = valueBits;
+
+            //publish the sample
+            COUNT.setRelease(this, written + 1);
+        }
+
+        /**
+         * Encodes the change in the time between samples.
+         *
+         * @param deltaOfDelta The change in the time between samples
+         */
+        private void writeDeltaOfDelta(long deltaOfDelta)
+        {
+            if (deltaOfDelta == 0)
+            {
+                write(0b0, 1);
+            }
+            else if (deltaOfDelta >= -64 && deltaOfDelta <= 63)
+            {
+                write(0b10, 2);
+                write(deltaOfDelta, 7);
+            }
+            else if (deltaOfDelta >= -256 && deltaOfDelta <= 255)
+            {
+                write(0b110, 3);
+                write(deltaOfDelta, 9);
+            }
+            else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047)
+            {
+                write(0b1110, 4);
+                write(deltaOfDelta, 12);
+            }
+            else
+            {
+                write(0b1111, 4);
+                write(deltaOfDelta, 64);
+            }
+        }
+
+        /**
+         * Encodes the XOR of a value with the previous value.
+         *
+         * @param xor The XOR of the bits of the value and the previous value
+         */
+        private void writeXor(long xor)
+        {
+            if (xor == 0)
+            {
+                write(0b0, 1);
+                return;
+            }
+
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+
+            if (this.previousLeading >= 0 && leading >= this.previousLeading && trailing >= this.previousTrailing)
+            {
+                //reuse the previous window of meaningful bits
+                write(0b10, 2);
+                write(xor >>> this.previousTrailing, 64 - this.previousLeading - this.previousTrailing);
+            }
+            else
+            {
+                int meaningful = 64 - leading - trailing;
+                write(0b11, 2);
+                write(leading, 5);
+                write(meaningful - 1, 6);
+                write(xor >>> trailing, meaningful);
+                this.previousLeading = leading;
+                this.previousTrailing = trailing;
+            }
+        }
+
+        /**
+         * Appends the lowest bits of a value.
+         *
+         * @param value The value
+         * @param length The number of bits to append, from 1 to 64
+         */
+        private void write(long value, int length)
+        {
+            if (this.bits + length > (long)this.words.length * 64)
+            {
+                //readers holding the old array only read bits that were copied
+                this.words = Arrays.copyOf(this.words, this.words.length * 2);
+            }
+
+            int index = this.bits >>> 6;
+            int free = 64 - (this.bits & 63);
+            long masked = length == 64 ? value : value & ((1L << length) - 1);
+
+            if (length <= free)
+            {
+                this.words[index] |= masked << (free - length);
+            }
+            else
+            {
+                this.words[index] |= masked >>> (length - free);
+                this.words[index + 1] |= masked << (64 - (length - free));
+            }
+
+            this.bits += length;
+        }
+
+        /**
+         * Trims the block's bits to their exact size, once the block is full.
+         */
+        private void seal()
+        {
+            this.words = Arrays.copyOf(this.words, (this.bits + 63) >>> 6);
+        }
+
+        /**
+         * Returns the number of samples in the block.
+         *
+         * @return The number of samples
+         */
+        private int count()
+        {
+            return (int)COUNT.getAcquire(this);
+        }
+    }
+
+    /**
+     * Decodes the samples of a series sequentially, oldest first. A reader can be reset and reused to avoid allocating.
+     */
+    public static final class Reader
+    {
+        private Block[] blocks; //the blocks being read
+        private int blockIndex; //the index of the block being read
+        private long[] words; //the encoded bits of the block being read
+        private int remaining; //the number of samples left in the block being read
+        private int position; //the index of the next bit to read
+        private long timestamp; //the time of the current sample
+        private long delta; //the time between the last two samples
+        private long valueBits; //the bits of the current value
+        private int leading; //the leading zeros of the last stored XOR
+        private int meaningful; //the number of meaningful bits of the last stored XOR
+        private boolean started; //whether the current sample is the first of its block
+
+        /**
+         * Repositions this reader before the oldest sample of the given series as it is now.
+         *
+         * @param series The series to read
+         */
+        public void reset(CompressedSeries series)
+        {
+            this.blocks = series.blocks;
+            this.blockIndex = -1;
+            this.remaining = 0;
+        }
+
+        /**
+         * Decodes the next sample.
+         *
+         * @return True if a sample was decoded, false if there are no more samples
+         */
+        public boolean next()
+        {
+            while (this.remaining == 0)
+            {
+                if (++this.blockIndex >= this.blocks.length)
+                {
+                    return false;
+                }
+
+                //the count is read before the bits, so every counted sample is fully written
+                Block block = this.blocks[this.blockIndex];
+                this.remaining = block.count();
+                this.words = block.words;
+                this.position = 0;
+                this.started = false;
+            }
+
+            this.remaining--;
+            if (!this.started)
+            {
+                this.started = true;
+                this.timestamp = read(64);
+                this.valueBits = read(64);
+                this.delta = 0;
+                return true;
+            }
+
+            this.delta += readDeltaOfDelta();
+            this.timestamp += this.delta;
+
+            if (read(1) != 0)
+            {
+                if (read(1) != 0)
+                {
+                    this.leading = (int)read(5);
+                    this.meaningful = (int)read(6) + 1;
+                }
+
+                int trailing = 64 - this.leading - this.meaningful;
+                this.valueBits ^= read(this.meaningful) << trailing;
+            }
+
+            return true;
+        }
+
+        /**
+         * Returns the time of the current sample.
+         *
+         * @return The time, in milliseconds since the epoch
+         */
+        public long timestamp()
+        {
+            return this.timestamp;
+        }
+
+        /**
+         * Returns the value of the current sample.
+         *
+         * @return The value
+         */
+        public double value()
+        {
+            return Double.longBitsToDouble(this.valueBits);
+        }
+
+        /**
+         * Decodes the change in the time between samples.
+         *
+         * @return The change in the time between samples
+         */
+        private long readDeltaOfDelta()
+        {
+            if (read(1) == 0)
+            {
+                return 0;
+            }
+            else if (read(1) == 0)
+            {
+                return signExtend(read(7), 7);
+            }
+            else if (read(1) == 0)
+            {
+                return signExtend(read(9), 9);
+            }
+            else if (read(1) == 0)
+            {
+                return signExtend(read(12), 12);
+            }
+
+            return read(64);
+        }
+
+        /**
+         * Reads the next bits.
+         *
+         * @param length The number of bits to read, from 1 to 64
+         * @return The bits, in the lowest bits of the result
+         */
+        private long read(int length)
+        {
+            int index = this.position >>> 6;
+            int offset = this.position & 63;
+            int available = 64 - offset;
+            this.position += length;
+
+            long result = (this.words[index] << offset) >>> (64 - length);
+            if (length > available)
+            {
+                result |= this.words[index + 1] >>> (64 - (length - available));
+            }
+
+            return result;
+        }
+
+        /**
+         * Sign-extends the lowest bits of a value.
+         *
+         * @param value The value
+         * @param length The number of bits holding the value
+         * @return The sign-extended value
+         */
+        private static long signExtend(long value, int length)
+        {
+            return (value << (64 - length)) >> (64 - length);
+        }
+    }
+}
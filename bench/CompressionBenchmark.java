@@ -0,0 +1,184 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import src.Constants;
+import src.Sensor;
+import src.history.TelemetryLog;
+
+/**
+ * Measures how well CompressedSeries compresses recorded Sensor data, and how quickly it decodes.
+ *
+ * The recorded data is read from the telemetry log written by the SensorPanel (see TelemetryLog). For each Sensor, this reports
+ * the compressed size per sample (compared to 16 bytes per raw timestamp and value) and the decode throughput.
+ *
+ * Usage: java -cp classes bench.CompressionBenchmark [telemetry log directory]
+ */
+public final class CompressionBenchmark
+{
+    private static final int BLOCK_SAMPLES = 1024; //the number of samples in each compressed block
+    private static final int DECODE_WARMUP_PASSES = 20;
+    private static final int DECODE_MEASURED_PASSES = 50;
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private CompressionBenchmark() {}
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The telemetry log directory, optionally
+     * @throws IOException If the telemetry log could not be read
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path directory = Path.of(args.length > 0 ? args[0] : Constants.TELEMETRY_LOG_DIRECTORY);
+
+        //load the recorded samples of each Sensor
+        Trace[] traces = new Trace[Sensor.values().length];
+        for (Sensor sensor : Sensor.values())
+        {
+            traces[sensor.ordinal()] = new Trace();
+        }
+
+        long total = new TelemetryLog(directory, 1, 1, 1).read((sensor, timestampMillis, value) ->
+                                                                traces[sensor.ordinal()].add(timestampMillis, value));
+        if (total == 0)
+        {
+            System.out.println("No recorded samples found in " + directory.toAbsolutePath() +
+                               ", run the SensorPanel with USE_TELEMETRY_LOG enabled to record some");
+            return;
+        }
+
+        System.out.printf("%-26s %10s %14s %12s %18s%n", "Sensor", "Samples", "Bytes/sample", "Ratio", "Decode (M/s)");
+
+        long totalBytes = 0;
+        for (Sensor sensor : Sensor.values())
+        {
+            Trace trace = traces[sensor.ordinal()];
+            if (trace.size == 0)
+            {
+                continue;
+            }
+
+            //hold the whole trace in one series
+            CompressedSeries series = new CompressedSeries(BLOCK_SAMPLES, trace.size/BLOCK_SAMPLES + 1);
+            for (int i = 0; i < trace.size; i++)
+            {
+                series.add(trace.timestamps[i], trace.values[i]);
+            }
+
+            verify(sensor, series, trace);
+
+            double bytesPerSample = (double)series.sizeBytes() / trace.size;
+            totalBytes += series.sizeBytes();
+            System.out.printf("%-26s %10d %14.3f %11.1fx %18.1f%n", sensor.name(), trace.size, bytesPerSample,
+                              16 / bytesPerSample, decodeThroughput(series, trace.size) / 1e6);
+        }
+
+        System.out.printf("%-26s %10d %14.3f %11.1fx%n", "ALL", total, (double)totalBytes / total, 16.0 * total / totalBytes);
+    }
+
+    /**
+     * Measures how quickly a series decodes.
+     *
+     * @param series The series
+     * @param size The number of samples in the series
+     * @return The number of samples decoded per second
+     */
+    private static double decodeThroughput(CompressedSeries series, int size)
+    {
+        CompressedSeries.Reader reader = series.reader();
+        double checksum = 0;
+
+        for (int pass = 0; pass < DECODE_WARMUP_PASSES; pass++)
+        {
+            checksum += decode(reader, series);
+        }
+
+        long start = System.nanoTime();
+        for (int pass = 0; pass < DECODE_MEASURED_PASSES; pass++)
+        {
+            checksum += decode(reader, series);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        //use the checksum so decoding can't be optimized away
+        if (checksum == 42)
+        {
+            System.out.print("");
+        }
+
+        return (double)size * DECODE_MEASURED_PASSES / elapsed * 1e9;
+    }
+
+    /**
+     * Decodes every sample of a series.
+     *
+     * @param reader The reader to decode with
+     * @param series The series
+     * @return A checksum of the decoded samples
+     */
+    private static double decode(CompressedSeries.Reader reader, CompressedSeries series)
+    {
+        double checksum = 0;
+        reader.reset(series);
+        while (reader.next())
+        {
+            checksum += reader.value() + reader.timestamp();
+        }
+
+        return checksum;
+    }
+
+    /**
+     * Verifies that a series decodes to exactly the recorded samples.
+     *
+     * @param sensor The Sensor the samples are from
+     * @param series The series
+     * @param trace The recorded samples
+     */
+    private static void verify(Sensor sensor, CompressedSeries series, Trace trace)
+    {
+        CompressedSeries.Reader reader = series.reader();
+        for (int i = 0; i < trace.size; i++)
+        {
+            if (!reader.next() || reader.timestamp() != trace.timestamps[i] ||
+                Double.doubleToRawLongBits(reader.value()) != Double.doubleToRawLongBits(trace.values[i]))
+            {
+                throw new IllegalStateException("Sample " + i + " of " + sensor.name() + " did not decode correctly");
+            }
+        }
+    }
+
+    /**
+     * The recorded samples of a single Sensor.
+     */
+    private static final class Trace
+    {
+        private long[] timestamps = new long[1024]; //the time of each sample
+        private double[] values = new double[1024]; //the value of each sample
+        private int size; //the number of samples
+
+        /**
+         * Adds a sample.
+         *
+         * @param timestampMillis The time of the sample
+         * @param value The value of the sample
+         */
+        private void add(long timestampMillis, double value)
+        {
+            if (this.size == this.timestamps.length)
+            {
+                this.timestamps = Arrays.copyOf(this.timestamps, this.size * 2);
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+
+            this.timestamps[this.size] = timestampMillis;
+            this.values[this.size++] = value;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package bench;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.Constants;
+import src.Sensor;
+import src.SensorPanel;
+import src.figure.Figure;
+import src.figure.FrameScheduler;
+import src.figure.IconAtlas;
+
+/**
+ * Measures painting each type of Figure into an off-screen image after its Sensor updates.
+ *
+ * The main panel is laid out at the frame size, so each Figure is painted at the size it is displayed at. Each operation sets
+ * the Figure's Sensor to the next of a cycle of values across its range, then paints the Figure either whole or only the region
+ * the update changed, as the FrameScheduler does. Figures are painted through paint, which calls their paintComponent as Swing
+ * does. The static layer of each Figure is rendered once, before measuring.
+ *
+ * Usage: ./bench.sh FigureBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Djava.awt.headless=true"})
+public class FigureBenchmark
+{
+    private static final int VALUES = 64; //the values cycled through
+
+    @Param({"SleekGauge", "Thermostat", "SleekBar", "IconField"})
+    public String type; //the type of Figure painted
+
+    private Figure figure; //the Figure painted
+    private Sensor sensor; //the Sensor of the Figure
+    private BufferedImage image; //the image painted into
+    private Graphics2D g2d; //paints into the image
+    private final Rectangle damage = new Rectangle(); //the region of the Figure the last update changed
+    private final double[] values = new double[VALUES]; //the values cycled through
+    private int next; //the next value to set
+
+    /**
+     * Lays out the main panel and finds the first Figure of the type painted.
+     *
+     * @throws IOException If an icon could not be loaded
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        //the Figures are only painted here
+        FrameScheduler.setRepaintHandler(_ -> {});
+
+        Container panel = SensorPanel.createMainPanel();
+        IconAtlas.pack();
+        panel.setSize(Constants.FRAME_WIDTH, Constants.FRAME_HEIGHT);
+        layout(panel);
+
+        //find the first Figure of the type painted
+        for (Sensor candidate : Sensor.values())
+        {
+            if (this.figure == null && candidate.getFigure() != null &&
+                candidate.getFigure().getClass().getSimpleName().equals(this.type))
+            {
+                this.figure = candidate.getFigure();
+                this.sensor = candidate;
+            }
+        }
+
+        if (this.figure == null)
+        {
+            throw new IllegalStateException("The main panel has no " + this.type);
+        }
+
+        for (int i = 0; i < VALUES; i++)
+        {
+            this.values[i] = this.sensor.min() + (this.sensor.max() - this.sensor.min()) * i / VALUES;
+        }
+
+        this.image = new BufferedImage(this.figure.getWidth(), this.figure.getHeight(), BufferedImage.TYPE_INT_RGB);
+        this.g2d = this.image.createGraphics();
+        this.g2d.setFont(this.figure.getFont());
+        this.g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        //render the static layer
+        this.figure.paint(this.g2d);
+    }
+
+    /**
+     * Releases the image's graphics.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        this.g2d.dispose();
+    }
+
+    /**
+     * Lays out a container and all containers within it, as it is never shown.
+     *
+     * @param container The container
+     */
+    private static void layout(Container container)
+    {
+        container.doLayout();
+        for (Component component : container.getComponents())
+        {
+            if (component instanceof Container child)
+            {
+                layout(child);
+            }
+        }
+    }
+
+    /**
+     * Sets the Sensor to the next value and paints the whole Figure.
+     */
+    @Benchmark
+    public void paintWhole()
+    {
+        this.sensor.set(this.values[this.next]);
+        this.next = (this.next + 1) % VALUES;
+        this.figure.takeDamage(this.damage);
+        this.figure.paint(this.g2d);
+    }
+
+    /**
+     * Sets the Sensor to the next value and paints only the region of the Figure that changed.
+     */
+    @Benchmark
+    public void paintDamage()
+    {
+        this.sensor.set(this.values[this.next]);
+        this.next = (this.next + 1) % VALUES;
+        if (this.figure.takeDamage(this.damage))
+        {
+            this.g2d.setClip(this.damage);
+            this.figure.paint(this.g2d);
+            this.g2d.setClip(null);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package bench;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import forge.ForgeUtils;
+import src.Sensor;
+import src.source.HwInfoDispatchTable;
+import src.source.HwInfoParser;
+import src.source.SensorChannelMap;
+import src.source.TelemetryHandler;
+import src.source.TelemetryProtocol;
+
+/**
+ * Measures parsing HwInfo's registry output and FanControl's telemetry datagrams.
+ *
+ * The HwInfo output is generated in the format `reg query` prints, with an entry for every Sensor read from HwInfo among a
+ * number of other exported values, as a typical HwInfo setup exports. The datagrams are both versions of the telemetry protocol
+ * FanControl sends (see TelemetryProtocol), routed to the same Sensors as the SensorPanel routes them.
+ *
+ * Usage: ./bench.sh ParserBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Djava.awt.headless=true"})
+public class ParserBenchmark
+{
+    private static final int HWINFO_VALUES = 120; //the values exported by HwInfo, including those read by Sensors
+    private static final int DATAGRAMS = 1024; //the datagrams cycled through, each with the next sequence number
+    private static final int READINGS = 2; //the readings in each v2 datagram, one per FanControl channel
+
+    private byte[] hwInfoOutput; //HwInfo's registry output
+    private HwInfoDispatchTable dispatchTable; //dispatches each HwInfo value to its Sensor
+    private ByteBuffer asciiDatagram; //a v1 datagram
+    private ByteBuffer[] binaryDatagrams; //v2 datagrams with consecutive sequence numbers
+    private TelemetryHandler handler; //parses the datagrams
+    private int next; //the next v2 datagram to parse
+
+    /**
+     * Generates the HwInfo output and the datagrams.
+     */
+    @Setup
+    public void setup()
+    {
+        //the values read by Sensors are spread among the other values
+        StringBuilder output = new StringBuilder("\r\nHKEY_CURRENT_USER\\SOFTWARE\\HWiNFO64\\VSB\r\n");
+        Sensor[] sensors = Sensor.values();
+        for (int index = 0, sensor = 0; index < HWINFO_VALUES; index++)
+        {
+            String label = "Reading " + index;
+            while (sensor < sensors.length && sensors[sensor].hwInfoLabel() == null)
+            {
+                sensor++;
+            }
+
+            if (index % 8 == 0 && sensor < sensors.length)
+            {
+                label = sensors[sensor++].hwInfoLabel();
+            }
+
+            double value = (index * 7.3) % 100;
+            output.append("    Sensor").append(index).append("    REG_SZ    CPU [#0]: AMD Ryzen 9 7950X3D\r\n")
+                  .append("    Label").append(index).append("    REG_SZ    ").append(label).append("\r\n")
+                  .append("    Value").append(index).append("    REG_SZ    ").append(value).append(" %\r\n")
+                  .append("    ValueRaw").append(index).append("    REG_SZ    ").append(value).append("\r\n");
+        }
+
+        this.hwInfoOutput = output.toString().getBytes(StandardCharsets.ISO_8859_1);
+        this.dispatchTable = new HwInfoDispatchTable();
+        this.dispatchTable.update(this.hwInfoOutput, this.hwInfoOutput.length);
+
+        //FanControl channel 0 is air temperature and channel 1 is water temperature
+        this.handler = new TelemetryHandler("FanControl", new SensorChannelMap(ForgeUtils::celsiusToFahrenheit,
+                                                                               Sensor.AIR_TEMPERATURE,
+                                                                               Sensor.WATER_TEMPERATURE));
+        byte[] ascii = "1:31.5".getBytes(StandardCharsets.US_ASCII);
+        this.asciiDatagram = ByteBuffer.allocateDirect(ascii.length).put(ascii).flip();
+
+        int[] channels = {0, 1};
+        long[] timesMillis = {System.currentTimeMillis(), System.currentTimeMillis() + 5};
+        float[] values = {28.5f, 31.5f};
+        this.binaryDatagrams = new ByteBuffer[DATAGRAMS];
+        for (int i = 0; i < DATAGRAMS; i++)
+        {
+            ByteBuffer datagram = ByteBuffer.allocateDirect(TelemetryProtocol.HEADER_SIZE + READINGS * TelemetryProtocol.READING_SIZE);
+            TelemetryProtocol.encode(datagram, i + 1, READINGS, channels, timesMillis, values);
+            this.binaryDatagrams[i] = datagram.flip();
+        }
+    }
+
+    /**
+     * Parses every value from HwInfo's output, without dispatching them.
+     *
+     * @param blackhole Consumes each value
+     * @return The number of values parsed
+     */
+    @Benchmark
+    public int hwInfoParse(Blackhole blackhole)
+    {
+        return HwInfoParser.parse(this.hwInfoOutput, this.hwInfoOutput.length, (index, value) ->
+        {
+            blackhole.consume(index);
+            blackhole.consume(value);
+        });
+    }
+
+    /**
+     * Checks whether the layout of HwInfo's output changed, as done before each dispatch.
+     *
+     * @return The layout hash
+     */
+    @Benchmark
+    public long hwInfoLayoutHash()
+    {
+        return HwInfoParser.layoutHash(this.hwInfoOutput, this.hwInfoOutput.length);
+    }
+
+    /**
+     * Updates every Sensor read from HwInfo, as each HwInfo poll does.
+     *
+     * @return The number of values parsed
+     */
+    @Benchmark
+    public int hwInfoDispatch()
+    {
+        this.dispatchTable.update(this.hwInfoOutput, this.hwInfoOutput.length);
+        return HwInfoParser.parse(this.hwInfoOutput, this.hwInfoOutput.length, this.dispatchTable);
+    }
+
+    /**
+     * Parses a v1 datagram and updates its Sensor.
+     */
+    @Benchmark
+    public void fanControlAscii()
+    {
+        this.handler.handle(this.asciiDatagram, System.currentTimeMillis());
+    }
+
+    /**
+     * Parses a v2 datagram and updates its Sensors.
+     */
+    @Benchmark
+    public void fanControlBinary()
+    {
+        this.handler.handle(this.binaryDatagrams[this.next], System.currentTimeMillis());
+        this.next = (this.next + 1) % DATAGRAMS;
+    }
+}
@@ -0,0 +1,82 @@
+package bench;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import src.Sensor;
+import src.figure.FrameScheduler;
+import src.figure.SleekGauge;
+
+/**
+ * Measures setting a Sensor, which records the value in its history and rollups and updates its Figure.
+ *
+ * Values are set either within the Sensor's warning range or outside of it. Warnings are raised by the AlertEngine on its own
+ * thread from the Sensor's history, so both should cost the same. A Sensor is set either without a Figure, or displayed on a
+ * gauge whose changed region is computed on each update. The gauge is never repainted.
+ *
+ * Usage: ./bench.sh SensorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Djava.awt.headless=true"})
+public class SensorBenchmark
+{
+    private static final int VALUES = 64; //the values cycled through
+
+    @Param({"NORMAL", "WARNING"})
+    public String range; //whether values are within the warning range
+
+    @Param({"false", "true"})
+    public boolean displayed; //whether the Sensor is displayed on a Figure
+
+    private final Sensor sensor = Sensor.GPU_TEMPERATURE; //the Sensor set, which has a warning range narrower than its range
+    private final double[] values = new double[VALUES]; //the values cycled through
+    private int next; //the next value to set
+
+    /**
+     * Chooses the values to set, and displays the Sensor if needed.
+     */
+    @Setup
+    public void setup()
+    {
+        //values above the warning max stay within the max, so only the warning range differs
+        double from = this.range.equals("NORMAL") ? this.sensor.warningMin() : this.sensor.warningMax();
+        double to = this.range.equals("NORMAL") ? this.sensor.warningMax() : this.sensor.max();
+        for (int i = 0; i < VALUES; i++)
+        {
+            this.values[i] = from + (to - from) * i / VALUES;
+        }
+
+        if (this.displayed)
+        {
+            FrameScheduler.setRepaintHandler(_ -> {});
+            SleekGauge gauge = new SleekGauge(this.sensor, Color.RED, "/res/icons/thermostat.png", 300, 250);
+            gauge.setSize(300, 250);
+        }
+    }
+
+    /**
+     * Sets the Sensor to the next value.
+     */
+    @Benchmark
+    public void set()
+    {
+        this.sensor.set(this.values[this.next]);
+        this.next = (this.next + 1) % VALUES;
+    }
+}
@@ -1,9 +1,10 @@
 namespace CorsairLink.Devices.CommanderCore;
 
 using System;
+using System.Buffers.Binary;
+using System.Collections.Generic;
 using System.Net;
 using System.Net.Sockets;
-using System.Text;
 using System.Threading;
 
 public sealed class CommanderCoreTemperatureSensor
@@ -15,21 +16,15 @@ public sealed class CommanderCoreTemperatureSensor
         TempCelsius = tempCelsius;
 
         // Send temperature data over UDP to the SensorPanel
-        sendTemperatureData();
+        if (Status == CommanderCoreTemperatureSensorStatus.Available && TempCelsius.HasValue)
+        {
+            SensorPanelTelemetry.Enqueue(Channel, TempCelsius.Value);
+        }
     }
 
     public int Channel { get; }
     public CommanderCoreTemperatureSensorStatus Status { get; }
     public float? TempCelsius { get; }
-
-    private void sendTemperatureData()
-    {
-        UdpClient udpClient = new UdpClient();
-        IPEndPoint endPoint = new IPEndPoint(IPAddress.Parse("127.0.0.1"), 48620);
-
-        byte[] bytes = Encoding.ASCII.GetBytes($"{Channel}:{TempCelsius}");
-        udpClient.Send(bytes, bytes.Length, endPoint);
-    }
 }
 
 public enum CommanderCoreTemperatureSensorStatus : byte
@@ -37,3 +32,90 @@ public enum CommanderCoreTemperatureSensorStatus : byte
     Available = 0x00,
     Unavailable = 0x01,
 }
+
+/// <summary>
+/// Batches temperature readings into binary (v2) telemetry datagrams for the SensorPanel.
+///
+/// Readings taken within a short window of each other are sent together in one datagram. See TelemetryProtocol.java in the
+/// SensorPanel for the datagram layout.
+/// </summary>
+internal static class SensorPanelTelemetry
+{
+    private const int Port = 48620;
+    private const int HeaderSize = 16;
+    private const int ReadingSize = 8;
+    private const int MaxReadings = 255;
+    private const int FlushDelayMilliseconds = 50;
+
+    private static readonly object Lock = new();
+    private static readonly UdpClient Client = new();
+    private static readonly IPEndPoint EndPoint = new(IPAddress.Loopback, Port);
+    private static readonly List<(byte Channel, long TimeMillis, float Value)> Pending = new();
+    private static readonly Timer FlushTimer = new(_ => Flush(), null, Timeout.Infinite, Timeout.Infinite);
+    private static uint _sequence;
+
+    public static void Enqueue(int channel, float tempCelsius)
+    {
+        lock (Lock)
+        {
+            Pending.Add(((byte)channel, DateTimeOffset.UtcNow.ToUnixTimeMilliseconds(), tempCelsius));
+
+            // Wait briefly for the readings of the other channels before sending
+            if (Pending.Count == 1)
+            {
+                FlushTimer.Change(FlushDelayMilliseconds, Timeout.Infinite);
+            }
+            else if (Pending.Count == MaxReadings)
+            {
+                FlushLocked();
+            }
+        }
+    }
+
+    private static void Flush()
+    {
+        lock (Lock)
+        {
+            FlushLocked();
+        }
+    }
+
+    private static void FlushLocked()
+    {
+        if (Pending.Count == 0)
+        {
+            return;
+        }
+
+        long baseTime = Pending[0].TimeMillis;
+        byte[] packet = new byte[HeaderSize + Pending.Count * ReadingSize];
+        packet[0] = (byte)'S';
+        packet[1] = (byte)'P';
+        packet[2] = 2;
+        packet[3] = (byte)Pending.Count;
+        BinaryPrimitives.WriteUInt32BigEndian(packet.AsSpan(4), _sequence++);
+        BinaryPrimitives.WriteInt64BigEndian(packet.AsSpan(8), baseTime);
+
+        for (int i = 0; i < Pending.Count; i++)
+        {
+            int offset = HeaderSize + i * ReadingSize;
+            long timeOffset = Math.Clamp(Pending[i].TimeMillis - baseTime, 0, ushort.MaxValue);
+
+            packet[offset] = Pending[i].Channel;
+            packet[offset + 1] = 0;
+            BinaryPrimitives.WriteUInt16BigEndian(packet.AsSpan(offset + 2), (ushort)timeOffset);
+            BinaryPrimitives.WriteSingleBigEndian(packet.AsSpan(offset + 4), Pending[i].Value);
+        }
+
+        Pending.Clear();
+
+        try
+        {
+            Client.Send(packet, packet.Length, EndPoint);
+        }
+        catch (SocketException)
+        {
+            // The SensorPanel may not be running, and readings are sent again on the next update
+        }
+    }
+}
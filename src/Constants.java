@@ -1,7 +1,7 @@
 package src;
 
 import java.awt.Color;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * A class to hold various constants for this program.
@@ -15,10 +15,48 @@ public final class Constants
 
     public static final int FRAME_WIDTH = 1920;
     public static final int FRAME_HEIGHT = 515;
-    public static final int UPDATE_RATE_SECONDS = 3;
+    public static final int MAX_FPS = 30; //the most times per second the Figures are repainted
+    public static final String HEADLESS_HOST = "127.0.0.1"; //this computer only, "0.0.0.0" lets other devices view the panel
+    public static final int HEADLESS_PORT = 48621; //serves the panel when run with --headless
+    public static final int HEADLESS_FPS = 10; //the most frames rendered per second when run with --headless
+    public static final int HEADLESS_BAND_ROWS = 16; //the rows of each frame compressed together when run with --headless
+    public static final boolean USE_PROMETHEUS_SERVER = true; //serve every Sensor to Prometheus, with or without a screen
+    public static final String PROMETHEUS_HOST = "127.0.0.1"; //this computer only, "0.0.0.0" lets fleet monitoring scrape the panel
+    public static final int PROMETHEUS_PORT = 48622; //serves /metrics
+    public static final int PROMETHEUS_MAX_CONCURRENT_SCRAPES = 4;
+    public static final boolean USE_SENSOR_STREAM = true; //stream changed Sensors to remote dashboards, with or without a screen
+    public static final String SENSOR_STREAM_HOST = "127.0.0.1"; //this computer only, "0.0.0.0" lets other devices connect
+    public static final int SENSOR_STREAM_PORT = 48623; //serves /events
+    public static final int SENSOR_STREAM_INTERVAL_MILLIS = 250; //the time between each event of changed Sensors
+    public static final int SENSOR_STREAM_CLIENT_QUEUE = 16; //the events queued to a client before its backlog is coalesced
+    public static final boolean SENSOR_STREAM_ALLOW_ANY_ORIGIN = false; //let web pages from any origin subscribe to /events
     public static final Color THEME_COLOR = new Color(41, 171, 250); //a light cyan
     public static final double CENTS_PER_KWH = 65;
-    public static final Pattern SPLIT_SPACES = Pattern.compile("\\p{Space}+");
+    public static final int SENSOR_HISTORY_CAPACITY = 4096; //the number of samples kept per Sensor, must be a power of two
+    public static final int MINUTE_ROLLUPS = 24 * 60; //the number of 1 minute buckets kept per Sensor, i.e. 1 day
+    public static final int HOUR_ROLLUPS = 30 * 24; //the number of 1 hour buckets kept per Sensor, i.e. 30 days
+    public static final boolean USE_TELEMETRY_LOG = true; //persist Sensor data to disk and restore it on startup
+    public static final String TELEMETRY_LOG_DIRECTORY = "telemetry";
+    public static final int TELEMETRY_LOG_SEGMENT_RECORDS = 1 << 16; //1.5 MB per segment
+    public static final int TELEMETRY_LOG_MAX_SEGMENTS = 64;
+    public static final int TELEMETRY_LOG_FLUSH_MILLIS = 1000;
+    public static final long TELEMETRY_LOG_REPLAY_MILLIS = MINUTE_ROLLUPS * 60_000L; //how far back samples are restored, i.e. 1 day
+    public static final double ALERT_HYSTERESIS_FRACTION = 0.02; //the fraction of a Sensor's range an alert is cleared by
+    public static final int ALERT_DEBOUNCE_MILLIS = 5000; //how long a Sensor must stay at a new alert level to report it
+    public static final int ALERT_RATE_LIMIT_MILLIS = 60_000; //the minimum time between alerts of the same Sensor
+    public static final int ALERT_POLL_MILLIS = 250;
+    public static final boolean USE_HWINFO_SHARED_MEMORY = true; //read HwInfo's shared memory when available instead of the registry
+    public static final int HWINFO_SHARED_MEMORY_UPDATE_RATE_MILLIS = 500;
+    public static final int HWINFO_REGISTRY_UPDATE_RATE_MILLIS = 3000; //should match HwInfo's update rate
+    public static final String HWINFO_REGISTRY_KEY = "SOFTWARE\\HWiNFO64\\VSB"; //relative to HKEY_CURRENT_USER
+    public static final int HWINFO_WORKER_TIMEOUT_MILLIS = 5000; //how long the registry worker may take to reply
+    public static final int HWINFO_WORKER_RETRY_MILLIS = 60_000; //how long after falling back from the registry worker it is first retried
+    public static final int FANCONTROL_PORT = 48620; //the UDP port FanControl sends temperatures to
+    public static final List<String> KASA_PLUG_HOSTS = List.of("192.168.0.6"); //the IP address of each HS110 smart plug
+    public static final int KASA_UPDATE_RATE_MILLIS = 3000;
+    public static final int KASA_TIMEOUT_MILLIS = 2000; //how long to wait for the smart plugs to respond
+    public static final int KASA_POWER_EXPIRY_MILLIS = 30_000; //how long a plug's power draw is used after it stops responding
+    public static final int METRICS_OVERLAY_REFRESH_MILLIS = 500; //how often the metrics overlay is refreshed while shown
     public static final boolean ENABLE_DEBUG = false; //to enable debugging logic
 
     /**
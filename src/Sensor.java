@@ -1,10 +1,13 @@
 package src;
 
-import static forge.Logger.logWarning;
-
 import java.text.DecimalFormat;
 
 import src.figure.Figure;
+import src.history.RollupTier;
+import src.history.SensorHistory;
+import src.history.SensorRollups;
+import src.metrics.SensorBatchEvent;
+import src.server.SensorStreamServer;
 
 /**
  * An enum to maintain information about various Sensors.
@@ -12,36 +15,41 @@ import src.figure.Figure;
  * About Sensors:
  *      • Sensors can be hardware or software related
  *      • Sensors can be updated at different rates
- *      • Each Sensor stores the latest data it received
- *      • Each Sensor can be associated with one and only one Figure which will be repainted automatically when the Sensor is
- *        updated
+ *      • Each Sensor stores the latest data it received, along with a fixed-size history of its most recent data (see
+ *        SensorHistory) and fixed-size rollups of its older data (see SensorRollups). Its raw data over a longer period is kept
+ *        on disk by the TelemetryLog.
+ *      • Each Sensor can be associated with one and only one Figure which will be repainted automatically in the next frame
+ *        when an update to the Sensor changes what the Figure displays (see FrameScheduler)
  *      • A Sensor's min and max indicate the smallest and largest values that Figures should expect
  *          ◦ Some Figures, such as IconField, may not use these values, but it is important for other Figures such as gauges and
  *            thermostats
  *      • A Sensor's warning min and max indicate values in a concerning range (such as high temperatures) but which are not
  *        outside the range of what the Sensor could report
- *      • The order Sensor values are declared matters - it must match the same order Sensors are exported in HwInfo
+ *      • Values outside the warning or min and max range are reported by the AlertEngine, which reads each Sensor's history
+ *        on its own thread
+ *      • Sensors read from HwInfo are identified by the label of their HwInfo reading, so they may be declared and exported in
+ *        any order
  */
 @SuppressWarnings("java:S3066") //this enum is designed to have a mutable, thread-safe state (with up to 1 setter and many getters)
 public enum Sensor
 {
-    RAM_USAGE                 (Unit.PERCENTAGE,            0,    100,     0,     95),
-    MAX_SINGLE_CORE_CPU_USAGE (Unit.PERCENTAGE,            0,    100,   7.5,    100), //highest single-core CPU usage
-    COMBINED_CPU_USAGE        (Unit.PERCENTAGE,            0,    100,     0,    100),
-    CPU_TEMPERATURE           (Unit.DEGREES_CELSIUS,      35,     89,    35,     89),
-    CPU_POWER_USAGE           (Unit.WATTS,                 0,    170,    20,    150),
-    GPU_TEMPERATURE           (Unit.DEGREES_CELSIUS,      24,     85,    24,     65),
-    GPU_POWER_USAGE           (Unit.WATTS,                 0,    450,    12,    450),
-    GPU_USAGE                 (Unit.PERCENTAGE,            0,    100,     0,    100),
-    VRAM_USAGE                (Unit.PERCENTAGE,            0,    100,     0,     95),
-    FPS                       (Unit.FRAMES_PER_SECOND,     0, 10_000,     0, 10_000),
-    INTERNET_DOWNLOAD_USAGE   (Unit.MEGABITS_PER_SECOND,   0,    600,     0,    600),
-    INTERNET_UPLOAD_USAGE     (Unit.MEGABITS_PER_SECOND,   0,     35,     0,     25),
-    AIR_TEMPERATURE           (Unit.DEGREES_FAHRENHEIT,   60,    110,    60,     91), //inside the case
-    WATER_TEMPERATURE         (Unit.DEGREES_FAHRENHEIT,   60,    110,    60,    105), //i.e. coolant temperature
-    SYSTEM_POWER_USAGE        (Unit.WATTS,                 0,   1550,   100,    720), //total system power usage measured at the outlet
-    SECONDARY_POWER_USAGE     (Unit.WATTS,                 0,   1550,     0,    800), //system power usage excluding the CPU and GPU
-    SYSTEM_COST_PER_HOUR      (Unit.CENTS,                 0,    100,     5,   45.5); //calculated from total system power usage, maximum set from a 720W maximum draw at 65¢ per kwh
+    RAM_USAGE                 (Unit.PERCENTAGE,            0,    100,     0,     95, "Physical Memory Load"),
+    MAX_SINGLE_CORE_CPU_USAGE (Unit.PERCENTAGE,            0,    100,   7.5,    100, "Max CPU/Thread Usage"), //highest single-core CPU usage
+    COMBINED_CPU_USAGE        (Unit.PERCENTAGE,            0,    100,     0,    100, "Total CPU Usage"),
+    CPU_TEMPERATURE           (Unit.DEGREES_CELSIUS,      35,     89,    35,     89, "CPU (Tctl/Tdie)"),
+    CPU_POWER_USAGE           (Unit.WATTS,                 0,    170,    20,    150, "CPU Package Power"),
+    GPU_TEMPERATURE           (Unit.DEGREES_CELSIUS,      24,     85,    24,     65, "GPU Temperature"),
+    GPU_POWER_USAGE           (Unit.WATTS,                 0,    450,    12,    450, "GPU Power"),
+    GPU_USAGE                 (Unit.PERCENTAGE,            0,    100,     0,    100, "GPU Core Load"),
+    VRAM_USAGE                (Unit.PERCENTAGE,            0,    100,     0,     95, "GPU Memory Usage"),
+    FPS                       (Unit.FRAMES_PER_SECOND,     0, 10_000,     0, 10_000, "Framerate"),
+    INTERNET_DOWNLOAD_USAGE   (Unit.MEGABITS_PER_SECOND,   0,    600,     0,    600, "Current DL rate"),
+    INTERNET_UPLOAD_USAGE     (Unit.MEGABITS_PER_SECOND,   0,     35,     0,     25, "Current UP rate"),
+    AIR_TEMPERATURE           (Unit.DEGREES_FAHRENHEIT,   60,    110,    60,     91, null), //inside the case
+    WATER_TEMPERATURE         (Unit.DEGREES_FAHRENHEIT,   60,    110,    60,    105, null), //i.e. coolant temperature
+    SYSTEM_POWER_USAGE        (Unit.WATTS,                 0,   1550,   100,    720, null), //total system power usage measured at the outlet
+    SECONDARY_POWER_USAGE     (Unit.WATTS,                 0,   1550,     0,    800, null), //system power usage excluding the CPU and GPU
+    SYSTEM_COST_PER_HOUR      (Unit.CENTS,                 0,    100,     5,   45.5, null); //calculated from total system power usage, maximum set from a 720W maximum draw at 65¢ per kwh
 
     //member variables
     protected static final Sensor[] VALUES = Sensor.values(); //saved to avoid expensive copying
@@ -50,6 +58,12 @@ public enum Sensor
     private final double warningMin; //the value beneath which warnings should be emitted
     private final double warningMax; //the value above which warnings should be emitted
     private final Unit unit; //the Unit for this Sensor
+    private final String hwInfoLabel; //the label of the HwInfo reading for this Sensor, or null if not read from HwInfo
+    private final SensorHistory history = new SensorHistory(Constants.SENSOR_HISTORY_CAPACITY); //the most recent data
+    private final SensorRollups rollups = new SensorRollups(new RollupTier(60_000, Constants.MINUTE_ROLLUPS),
+                                                            new RollupTier(3_600_000, Constants.HOUR_ROLLUPS)); //the older data
+    private final int roundingScale; //the data is multiplied by this before rounding for display
+    private final String[] roundedData; //the formatted values between min and max, filled in as they're first displayed
     private volatile double data; //the raw data for this Sensor
     private volatile Figure figure; //the Figure this Sensor is displayed on - NOSONAR, the object's state is NOT updated here
 
@@ -61,20 +75,26 @@ public enum Sensor
      * @param max The largest value this Sensor should ever reach
      * @param warningMin The value beneath which warnings should be emitted
      * @param warningMax The value above which warnings should be emitted
+     * @param hwInfoLabel The label of the HwInfo reading for this Sensor, or null if not read from HwInfo
      */
-    private Sensor(Unit unit, double min, double max, double warningMin, double warningMax)
+    private Sensor(Unit unit, double min, double max, double warningMin, double warningMax, String hwInfoLabel)
     {
         this.unit = unit;
+        this.hwInfoLabel = hwInfoLabel;
         this.min = min;
         this.max = max;
         this.warningMin = warningMin;
         this.warningMax = warningMax;
+
+        //cents are displayed to a single decimal place, everything else to the nearest whole number
+        this.roundingScale = unit == Unit.CENTS ? 10 : 1;
+        this.roundedData = new String[(int)(Math.ceil(max * this.roundingScale) - Math.floor(min * this.roundingScale)) + 1];
     }
 
     /**
      * Sets the Figure for this Sensor.
      *
-     * The given Figure will be repainted when this Sensor updates.
+     * The given Figure will be repainted when an update to this Sensor changes what it displays.
      *
      * @param figure The Figure associated with this Sensor
      */
@@ -84,42 +104,68 @@ public enum Sensor
     }
 
     /**
-     * Sets this Sensor to the given value.
+     * Returns the Figure for this Sensor.
+     *
+     * @return The Figure associated with this Sensor, or null if this Sensor is not displayed on the GUI
+     */
+    public Figure getFigure()
+    {
+        return this.figure;
+    }
+
+    /**
+     * Sets this Sensor to the given value, measured now.
      *
      * @param data The value to set this Sensor to
      */
     public void set(double data)
     {
-        //set the Sensor's value
+        set(data, System.currentTimeMillis());
+    }
+
+    /**
+     * Sets this Sensor to the given value.
+     *
+     * @param data The value to set this Sensor to
+     * @param timestampMillis The time the value was measured, in milliseconds since the epoch
+     */
+    public void set(double data, long timestampMillis)
+    {
+        //set the Sensor's value and record it
+        double previousData = this.data;
         this.data = data;
+        this.history.add(timestampMillis, data);
+        this.rollups.add(timestampMillis, data);
 
-        //warn about values outside the warning threshold
-        if (this.data > this.warningMax)
-        {
-            logWarning("High " + this);
-        }
-        else if (this.data < this.warningMin)
-        {
-            logWarning("Low " + this);
-        }
+        //add this Sensor to the batch being recorded by JFR, if any
+        SensorBatchEvent.sensorSet(this);
 
-        //warn about values outside the max and min
-        if (this.data > this.max)
-        {
-            logWarning("Critically high " + this);
-        }
-        else if (this.data < this.min)
+        //stream the new value to remote dashboards in the next delta
+        if (Double.compare(previousData, data) != 0)
         {
-            logWarning("Critically low " + this);
+            SensorStreamServer.sensorChanged(this);
         }
 
         //repaint the figure
         if (this.figure != null) //null figures means the value is unused and not displayed on the GUI
         {
-            this.figure.repaint();
+            this.figure.sensorUpdated();
         }
     }
 
+    /**
+     * Restores a value recorded by a previous run of this program into this Sensor's history and rollups. The current
+     * data of this Sensor is left unchanged, as the value is stale. Must be called before this Sensor is first set.
+     *
+     * @param data The recorded value
+     * @param timestampMillis The time the value was measured, in milliseconds since the epoch
+     */
+    public void restore(double data, long timestampMillis)
+    {
+        this.history.add(timestampMillis, data);
+        this.rollups.add(timestampMillis, data);
+    }
+
     /**
      * Returns the data for this Sensor.
      *
@@ -130,6 +176,26 @@ public enum Sensor
         return this.data;
     }
 
+    /**
+     * Returns the history of this Sensor's data.
+     *
+     * @return The history
+     */
+    public SensorHistory history()
+    {
+        return this.history;
+    }
+
+    /**
+     * Returns the rollups of this Sensor's data.
+     *
+     * @return The rollups
+     */
+    public SensorRollups rollups()
+    {
+        return this.rollups;
+    }
+
     /**
      * Returns the rounded data for this Sensor converted to a String.
      *
@@ -137,11 +203,39 @@ public enum Sensor
      */
     public String getRoundedData()
     {
-        return switch (this)
+        //round to the displayed precision
+        int scale = this.roundingScale;
+        long rounded = Math.round(this.data * scale);
+
+        //values outside the min and max aren't cached
+        String[] cache = this.roundedData;
+        long index = rounded - (long)Math.floor(this.min * scale);
+        if (index < 0 || index >= cache.length)
+        {
+            return format(rounded, scale);
+        }
+
+        //racing threads may both format a value, but Strings are immutable so either is safe to share
+        String formatted = cache[(int)index];
+        if (formatted == null)
         {
-            case SYSTEM_COST_PER_HOUR -> new DecimalFormat("##.#").format(this.data);
-            default -> String.valueOf(Math.round(this.data));
-        };
+            formatted = format(rounded, scale);
+            cache[(int)index] = formatted;
+        }
+
+        return formatted;
+    }
+
+    /**
+     * Formats a rounded value.
+     *
+     * @param rounded The value multiplied by the scale and rounded
+     * @param scale 10 to display a single decimal place, or 1 to display none
+     * @return The formatted value
+     */
+    private static String format(long rounded, int scale)
+    {
+        return scale == 1 ? String.valueOf(rounded) : new DecimalFormat("##.#").format(rounded / (double)scale);
     }
 
     /**
@@ -164,6 +258,26 @@ public enum Sensor
         return this.max;
     }
 
+    /**
+     * Returns the value beneath which warnings should be emitted for this Sensor.
+     *
+     * @return The warning min
+     */
+    public double warningMin()
+    {
+        return this.warningMin;
+    }
+
+    /**
+     * Returns the value above which warnings should be emitted for this Sensor.
+     *
+     * @return The warning max
+     */
+    public double warningMax()
+    {
+        return this.warningMax;
+    }
+
     /**
      * Returns the Unit for this Sensor.
      *
@@ -174,6 +288,16 @@ public enum Sensor
         return this.unit;
     }
 
+    /**
+     * Returns the label of the HwInfo reading for this Sensor.
+     *
+     * @return The HwInfo reading label, or null if this Sensor is not read from HwInfo
+     */
+    public String hwInfoLabel()
+    {
+        return this.hwInfoLabel;
+    }
+
     @Override
     public String toString()
     {
@@ -14,17 +14,17 @@ import java.awt.Point;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
-import java.util.Timer;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
@@ -36,10 +36,35 @@ import javax.swing.plaf.FontUIResource;
 
 import forge.ForgeUtils;
 import forge.RoundedPanel;
+import src.alert.AlertEngine;
+import src.figure.IconAtlas;
 import src.figure.IconField;
 import src.figure.SleekBar;
 import src.figure.SleekGauge;
 import src.figure.Thermostat;
+import src.history.TelemetryLog;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+import src.metrics.MetricsOverlay;
+import src.server.FrameServer;
+import src.server.HeadlessRenderer;
+import src.server.PrometheusServer;
+import src.server.SensorStreamServer;
+import src.source.FallbackHwInfoSource;
+import src.source.HwInfoDispatchTable;
+import src.source.HwInfoParser;
+import src.source.HwInfoSharedMemorySource;
+import src.source.HwInfoSource;
+import src.source.KasaClient;
+import src.source.RegistryQuerySource;
+import src.source.ReusableBuffer;
+import src.source.SensorChannelMap;
+import src.source.SourceRecorder;
+import src.source.SourceReplayer;
+import src.source.SourceScheduler;
+import src.source.StreamingRegistrySource;
+import src.source.TelemetryHandler;
+import src.source.UdpReceiver;
 
 /**
  * A custom Sensor Panel for a display within a Windows gaming computer.
@@ -48,28 +73,146 @@ import src.figure.Thermostat;
  */
 public final class SensorPanel
 {
+    //the time each HwInfo registry poll takes to parse, including updating its Sensors
+    private static final LatencyHistogram HWINFO_PARSE_LATENCY = Metrics.histogram("HwInfo Registry parse");
+
     //member variables
     private final JFrame frame; //the main frame for the program
+    private final MetricsOverlay metricsOverlay = new MetricsOverlay(Constants.METRICS_OVERLAY_REFRESH_MILLIS); //over the frame
     private boolean lockPosition = true; //to allow for locking or unlocking the frame's position
     private Point dragPoint; //to allow dragging the frame by clicking on any part of it
 
     /**
      * The entry point of the program.
      *
-     * @param args Ignored
+     * @param args The options, any of:
+     *                  • --headless            Serve the panel over HTTP instead of showing it on a screen
+     *                  • --record <file>       Record the raw input of every source to a file while monitoring them
+     *                  • --replay <file>       Replay a recording instead of monitoring the sources, e.g. on another machine
+     *                  • --speed <N|max>       The speed to replay at, 1 (the original timing) by default
      */
     public static void main(String[] args)
     {
-        //create the main GUI
-        SwingUtilities.invokeLater(SensorPanel::new);
+        //check the arguments before starting anything
+        String replayPath = argument(args, "--replay");
+        double replaySpeed = replaySpeed(args);
 
-        //startup all necessary programs
-        handleStartupPrograms();
+        //create the main GUI, or render it off-screen and serve it to other devices when there's no screen to show it on
+        if (Arrays.asList(args).contains("--headless"))
+        {
+            System.setProperty("java.awt.headless", "true");
+            SwingUtilities.invokeLater(SensorPanel::startHeadless);
+        }
+        else
+        {
+            SwingUtilities.invokeLater(SensorPanel::new);
+        }
+
+        //replayed values are neither from this machine nor worth keeping, so skip the startup programs and the telemetry log
+        if (replayPath == null)
+        {
+            //startup all necessary programs
+            handleStartupPrograms();
+
+            //restore the history from the previous run before any sensor updates
+            startTelemetryLog();
+        }
+
+        //warn about sensors outside their expected range
+        startAlertEngine();
+
+        //serve every sensor to fleet monitoring, and stream changes to remote dashboards
+        startPrometheusServer();
+        startSensorStream();
+
+        //update the sensors from a recording of the programs below
+        if (replayPath != null)
+        {
+            replaySensors(Path.of(replayPath), replaySpeed);
+            return;
+        }
+
+        //record everything the programs below send, if requested
+        SourceRecorder recorder = null;
+        String recordPath = argument(args, "--record");
+        if (recordPath != null)
+        {
+            try
+            {
+                recorder = new SourceRecorder(Path.of(recordPath));
+            }
+            catch (IOException e)
+            {
+                logError("Unable to record sensor sources to " + recordPath, e);
+                System.exit(1);
+            }
+        }
 
         //continually update the sensors using values from different programs
-        monitorHwInfoSensors();
-        monitorFanControlSensors();
-        monitorTpLinkSensors();
+        SourceScheduler scheduler = new SourceScheduler("Sensor Scheduler Thread");
+        monitorHwInfoSensors(scheduler, recorder);
+        monitorUdpSensors(recorder);
+        monitorTpLinkSensors(scheduler, recorder);
+    }
+
+    /**
+     * Returns the value following an option in the program's arguments.
+     *
+     * @param args The program's arguments
+     * @param option The option, e.g. "--record"
+     * @return The value, or null if the option was not given
+     */
+    private static String argument(String[] args, String option)
+    {
+        int index = Arrays.asList(args).indexOf(option);
+        if (index < 0)
+        {
+            return null;
+        }
+
+        if (index + 1 == args.length)
+        {
+            logError("Missing value for " + option);
+            System.exit(1);
+        }
+
+        return args[index + 1];
+    }
+
+    /**
+     * Returns the speed to replay a recording at, exiting with an error if it is not a positive number or "max".
+     *
+     * @param args The program's arguments
+     * @return The speed, 1 if not given, or Double.POSITIVE_INFINITY for "max"
+     */
+    private static double replaySpeed(String[] args)
+    {
+        String speed = argument(args, "--speed");
+        if (speed == null)
+        {
+            return 1;
+        }
+        else if (speed.equals("max"))
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        try
+        {
+            double value = Double.parseDouble(speed);
+            if (value > 0 && Double.isFinite(value))
+            {
+                return value;
+            }
+        }
+        catch (NumberFormatException _)
+        {
+            //reported below
+        }
+
+        logError("Invalid value for --speed: " + speed + ", expected a positive number or max");
+        System.exit(1);
+        return 0;
     }
 
     /**
@@ -92,20 +235,54 @@ public final class SensorPanel
             System.exit(1);
         }
 
+        this.frame.setGlassPane(this.metricsOverlay);
         setupMainFrame();
         if (Constants.ENABLE_DEBUG) moveSensorPanelToSecondaryMonitor();
 
-        //create the main panel and display the frame
+        //create the main panel, load the icons of its Figures and display the frame
         this.frame.add(createMainPanel());
+        try
+        {
+            IconAtlas.pack();
+        }
+        catch (IOException e)
+        {
+            logError("Unable to load icons", e);
+            System.exit(1);
+        }
+
         this.frame.setVisible(true);
     }
 
+    /**
+     * Renders the main panel off-screen and serves its frames over HTTP, instead of showing it on a screen.
+     */
+    private static void startHeadless()
+    {
+        ForgeUtils.setGlobalFont(new FontUIResource("Arial", Font.PLAIN, 20));
+
+        JPanel mainPanel = createMainPanel();
+        try
+        {
+            IconAtlas.pack();
+            FrameServer server = new FrameServer(Constants.HEADLESS_HOST, Constants.HEADLESS_PORT);
+            new HeadlessRenderer(mainPanel, Constants.FRAME_WIDTH, Constants.FRAME_HEIGHT, Constants.HEADLESS_BAND_ROWS,
+                                 Deflater.BEST_SPEED, server::publish).start(Constants.HEADLESS_FPS);
+        }
+        catch (IOException e)
+        {
+            logError("Unable to serve the headless panel", e);
+            System.exit(1);
+        }
+    }
+
     /**
      * Creates all Figures and arranges them on a main panel.
+     * Requires no screen, so it may also be used when headless.
      *
      * @return The main panel
      */
-    private static JPanel createMainPanel()
+    public static JPanel createMainPanel()
     {
         //create the main panel to add all components to
         JPanel mainPanel = new JPanel(new GridBagLayout());
@@ -313,6 +490,48 @@ public final class SensorPanel
         .start();
     }
 
+    /**
+     * Serves the value of every Sensor for Prometheus to scrape, if enabled.
+     */
+    private static void startPrometheusServer()
+    {
+        if (!Constants.USE_PROMETHEUS_SERVER)
+        {
+            return;
+        }
+
+        try
+        {
+            new PrometheusServer(Constants.PROMETHEUS_HOST, Constants.PROMETHEUS_PORT, Constants.PROMETHEUS_MAX_CONCURRENT_SCRAPES);
+        }
+        catch (IOException e)
+        {
+            logError("Unable to serve Sensors to Prometheus", e);
+        }
+    }
+
+    /**
+     * Streams the Sensors which change to remote dashboards, if enabled.
+     */
+    private static void startSensorStream()
+    {
+        if (!Constants.USE_SENSOR_STREAM)
+        {
+            return;
+        }
+
+        try
+        {
+            new SensorStreamServer(Constants.SENSOR_STREAM_HOST, Constants.SENSOR_STREAM_PORT,
+                                   Constants.SENSOR_STREAM_INTERVAL_MILLIS, Constants.SENSOR_STREAM_CLIENT_QUEUE,
+                                   Constants.SENSOR_STREAM_ALLOW_ANY_ORIGIN);
+        }
+        catch (IOException e)
+        {
+            logError("Unable to stream Sensors to remote dashboards", e);
+        }
+    }
+
     /**
      * Sets up the main program frame, which includes setting various attributes of the frame including:
      *      • Size
@@ -340,6 +559,7 @@ public final class SensorPanel
                  *      • Toggle displaying the frame's border
                  *      • Toggle allowing the frame to resize
                  *      • Toggle locking the frame's position
+                 *      • Toggle displaying the metrics overlay
                  *      • Resetting the frame to its defaults
                  */
                 if (SwingUtilities.isRightMouseButton(event))
@@ -385,6 +605,11 @@ public final class SensorPanel
                     positionItem.setSelected(lockPosition);
                     positionItem.addActionListener(_ -> lockPosition = !lockPosition);
 
+                    //add an option to display the latencies and counters the program keeps about itself
+                    JCheckBoxMenuItem metricsItem = new JCheckBoxMenuItem("Show Metrics");
+                    metricsItem.setSelected(metricsOverlay.isVisible());
+                    metricsItem.addActionListener(_ -> metricsOverlay.setVisible(metricsItem.isSelected()));
+
                     //add an option to reset the frame to its default size and position
                     JMenuItem resetItem = new JMenuItem("Reset Frame");
                     resetItem.addActionListener(_ -> resetFrame());
@@ -395,6 +620,7 @@ public final class SensorPanel
                     popupMenu.add(borderItem);
                     popupMenu.add(resizeItem);
                     popupMenu.add(positionItem);
+                    popupMenu.add(metricsItem);
                     popupMenu.add(resetItem);
 
                     //display the popup menu
@@ -458,185 +684,367 @@ public final class SensorPanel
         }
     }
 
+    /**
+     * Logs a warning whenever a Sensor's data moves into or out of a concerning range.
+     */
+    private static void startAlertEngine()
+    {
+        AlertEngine engine = new AlertEngine(event -> logWarning(event.toString()), Constants.ALERT_HYSTERESIS_FRACTION,
+                                             Constants.ALERT_DEBOUNCE_MILLIS, Constants.ALERT_RATE_LIMIT_MILLIS,
+                                             Constants.ALERT_POLL_MILLIS);
+        engine.start("Alert Thread");
+    }
+
+    /**
+     * Restores the Sensor history logged by previous runs of the program, then logs all new Sensor data in the background.
+     */
+    private static void startTelemetryLog()
+    {
+        if (!Constants.USE_TELEMETRY_LOG)
+        {
+            return;
+        }
+
+        TelemetryLog log = new TelemetryLog(Path.of(Constants.TELEMETRY_LOG_DIRECTORY), Constants.TELEMETRY_LOG_SEGMENT_RECORDS,
+                                            Constants.TELEMETRY_LOG_MAX_SEGMENTS, Constants.TELEMETRY_LOG_FLUSH_MILLIS);
+        try
+        {
+            log.replay(System.currentTimeMillis() - Constants.TELEMETRY_LOG_REPLAY_MILLIS);
+        }
+        catch (IOException e)
+        {
+            logError("Unable to restore Sensor history from the telemetry log", e);
+        }
+
+        log.start("Telemetry Log Thread");
+        Runtime.getRuntime().addShutdownHook(new Thread(log::close, "Telemetry Log Shutdown"));
+    }
+
     /**
      * Periodically updates the sensors from HwInfo.
      *
-     * Updating occurs at a fixed interval that should match HwInfo's update rate.
+     * HwInfo's shared memory is preferred as it is cheap enough to read at sub-second rates. While it is unavailable (e.g. HwInfo
+     * is still starting up or shared memory support is disabled, which is HwInfo's default), the registry values are read
+     * instead at a slower interval that should match HwInfo's update rate. Whichever is read is recorded while recording.
+     *
+     * Both are read by a single task, so that only one thread ever sets the HwInfo sensors. Shared memory being unavailable is
+     * not a failed poll, only a failure to read the registry values is.
+     *
+     * @param scheduler The scheduler to poll HwInfo with
+     * @param recorder Records the shared memory and registry values, or null
      */
-    private static void monitorHwInfoSensors()
+    private static void monitorHwInfoSensors(SourceScheduler scheduler, SourceRecorder recorder)
     {
+        //prefer a long-lived worker streaming values over a pipe (restarted if it hangs), falling back to spawning a registry
+        //query each poll while the worker keeps failing, and retrying the worker with a growing backoff
+        Duration workerTimeout = Duration.ofMillis(Constants.HWINFO_WORKER_TIMEOUT_MILLIS);
+        HwInfoSource registrySource = new FallbackHwInfoSource(StreamingRegistrySource.powerShell(Constants.HWINFO_REGISTRY_KEY, workerTimeout),
+                                                               new RegistryQuerySource("HKEY_CURRENT_USER\\" + Constants.HWINFO_REGISTRY_KEY),
+                                                               3, Duration.ofMillis(Constants.HWINFO_WORKER_RETRY_MILLIS));
+        if (recorder != null)
+        {
+            registrySource = recorder.recording(registrySource);
+        }
+
+        HwInfoSharedMemorySource sharedMemorySource = HwInfoSharedMemorySource.openNamed();
+        if (recorder != null)
+        {
+            sharedMemorySource.record(recorder);
+        }
+
+        boolean useSharedMemory = Constants.USE_HWINFO_SHARED_MEMORY;
+
         long startTime = System.nanoTime();
-        new Timer("HwInfo Sensor Thread").scheduleAtFixedRate(ForgeUtils.timer(() ->
+        long registryInterval = TimeUnit.MILLISECONDS.toNanos(Constants.HWINFO_REGISTRY_UPDATE_RATE_MILLIS);
+        ReusableBuffer registryOutput = new ReusableBuffer(4096);
+        HwInfoDispatchTable registryTable = new HwInfoDispatchTable();
+        AtomicBoolean sharedMemoryAvailable = new AtomicBoolean(true); //assume so until the first poll, to log it if not
+        AtomicLong nextRegistryPoll = new AtomicLong(startTime);
+        HwInfoSource finalRegistrySource = registrySource;
+
+        Duration interval = Duration.ofMillis(useSharedMemory ? Constants.HWINFO_SHARED_MEMORY_UPDATE_RATE_MILLIS
+                                                              : Constants.HWINFO_REGISTRY_UPDATE_RATE_MILLIS);
+        scheduler.schedule("HwInfo", interval, () ->
         {
-            try
+            if (useSharedMemory)
             {
-                //get the sensor values by querying the Windows registry
-                Process process = new ProcessBuilder("cmd", "/c", "reg query HKEY_CURRENT_USER\\SOFTWARE\\HWiNFO64\\VSB")
-                                  .redirectErrorStream(true).start();
-
-                StringBuilder builder = new StringBuilder();
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+                try
                 {
-                    reader.lines().forEach(line ->
+                    long now = System.currentTimeMillis();
+                    sharedMemorySource.poll(now);
+                    updateSecondaryPowerUsage(now);
+                    if (!sharedMemoryAvailable.getAndSet(true))
                     {
-                        builder.append(line);
-                        line = line.trim();
-
-                        //the line with "ValueRaw" contains the Sensor index and the raw sensor value
-                        if (line.startsWith("ValueRaw"))
-                        {
-                            String[] components = Constants.SPLIT_SPACES.split(line);
-                            int index = Integer.parseInt(components[0].substring(8, components[0].length()));
-                            double value = Double.parseDouble(components[2]);
-
-                            //convert KB/s to Mb/s
-                            if (Sensor.VALUES[index] == Sensor.INTERNET_DOWNLOAD_USAGE ||
-                                Sensor.VALUES[index] == Sensor.INTERNET_UPLOAD_USAGE)
-                            {
-                                value *= 0.008;
-                            }
-
-                            //update the Sensor's value
-                            Sensor.VALUES[index].set(value);
-                        }
-                    });
-                }
-
-                //calculate combined power usage of everything but the CPU and GPU
-                double secondaryPowerUsage = Sensor.SYSTEM_POWER_USAGE.getData() -
-                                             Sensor.CPU_POWER_USAGE.getData() -
-                                             Sensor.GPU_POWER_USAGE.getData();
+                        logWarning("HwInfo shared memory is available, no longer reading the registry");
+                    }
 
-                /**
-                 * System power usage is obtained from the TP-Link smart plug while CPU and GPU power usage is obtained from
-                 * HwInfo. Because these values are not always in sync, when power usage drastically changes (e.g. from closing or
-                 * opening a power-intensive application) one may lag the other and cause the secondary power usage to become
-                 * negative. In this case, use the last-known positive value of the secondary power usage.
-                 */
-                if (secondaryPowerUsage > 0)
-                {
-                    Sensor.SECONDARY_POWER_USAGE.set(secondaryPowerUsage);
+                    return;
                 }
-
-                int exitCode = process.waitFor();
-                if (exitCode != 0 && (System.nanoTime() - startTime)/1e9 > 10) //wait 10 seconds (max HwInfo startup time) to report errors
+                catch (IOException e)
                 {
-                    logError("Reading HwInfo registry values exiting with nonzero value: " + exitCode +
-                             ". Output of command: " + builder);
+                    //read the registry until shared memory is available again
+                    if (sharedMemoryAvailable.getAndSet(false))
+                    {
+                        logWarning("HwInfo shared memory is unavailable, reading the registry instead: " + e.getMessage());
+                    }
                 }
             }
-            catch (IOException | InterruptedException e)
+
+            //the registry values only change at HwInfo's update rate, so don't read them each tick
+            long now = System.nanoTime();
+            if (now - nextRegistryPoll.get() >= 0)
             {
-                logError("Unable to query HwInfo values", e);
+                nextRegistryPoll.set(now + registryInterval);
+                pollHwInfoRegistry(finalRegistrySource, registryOutput, registryTable, startTime);
             }
-        }),
-        0,
-        Constants.UPDATE_RATE_SECONDS * 1000);
+        });
     }
 
     /**
-     * Periodically updates the sensors from FanControl.
+     * Updates the sensors from the values HwInfo exports to the registry.
      *
-     * Updating occurs at the same update rate as FanControl (once every second).
+     * @param source The source to read the registry values from
+     * @param output The buffer to read the registry values into, reused across polls
+     * @param table Maps each exported value to its Sensor
+     * @param startTime The time monitoring started, in nanoseconds
+     * @throws IOException If the registry values could not be read
+     * @throws InterruptedException If interrupted while waiting for the registry values
      */
-    private static void monitorFanControlSensors()
+    private static void pollHwInfoRegistry(HwInfoSource source, ReusableBuffer output, HwInfoDispatchTable table, long startTime)
+        throws IOException, InterruptedException
     {
-        new Thread(() ->
+        //get the sensor values from HwInfo and parse them in place
+        int exitCode = source.poll(output);
+        updateHwInfoSensors(output, table, System.currentTimeMillis());
+
+        if (exitCode != 0 && (System.nanoTime() - startTime)/1e9 > 10) //wait 10 seconds (max HwInfo startup time) to report errors
         {
-            //FanControl updates are sent via UDP socket
-            try (DatagramSocket socket = new DatagramSocket(48620))
-            {
-                byte[] buffer = new byte[16];
+            logError("Reading HwInfo registry values exiting with nonzero value: " + exitCode +
+                     ". Output of command: " + output);
+        }
+    }
 
-                //data will be continuously received
-                while (true)
-                {
-                    //receive the packet
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                    socket.receive(packet);
+    /**
+     * Updates the sensors from the registry values read from HwInfo.
+     *
+     * @param output The registry values
+     * @param table Maps each exported value to its Sensor
+     * @param timestampMillis The time the registry values were read, in milliseconds since the epoch
+     */
+    private static void updateHwInfoSensors(ReusableBuffer output, HwInfoDispatchTable table, long timestampMillis)
+    {
+        long parseStart = System.nanoTime();
+        table.update(output.array(), output.length(), timestampMillis);
+        HwInfoParser.parse(output.array(), output.length(), table);
+        HWINFO_PARSE_LATENCY.record(System.nanoTime() - parseStart);
+        updateSecondaryPowerUsage(timestampMillis);
+    }
+
+    /**
+     * Calculates the combined power usage of everything but the CPU and GPU.
+     *
+     * @param timestampMillis The time the power usage was measured, in milliseconds since the epoch
+     */
+    private static void updateSecondaryPowerUsage(long timestampMillis)
+    {
+        double secondaryPowerUsage = Sensor.SYSTEM_POWER_USAGE.getData() -
+                                     Sensor.CPU_POWER_USAGE.getData() -
+                                     Sensor.GPU_POWER_USAGE.getData();
 
-                    //extract the temperature and sensor number from the packet
-                    String[] data = new String(packet.getData(), 0, packet.getLength()).split(":");
-                    double temperature = ForgeUtils.celsiusToFahrenheit(Double.parseDouble(data[1]));
+        /**
+         * System power usage is obtained from the TP-Link smart plug while CPU and GPU power usage is obtained from
+         * HwInfo. Because these values are not always in sync, when power usage drastically changes (e.g. from closing or
+         * opening a power-intensive application) one may lag the other and cause the secondary power usage to become
+         * negative. In this case, use the last-known positive value of the secondary power usage.
+         */
+        if (secondaryPowerUsage > 0)
+        {
+            Sensor.SECONDARY_POWER_USAGE.set(secondaryPowerUsage, timestampMillis);
+        }
+    }
 
-                    //channel 0 is air temperature
-                    if ("0".equals(data[0]))
-                    {
-                        Sensor.AIR_TEMPERATURE.set(temperature);
-                    }
-                    //channel 1 is water temperature
-                    else if ("1".equals(data[0]))
-                    {
-                        Sensor.WATER_TEMPERATURE.set(temperature);
-                    }
-                    else
-                    {
-                        logWarning("Unexpected data received from FanControl UDP socket: " +
-                                   Arrays.stream(data).collect(Collectors.joining(" ")));
-                    }
-                }
-            }
-            catch (IOException e)
-            {
-                logError("IOException encountered attempting to query FanControl values", e);
-            }
-        },
-        "FanControl Sensor Thread")
-        .start();
+    /**
+     * Continually updates the sensors from all UDP-fed sources on a single thread.
+     *
+     * This includes FanControl, which sends each temperature as it updates (once every second).
+     *
+     * @param recorder Records each datagram, or null
+     */
+    private static void monitorUdpSensors(SourceRecorder recorder)
+    {
+        try
+        {
+            UdpReceiver receiver = new UdpReceiver();
+            UdpReceiver.DatagramHandler fanControlHandler = fanControlHandler();
+            receiver.register(Constants.FANCONTROL_PORT,
+                              recorder == null ? fanControlHandler
+                                               : recorder.recording(Constants.FANCONTROL_PORT, fanControlHandler));
+
+            receiver.start("UDP Sensor Thread");
+        }
+        catch (IOException e)
+        {
+            logError("IOException encountered attempting to query FanControl values", e);
+        }
+    }
+
+    /**
+     * Returns a handler which updates the sensors from FanControl's datagrams.
+     *
+     * @return The handler
+     */
+    private static UdpReceiver.DatagramHandler fanControlHandler()
+    {
+        //FanControl channel 0 is air temperature and channel 1 is water temperature
+        return new TelemetryHandler("FanControl", new SensorChannelMap(ForgeUtils::celsiusToFahrenheit,
+                                                                       Sensor.AIR_TEMPERATURE,
+                                                                       Sensor.WATER_TEMPERATURE));
     }
 
     /**
      * Periodically updates the sensors from TP-Link.
      *
-     * This includes a single HS110 smart plug that provides real-time energy usage information for the PC measured at the wall.
+     * This includes any number of HS110 smart plugs that provide real-time energy usage information for the PC measured at the
+     * wall. The power draw of all plugs is combined.
+     *
+     * @param scheduler The scheduler to poll the smart plugs with
+     * @param recorder Records each response, or null
      */
-    private static void monitorTpLinkSensors()
+    private static void monitorTpLinkSensors(SourceScheduler scheduler, SourceRecorder recorder)
     {
-        new Timer("TpLink Sensor Thread").scheduleAtFixedRate(ForgeUtils.timer(() ->
+        KasaClient client;
+        try
         {
-            try
+            client = new KasaClient(Constants.KASA_PLUG_HOSTS, KasaClient.PORT, Constants.KASA_POWER_EXPIRY_MILLIS);
+        }
+        catch (IOException e)
+        {
+            logError("IOException encountered attempting to query TpLink values", e);
+            return;
+        }
+
+        if (recorder != null)
+        {
+            client.record(recorder);
+        }
+
+        //each plug backs off on its own when it fails, so that one unreachable plug does not delay the others
+        scheduler.schedule("TpLink Smart Plugs", Duration.ofMillis(Constants.KASA_UPDATE_RATE_MILLIS), () ->
+        {
+            if (client.poll(Constants.KASA_TIMEOUT_MILLIS) != 0)
             {
-                //get the sensor value by querying it using kasa
-                Process process = new ProcessBuilder("cmd", "/c", "kasa --host 192.168.0.6 --type plug emeter")
-                                  .redirectErrorStream(true).start();
+                updateTpLinkSensors(client, System.currentTimeMillis());
+            }
+        });
+    }
+
+    /**
+     * Updates the sensors from the power draw the smart plugs last reported.
+     *
+     * @param client The client of the smart plugs
+     * @param timestampMillis The time the power draw was reported, in milliseconds since the epoch
+     */
+    private static void updateTpLinkSensors(KasaClient client, long timestampMillis)
+    {
+        //only update the sensors once every plug has reported its power draw at least once
+        double currentWattage = client.totalPower();
+        if (!Double.isNaN(currentWattage))
+        {
+            //update the system power usage
+            Sensor.SYSTEM_POWER_USAGE.set(currentWattage, timestampMillis);
+
+            //convert wattage to cost per hour
+            double costPerHour = currentWattage/1000 * Constants.CENTS_PER_KWH;
+            Sensor.SYSTEM_COST_PER_HOUR.set(costPerHour, timestampMillis);
+        }
+    }
+
+    /**
+     * Updates the sensors from a recording of their sources on a new thread, instead of monitoring the sources themselves.
+     *
+     * The recorded inputs go through the same parsing as live inputs, so a recording made on the gaming computer can be used
+     * to reproduce or load test the SensorPanel elsewhere.
+     *
+     * @param path The recording, made with --record
+     * @param speed The speed to replay at, e.g. 1 for the original timing, or Double.POSITIVE_INFINITY for max speed
+     */
+    private static void replaySensors(Path path, double speed)
+    {
+        SourceReplayer replayer;
+        KasaClient client;
+        try
+        {
+            replayer = new SourceReplayer(path);
+            client = new KasaClient(Constants.KASA_PLUG_HOSTS, KasaClient.PORT, Constants.KASA_POWER_EXPIRY_MILLIS);
+        }
+        catch (IOException e)
+        {
+            logError("Unable to replay sensor sources from " + path, e);
+            return;
+        }
 
-                StringBuilder builder = new StringBuilder();
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream())))
+        HwInfoDispatchTable registryTable = new HwInfoDispatchTable();
+        UdpReceiver.DatagramHandler fanControlHandler = fanControlHandler();
+
+        new Thread(() ->
+        {
+            try (replayer; client)
+            {
+                long replayed = replayer.replay(speed, new SourceReplayer.Listener()
                 {
-                    reader.lines().forEach(line ->
+                    private ByteBuffer sharedMemoryBlock; //the block the shared memory source reads
+                    private HwInfoSharedMemorySource sharedMemorySource; //reads the replayed block
+
+                    @Override
+                    public void hwInfoRegistry(ReusableBuffer output, int exitCode, long timestampMillis)
                     {
-                        builder.append(line);
-                        line = line.trim();
+                        updateHwInfoSensors(output, registryTable, timestampMillis);
+                    }
 
-                        //the line with "Power" contains the current wattage draw
-                        if (line.startsWith("Power:"))
+                    @Override
+                    public void hwInfoSharedMemory(ByteBuffer block, long timestampMillis) throws IOException
+                    {
+                        //the readings are matched again for a new layout
+                        if (block != this.sharedMemoryBlock)
                         {
-                            String[] components = Constants.SPLIT_SPACES.split(line);
+                            this.sharedMemoryBlock = block;
+                            this.sharedMemorySource = HwInfoSharedMemorySource.openBuffer(block);
+                        }
 
-                            //update the system power usage
-                            double currentWattage = Double.parseDouble(components[1]);
-                            Sensor.SYSTEM_POWER_USAGE.set(currentWattage);
+                        this.sharedMemorySource.poll(timestampMillis);
+                        updateSecondaryPowerUsage(timestampMillis);
+                    }
 
-                            //convert wattage to cost per hour
-                            double costPerHour = currentWattage/1000 * Constants.CENTS_PER_KWH;
-                            Sensor.SYSTEM_COST_PER_HOUR.set(costPerHour);
+                    @Override
+                    public void datagram(int port, ByteBuffer datagram, long timestampMillis)
+                    {
+                        if (port == Constants.FANCONTROL_PORT)
+                        {
+                            fanControlHandler.handle(datagram, timestampMillis);
                         }
-                    });
-                }
+                    }
 
-                int exitCode = process.waitFor();
-                if (exitCode != 0)
-                {
-                    logError("Reading TpLink values using Kasa exiting with nonzero value: " + exitCode +
-                             ". Output of command: " + builder);
-                }
+                    @Override
+                    public void kasa(String host, byte[] response, int length, long timestampMillis)
+                    {
+                        if (client.replay(host, response, length))
+                        {
+                            updateTpLinkSensors(client, timestampMillis);
+                        }
+                    }
+                });
+
+                logWarning("Finished replaying " + replayed + " sensor source inputs from " + path);
+            }
+            catch (IOException e)
+            {
+                logError("Unable to replay sensor sources from " + path, e);
             }
-            catch (IOException | InterruptedException e)
+            catch (InterruptedException _)
             {
-                logError("Unable to query TpLink Sensor values using Kasa", e);
+                //stopped replaying
             }
-        }),
-        0, Constants.UPDATE_RATE_SECONDS * 1000);
+        }, "Sensor Replay Thread").start();
     }
 
     /**
@@ -0,0 +1,342 @@
+package src.alert;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import src.Sensor;
+import src.history.HistoryCursor;
+import src.metrics.AlertTransitionEvent;
+
+/**
+ * Watches every Sensor for data outside of its expected range, reporting each change in AlertLevel as an AlertEvent.
+ *
+ * About the engine:
+ *      • The engine runs on its own thread and reads each Sensor's samples from its history ring, so setting a Sensor costs
+ *        nothing more than recording the sample
+ *      • Hysteresis: a level is entered when its threshold is crossed, but only exited once the data moves back past the
+ *        threshold by a fraction of the Sensor's range, so data hovering around a threshold doesn't flap between levels
+ *      • Debounce: a new level must hold for a minimum duration before it takes effect, so a single spike raises nothing
+ *      • Rate limit: events of the same Sensor are reported at most once per interval, except changes to critical, whether
+ *        escalated from a warning or raised straight from normal, which are always reported. Suppressed events are counted in
+ *        the next reported event. Once the interval has passed, a Sensor whose level differs from its last reported level is
+ *        reported at its current level, so an alert is never left standing after its Sensor has cleared or deescalated.
+ */
+public final class AlertEngine implements Closeable
+{
+    private static final int BATCH = 64; //the number of samples read from a history ring at once
+
+    private final AlertListener listener; //receives the reported events
+    private final double hysteresisFraction; //the fraction of each Sensor's range a level is exited by
+    private final long debounceMillis; //the time a new level must hold before it takes effect
+    private final long rateLimitMillis; //the minimum time between reported events of the same Sensor
+    private final long pollNanos; //the time between checking for new samples
+    private final SensorState[] states; //the alert state of each Sensor
+    private final long[] timestamps = new long[BATCH]; //the times of the samples being checked
+    private final double[] values = new double[BATCH]; //the values of the samples being checked
+    private volatile boolean running; //whether the engine thread should continue
+    private Thread thread; //checks each new sample
+
+    /**
+     * Receives the AlertEvents the engine reports.
+     */
+    @FunctionalInterface
+    public interface AlertListener
+    {
+        /**
+         * Receives an event. Called on the engine's thread.
+         *
+         * @param event The event
+         */
+        void alert(AlertEvent event);
+    }
+
+    /**
+     * Creates a new AlertEngine.
+     *
+     * @param listener Receives the reported events
+     * @param hysteresisFraction The fraction of each Sensor's range (max - min) the data must move back past a threshold by to
+     *                           exit a level
+     * @param debounceMillis The time a new level must hold before it takes effect
+     * @param rateLimitMillis The minimum time between reported events of the same Sensor
+     * @param pollMillis The time between checking for new samples
+     */
+    public AlertEngine(AlertListener listener, double hysteresisFraction, long debounceMillis, long rateLimitMillis,
+                       long pollMillis)
+    {
+        this.listener = listener;
+        this.hysteresisFraction = hysteresisFraction;
+        this.debounceMillis = debounceMillis;
+        this.rateLimitMillis = rateLimitMillis;
+        this.pollNanos = TimeUnit.MILLISECONDS.toNanos(pollMillis);
+        this.states = new SensorState[Sensor.values().length];
+
+        for (Sensor sensor : Sensor.values())
+        {
+            this.states[sensor.ordinal()] = new SensorState(sensor);
+        }
+    }
+
+    /**
+     * Starts checking the samples set from now on, on a background thread.
+     *
+     * @param threadName The name of the background thread
+     */
+    public void start(String threadName)
+    {
+        for (SensorState state : this.states)
+        {
+            state.cursor = new HistoryCursor(state.sensor.history().count());
+        }
+
+        this.running = true;
+        this.thread = new Thread(() ->
+        {
+            while (this.running)
+            {
+                for (SensorState state : this.states)
+                {
+                    check(state);
+                    reportSuppressed(state, System.currentTimeMillis());
+                }
+
+                LockSupport.parkNanos(this.pollNanos);
+            }
+        },
+        threadName);
+
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Checks the new samples of a Sensor.
+     *
+     * @param state The alert state of the Sensor
+     */
+    private void check(SensorState state)
+    {
+        int count;
+        while ((count = state.sensor.history().read(state.cursor, this.timestamps, this.values)) > 0)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                check(state, this.timestamps[i], this.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks a single sample of a Sensor, reporting an event if its level changes.
+     *
+     * @param state The alert state of the Sensor
+     * @param timestampMillis The time of the sample
+     * @param value The value of the sample
+     */
+    private void check(SensorState state, long timestampMillis, double value)
+    {
+        if (Double.isNaN(value))
+        {
+            return;
+        }
+
+        AlertLevel level = state.classify(value, this.hysteresisFraction);
+        if (level == state.level)
+        {
+            state.pending = level;
+            return;
+        }
+
+        //debounce the new level
+        if (level != state.pending)
+        {
+            state.pending = level;
+            state.pendingSince = timestampMillis;
+        }
+
+        if (timestampMillis - state.pendingSince < this.debounceMillis)
+        {
+            return;
+        }
+
+        AlertLevel previous = state.level;
+        state.level = level;
+        state.levelSince = timestampMillis;
+        state.levelValue = value;
+        AlertEvent.Type type = type(previous, level);
+
+        //rate limit everything but changes to critical, and don't report a return to the level that was last reported
+        boolean suppressed = level == state.reported ||
+                             (level.severity() < 2 && timestampMillis - state.lastReported < this.rateLimitMillis);
+        recordTransition(state.sensor, type, previous, level, value, !suppressed);
+        if (suppressed)
+        {
+            state.suppressed++;
+            return;
+        }
+
+        report(state, timestampMillis);
+    }
+
+    /**
+     * Reports the current level of a Sensor if a change to it was suppressed by the rate limit, and the rate limit has since
+     * passed.
+     *
+     * @param state The alert state of the Sensor
+     * @param nowMillis The current time, in milliseconds since the epoch
+     */
+    private void reportSuppressed(SensorState state, long nowMillis)
+    {
+        if (state.level != state.reported && nowMillis - state.lastReported >= this.rateLimitMillis)
+        {
+            report(state, nowMillis);
+        }
+    }
+
+    /**
+     * Reports the change from the last reported level of a Sensor to its current level.
+     *
+     * @param state The alert state of the Sensor
+     * @param reportedMillis The time the rate limit of the Sensor starts from
+     */
+    private void report(SensorState state, long reportedMillis)
+    {
+        AlertLevel previous = state.reported;
+        this.listener.alert(new AlertEvent(state.sensor, type(previous, state.level), previous, state.level, state.levelValue,
+                                           state.levelSince, state.suppressed));
+        state.reported = state.level;
+        state.lastReported = reportedMillis;
+        state.suppressed = 0;
+    }
+
+    /**
+     * Returns how an AlertLevel changed.
+     *
+     * @param previous The level before the change
+     * @param level The level after the change, which differs from the level before
+     * @return The type of change
+     */
+    private static AlertEvent.Type type(AlertLevel previous, AlertLevel level)
+    {
+        if (level == AlertLevel.NORMAL)
+        {
+            return AlertEvent.Type.CLEARED;
+        }
+        else if (previous.isHigh() == level.isHigh() && previous.isLow() == level.isLow())
+        {
+            return level.severity() > previous.severity() ? AlertEvent.Type.ESCALATED : AlertEvent.Type.DEESCALATED;
+        }
+
+        return AlertEvent.Type.RAISED;
+    }
+
+    /**
+     * Records a change in AlertLevel for JFR recordings, if enabled.
+     *
+     * @param sensor The Sensor whose level changed
+     * @param type The type of change
+     * @param previous The level before the change
+     * @param level The level after the change
+     * @param value The value which caused the change
+     * @param reported Whether the change is reported, or was suppressed by the rate limit
+     */
+    private static void recordTransition(Sensor sensor, AlertEvent.Type type, AlertLevel previous, AlertLevel level,
+                                         double value, boolean reported)
+    {
+        AlertTransitionEvent event = new AlertTransitionEvent();
+        if (event.shouldCommit())
+        {
+            event.sensor = sensor.name();
+            event.type = type.name();
+            event.previous = previous.name();
+            event.level = level.name();
+            event.value = value;
+            event.reported = reported;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the current AlertLevel of a Sensor. Only accurate when called from the engine's thread, e.g. by a listener.
+     *
+     * @param sensor The Sensor
+     * @return The current level
+     */
+    public AlertLevel level(Sensor sensor)
+    {
+        return this.states[sensor.ordinal()].level;
+    }
+
+    /**
+     * Stops checking samples.
+     */
+    @Override
+    public void close()
+    {
+        this.running = false;
+        if (this.thread != null)
+        {
+            LockSupport.unpark(this.thread);
+        }
+    }
+
+    /**
+     * The alert state of a single Sensor.
+     */
+    private static final class SensorState
+    {
+        private final Sensor sensor; //the Sensor
+        private HistoryCursor cursor; //the position of the engine in the Sensor's history ring
+        private AlertLevel level = AlertLevel.NORMAL; //the level in effect
+        private AlertLevel pending = AlertLevel.NORMAL; //the level the latest samples are at
+        private AlertLevel reported = AlertLevel.NORMAL; //the level of the last reported event
+        private long levelSince; //the time of the sample that caused the level in effect
+        private double levelValue; //the value of the sample that caused the level in effect
+        private long pendingSince; //the time of the first sample at the pending level
+        private long lastReported = Long.MIN_VALUE / 2; //the time the last event was reported
+        private int suppressed; //the number of events not reported since the last reported event
+
+        /**
+         * Creates a new SensorState.
+         *
+         * @param sensor The Sensor
+         */
+        private SensorState(Sensor sensor)
+        {
+            this.sensor = sensor;
+        }
+
+        /**
+         * Returns the level of a value, applying hysteresis to exit the current level.
+         *
+         * @param value The value
+         * @param hysteresisFraction The fraction of the Sensor's range a level is exited by
+         * @return The level of the value
+         */
+        private AlertLevel classify(double value, double hysteresisFraction)
+        {
+            double band = (this.sensor.max() - this.sensor.min()) * hysteresisFraction;
+
+            if (value > this.sensor.max() ||
+                (this.level == AlertLevel.CRITICALLY_HIGH && value > this.sensor.max() - band))
+            {
+                return AlertLevel.CRITICALLY_HIGH;
+            }
+            else if (value > this.sensor.warningMax() || (this.level.isHigh() && value > this.sensor.warningMax() - band))
+            {
+                return AlertLevel.HIGH;
+            }
+            else if (value < this.sensor.min() ||
+                     (this.level == AlertLevel.CRITICALLY_LOW && value < this.sensor.min() + band))
+            {
+                return AlertLevel.CRITICALLY_LOW;
+            }
+            else if (value < this.sensor.warningMin() || (this.level.isLow() && value < this.sensor.warningMin() + band))
+            {
+                return AlertLevel.LOW;
+            }
+
+            return AlertLevel.NORMAL;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package src.alert;
+
+import src.Sensor;
+
+/**
+ * A change in the AlertLevel of a Sensor.
+ *
+ * @param sensor The Sensor whose level changed
+ * @param type How the level changed
+ * @param previous The level before the change
+ * @param level The level after the change
+ * @param value The value of the Sensor that caused the change
+ * @param timestampMillis The time of the value that caused the change, in milliseconds since the epoch
+ * @param suppressed The number of earlier events of this Sensor that were not reported due to rate limiting
+ */
+public record AlertEvent(Sensor sensor, Type type, AlertLevel previous, AlertLevel level, double value, long timestampMillis,
+                         int suppressed)
+{
+    /**
+     * How an AlertLevel changed.
+     */
+    public enum Type
+    {
+        RAISED,      //from normal to outside of the expected range
+        ESCALATED,   //from a warning to critical
+        DEESCALATED, //from critical to a warning
+        CLEARED      //back to normal
+    }
+
+    @Override
+    public String toString()
+    {
+        String name = this.sensor.name().replace('_', ' ');
+        String message = switch (this.type)
+        {
+            case CLEARED -> name + " back to normal at " + this.value + " " + this.sensor.unit() +
+                            " (was " + this.previous.toString().toLowerCase() + ")";
+            default -> this.level + " " + name + " " + this.value + " " + this.sensor.unit();
+        };
+
+        return this.suppressed == 0 ? message : message + " (" + this.suppressed + " earlier alerts suppressed)";
+    }
+}
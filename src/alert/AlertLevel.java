@@ -0,0 +1,65 @@
+package src.alert;
+
+/**
+ * How far a Sensor's data is outside of its expected range.
+ */
+public enum AlertLevel
+{
+    CRITICALLY_LOW  (2, "Critically low"),  //below the Sensor's min
+    LOW             (1, "Low"),             //below the Sensor's warning min
+    NORMAL          (0, "Normal"),
+    HIGH            (1, "High"),            //above the Sensor's warning max
+    CRITICALLY_HIGH (2, "Critically high"); //above the Sensor's max
+
+    //member variables
+    private final int severity; //0 for normal, 1 for a warning and 2 for critical
+    private final String description; //describes the level for logging
+
+    /**
+     * Creates a new AlertLevel.
+     *
+     * @param severity 0 for normal, 1 for a warning and 2 for critical
+     * @param description Describes the level for logging
+     */
+    private AlertLevel(int severity, String description)
+    {
+        this.severity = severity;
+        this.description = description;
+    }
+
+    /**
+     * Returns the severity of this level.
+     *
+     * @return 0 for normal, 1 for a warning and 2 for critical
+     */
+    public int severity()
+    {
+        return this.severity;
+    }
+
+    /**
+     * Returns whether this level is above the expected range.
+     *
+     * @return True if high or critically high
+     */
+    public boolean isHigh()
+    {
+        return this == HIGH || this == CRITICALLY_HIGH;
+    }
+
+    /**
+     * Returns whether this level is below the expected range.
+     *
+     * @return True if low or critically low
+     */
+    public boolean isLow()
+    {
+        return this == LOW || this == CRITICALLY_LOW;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.description;
+    }
+}
@@ -1,16 +1,43 @@
 package src.figure;
 
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
 import javax.swing.JPanel;
 
 import src.Sensor;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
 
 /**
  * An abstract class for all Figures to extend.
  *
  * This class ensures common functionality for all Figures.
+ *
+ * Each Figure is painted in two layers: a static layer which doesn't change with the Sensor's data and is pre-rendered once per
+ * size (see StaticLayer), and the dynamic fill, markers and text which are painted over it.
+ *
+ * When the Sensor updates, a Figure determines the region its display changed in (e.g. the arc between the old and new value,
+ * or a text box), and only that region is repainted. Paint code skips whatever lies outside the clip.
+ *
+ * The time each paint takes is recorded in the Metrics per type of Figure, along with the number of paints and the bytes they
+ * allocated.
  */
 public abstract sealed class Figure extends JPanel permits SleekGauge, Thermostat, IconField, SleekBar
 {
+    private static final LongAdder REPAINTS = Metrics.counter("Figure repaints"); //the paints of all Figures
+    private static final LongAdder PAINT_ALLOCATED_BYTES = Metrics.counter("Figure paint allocated bytes"); //by all Figures
+
+    final Sensor sensor; //the Sensor this Figure displays
+    final AtomicBoolean dirty = new AtomicBoolean(); //whether this Figure is waiting to be repainted by the FrameScheduler
+    private final StaticLayer staticLayer = new StaticLayer(); //the part of this Figure which doesn't change with its Sensor
+    private final Rectangle damage = new Rectangle(0, 0, -1, -1); //the region to repaint in the next frame, guarded by itself
+    private final LatencyHistogram paintLatency = Metrics.histogram(getClass().getSimpleName() + " paint"); //per type
+
     /**
      * Links this Figure with a Sensor.
      * This ensures that when the Sensor is updated, this Figure will be automatically repainted.
@@ -20,6 +47,180 @@ public abstract sealed class Figure extends JPanel permits SleekGauge, Thermosta
     protected Figure(Sensor sensor)
     {
         super();
+        this.sensor = sensor;
         sensor.setFigure(this);
     }
+
+    /**
+     * Called when this Figure's Sensor is updated. Schedules a repaint of the region that changed in the next frame, but only if
+     * the update changes what this Figure displays.
+     */
+    public final void sensorUpdated()
+    {
+        boolean changed;
+        synchronized (this.damage)
+        {
+            changed = updateDisplay(this.damage);
+        }
+
+        if (changed)
+        {
+            FrameScheduler.markDirty(this);
+        }
+    }
+
+    /**
+     * Takes the region of this Figure to repaint, accumulated since it was last taken.
+     *
+     * @param region Set to the region to repaint, within this Figure
+     * @return True if there is a region to repaint
+     */
+    public final boolean takeDamage(Rectangle region)
+    {
+        synchronized (this.damage)
+        {
+            if (this.damage.width < 0)
+            {
+                return false;
+            }
+
+            region.setBounds(this.damage);
+            this.damage.setBounds(0, 0, -1, -1);
+        }
+
+        return true;
+    }
+
+    /**
+     * Repaints the region of this Figure that changed since the last frame.
+     */
+    public final void repaintDamage()
+    {
+        Rectangle region = new Rectangle();
+        if (takeDamage(region))
+        {
+            repaint(region);
+        }
+    }
+
+    /**
+     * Adds a region to repaint.
+     *
+     * @param damage The region to repaint so far, which has a negative width if empty
+     * @param x The x coordinate of the region to add
+     * @param y The y coordinate of the region to add
+     * @param width The width of the region to add
+     * @param height The height of the region to add
+     */
+    protected static void addDamage(Rectangle damage, int x, int y, int width, int height)
+    {
+        if (width <= 0 || height <= 0)
+        {
+            return;
+        }
+
+        if (damage.width < 0)
+        {
+            damage.setBounds(x, y, width, height);
+            return;
+        }
+
+        int right = Math.max(damage.x + damage.width, x + width);
+        int bottom = Math.max(damage.y + damage.height, y + height);
+        damage.x = Math.min(damage.x, x);
+        damage.y = Math.min(damage.y, y);
+        damage.width = right - damage.x;
+        damage.height = bottom - damage.y;
+    }
+
+    /**
+     * Adds a region to repaint.
+     *
+     * @param damage The region to repaint so far, which has a negative width if empty
+     * @param region The region to add, or null to add this whole Figure
+     */
+    protected final void addDamage(Rectangle damage, Rectangle region)
+    {
+        if (region == null)
+        {
+            addDamage(damage, 0, 0, this.getWidth(), this.getHeight());
+        }
+        else
+        {
+            addDamage(damage, region.x, region.y, region.width, region.height);
+        }
+    }
+
+    /**
+     * Paints this Figure, recording how long it took.
+     *
+     * @param g The Graphics this Figure is painted with
+     */
+    @Override
+    public final void paint(Graphics g)
+    {
+        long start = System.nanoTime();
+        long startBytes = Metrics.threadAllocatedBytes();
+        super.paint(g);
+        this.paintLatency.record(System.nanoTime() - start);
+        Metrics.countAllocatedBytes(PAINT_ALLOCATED_BYTES, startBytes);
+        REPAINTS.increment();
+    }
+
+    /**
+     * Draws the static layer of this Figure, first rendering it if this Figure was resized or its theme changed.
+     *
+     * @param g2d The Graphics2D this Figure is painted with
+     */
+    protected final void drawStaticLayer(Graphics2D g2d)
+    {
+        this.staticLayer.draw(g2d, this);
+    }
+
+    /**
+     * Paints the part of this Figure which doesn't change with its Sensor's data, over its background.
+     *
+     * @param g2d The Graphics2D of the static layer, scaled to this Figure's size and with antialiasing enabled
+     */
+    protected abstract void paintStaticLayer(Graphics2D g2d);
+
+    /**
+     * Renders the static layer again after the look and feel changes.
+     */
+    @Override
+    public void updateUI()
+    {
+        super.updateUI();
+
+        //called by the JPanel constructor before the static layer is created
+        if (this.staticLayer != null)
+        {
+            this.staticLayer.invalidate();
+        }
+    }
+
+    /**
+     * Renders the static layer again after the background changes.
+     *
+     * @param background The new background color
+     */
+    @Override
+    public void setBackground(Color background)
+    {
+        super.setBackground(background);
+
+        if (this.staticLayer != null)
+        {
+            this.staticLayer.invalidate();
+        }
+    }
+
+    /**
+     * Determines what this Figure would display for its Sensor's current data (e.g. the text drawn and the pixel a fill ends at),
+     * and remembers it for the next call. Only called by the thread updating the Sensor.
+     *
+     * @param damage The region to repaint in the next frame, to add the region that changed to (see addDamage)
+     * @return True if the display differs from the last call, and so this Figure must be repainted
+     */
+    protected abstract boolean updateDisplay(Rectangle damage);
 }
@@ -0,0 +1,99 @@
+package src.figure;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.swing.Timer;
+
+import src.Constants;
+import src.metrics.FrameFlushEvent;
+import src.metrics.SensorBatchEvent;
+
+/**
+ * Coalesces the repaints of all Figures into frames.
+ *
+ * Figures are marked dirty from any thread as their Sensors update, and all dirty Figures are repainted together on the EDT at
+ * most Constants.MAX_FPS times per second. A burst of updates (e.g. a HwInfo poll updating every Sensor at once) therefore costs
+ * a single frame, and no frames are scheduled while nothing changes. Each frame is a FrameFlushEvent for JFR recordings.
+ */
+public final class FrameScheduler
+{
+    private static final Queue<Figure> DIRTY_FIGURES = new ConcurrentLinkedQueue<>(); //the Figures to repaint next frame
+    private static final AtomicBoolean FRAME_PENDING = new AtomicBoolean(); //whether the next frame is already scheduled
+    private static final Timer FRAME_TIMER = new Timer(1000 / Constants.MAX_FPS, _ -> flush()); //fires on the EDT
+    private static volatile Consumer<Figure> repaintHandler = Figure::repaintDamage; //repaints each dirty Figure
+
+    static
+    {
+        FRAME_TIMER.setRepeats(false);
+
+        //a coalescing timer drops a frame that comes due while the previous frame is still being flushed, which would leave
+        //FRAME_PENDING set with no frame scheduled and stop all repaints
+        FRAME_TIMER.setCoalesce(false);
+    }
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private FrameScheduler() {}
+
+    /**
+     * Marks a Figure to be repainted in the next frame, scheduling the frame if necessary.
+     *
+     * @param figure The Figure to repaint
+     */
+    static void markDirty(Figure figure)
+    {
+        if (figure.dirty.compareAndSet(false, true))
+        {
+            DIRTY_FIGURES.add(figure);
+        }
+
+        if (FRAME_PENDING.compareAndSet(false, true))
+        {
+            FRAME_TIMER.start();
+        }
+    }
+
+    /**
+     * Replaces how dirty Figures are repainted, e.g. to render them off-screen when there is no screen to repaint them on.
+     *
+     * @param handler Repaints a dirty Figure, called on the EDT
+     */
+    public static void setRepaintHandler(Consumer<Figure> handler)
+    {
+        repaintHandler = handler;
+    }
+
+    /**
+     * Repaints the damaged region of every dirty Figure. Swing coalesces these repaints into a single painting pass.
+     */
+    private static void flush()
+    {
+        //any Figure marked dirty from now on schedules another frame
+        FRAME_PENDING.set(false);
+
+        FrameFlushEvent event = new FrameFlushEvent();
+        event.begin();
+        long sensorMask = 0;
+
+        Consumer<Figure> handler = repaintHandler;
+        Figure figure;
+        while ((figure = DIRTY_FIGURES.poll()) != null)
+        {
+            figure.dirty.set(false);
+            handler.accept(figure);
+            sensorMask |= 1L << figure.sensor.ordinal();
+            event.figures++;
+        }
+
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.sensors = SensorBatchEvent.sensorNames(sensorMask);
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package src.figure;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Packs the icons of all Figures into a single image, each scaled to the exact size it is drawn at.
+ *
+ * About the atlas:
+ *      • Figures request their icons while they are created, and the atlas is packed once all of them are (see pack)
+ *      • Each icon is decoded once, scaled down to its drawn size and copied into the atlas, after which its full resolution
+ *        source image is released. The atlas is the only image kept in memory.
+ *      • The atlas is compatible with the default screen, or a plain BufferedImage when headless
+ *      • Icons requested after packing are added by packing again, copying the icons already packed from the old atlas
+ *      • Icons are drawn as sub-regions of the atlas, separated by a transparent pixel so they don't bleed into each other
+ */
+public final class IconAtlas
+{
+    private static final int PADDING = 1; //the transparent pixels between icons
+    private static final List<Icon> ICONS = new ArrayList<>(); //every icon requested, packed or not
+    private static BufferedImage atlas; //the packed icons, or null if none are packed yet
+    private static boolean packed; //whether every icon requested is packed
+    private static long sourceBytes; //the bytes of the full resolution images decoded and released while packing
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private IconAtlas() {}
+
+    /**
+     * An icon packed into the atlas.
+     */
+    public static final class Icon
+    {
+        private final String path; //the resource path of the source image
+        private final int width; //the width the icon is drawn at
+        private final int height; //the height the icon is drawn at
+        private int x = -1; //the x coordinate of the icon in the atlas, or -1 if not packed yet
+        private int y = -1; //the y coordinate of the icon in the atlas, or -1 if not packed yet
+
+        /**
+         * Creates a new Icon.
+         *
+         * @param path The resource path of the source image
+         * @param width The width the icon is drawn at
+         * @param height The height the icon is drawn at
+         */
+        private Icon(String path, int width, int height)
+        {
+            this.path = path;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Draws this icon, packing the atlas first if necessary.
+         *
+         * @param g2d The Graphics2D to draw with
+         * @param x The x coordinate of the upper left of the icon
+         * @param y The y coordinate of the upper left of the icon
+         */
+        public void draw(Graphics2D g2d, int x, int y)
+        {
+            BufferedImage image = image();
+            g2d.drawImage(image, x, y, x + this.width, y + this.height,
+                          this.x, this.y, this.x + this.width, this.y + this.height, null);
+        }
+
+        /**
+         * Returns the resource path of the source image of this icon.
+         *
+         * @return The resource path
+         */
+        public String path()
+        {
+            return this.path;
+        }
+
+        /**
+         * Returns the width this icon is drawn at.
+         *
+         * @return The width
+         */
+        public int width()
+        {
+            return this.width;
+        }
+
+        /**
+         * Returns the height this icon is drawn at.
+         *
+         * @return The height
+         */
+        public int height()
+        {
+            return this.height;
+        }
+    }
+
+    /**
+     * Requests an icon, to be decoded when the atlas is next packed.
+     * Requesting the same image at the same size again returns the same icon.
+     *
+     * @param path The resource path of the image
+     * @param width The width the icon is drawn at
+     * @param height The height the icon is drawn at
+     * @return The icon
+     * @throws IOException If the image does not exist
+     */
+    public static synchronized Icon icon(String path, int width, int height) throws IOException
+    {
+        for (Icon icon : ICONS)
+        {
+            if (icon.path.equals(path) && icon.width == width && icon.height == height)
+            {
+                return icon;
+            }
+        }
+
+        if (IconAtlas.class.getResource(path) == null)
+        {
+            throw new IOException("No such image: " + path);
+        }
+
+        Icon icon = new Icon(path, width, height);
+        ICONS.add(icon);
+        packed = false;
+        return icon;
+    }
+
+    /**
+     * Decodes every requested icon not yet packed and packs all icons into a new atlas.
+     *
+     * @throws IOException If an image could not be decoded
+     */
+    public static synchronized void pack() throws IOException
+    {
+        if (packed)
+        {
+            return;
+        }
+
+        //lay out the icons in shelves, tallest first, in a roughly square atlas
+        List<Icon> icons = new ArrayList<>(ICONS);
+        icons.sort(Comparator.comparingInt((Icon icon) -> icon.height).reversed());
+
+        long area = 0;
+        int widest = 0;
+        for (Icon icon : icons)
+        {
+            area += (long)(icon.width + PADDING) * (icon.height + PADDING);
+            widest = Math.max(widest, icon.width + PADDING);
+        }
+
+        int atlasWidth = Math.max(widest, (int)Math.ceil(Math.sqrt(area)));
+        int[] xs = new int[icons.size()];
+        int[] ys = new int[icons.size()];
+        int shelfX = 0;
+        int shelfY = 0;
+        int shelfHeight = 0;
+        for (int i = 0; i < icons.size(); i++)
+        {
+            Icon icon = icons.get(i);
+            if (shelfX + icon.width + PADDING > atlasWidth)
+            {
+                shelfX = 0;
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+            }
+
+            xs[i] = shelfX;
+            ys[i] = shelfY;
+            shelfX += icon.width + PADDING;
+            shelfHeight = Math.max(shelfHeight, icon.height + PADDING);
+        }
+
+        //copy the packed icons from the old atlas and decode the rest
+        BufferedImage packedAtlas = createAtlas(atlasWidth, Math.max(shelfY + shelfHeight, 1));
+        Graphics2D g2d = packedAtlas.createGraphics();
+        try
+        {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            for (int i = 0; i < icons.size(); i++)
+            {
+                Icon icon = icons.get(i);
+                if (icon.x >= 0)
+                {
+                    g2d.drawImage(atlas, xs[i], ys[i], xs[i] + icon.width, ys[i] + icon.height,
+                                  icon.x, icon.y, icon.x + icon.width, icon.y + icon.height, null);
+                }
+                else
+                {
+                    g2d.drawImage(decode(icon), xs[i], ys[i], icon.width, icon.height, null);
+                }
+            }
+        }
+        finally
+        {
+            g2d.dispose();
+        }
+
+        for (int i = 0; i < icons.size(); i++)
+        {
+            icons.get(i).x = xs[i];
+            icons.get(i).y = ys[i];
+        }
+
+        atlas = packedAtlas;
+        packed = true;
+    }
+
+    /**
+     * Decodes the source image of an icon and scales it down to near its drawn size.
+     * The image is halved repeatedly rather than scaled at once, so every source pixel contributes to the icon.
+     *
+     * @param icon The icon
+     * @return The image, at most twice the size of the icon
+     * @throws IOException If the image could not be decoded
+     */
+    private static BufferedImage decode(Icon icon) throws IOException
+    {
+        URL url = IconAtlas.class.getResource(icon.path);
+        BufferedImage image = url == null ? null : ImageIO.read(url);
+        if (image == null)
+        {
+            throw new IOException("Unable to decode image: " + icon.path);
+        }
+
+        sourceBytes += (long)image.getWidth() * image.getHeight() * 4;
+
+        while (image.getWidth() >= icon.width * 2 && image.getHeight() >= icon.height * 2)
+        {
+            BufferedImage half = new BufferedImage(image.getWidth()/2, image.getHeight()/2, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g2d = half.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(image, 0, 0, half.getWidth(), half.getHeight(), null);
+            g2d.dispose();
+            image = half;
+        }
+
+        return image;
+    }
+
+    /**
+     * Creates an empty atlas.
+     *
+     * @param width The width of the atlas
+     * @param height The height of the atlas
+     * @return A translucent image compatible with the default screen, or a BufferedImage when headless
+     */
+    private static BufferedImage createAtlas(int width, int height)
+    {
+        if (GraphicsEnvironment.isHeadless())
+        {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                                  .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Returns the atlas, packing it first if necessary.
+     *
+     * @return The atlas
+     */
+    private static synchronized BufferedImage image()
+    {
+        if (!packed)
+        {
+            try
+            {
+                pack();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to pack the icon atlas", e);
+            }
+        }
+
+        return atlas;
+    }
+
+    /**
+     * Returns every icon requested.
+     *
+     * @return The icons
+     */
+    public static synchronized List<Icon> icons()
+    {
+        return List.copyOf(ICONS);
+    }
+
+    /**
+     * Returns the size of the atlas in memory.
+     *
+     * @return The bytes of the atlas's pixels, or 0 if not packed yet
+     */
+    public static synchronized long sizeBytes()
+    {
+        return atlas == null ? 0 : (long)atlas.getWidth() * atlas.getHeight() * 4;
+    }
+
+    /**
+     * Returns the size of the full resolution images decoded while packing, which were released afterwards.
+     *
+     * @return The bytes of the decoded images' pixels
+     */
+    public static synchronized long sourceBytes()
+    {
+        return sourceBytes;
+    }
+}
@@ -4,10 +4,10 @@ import static forge.Logger.logError;
 
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.FontMetrics;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -29,7 +29,13 @@ public final class IconField extends Figure
 
     //other member variables
     private final Sensor sensor; //the sensor to display the data of
-    private final Image icon; //the icon to display
+    private final IconAtlas.Icon icon; //the icon to display
+    private String displayedData; //the value last displayed
+    private final String unitSuffix; //the text displayed after the sensor's value
+    private final TextCache textCache = new TextCache(); //the text painted
+    private Font baseFont; //the font the display fonts were derived from
+    private Font font; //the standard display font
+    private Font smallFont; //the display font for longer text
 
     //initialize font sizes
     static
@@ -57,14 +63,15 @@ public final class IconField extends Figure
     {
         super(sensor);
         this.sensor = sensor;
+        this.unitSuffix = " " + sensor.unit();
         this.setBackground(Color.BLACK);
         this.setPreferredSize(new Dimension(WIDTH, HEIGHT));
 
-        //load the icon
-        Image loadedIcon = null;
+        //request the icon, which is loaded with the rest of the icon atlas
+        IconAtlas.Icon loadedIcon = null;
         try
         {
-            loadedIcon = ForgeUtils.loadImage(iconPath, HEIGHT, HEIGHT);
+            loadedIcon = IconAtlas.icon(iconPath, HEIGHT, HEIGHT);
         }
         catch (IOException e)
         {
@@ -76,28 +83,53 @@ public final class IconField extends Figure
     }
 
     @Override
-    public void paintComponent(Graphics g)
+    protected boolean updateDisplay(Rectangle damage)
     {
-        super.paintComponent(g);
+        String data = this.sensor.getRoundedData();
+        boolean changed = !data.equals(this.displayedData);
+
+        //the text to the right of the icon
+        if (changed)
+        {
+            addDamage(damage, this.icon.width(), 0, this.getWidth() - this.icon.width(), this.getHeight());
+        }
+
+        this.displayedData = data;
+        return changed;
+    }
 
+    @Override
+    protected void paintStaticLayer(Graphics2D g2d)
+    {
+        //display the icon on the left side
+        this.icon.draw(g2d, 0, 0);
+    }
+
+    @Override
+    public void paintComponent(Graphics g)
+    {
         //initial setup
         Graphics2D g2d = (Graphics2D)g;
+        drawStaticLayer(g2d);
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.setColor(Color.WHITE);
 
         //get the text to display
-        String value = this.sensor.getRoundedData() + " " + this.sensor.unit();
-        g2d.setFont(g2d.getFont().deriveFont(value.length() <= 7 ? FONT_SIZE : SMALL_FONT_SIZE));
+        String value = this.textCache.label(this.sensor.getRoundedData(), this.unitSuffix);
+        if (g2d.getFont() != this.baseFont)
+        {
+            this.baseFont = g2d.getFont();
+            this.font = this.baseFont.deriveFont(FONT_SIZE);
+            this.smallFont = this.baseFont.deriveFont(SMALL_FONT_SIZE);
+        }
 
-        //display the text to the right of the icon, center aligned
-        FontMetrics metrics = g2d.getFontMetrics();
+        g2d.setFont(value.length() <= 7 ? this.font : this.smallFont);
 
-        double emptySpace = this.getWidth() - this.icon.getWidth(null) - metrics.stringWidth(value);
-        g2d.drawString(value, this.icon.getWidth(null) + (int)emptySpace/2,
-                       (this.getHeight() - metrics.getHeight())/2 + metrics.getAscent());
+        //display the text to the right of the icon, center aligned
+        TextCache.Text text = this.textCache.text(g2d, value);
 
-        //display the icon on the left side
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.drawImage(this.icon, 0, 0, null);
+        double emptySpace = this.getWidth() - this.icon.width() - text.width();
+        g2d.drawGlyphVector(text.glyphs(), this.icon.width() + (int)emptySpace/2,
+                            (this.getHeight() - text.height())/2 + text.ascent());
     }
 }
@@ -3,13 +3,13 @@ package src.figure;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.geom.RoundRectangle2D;
 
-import forge.ForgeUtils;
 import src.Constants;
 import src.Sensor;
 
@@ -18,12 +18,19 @@ import src.Sensor;
  */
 public final class SleekBar extends Figure
 {
+    private static final String[] PERCENT_TEXTS = new String[101]; //the text of each percent from 0% to 100%
     private final Sensor sensor;
     private final Color color;
     private final String title;
     private final int roundness;
     private final int thickness;
     private final int separation;
+    private volatile int interiorDrawableHeight; //the fillable height of the bar, laid out with the static layer
+    private volatile int percentAscent; //the ascent of the percent utilization, laid out with the static layer
+    private long displayedPercent = -1; //the percent utilization last displayed
+    private int displayedFillHeight = -1; //the top of the fill last displayed
+    private final RoundRectangle2D.Double interior = new RoundRectangle2D.Double(); //the inside of the bar's outline
+    private final TextCache textCache = new TextCache(); //the fonts and text painted
 
     /**
      * Creates a new SleekBar.
@@ -50,63 +57,130 @@ public final class SleekBar extends Figure
     }
 
     @Override
-    public void paintComponent(Graphics g)
+    protected boolean updateDisplay(Rectangle damage)
+    {
+        double fillPerc = ((this.sensor.getData() - this.sensor.min()) / (this.sensor.max() - this.sensor.min()));
+        long percent = Math.round(fillPerc * 100);
+        int fillHeight = (int)(this.separation + this.thickness/2 + this.interiorDrawableHeight * (1 - fillPerc));
+        boolean changed = percent != this.displayedPercent || fillHeight != this.displayedFillHeight;
+
+        //the rows between the old and new fill point, along with the percent drawn above or beneath each
+        if (changed)
+        {
+            int textHeight = this.percentAscent * 3/2;
+            if (this.displayedFillHeight < 0 || textHeight == 0)
+            {
+                addDamage(damage, null);
+            }
+            else
+            {
+                int top = Math.min(fillHeight, this.displayedFillHeight) - textHeight;
+                addDamage(damage, 0, top, this.getWidth(), Math.max(fillHeight, this.displayedFillHeight) + textHeight - top);
+            }
+        }
+
+        this.displayedPercent = percent;
+        this.displayedFillHeight = fillHeight;
+        return changed;
+    }
+
+    /**
+     * Returns the text of a percent utilization.
+     *
+     * @param percent The percent utilization
+     * @return The percent followed by a percent sign
+     */
+    private static String percentText(long percent)
+    {
+        if (percent < 0 || percent >= PERCENT_TEXTS.length)
+        {
+            return percent + "%";
+        }
+
+        if (PERCENT_TEXTS[(int)percent] == null)
+        {
+            PERCENT_TEXTS[(int)percent] = percent + "%";
+        }
+
+        return PERCENT_TEXTS[(int)percent];
+    }
+
+    @Override
+    protected void paintStaticLayer(Graphics2D g2d)
     {
-        super.paintComponent(g);
+        //calculate the font size for all rendered text
+        int borderSize = this.separation + this.thickness/2;
+        this.textCache.fitFont(g2d, "100%", "", this.getWidth() - borderSize * 2);
+        TextCache.Text title = this.textCache.text(g2d, this.title);
+        this.percentAscent = this.textCache.text(g2d, "100%").ascent();
+        this.interiorDrawableHeight = this.getHeight() - 2 * borderSize - title.ascent();
+
+        //create the shape of the outline of the bar
+        RoundRectangle2D.Double outline = new RoundRectangle2D.Double(this.separation, this.separation,
+                                                                      this.getWidth() - this.separation * 2,
+                                                                      this.getHeight() - this.separation * 2 - title.ascent(),
+                                                                      this.roundness, this.roundness);
 
+        //the fill is the inside of the outline cut off at the value, so the outline doesn't need to be drawn over it
+        double inset = this.thickness/2D;
+        this.interior.setRoundRect(outline.x + inset, outline.y + inset, outline.width - inset * 2, outline.height - inset * 2,
+                                   Math.max(this.roundness - this.thickness, 0), Math.max(this.roundness - this.thickness, 0));
+
+        //draw the title at the bottom
+        g2d.setColor(Color.WHITE);
+        g2d.drawGlyphVector(title.glyphs(),
+                            this.getWidth()/2 - title.width()/2,
+                            this.getHeight());
+
+        //create the bar's outline
+        g2d.setColor(Constants.THEME_COLOR);
+        g2d.setStroke(new BasicStroke(this.thickness));
+        g2d.draw(outline);
+    }
+
+    @Override
+    public void paintComponent(Graphics g)
+    {
         //initial setup
         Graphics2D g2d = (Graphics2D)g;
+        drawStaticLayer(g2d); //also lays out the bar
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         double fillPerc = ((this.sensor.getData() - this.sensor.min()) / (this.sensor.max() - this.sensor.min()));
         int borderSize = this.separation + this.thickness/2;
-
-        //calculate the font size for all rendered text
-        ForgeUtils.setFontFromWidth(g2d, "100%", this.getWidth() - borderSize * 2);
-        FontMetrics metrics = g2d.getFontMetrics();
-        int interiorDrawableHeight = this.getHeight() - 2 * borderSize - metrics.getAscent();
-        int fillHeight = (int)(borderSize + interiorDrawableHeight * (1 - fillPerc));
-
-        //create the shape of the outline of the bar
-        RoundRectangle2D.Double rect = new RoundRectangle2D.Double(this.separation, this.separation,
-                                                                   this.getWidth() - this.separation * 2,
-                                                                   this.getHeight() - this.separation * 2 - metrics.getAscent(),
-                                                                   this.roundness, this.roundness);
+        int fillHeight = (int)(borderSize + this.interiorDrawableHeight * (1 - fillPerc));
 
         //fill the interior of the bar up to the value
-        g2d.setClip(rect);
+        Shape clip = g2d.getClip();
+        g2d.clipRect(0, fillHeight, this.getWidth(), this.getHeight());
         g2d.setColor(this.color);
-        g2d.fillRect(0, fillHeight, this.getWidth(), this.getHeight());
-        g2d.setClip(null);
+        g2d.fill(this.interior);
+        g2d.setClip(clip);
 
         //get the percent utilization
-        String percentStr = String.valueOf(Math.round(fillPerc * 100)) + "%";
+        this.textCache.fitFont(g2d, "100%", "", this.getWidth() - borderSize * 2);
+        TextCache.Text percent = this.textCache.text(g2d, percentText(Math.round(fillPerc * 100)));
         int drawHeight;
 
         //greater than 50%, draw the value beneath the fill point
         if (Math.round(fillPerc * 100) > 50)
         {
-            drawHeight = fillHeight + metrics.getAscent();
+            drawHeight = fillHeight + percent.ascent();
         }
         //less than or equal 50%, draw the value above the fill point
         else
         {
-            drawHeight = fillHeight - metrics.getAscent() / 3;
+            drawHeight = fillHeight - percent.ascent() / 3;
         }
 
-        //draw the percent utilization
-        g2d.setColor(Color.WHITE);
-        g2d.drawString(percentStr,
-                       this.getWidth()/2 - metrics.stringWidth(percentStr)/2,
-                       drawHeight);
-
-        //draw the title at the bottom
-        g2d.drawString(this.title,
-        this.getWidth()/2 - metrics.stringWidth(this.title)/2,
-        this.getHeight());
+        //draw the percent utilization, if it is within the region being repainted
+        if (!g2d.hitClip(0, drawHeight - percent.ascent(), this.getWidth(), percent.height()))
+        {
+            return;
+        }
 
-        //create the bar's outline
-        g2d.setColor(Constants.THEME_COLOR);
-        g2d.setStroke(new BasicStroke(this.thickness));
-        g2d.draw(rect);
+        g2d.setColor(Color.WHITE);
+        g2d.drawGlyphVector(percent.glyphs(),
+                            this.getWidth()/2 - percent.width()/2,
+                            drawHeight);
     }
 }
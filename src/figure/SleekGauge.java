@@ -5,14 +5,13 @@ import static forge.Logger.logError;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
 import java.io.IOException;
 
-import forge.ForgeUtils;
 import src.Sensor;
 
 /**
@@ -21,10 +20,31 @@ import src.Sensor;
 public final class SleekGauge extends Figure
 {
     private static final int MAX_ANGLE = 300; //how many degrees to close the circle
+    private static final int STARTING_ANGLE = MAX_ANGLE/2 - 270; //the angle the used portion of the gauge starts at
+    private static final double[] COS = new double[MAX_ANGLE + 1]; //the cosine of the end of the used portion, by its angle
+    private static final double[] SIN = new double[MAX_ANGLE + 1]; //the sine of the end of the used portion, by its angle
+    private static final int DAMAGE_PADDING = 2; //the pixels around each repainted region, covering antialiasing
     private final Sensor sensor; //the sensor to display the data of
     private final Color color; //the color for this gauge
     private final int thickness; //the thickness of this gauge
-    private final Image icon; //an icon to display in the upper right
+    private final IconAtlas.Icon icon; //an icon to display in the upper right
+    private String displayedData; //the value last displayed
+    private int displayedAngle = -1; //the angle of the used portion of the gauge last displayed
+    private final TextCache textCache = new TextCache(); //the fonts and text painted
+    private Font valueFont; //the font the sensor's value was last painted in
+    private Font unitFont; //the font the units are painted in, derived from the value font
+    private final Path2D.Double usedArc = new Path2D.Double(); //the used portion of the gauge
+    private volatile Rectangle textBounds; //the box the sensor's value is displayed in, laid out with the static layer
+
+    //initialize the trig tables
+    static
+    {
+        for (int angle = 0; angle <= MAX_ANGLE; angle++)
+        {
+            COS[angle] = Math.cos(Math.toRadians(STARTING_ANGLE - angle));
+            SIN[angle] = Math.sin(Math.toRadians(STARTING_ANGLE - angle));
+        }
+    }
 
     /**
      * Creates a new SleekGauge.
@@ -47,12 +67,12 @@ public final class SleekGauge extends Figure
         //make the thickness a percentage of the height of this panel
         this.thickness = (int)(this.getPreferredSize().height * 0.08);
 
-        //load the icon
+        //request the icon, which is loaded with the rest of the icon atlas
         int iconSize = (int)(this.getPreferredSize().height * 0.28);
-        Image loadedIcon = null;
+        IconAtlas.Icon loadedIcon = null;
         try
         {
-            loadedIcon = ForgeUtils.loadImage(iconPath, iconSize, iconSize);
+            loadedIcon = IconAtlas.icon(iconPath, iconSize, iconSize);
         }
         catch (IOException e)
         {
@@ -64,24 +84,128 @@ public final class SleekGauge extends Figure
     }
 
     @Override
-    public void paintComponent(Graphics g)
+    protected boolean updateDisplay(Rectangle damage)
     {
-        super.paintComponent(g);
+        String data = this.sensor.getRoundedData();
+        int angle = angle();
+        boolean changed = false;
 
-        Graphics2D g2d = (Graphics2D)g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        //the arc between the old and new angle, along with the old and new marker
+        if (angle != this.displayedAngle)
+        {
+            addArcDamage(damage, this.displayedAngle, angle);
+            changed = true;
+        }
 
-        //get the angle from the sensor's current value
-        int startingAngle = MAX_ANGLE/2 - 270;
-        int angle = (int)(((this.sensor.getData() - this.sensor.min()) / (this.sensor.max() - this.sensor.min())) * MAX_ANGLE);
+        //the text box, or everything until the text is laid out
+        if (!data.equals(this.displayedData))
+        {
+            addDamage(damage, this.textBounds);
+            changed = true;
+        }
 
-        //draw the unused portion of the gauge first
-        g2d.setColor(Color.DARK_GRAY);
-        g2d.fillArc(0, 0, this.getHeight(), this.getHeight(), startingAngle - angle, -MAX_ANGLE + angle);
+        this.displayedData = data;
+        this.displayedAngle = angle;
+        return changed;
+    }
 
-        //draw the used portion of the gauge
-        g2d.setColor(this.color);
-        g2d.fillArc(0, 0, this.getHeight(), this.getHeight(), startingAngle, -angle);
+    /**
+     * Adds the region of the gauge between two angles to repaint, including the markers at both angles.
+     *
+     * @param damage The region to repaint so far
+     * @param from One angle of the used portion of the gauge
+     * @param to The other angle of the used portion of the gauge
+     */
+    private void addArcDamage(Rectangle damage, int from, int to)
+    {
+        int size = this.getHeight();
+        if (Math.min(from, to) < 0 || Math.max(from, to) > MAX_ANGLE)
+        {
+            addDamage(damage, 0, 0, size, size);
+            return;
+        }
+
+        //the ends of the arc at both its outer and inner edge, unrolled as this runs each time the Sensor is set
+        double center = size/2D;
+        double innerRadius = center - this.thickness;
+        double fromOuterX = center + center * COS[from];
+        double fromInnerX = center + innerRadius * COS[from];
+        double toOuterX = center + center * COS[to];
+        double toInnerX = center + innerRadius * COS[to];
+        double fromOuterY = center - center * SIN[from];
+        double fromInnerY = center - innerRadius * SIN[from];
+        double toOuterY = center - center * SIN[to];
+        double toInnerY = center - innerRadius * SIN[to];
+        double minX = Math.min(center, Math.min(Math.min(fromOuterX, fromInnerX), Math.min(toOuterX, toInnerX)));
+        double maxX = Math.max(center, Math.max(Math.max(fromOuterX, fromInnerX), Math.max(toOuterX, toInnerX)));
+        double minY = Math.min(center, Math.min(Math.min(fromOuterY, fromInnerY), Math.min(toOuterY, toInnerY)));
+        double maxY = Math.max(center, Math.max(Math.max(fromOuterY, fromInnerY), Math.max(toOuterY, toInnerY)));
+
+        //the extremes of the outer edge the arc passes through
+        for (int axis = -360; axis <= 360; axis += 90)
+        {
+            int angle = STARTING_ANGLE - axis;
+            if (angle > Math.min(from, to) && angle < Math.max(from, to))
+            {
+                minX = Math.min(minX, center + center * COS[angle]);
+                maxX = Math.max(maxX, center + center * COS[angle]);
+                minY = Math.min(minY, center - center * SIN[angle]);
+                maxY = Math.max(maxY, center - center * SIN[angle]);
+            }
+        }
+
+        //pad for antialiasing
+        int x = (int)minX - DAMAGE_PADDING;
+        int y = (int)minY - DAMAGE_PADDING;
+        addDamage(damage, x, y, (int)Math.ceil(maxX) + DAMAGE_PADDING - x, (int)Math.ceil(maxY) + DAMAGE_PADDING - y);
+        addDamage(damage, markerX(from) - DAMAGE_PADDING, markerY(from) - DAMAGE_PADDING,
+                  this.thickness + DAMAGE_PADDING * 2, this.thickness + DAMAGE_PADDING * 2);
+        addDamage(damage, markerX(to) - DAMAGE_PADDING, markerY(to) - DAMAGE_PADDING,
+                  this.thickness + DAMAGE_PADDING * 2, this.thickness + DAMAGE_PADDING * 2);
+    }
+
+    /**
+     * Returns the x coordinate of the marker at the end of the used portion of the gauge.
+     *
+     * @param angle The angle of the used portion of the gauge
+     * @return The x coordinate of the upper left of the marker
+     */
+    private int markerX(int angle)
+    {
+        double cosX = angle >= 0 && angle <= MAX_ANGLE ? COS[angle] : Math.cos(Math.toRadians(STARTING_ANGLE - angle));
+        double widthX = this.getHeight() * (1 + cosX)/2;
+        return (int)(widthX - (this.thickness * widthX/this.getHeight()));
+    }
+
+    /**
+     * Returns the y coordinate of the marker at the end of the used portion of the gauge.
+     *
+     * @param angle The angle of the used portion of the gauge
+     * @return The y coordinate of the upper left of the marker
+     */
+    private int markerY(int angle)
+    {
+        double sinY = angle >= 0 && angle <= MAX_ANGLE ? SIN[angle] : Math.sin(Math.toRadians(STARTING_ANGLE - angle));
+        double heightY = this.getHeight() * (1 - sinY)/2;
+        return (int)(heightY - (this.thickness * heightY/this.getHeight()));
+    }
+
+    /**
+     * Returns the angle of the used portion of the gauge for the sensor's current value.
+     *
+     * @return The angle, in degrees
+     */
+    private int angle()
+    {
+        return (int)(((this.sensor.getData() - this.sensor.min()) / (this.sensor.max() - this.sensor.min())) * MAX_ANGLE);
+    }
+
+    @Override
+    protected void paintStaticLayer(Graphics2D g2d)
+    {
+        //draw the whole track of the gauge in the unused color, the used portion is drawn over it
+        g2d.setColor(Color.DARK_GRAY);
+        g2d.fillArc(0, 0, this.getHeight(), this.getHeight(), STARTING_ANGLE, -MAX_ANGLE);
 
         //fill the interior of the gauge in black
         g2d.setColor(Color.BLACK);
@@ -90,38 +214,94 @@ public final class SleekGauge extends Figure
                     this.getHeight() - (this.thickness * 2),
                     0, 360);
 
-        //fill in a white circle at the border of the used and unused portion of the gauge
+        //lay out the box the sensor's value is displayed in, which fits up to 3 digits
+        Font font = this.textCache.fitFont(g2d, "100", "", this.getHeight() - this.thickness * 4);
+        TextCache.Text widest = this.textCache.text(g2d, "100");
+        int baseline = this.getHeight()/2 + widest.ascent()/3;
+        this.textBounds = new Rectangle(this.getHeight()/2 - widest.width()/2 - DAMAGE_PADDING,
+                                        baseline - widest.ascent() - DAMAGE_PADDING,
+                                        widest.width() + DAMAGE_PADDING * 2,
+                                        widest.height() + DAMAGE_PADDING * 2);
+
+        //display the units at the bottom
         g2d.setColor(Color.WHITE);
+        g2d.setFont(unitFont(font));
+        TextCache.Text unit = this.textCache.text(g2d, this.sensor.unit().toString());
+        g2d.drawGlyphVector(unit.glyphs(),
+                            this.getHeight()/2 - unit.width()/2,
+                            this.getHeight() - unit.ascent()/4);
 
-        double cosX = Math.cos(Math.toRadians(startingAngle - angle));
-        double sinY = Math.sin(Math.toRadians(startingAngle - angle));
-        double widthX = this.getHeight() * (1 + cosX)/2;
-        double heightY = this.getHeight() * (1 - sinY)/2;
+        //display the icon in the upper right
+        this.icon.draw(g2d, this.getWidth() - this.icon.width(), 0);
+    }
 
-        g2d.fillOval((int)(widthX - (this.thickness * widthX/this.getHeight())),
-                     (int)(heightY - (this.thickness * heightY/this.getHeight())),
-                     this.thickness, this.thickness);
+    /**
+     * Returns the font the units are displayed in.
+     *
+     * @param valueFont The font the sensor's value is displayed in
+     * @return The unit font
+     */
+    private Font unitFont(Font valueFont)
+    {
+        if (valueFont != this.valueFont)
+        {
+            this.valueFont = valueFont;
+            this.unitFont = new Font("Arial", Font.PLAIN, (int)(valueFont.getSize()/1.75));
+        }
 
-        //set the font size
-        ForgeUtils.setFontFromWidth(g2d, "100", this.getHeight() - this.thickness * 4);
+        return this.unitFont;
+    }
 
-        //display the sensor's value in the center
-        FontMetrics metrics = g2d.getFontMetrics();
-        String data = this.sensor.getRoundedData();
-        g2d.drawString(data,
-                       this.getHeight()/2 - metrics.stringWidth(data)/2,
-                       this.getHeight()/2 + metrics.getAscent()/3);
+    @Override
+    public void paintComponent(Graphics g)
+    {
+        Graphics2D g2d = (Graphics2D)g;
+        drawStaticLayer(g2d);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        //display the units at the bottom
-        g2d.setFont(new Font("Arial", Font.PLAIN, (int)(g2d.getFont().getSize()/1.75)));
-        metrics = g2d.getFontMetrics();
-        String unit = this.sensor.unit().toString();
-        g2d.drawString(unit,
-                       this.getHeight()/2 - metrics.stringWidth(unit)/2,
-                       this.getHeight() - metrics.getAscent()/4);
+        //get the angle from the sensor's current value
+        int angle = angle();
 
-        //display the icon in the upper right
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.drawImage(this.icon, this.getWidth() - this.icon.getWidth(null), 0, null);
+        //fill the used portion of the gauge over the track, outlined through the same points for every value so repainting
+        //part of it lines up with the rest
+        int end = Math.clamp(angle, 0, MAX_ANGLE);
+        double center = this.getHeight()/2D;
+        double innerRadius = center - this.thickness;
+        this.usedArc.reset();
+        this.usedArc.moveTo(center + center * COS[0], center - center * SIN[0]);
+        for (int degree = 1; degree <= end; degree++)
+        {
+            this.usedArc.lineTo(center + center * COS[degree], center - center * SIN[degree]);
+        }
+
+        for (int degree = end; degree >= 0; degree--)
+        {
+            this.usedArc.lineTo(center + innerRadius * COS[degree], center - innerRadius * SIN[degree]);
+        }
+
+        this.usedArc.closePath();
+        g2d.setColor(this.color);
+        g2d.fill(this.usedArc);
+
+        //fill in a white circle at the border of the used and unused portion of the gauge
+        int markerX = markerX(angle);
+        int markerY = markerY(angle);
+        if (g2d.hitClip(markerX, markerY, this.thickness, this.thickness))
+        {
+            g2d.setColor(Color.WHITE);
+            g2d.fillOval(markerX, markerY, this.thickness, this.thickness);
+        }
+
+        //display the sensor's value in the center
+        Rectangle text = this.textBounds;
+        if (text == null || g2d.hitClip(text.x, text.y, text.width, text.height))
+        {
+            g2d.setColor(Color.WHITE);
+            this.textCache.fitFont(g2d, "100", "", this.getHeight() - this.thickness * 4);
+            TextCache.Text data = this.textCache.text(g2d, this.sensor.getRoundedData());
+            g2d.drawGlyphVector(data.glyphs(),
+                                this.getHeight()/2 - data.width()/2,
+                                this.getHeight()/2 + data.ascent()/3);
+        }
     }
 }
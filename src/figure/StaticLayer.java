@@ -0,0 +1,106 @@
+package src.figure;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * The part of a Figure which doesn't change with its Sensor's data (e.g. outlines, titles and icons), pre-rendered into an image.
+ *
+ * About the layer:
+ *      • The layer is rendered once into an image compatible with the screen, and drawn under the Figure's dynamic content on
+ *        every paint
+ *      • The image is rendered at the screen's scale, so it stays sharp on high DPI displays
+ *      • The layer is rendered again when the Figure is resized, moved to a screen with a different configuration or
+ *        invalidated (e.g. by a theme change)
+ *      • Only used by the EDT
+ */
+final class StaticLayer
+{
+    private BufferedImage image; //the rendered layer
+    private boolean valid; //whether the rendered layer is up to date
+    private int width; //the width of the Figure the layer was rendered for
+    private int height; //the height of the Figure the layer was rendered for
+    private GraphicsConfiguration configuration; //the configuration of the screen the layer was rendered for
+
+    /**
+     * Draws the static layer of a Figure, first rendering it if necessary.
+     *
+     * @param g2d The Graphics2D the Figure is painted with
+     * @param figure The Figure
+     */
+    void draw(Graphics2D g2d, Figure figure)
+    {
+        int figureWidth = figure.getWidth();
+        int figureHeight = figure.getHeight();
+        if (figureWidth <= 0 || figureHeight <= 0)
+        {
+            return;
+        }
+
+        GraphicsConfiguration deviceConfiguration = g2d.getDeviceConfiguration();
+        if (!this.valid || figureWidth != this.width || figureHeight != this.height ||
+            deviceConfiguration != this.configuration)
+        {
+            render(figure, deviceConfiguration, figureWidth, figureHeight);
+        }
+
+        g2d.drawImage(this.image, 0, 0, this.width, this.height, null);
+    }
+
+    /**
+     * Renders the static layer of a Figure.
+     *
+     * @param figure The Figure
+     * @param deviceConfiguration The configuration of the screen the Figure is painted on
+     * @param figureWidth The width of the Figure
+     * @param figureHeight The height of the Figure
+     */
+    private void render(Figure figure, GraphicsConfiguration deviceConfiguration, int figureWidth, int figureHeight)
+    {
+        AffineTransform scale = deviceConfiguration.getDefaultTransform();
+        int imageWidth = (int)Math.ceil(figureWidth * scale.getScaleX());
+        int imageHeight = (int)Math.ceil(figureHeight * scale.getScaleY());
+
+        //reuse the image when only invalidated
+        if (this.image == null || this.image.getWidth() != imageWidth || this.image.getHeight() != imageHeight ||
+            deviceConfiguration != this.configuration)
+        {
+            this.image = deviceConfiguration.createCompatibleImage(imageWidth, imageHeight, Transparency.OPAQUE);
+        }
+
+        Graphics2D layer = this.image.createGraphics();
+        try
+        {
+            layer.scale(scale.getScaleX(), scale.getScaleY());
+            layer.setFont(figure.getFont());
+            layer.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            //static layers are opaque
+            layer.setColor(figure.getBackground());
+            layer.fillRect(0, 0, figureWidth, figureHeight);
+
+            figure.paintStaticLayer(layer);
+        }
+        finally
+        {
+            layer.dispose();
+        }
+
+        this.width = figureWidth;
+        this.height = figureHeight;
+        this.configuration = deviceConfiguration;
+        this.valid = true;
+    }
+
+    /**
+     * Discards the rendered layer, so it is rendered again on the next draw.
+     */
+    void invalidate()
+    {
+        this.valid = false;
+    }
+}
@@ -0,0 +1,146 @@
+package src.figure;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.HashMap;
+import java.util.Map;
+
+import forge.ForgeUtils;
+
+/**
+ * Caches the fonts and laid out text a Figure paints with, so that painting the same text again allocates nothing.
+ *
+ * About the cache:
+ *      • Labels (e.g. a value followed by its unit) are cached by the text before their suffix, which is fixed per cache
+ *      • Fitted fonts are cached by the text they were fitted to, for a single width and base font. Changing either refits.
+ *      • Text is laid out once per font as a GlyphVector, along with its width and the font's ascent and height
+ *      • The text painted is expected to be one of a small set of Strings (see Sensor.getRoundedData), so each font holds at
+ *        most MAX_TEXTS of them before being cleared, and at most MAX_FONTS fonts are held before all are cleared
+ *      • Only used by the EDT
+ */
+final class TextCache
+{
+    private static final int MAX_TEXTS = 512; //the number of Strings cached per font before clearing them
+    private static final int MAX_FONTS = 8; //the number of fonts cached before clearing them
+
+    private final Map<String, String> labels = new HashMap<>(); //text joined with the suffix of this cache, by the text
+    private final Map<String, Font> fittedFonts = new HashMap<>(); //fonts fitted to the current width, by the text fitted
+    private final Map<Font, Map<String, Text>> texts = new HashMap<>(); //laid out text, by font and then String
+    private Font baseFont; //the font the fitted fonts were derived from
+    private int fittedWidth = -1; //the width the fitted fonts were fitted to
+    private FontRenderContext renderContext; //the context the text was laid out in
+
+    /**
+     * Laid out text.
+     *
+     * @param glyphs The glyphs of the text
+     * @param width The pixel width of the text
+     * @param ascent The pixel ascent of the text's font
+     * @param height The pixel line height of the text's font
+     */
+    record Text(GlyphVector glyphs, int width, int ascent, int height) {}
+
+    /**
+     * Returns text followed by a suffix, e.g. a value followed by its unit.
+     *
+     * @param text The text
+     * @param suffix The suffix, which must be the same for every call on this cache
+     * @return The text followed by the suffix
+     */
+    String label(String text, String suffix)
+    {
+        String label = this.labels.get(text);
+        if (label == null)
+        {
+            if (this.labels.size() >= MAX_TEXTS)
+            {
+                this.labels.clear();
+            }
+
+            label = text + suffix;
+            this.labels.put(text, label);
+        }
+
+        return label;
+    }
+
+    /**
+     * Sets the font of a Graphics2D to the largest that fits text within a width, as ForgeUtils.setFontFromWidth does.
+     *
+     * @param g2d The Graphics2D to set the font of, whose current font is the base font to fit
+     * @param text The text to fit
+     * @param padding Extra text fitted after the text (e.g. a digit to leave space for), or an empty String
+     * @param width The pixel width to fit the text within
+     * @return The fitted font
+     */
+    Font fitFont(Graphics2D g2d, String text, String padding, int width)
+    {
+        if (width != this.fittedWidth || !g2d.getFont().equals(this.baseFont))
+        {
+            this.fittedFonts.clear();
+            this.fittedWidth = width;
+            this.baseFont = g2d.getFont();
+        }
+
+        Font font = this.fittedFonts.get(text);
+        if (font == null)
+        {
+            ForgeUtils.setFontFromWidth(g2d, padding.isEmpty() ? text : text + padding, width);
+            font = g2d.getFont();
+            this.fittedFonts.put(text, font);
+        }
+
+        g2d.setFont(font);
+        return font;
+    }
+
+    /**
+     * Returns text laid out in the current font of a Graphics2D.
+     *
+     * @param g2d The Graphics2D the text will be painted with
+     * @param text The text
+     * @return The laid out text
+     */
+    Text text(Graphics2D g2d, String text)
+    {
+        FontRenderContext context = g2d.getFontRenderContext();
+        if (!context.equals(this.renderContext))
+        {
+            this.texts.clear();
+            this.renderContext = context;
+        }
+
+        Font font = g2d.getFont();
+        Map<String, Text> fontTexts = this.texts.get(font);
+        if (fontTexts == null)
+        {
+            //fonts are only replaced on resize, so drop the old ones
+            if (this.texts.size() >= MAX_FONTS)
+            {
+                this.texts.clear();
+            }
+
+            fontTexts = new HashMap<>();
+            this.texts.put(font, fontTexts);
+        }
+
+        Text laidOut = fontTexts.get(text);
+        if (laidOut == null)
+        {
+            if (fontTexts.size() >= MAX_TEXTS)
+            {
+                fontTexts.clear();
+            }
+
+            FontMetrics metrics = g2d.getFontMetrics(font);
+            laidOut = new Text(font.createGlyphVector(context, text), metrics.stringWidth(text), metrics.getAscent(),
+                               metrics.getHeight());
+            fontTexts.put(text, laidOut);
+        }
+
+        return laidOut;
+    }
+}
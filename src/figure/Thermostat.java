@@ -5,14 +5,13 @@ import static forge.Logger.logError;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.io.IOException;
 
-import forge.ForgeUtils;
 import src.Constants;
 import src.Sensor;
 
@@ -23,9 +22,18 @@ public final class Thermostat extends Figure
 {
     private static final double BULB_SIZE = 0.73; //percentage from 0 to 1
     private static final int BULB_MAX_ANGLE = 300; //180 to 360 range
+    private static final double COS_X = Math.cos(Math.toRadians((BULB_MAX_ANGLE - 180)/2)); //of the bulb's end above horizontal
     private final Sensor sensor; //the sensor to display the data of
     private final int thickness; //the wall width of this thermostat
-    private final Image icon; //an icon to display in the upper right
+    private final IconAtlas.Icon icon; //an icon to display in the upper right
+    private String displayedData; //the value last displayed
+    private int displayedFillTop = -1; //the top of the fill last displayed
+    private final TextCache textCache = new TextCache(); //the fonts and text painted
+    private int diameter; //the diameter of the bulb, laid out with the static layer
+    private double radius; //the radius of the bulb
+    private int xLeftLine; //the x coordinate of the left side of the tube
+    private int arc2diameter; //the diameter of the top of the thermostat
+    private double arc2radius; //the radius of the top of the thermostat
 
     /**
      * Creates a new thermostat.
@@ -44,12 +52,12 @@ public final class Thermostat extends Figure
         //make the thermometer's thickness a percentage of the width of this panel
         this.thickness = (int)(this.getPreferredSize().width * 0.035);
 
-        //load the icon
+        //request the icon, which is loaded with the rest of the icon atlas
         int iconSize = (int)(this.getPreferredSize().width * 0.3);
-        Image loadedIcon = null;
+        IconAtlas.Icon loadedIcon = null;
         try
         {
-            loadedIcon = ForgeUtils.loadImage(iconPath, iconSize, iconSize);
+            loadedIcon = IconAtlas.icon(iconPath, iconSize, iconSize);
         }
         catch (IOException e)
         {
@@ -61,107 +69,166 @@ public final class Thermostat extends Figure
     }
 
     @Override
-    public void paintComponent(Graphics g)
+    protected boolean updateDisplay(Rectangle damage)
     {
-        super.paintComponent(g);
+        String data = this.sensor.getRoundedData();
+        int fillTop = fillTop();
+        boolean changed = false;
 
-        Graphics2D g2d = (Graphics2D)g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        //the rows between the old and new top of the fill, or everything until the fill is first displayed
+        if (fillTop != this.displayedFillTop)
+        {
+            if (this.displayedFillTop < 0)
+            {
+                addDamage(damage, null);
+            }
+            else
+            {
+                int top = Math.min(fillTop, this.displayedFillTop) - 1;
+                addDamage(damage, 0, top, this.getWidth(), Math.max(fillTop, this.displayedFillTop) + 1 - top);
+            }
+
+            changed = true;
+        }
+
+        //the bulb the text is displayed in
+        if (!data.equals(this.displayedData))
+        {
+            int bulbDiameter = (int)(this.getWidth() * BULB_SIZE);
+            addDamage(damage, 0, this.getHeight() - bulbDiameter, this.getWidth(), bulbDiameter);
+            changed = true;
+        }
+
+        this.displayedData = data;
+        this.displayedFillTop = fillTop;
+        return changed;
+    }
+
+    /**
+     * Returns the top of the fill of the thermostat for the sensor's current value.
+     *
+     * @return The pixel row the fill starts at
+     */
+    private int fillTop()
+    {
+        //determine what percentage the interior of the bulb constitutes the entire fillable height
+        double fillPerc = ((this.sensor.getData() - this.sensor.min()) / (this.sensor.max() - this.sensor.min()));
+        int fillableHeight = this.getHeight() - this.thickness * 2;
+
+        return this.thickness + (int)((1 - fillPerc) * fillableHeight);
+    }
+
+    @Override
+    protected void paintStaticLayer(Graphics2D g2d)
+    {
         g2d.setColor(Constants.THEME_COLOR);
 
         //determine the interior size of the thermostat's bulb
-        int diameter = (int)(this.getWidth() * BULB_SIZE);
-        double radius = diameter/2D;
+        this.diameter = (int)(this.getWidth() * BULB_SIZE);
+        this.radius = this.diameter/2D;
 
         //fill the bottom of the thermostat, an upside-down unclosed arc
-        g2d.fillArc((int)(this.getWidth()/2D - radius),
-                    this.getHeight() - diameter,
-                    diameter, diameter,
+        g2d.fillArc((int)(this.getWidth()/2D - this.radius),
+                    this.getHeight() - this.diameter,
+                    this.diameter, this.diameter,
                     -(BULB_MAX_ANGLE/2 + 90), BULB_MAX_ANGLE);
 
         //draw vertical lines as sides of the thermostat
         g2d.setStroke(new BasicStroke(this.thickness));
-        double radAngle = Math.toRadians((BULB_MAX_ANGLE - 180)/2); //angle from the horizontal up to the arc's end
-        double cosX = Math.cos(radAngle);
-
-        int xLeftLine = (int)(this.getWidth()/2D - (cosX * radius) + this.thickness/2D);
-        int xRightLine = (int)(this.getWidth()/2D + (cosX * radius) - this.thickness/2D);
-        int yLowerHeight = (int)(this.getHeight() - radius);
+        this.xLeftLine = (int)(this.getWidth()/2D - (COS_X * this.radius) + this.thickness/2D);
+        int xRightLine = (int)(this.getWidth()/2D + (COS_X * this.radius) - this.thickness/2D);
+        int yLowerHeight = (int)(this.getHeight() - this.radius);
 
-        int arc2diameter = (int)Math.round(diameter * cosX); //the diameter and radius of the top of the thermostat
-        double arc2radius = arc2diameter/2D;
+        this.arc2diameter = (int)Math.round(this.diameter * COS_X);
+        this.arc2radius = this.arc2diameter/2D;
 
-        g2d.drawLine(xLeftLine, (int)arc2radius, xLeftLine, yLowerHeight); //left vertical line
-        g2d.drawLine(xRightLine, (int)arc2radius, xRightLine, yLowerHeight); //right vertical line
+        g2d.drawLine(this.xLeftLine, (int)this.arc2radius, this.xLeftLine, yLowerHeight); //left vertical line
+        g2d.drawLine(xRightLine, (int)this.arc2radius, xRightLine, yLowerHeight); //right vertical line
 
         g2d.setStroke(new BasicStroke(1));
 
         //overwrite the interior of the bulb with empty space
         g2d.setColor(Color.BLACK);
-        g2d.fillArc((int)(this.getWidth()/2D - radius + this.thickness),
-                    this.getHeight() - diameter + this.thickness,
-                    diameter - this.thickness * 2,
-                    diameter - this.thickness * 2,
+        g2d.fillArc((int)(this.getWidth()/2D - this.radius + this.thickness),
+                    this.getHeight() - this.diameter + this.thickness,
+                    this.diameter - this.thickness * 2,
+                    this.diameter - this.thickness * 2,
                     0, 360);
 
         //fill the top of the thermostat, a single connecting arc
         g2d.setColor(Constants.THEME_COLOR);
-        g2d.fillArc((int)(this.getWidth()/2D - arc2radius),
+        g2d.fillArc((int)(this.getWidth()/2D - this.arc2radius),
                     0,
-                    arc2diameter,
-                    arc2diameter,
+                    this.arc2diameter,
+                    this.arc2diameter,
                     0, 180);
 
         //overwrite the interior of the top of the thermostat with empty space
         g2d.setColor(Color.BLACK);
-        g2d.fillArc((int)(this.getWidth()/2D - arc2radius + this.thickness),
+        g2d.fillArc((int)(this.getWidth()/2D - this.arc2radius + this.thickness),
                     this.thickness + 1, //+1 offset due to aliasing not fully overwriting the bottom of the top of the thermostat
-                    arc2diameter - this.thickness * 2,
-                    arc2diameter - this.thickness * 2,
+                    this.arc2diameter - this.thickness * 2,
+                    this.arc2diameter - this.thickness * 2,
                     0, 180);
 
-        //determine what percentage the interior of the bulb constitutes the entire fillable height
-        double fillPerc = ((this.sensor.getData() - this.sensor.min()) / (this.sensor.max() - this.sensor.min()));
-        int fillableHeight = this.getHeight() - this.thickness * 2;
+        //display the icon in the upper right
+        this.icon.draw(g2d, this.getWidth() - this.icon.width(), 0);
+    }
 
-        g2d.setClip(0, this.thickness + (int)((1 - fillPerc) * fillableHeight), this.getWidth(), this.getHeight());
+    @Override
+    public void paintComponent(Graphics g)
+    {
+        Graphics2D g2d = (Graphics2D)g;
+        drawStaticLayer(g2d); //also lays out the thermostat
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        //fill the interior of the bulb
-        g2d.setColor(Color.RED);
-        g2d.fillArc((int)(this.getWidth()/2D - radius + this.thickness),
-                    this.getHeight() - diameter + this.thickness,
-                    diameter - this.thickness * 2,
-                    diameter - this.thickness * 2,
-                    0, 360);
+        //only the fill below its top is painted, within the region being repainted
+        int fillTop = fillTop();
+        if (g2d.hitClip(0, fillTop, this.getWidth(), this.getHeight() - fillTop))
+        {
+            Shape clip = g2d.getClip();
+            g2d.clipRect(0, fillTop, this.getWidth(), this.getHeight());
+
+            //fill the interior of the bulb
+            g2d.setColor(Color.RED);
+            g2d.fillArc((int)(this.getWidth()/2D - this.radius + this.thickness),
+                        this.getHeight() - this.diameter + this.thickness,
+                        this.diameter - this.thickness * 2,
+                        this.diameter - this.thickness * 2,
+                        0, 360);
+
+            //fill the vertical section
+            g2d.fillRect(this.xLeftLine + this.thickness/2,
+                         (int)this.arc2radius,
+                         this.arc2diameter - this.thickness * 2,
+                         this.getHeight() - this.diameter);
+
+            //fill the top of the thermostat
+            g2d.fillArc((int)(this.getWidth()/2D - this.arc2radius + this.thickness),
+                        this.thickness,
+                        this.arc2diameter - this.thickness * 2,
+                        this.arc2diameter - this.thickness * 2,
+                        0, 180);
+
+            g2d.setClip(clip);
+        }
 
-        //fill the vertical section
-        g2d.fillRect(xLeftLine + this.thickness/2,
-                     (int)arc2radius,
-                     arc2diameter - this.thickness * 2,
-                     this.getHeight() - diameter);
-
-        //fill the top of the thermostat
-        g2d.fillArc((int)(this.getWidth()/2D - arc2radius + this.thickness),
-                    this.thickness,
-                    arc2diameter - this.thickness * 2,
-                    arc2diameter - this.thickness * 2,
-                    0, 180);
+        //the text is only within the bulb
+        if (!g2d.hitClip(0, this.getHeight() - this.diameter, this.getWidth(), this.diameter))
+        {
+            return;
+        }
 
-        g2d.setClip(null);
         g2d.setColor(Color.WHITE);
 
         //set the font size
-        String value = this.sensor.getRoundedData() + this.sensor.unit();
-        ForgeUtils.setFontFromWidth(g2d, value + "0", diameter - this.thickness);
+        String value = this.textCache.label(this.sensor.getRoundedData(), this.sensor.unit().toString());
+        this.textCache.fitFont(g2d, value, "0", this.diameter - this.thickness);
 
         //display the sensor's value in the center
-        FontMetrics metrics = g2d.getFontMetrics();
-        g2d.drawString(value,
-                       this.getWidth()/2 - metrics.stringWidth(value)/2,
-                       (int)(this.getHeight() - radius + metrics.getAscent()/3));
-
-        //display the icon in the upper right
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.drawImage(this.icon, this.getWidth() - this.icon.getWidth(null), 0, null);
+        TextCache.Text text = this.textCache.text(g2d, value);
+        g2d.drawGlyphVector(text.glyphs(),
+                            this.getWidth()/2 - text.width()/2,
+                            (int)(this.getHeight() - this.radius + text.ascent()/3));
     }
 }
@@ -0,0 +1,40 @@
+package src.history;
+
+/**
+ * Tracks a reader's position within a SensorHistory, so that each sample is read once (see SensorHistory.read()).
+ */
+public final class HistoryCursor
+{
+    long next; //the number of the next sample to read
+    long missed; //the number of samples overwritten before they could be read
+
+    /**
+     * Creates a new HistoryCursor.
+     *
+     * @param next The number of the next sample to read, e.g. SensorHistory.count() to read only new samples
+     */
+    public HistoryCursor(long next)
+    {
+        this.next = next;
+    }
+
+    /**
+     * Returns the number of the next sample to read.
+     *
+     * @return The sample number
+     */
+    public long next()
+    {
+        return this.next;
+    }
+
+    /**
+     * Returns the number of samples that were overwritten before they could be read, i.e. the reader fell behind.
+     *
+     * @return The number of missed samples
+     */
+    public long missed()
+    {
+        return this.missed;
+    }
+}
@@ -0,0 +1,147 @@
+package src.history;
+
+/**
+ * A reusable series of rolled up buckets, filled by a query of SensorRollups.
+ *
+ * A series is meant to be allocated once by a reader and reused for every query, so querying never allocates.
+ */
+public final class RollupSeries
+{
+    private final long[] starts; //the start time of each bucket
+    private final double[] mins; //the smallest sample within each bucket
+    private final double[] maxes; //the largest sample within each bucket
+    private final double[] sums; //the sum of the samples within each bucket
+    private final int[] counts; //the number of samples within each bucket
+    private int size; //the number of buckets filled by the last query
+    private long widthMillis; //the time span of each bucket filled by the last query
+
+    /**
+     * Creates a new RollupSeries.
+     *
+     * @param capacity The largest number of buckets a query can return
+     */
+    public RollupSeries(int capacity)
+    {
+        this.starts = new long[capacity];
+        this.mins = new double[capacity];
+        this.maxes = new double[capacity];
+        this.sums = new double[capacity];
+        this.counts = new int[capacity];
+    }
+
+    /**
+     * Sets a bucket.
+     *
+     * @param i The index of the bucket
+     * @param start The start time of the bucket
+     * @param min The smallest sample within the bucket
+     * @param max The largest sample within the bucket
+     * @param sum The sum of the samples within the bucket
+     * @param count The number of samples within the bucket
+     */
+    void set(int i, long start, double min, double max, double sum, int count)
+    {
+        this.starts[i] = start;
+        this.mins[i] = min;
+        this.maxes[i] = max;
+        this.sums[i] = sum;
+        this.counts[i] = count;
+    }
+
+    /**
+     * Sets the result of a query.
+     *
+     * @param size The number of buckets filled
+     * @param widthMillis The time span of each bucket
+     */
+    void setSize(int size, long widthMillis)
+    {
+        this.size = size;
+        this.widthMillis = widthMillis;
+    }
+
+    /**
+     * Returns the largest number of buckets a query can return.
+     *
+     * @return The capacity
+     */
+    public int capacity()
+    {
+        return this.starts.length;
+    }
+
+    /**
+     * Returns the number of buckets filled by the last query.
+     *
+     * @return The number of buckets
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Returns the time span of each bucket filled by the last query.
+     *
+     * @return The bucket width, in milliseconds
+     */
+    public long widthMillis()
+    {
+        return this.widthMillis;
+    }
+
+    /**
+     * Returns the start time of a bucket.
+     *
+     * @param i The index of the bucket
+     * @return The start time, in milliseconds since the epoch
+     */
+    public long start(int i)
+    {
+        return this.starts[i];
+    }
+
+    /**
+     * Returns the smallest sample within a bucket.
+     *
+     * @param i The index of the bucket
+     * @return The minimum
+     */
+    public double min(int i)
+    {
+        return this.mins[i];
+    }
+
+    /**
+     * Returns the largest sample within a bucket.
+     *
+     * @param i The index of the bucket
+     * @return The maximum
+     */
+    public double max(int i)
+    {
+        return this.maxes[i];
+    }
+
+    /**
+     * Returns the average of the samples within a bucket.
+     *
+     * @param i The index of the bucket
+     * @return The average
+     */
+    public double average(int i)
+    {
+        return this.sums[i] / this.counts[i];
+    }
+
+    /**
+     * Returns the number of samples within a bucket.
+     *
+     * @param i The index of the bucket
+     * @return The number of samples
+     */
+    public int count(int i)
+    {
+        return this.counts[i];
+    }
+}
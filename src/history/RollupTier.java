@@ -0,0 +1,198 @@
+package src.history;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * A fixed number of consecutive, fixed-width time buckets, each holding the min, max, sum and count of the samples within it.
+ *
+ * About the tier:
+ *      • Buckets are stored in a ring indexed by time, so a sample is rolled up in constant time as it arrives and the oldest
+ *        bucket is reused once the tier's time span has passed
+ *      • A sample older than the bucket currently occupying its slot has aged out of the tier and is dropped
+ *      • There may be only one writer at a time. Readers never block the writer; instead a sequence number is incremented
+ *        before and after each write (a seqlock), and a reader retries if the sequence number changed while it was reading.
+ */
+public final class RollupTier
+{
+    private static final VarHandle SEQUENCE;
+
+    static
+    {
+        try
+        {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(RollupTier.class, "sequence", long.class);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long widthMillis; //the time span of each bucket
+    private final long[] starts; //the start time of each bucket, or Long.MIN_VALUE if unused
+    private final double[] mins; //the smallest sample within each bucket
+    private final double[] maxes; //the largest sample within each bucket
+    private final double[] sums; //the sum of the samples within each bucket
+    private final int[] counts; //the number of samples within each bucket
+    @SuppressWarnings("unused") //accessed through SEQUENCE
+    private volatile long sequence; //odd while a write is in progress
+
+    /**
+     * Creates a new RollupTier.
+     *
+     * @param widthMillis The time span of each bucket
+     * @param buckets The number of buckets to keep
+     */
+    public RollupTier(long widthMillis, int buckets)
+    {
+        this.widthMillis = widthMillis;
+        this.starts = new long[buckets];
+        this.mins = new double[buckets];
+        this.maxes = new double[buckets];
+        this.sums = new double[buckets];
+        this.counts = new int[buckets];
+        Arrays.fill(this.starts, Long.MIN_VALUE);
+    }
+
+    /**
+     * Rolls up a sample into its bucket. Must only be called by one thread at a time.
+     *
+     * @param timestampMillis The time of the sample, in milliseconds since the epoch
+     * @param value The value of the sample
+     */
+    public void add(long timestampMillis, double value)
+    {
+        long start = bucketStart(timestampMillis);
+        int index = index(start);
+
+        if (this.starts[index] > start)
+        {
+            return;
+        }
+
+        long sequence = (long)SEQUENCE.getOpaque(this);
+        SEQUENCE.setOpaque(this, sequence + 1);
+        VarHandle.storeStoreFence();
+
+        if (this.starts[index] != start)
+        {
+            //the slot held a bucket that has aged out, so start a new bucket
+            this.starts[index] = start;
+            this.mins[index] = value;
+            this.maxes[index] = value;
+            this.sums[index] = value;
+            this.counts[index] = 1;
+        }
+        else
+        {
+            this.mins[index] = Math.min(this.mins[index], value);
+            this.maxes[index] = Math.max(this.maxes[index], value);
+            this.sums[index] += value;
+            this.counts[index]++;
+        }
+
+        SEQUENCE.setRelease(this, sequence + 2);
+    }
+
+    /**
+     * Copies the buckets overlapping the given time range into the given series, oldest first. Empty buckets are skipped. If
+     * the range holds more buckets than the series can, only the most recent are copied.
+     *
+     * @param fromMillis The start of the range, in milliseconds since the epoch
+     * @param toMillis The end of the range, in milliseconds since the epoch
+     * @param out Receives the buckets
+     * @return The number of buckets copied
+     */
+    public int read(long fromMillis, long toMillis, RollupSeries out)
+    {
+        long last = bucketStart(toMillis);
+        long first = Math.max(bucketStart(fromMillis),
+                              last - (Math.min(this.starts.length, out.capacity()) - 1) * this.widthMillis);
+
+        while (true)
+        {
+            long sequence = (long)SEQUENCE.getAcquire(this);
+            if ((sequence & 1) != 0)
+            {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            int size = 0;
+            for (long start = first; start <= last; start += this.widthMillis)
+            {
+                int index = index(start);
+                if (this.starts[index] == start)
+                {
+                    out.set(size++, start, this.mins[index], this.maxes[index], this.sums[index], this.counts[index]);
+                }
+            }
+
+            //retry if the writer changed any bucket while copying
+            VarHandle.acquireFence();
+            if ((long)SEQUENCE.getOpaque(this) == sequence)
+            {
+                out.setSize(size, this.widthMillis);
+                return size;
+            }
+        }
+    }
+
+    /**
+     * Returns whether this tier still holds buckets as old as the given time.
+     *
+     * @param fromMillis The time, in milliseconds since the epoch
+     * @param toMillis The newest time of interest, in milliseconds since the epoch
+     * @return True if the bucket containing fromMillis has not aged out as of toMillis
+     */
+    public boolean covers(long fromMillis, long toMillis)
+    {
+        return bucketStart(toMillis) - bucketStart(fromMillis) < this.starts.length * this.widthMillis;
+    }
+
+    /**
+     * Returns the number of buckets overlapping the given time range.
+     *
+     * @param fromMillis The start of the range, in milliseconds since the epoch
+     * @param toMillis The end of the range, in milliseconds since the epoch
+     * @return The number of buckets
+     */
+    public long bucketsBetween(long fromMillis, long toMillis)
+    {
+        return (bucketStart(toMillis) - bucketStart(fromMillis))/this.widthMillis + 1;
+    }
+
+    /**
+     * Returns the time span of each bucket.
+     *
+     * @return The bucket width, in milliseconds
+     */
+    public long widthMillis()
+    {
+        return this.widthMillis;
+    }
+
+    /**
+     * Returns the start of the bucket containing the given time.
+     *
+     * @param timestampMillis The time, in milliseconds since the epoch
+     * @return The start of its bucket
+     */
+    private long bucketStart(long timestampMillis)
+    {
+        return timestampMillis - Math.floorMod(timestampMillis, this.widthMillis);
+    }
+
+    /**
+     * Returns the slot of the bucket starting at the given time.
+     *
+     * @param bucketStart The start of the bucket
+     * @return The index of its slot
+     */
+    private int index(long bucketStart)
+    {
+        return Math.floorMod(bucketStart/this.widthMillis, this.starts.length);
+    }
+}
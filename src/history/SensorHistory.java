@@ -0,0 +1,176 @@
+package src.history;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A fixed-capacity ring of the most recent samples of a Sensor.
+ *
+ * About the ring:
+ *      • Timestamps and values are stored in parallel primitive arrays, so adding a sample never allocates or boxes
+ *      • There may be only one writer at a time, matching Sensor's single setter
+ *      • Any number of readers may take snapshots concurrently without locking or blocking the writer. A reader copies the
+ *        samples it wants, then re-reads the number of samples written and discards any copied sample the writer may have
+ *        overwritten in the meantime, so every snapshot is a consistent window of samples.
+ */
+public final class SensorHistory
+{
+    private static final VarHandle COUNT;
+
+    static
+    {
+        try
+        {
+            COUNT = MethodHandles.lookup().findVarHandle(SensorHistory.class, "count", long.class);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] timestamps; //the time of each sample, in milliseconds since the epoch
+    private final double[] values; //the value of each sample
+    private final int mask; //maps a sample number to its index in the ring
+    @SuppressWarnings("unused") //accessed through COUNT
+    private volatile long count; //the number of samples ever written
+
+    /**
+     * Creates a new SensorHistory.
+     *
+     * @param capacity The number of samples to keep, which must be a power of two
+     */
+    public SensorHistory(int capacity)
+    {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("History capacity must be a positive power of two: " + capacity);
+        }
+
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds a sample, overwriting the oldest sample if the ring is full. Must only be called by one thread at a time.
+     *
+     * @param timestampMillis The time of the sample, in milliseconds since the epoch
+     * @param value The value of the sample
+     */
+    public void add(long timestampMillis, double value)
+    {
+        long written = (long)COUNT.getOpaque(this);
+        int index = (int)written & this.mask;
+
+        //the new count of the previous sample must be visible before its slot is overwritten
+        VarHandle.storeStoreFence();
+        this.timestamps[index] = timestampMillis;
+        this.values[index] = value;
+
+        //publish the sample
+        COUNT.setRelease(this, written + 1);
+    }
+
+    /**
+     * Returns the number of samples ever written, which readers can compare to detect new samples.
+     *
+     * @return The number of samples written
+     */
+    public long count()
+    {
+        return (long)COUNT.getAcquire(this);
+    }
+
+    /**
+     * Returns the number of samples this history can hold.
+     *
+     * @return The capacity
+     */
+    public int capacity()
+    {
+        return this.values.length;
+    }
+
+    /**
+     * Copies the most recent samples taken at or after the given time into the given arrays, oldest first.
+     *
+     * @param fromMillis The time of the oldest sample to copy, in milliseconds since the epoch, or Long.MIN_VALUE for all
+     * @param timestampsOut Receives the time of each sample
+     * @param valuesOut Receives the value of each sample, and must be the same length as timestampsOut
+     * @return The number of samples copied, at most the length of the arrays
+     */
+    public int snapshot(long fromMillis, long[] timestampsOut, double[] valuesOut)
+    {
+        int capacity = this.values.length;
+        long end = (long)COUNT.getAcquire(this);
+        long start = Math.max(0, end - Math.min(capacity, timestampsOut.length));
+
+        for (long i = start; i < end; i++)
+        {
+            int index = (int)i & this.mask;
+            timestampsOut[(int)(i - start)] = this.timestamps[index];
+            valuesOut[(int)(i - start)] = this.values[index];
+        }
+
+        //discard any samples that were overwritten while copying, including the slot the writer may be writing to
+        VarHandle.acquireFence();
+        long firstValid = Math.max(start, (long)COUNT.getOpaque(this) - capacity + 1);
+
+        //discard samples older than requested
+        int copied = (int)(end - start);
+        int skip = (int)Math.min(copied, firstValid - start);
+        while (skip < copied && timestampsOut[skip] < fromMillis)
+        {
+            skip++;
+        }
+
+        if (skip > 0)
+        {
+            System.arraycopy(timestampsOut, skip, timestampsOut, 0, copied - skip);
+            System.arraycopy(valuesOut, skip, valuesOut, 0, copied - skip);
+        }
+
+        return copied - skip;
+    }
+
+    /**
+     * Copies the samples written since the given cursor into the given arrays, oldest first, and advances the cursor past them.
+     * Call repeatedly until no samples are copied to read every new sample.
+     *
+     * @param cursor The position of the reader, which counts any samples overwritten before they could be read
+     * @param timestampsOut Receives the time of each sample
+     * @param valuesOut Receives the value of each sample, and must be the same length as timestampsOut
+     * @return The number of samples copied, at most the length of the arrays
+     */
+    public int read(HistoryCursor cursor, long[] timestampsOut, double[] valuesOut)
+    {
+        int capacity = this.values.length;
+        long end = (long)COUNT.getAcquire(this);
+        long start = Math.max(cursor.next, end - capacity);
+        long stop = Math.min(end, start + timestampsOut.length);
+
+        for (long i = start; i < stop; i++)
+        {
+            int index = (int)i & this.mask;
+            timestampsOut[(int)(i - start)] = this.timestamps[index];
+            valuesOut[(int)(i - start)] = this.values[index];
+        }
+
+        //discard any samples that were overwritten while copying, including the slot the writer may be writing to
+        VarHandle.acquireFence();
+        long firstValid = (long)COUNT.getOpaque(this) - capacity + 1;
+        int copied = (int)(stop - start);
+        int skip = Math.clamp(firstValid - start, 0, copied);
+
+        if (skip > 0)
+        {
+            System.arraycopy(timestampsOut, skip, timestampsOut, 0, copied - skip);
+            System.arraycopy(valuesOut, skip, valuesOut, 0, copied - skip);
+        }
+
+        cursor.missed += start - cursor.next + skip;
+        cursor.next = stop;
+        return copied - skip;
+    }
+}
@@ -0,0 +1,63 @@
+package src.history;
+
+/**
+ * The long-term history of a Sensor, rolled up into tiers of increasingly coarse buckets.
+ *
+ * About the rollups:
+ *      • Every sample is rolled up into every tier as it arrives, so there is never a periodic scan over raw samples
+ *      • Each tier has a fixed number of buckets, so memory is bounded no matter how long the program runs
+ *      • Recent raw samples are kept separately by SensorHistory, and the tiers cover the time spans beyond it
+ */
+public final class SensorRollups
+{
+    private final RollupTier[] tiers; //ordered from the finest to the coarsest buckets
+
+    /**
+     * Creates a new SensorRollups.
+     *
+     * @param tiers The tiers, ordered from the finest to the coarsest buckets
+     */
+    public SensorRollups(RollupTier... tiers)
+    {
+        this.tiers = tiers.clone();
+    }
+
+    /**
+     * Rolls up a sample into every tier. Must only be called by one thread at a time.
+     *
+     * @param timestampMillis The time of the sample, in milliseconds since the epoch
+     * @param value The value of the sample
+     */
+    public void add(long timestampMillis, double value)
+    {
+        for (RollupTier tier : this.tiers)
+        {
+            tier.add(timestampMillis, value);
+        }
+    }
+
+    /**
+     * Copies the buckets overlapping the given time range into the given series, oldest first.
+     *
+     * The buckets are read from the finest tier that both still covers the start of the range and whose buckets over the range
+     * fit within the series. Longer ranges are therefore read from coarser tiers. If no tier satisfies both, the coarsest tier
+     * is read and only its most recent buckets are copied.
+     *
+     * @param fromMillis The start of the range, in milliseconds since the epoch
+     * @param toMillis The end of the range, in milliseconds since the epoch
+     * @param out Receives the buckets
+     * @return The number of buckets copied
+     */
+    public int query(long fromMillis, long toMillis, RollupSeries out)
+    {
+        for (RollupTier tier : this.tiers)
+        {
+            if (tier.covers(fromMillis, toMillis) && tier.bucketsBetween(fromMillis, toMillis) <= out.capacity())
+            {
+                return tier.read(fromMillis, toMillis, out);
+            }
+        }
+
+        return this.tiers[this.tiers.length - 1].read(fromMillis, toMillis, out);
+    }
+}
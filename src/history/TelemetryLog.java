@@ -0,0 +1,471 @@
+package src.history;
+
+import static forge.Logger.logError;
+import static forge.Logger.logWarning;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import src.Sensor;
+
+/**
+ * Persists every Sensor sample to an append-only log on disk, and restores the most recent logged samples when the program
+ * restarts.
+ *
+ * About the log:
+ *      • The log is a directory of segment files, each a 16-byte header followed by a fixed number of fixed-width records
+ *      • Each segment is memory-mapped while it is written, and a new segment is started once it is full or the program
+ *        restarts. Only the most recent segments are kept.
+ *      • A background thread drains new samples from each Sensor's history ring, so the threads setting Sensors never wait
+ *        on disk I/O
+ *      • Each record is checksummed with CRC32C, so a record torn by a crash or power loss (and the unused space at the end of
+ *        the last segment) ends the replay of its segment
+ *
+ * Segment header layout (big-endian):
+ *      0  int   magic, "SPTL"
+ *      4  short version
+ *      6  short record size
+ *      8  long  hash of the Sensor names, as records identify Sensors by ordinal
+ *
+ * Record layout (big-endian):
+ *      0  long   timestamp, in milliseconds since the epoch
+ *      8  double value
+ *      16 short  Sensor ordinal
+ *      18 short  reserved
+ *      20 int    CRC32C of bytes 0-19
+ */
+public final class TelemetryLog implements Closeable
+{
+    private static final int MAGIC = 0x5350544C; //"SPTL"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 24;
+    private static final int CHECKSUM_OFFSET = 20;
+    private static final String SEGMENT_PREFIX = "telemetry-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int DRAIN_BATCH = 256; //the number of samples read from a history ring at once
+
+    private final Path directory; //the directory holding the segments
+    private final int recordsPerSegment; //the number of records in each segment
+    private final int maxSegments; //the number of segments to keep
+    private final long flushMillis; //the time between draining the history rings
+    private final long layoutHash = layoutHash(); //identifies the Sensors the records refer to
+    private final Sensor[] sensors = Sensor.values(); //maps each ordinal to its Sensor
+    private final byte[] record = new byte[RECORD_SIZE]; //the record being written
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(this.record); //views the record being written
+    private final CRC32C checksum = new CRC32C(); //checksums each record written
+    private final long[] timestamps = new long[DRAIN_BATCH]; //the times of the samples being drained
+    private final double[] values = new double[DRAIN_BATCH]; //the values of the samples being drained
+    private HistoryCursor[] cursors; //the position of the writer in each Sensor's history ring
+    private Arena arena; //owns the mapping of the segment being written, or null if none
+    private MemorySegment segment; //the segment being written
+    private int records; //the number of records in the segment being written
+    private long segmentTime; //the creation time of the newest segment, which names it
+    private boolean failing; //whether writing the log is currently failing, to avoid logging repeated failures
+    private volatile boolean running; //whether the writer thread should continue
+    private Thread writer; //drains the history rings into the log
+
+    /**
+     * Receives each sample read from the log.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer
+    {
+        /**
+         * Receives a sample.
+         *
+         * @param sensor The Sensor the sample is from
+         * @param timestampMillis The time of the sample, in milliseconds since the epoch
+         * @param value The value of the sample
+         */
+        void accept(Sensor sensor, long timestampMillis, double value);
+    }
+
+    /**
+     * Creates a new TelemetryLog.
+     *
+     * @param directory The directory holding the segments
+     * @param recordsPerSegment The number of records in each segment
+     * @param maxSegments The number of segments to keep
+     * @param flushMillis The time between draining the history rings
+     */
+    public TelemetryLog(Path directory, int recordsPerSegment, int maxSegments, long flushMillis)
+    {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+        this.flushMillis = flushMillis;
+    }
+
+    /**
+     * Restores the samples taken at or after the given time into the history and rollups of each Sensor (see Sensor.restore()).
+     * Segments holding only older samples are not read. Must be called before any Sensor is first set.
+     *
+     * @param fromMillis The time of the oldest sample to restore, in milliseconds since the epoch
+     * @return The number of samples restored
+     * @throws IOException If the segments could not be listed
+     */
+    public long replay(long fromMillis) throws IOException
+    {
+        return read(fromMillis, (sensor, timestampMillis, value) -> sensor.restore(value, timestampMillis));
+    }
+
+    /**
+     * Reads the samples of every segment, oldest first.
+     *
+     * @param consumer Receives each sample
+     * @return The number of samples read
+     * @throws IOException If the segments could not be listed
+     */
+    public long read(RecordConsumer consumer) throws IOException
+    {
+        return read(Long.MIN_VALUE, consumer);
+    }
+
+    /**
+     * Reads the samples taken at or after the given time, oldest first. May be called while the log is being written, as
+     * each call reads into its own buffer.
+     *
+     * @param fromMillis The time of the oldest sample to read, in milliseconds since the epoch, or Long.MIN_VALUE for all
+     * @param consumer Receives each sample
+     * @return The number of samples read
+     * @throws IOException If the segments could not be listed
+     */
+    public long read(long fromMillis, RecordConsumer consumer) throws IOException
+    {
+        List<Path> segments = segments();
+        ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE); //the record being read
+        CRC32C checksum = new CRC32C(); //checksums each record read
+        long read = 0;
+
+        for (int i = 0; i < segments.size(); i++)
+        {
+            //a segment only holds samples taken before the next segment was created
+            Path path = segments.get(i);
+            if (i + 1 < segments.size() && segmentTime(segments.get(i + 1)) <= fromMillis)
+            {
+                continue;
+            }
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ); Arena readArena = Arena.ofConfined())
+            {
+                read += read(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), readArena), recordBuffer,
+                             checksum, fromMillis, consumer);
+            }
+            catch (IOException e)
+            {
+                logWarning("Unable to read telemetry log segment " + path + ": " + e);
+            }
+        }
+
+        return read;
+    }
+
+    /**
+     * Reads the samples of one segment.
+     *
+     * @param path The path of the segment, for logging
+     * @param mapped The contents of the segment
+     * @param recordBuffer Holds each record read, of RECORD_SIZE bytes backed by an array
+     * @param checksum Checksums each record read
+     * @param fromMillis The time of the oldest sample to read
+     * @param consumer Receives each sample
+     * @return The number of samples read
+     */
+    private long read(Path path, MemorySegment mapped, ByteBuffer recordBuffer, CRC32C checksum, long fromMillis,
+                      RecordConsumer consumer)
+    {
+        if (mapped.byteSize() < HEADER_SIZE)
+        {
+            return 0;
+        }
+
+        byte[] record = recordBuffer.array();
+        MemorySegment.copy(mapped, ValueLayout.JAVA_BYTE, 0, record, 0, HEADER_SIZE);
+        if (recordBuffer.getInt(0) != MAGIC || recordBuffer.getShort(4) != VERSION ||
+            recordBuffer.getShort(6) != RECORD_SIZE || recordBuffer.getLong(8) != this.layoutHash)
+        {
+            logWarning("Skipping telemetry log segment " + path + " written by an incompatible version of this program");
+            return 0;
+        }
+
+        long read = 0;
+        for (long offset = HEADER_SIZE; offset + RECORD_SIZE <= mapped.byteSize(); offset += RECORD_SIZE)
+        {
+            MemorySegment.copy(mapped, ValueLayout.JAVA_BYTE, offset, record, 0, RECORD_SIZE);
+            checksum.reset();
+            checksum.update(record, 0, CHECKSUM_OFFSET);
+
+            //a torn or unwritten record ends the segment
+            int ordinal = recordBuffer.getShort(16) & 0xFFFF;
+            if ((int)checksum.getValue() != recordBuffer.getInt(CHECKSUM_OFFSET) || ordinal >= this.sensors.length)
+            {
+                break;
+            }
+
+            long timestampMillis = recordBuffer.getLong(0);
+            if (timestampMillis >= fromMillis)
+            {
+                consumer.accept(this.sensors[ordinal], timestampMillis, recordBuffer.getDouble(8));
+                read++;
+            }
+        }
+
+        return read;
+    }
+
+    /**
+     * Starts logging the samples set from now on, on a background thread.
+     *
+     * @param threadName The name of the background thread
+     */
+    public void start(String threadName)
+    {
+        this.cursors = new HistoryCursor[this.sensors.length];
+        for (Sensor sensor : this.sensors)
+        {
+            this.cursors[sensor.ordinal()] = new HistoryCursor(sensor.history().count());
+        }
+
+        this.running = true;
+        this.writer = new Thread(() ->
+        {
+            while (this.running)
+            {
+                drain();
+
+                try
+                {
+                    Thread.sleep(this.flushMillis);
+                }
+                catch (InterruptedException _)
+                {
+                    //woken up to close
+                }
+            }
+
+            //log the last samples and release the segment
+            drain();
+            closeSegment();
+        },
+        threadName);
+
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Writes every new sample of every Sensor to the log.
+     */
+    private void drain()
+    {
+        for (Sensor sensor : this.sensors)
+        {
+            HistoryCursor cursor = this.cursors[sensor.ordinal()];
+            long missed = cursor.missed();
+
+            int count;
+            while ((count = sensor.history().read(cursor, this.timestamps, this.values)) > 0)
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    append(sensor, this.timestamps[i], this.values[i]);
+                }
+            }
+
+            if (cursor.missed() != missed)
+            {
+                logWarning("Telemetry log fell behind and missed " + (cursor.missed() - missed) + " samples of " + sensor.name());
+            }
+        }
+    }
+
+    /**
+     * Appends a record to the log, starting a new segment if necessary.
+     *
+     * @param sensor The Sensor the sample is from
+     * @param timestampMillis The time of the sample
+     * @param value The value of the sample
+     */
+    private void append(Sensor sensor, long timestampMillis, double value)
+    {
+        try
+        {
+            if (this.segment == null || this.records == this.recordsPerSegment)
+            {
+                rollSegment();
+            }
+
+            this.recordBuffer.putLong(0, timestampMillis).putDouble(8, value).putShort(16, (short)sensor.ordinal())
+                             .putShort(18, (short)0);
+            this.checksum.reset();
+            this.checksum.update(this.record, 0, CHECKSUM_OFFSET);
+            this.recordBuffer.putInt(CHECKSUM_OFFSET, (int)this.checksum.getValue());
+
+            MemorySegment.copy(this.record, 0, this.segment, ValueLayout.JAVA_BYTE,
+                               HEADER_SIZE + (long)this.records * RECORD_SIZE, RECORD_SIZE);
+            this.records++;
+
+            if (this.failing)
+            {
+                logWarning("Telemetry log recovered");
+                this.failing = false;
+            }
+        }
+        catch (IOException e)
+        {
+            if (!this.failing)
+            {
+                logError("Unable to write telemetry log, samples will be dropped until it recovers", e);
+                this.failing = true;
+            }
+
+            closeSegment();
+        }
+    }
+
+    /**
+     * Closes the current segment, if any, and starts a new one, deleting the oldest segments beyond the maximum.
+     *
+     * @throws IOException If the new segment could not be created
+     */
+    private void rollSegment() throws IOException
+    {
+        closeSegment();
+        Files.createDirectories(this.directory);
+
+        //name segments by creation time, so they sort oldest first
+        this.segmentTime = Math.max(System.currentTimeMillis(), this.segmentTime + 1);
+        Path path = this.directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, this.segmentTime, SEGMENT_SUFFIX));
+        Arena newArena = Arena.ofConfined();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE))
+        {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                       HEADER_SIZE + (long)this.recordsPerSegment * RECORD_SIZE, newArena);
+        }
+        catch (IOException e)
+        {
+            newArena.close();
+            throw e;
+        }
+
+        this.arena = newArena;
+        this.records = 0;
+        this.recordBuffer.putInt(0, MAGIC).putShort(4, VERSION).putShort(6, (short)RECORD_SIZE).putLong(8, this.layoutHash);
+        MemorySegment.copy(this.record, 0, this.segment, ValueLayout.JAVA_BYTE, 0, HEADER_SIZE);
+
+        //delete the oldest segments
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size() - this.maxSegments; i++)
+        {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Flushes and unmaps the current segment, if any.
+     */
+    private void closeSegment()
+    {
+        if (this.arena != null)
+        {
+            this.segment.force();
+            this.arena.close();
+            this.arena = null;
+            this.segment = null;
+        }
+    }
+
+    /**
+     * Returns the segments in the log directory, oldest first.
+     *
+     * @return The paths of the segments
+     * @throws IOException If the directory could not be listed
+     */
+    private List<Path> segments() throws IOException
+    {
+        if (!Files.isDirectory(this.directory))
+        {
+            return List.of();
+        }
+
+        try (Stream<Path> paths = Files.list(this.directory))
+        {
+            return paths.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX) &&
+                                        path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+        }
+    }
+
+    /**
+     * Returns the creation time of a segment, which names it.
+     *
+     * @param path The path of the segment
+     * @return The creation time, in milliseconds since the epoch, or Long.MAX_VALUE if the name holds no time
+     */
+    private static long segmentTime(Path path)
+    {
+        String name = path.getFileName().toString();
+        try
+        {
+            return Long.parseLong(name, SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length(), 10);
+        }
+        catch (NumberFormatException _)
+        {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Stops logging, writing any remaining samples and flushing the current segment to disk.
+     */
+    @Override
+    public void close()
+    {
+        this.running = false;
+        if (this.writer != null)
+        {
+            this.writer.interrupt();
+            try
+            {
+                this.writer.join();
+            }
+            catch (InterruptedException _)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Hashes the names of all Sensors in order, so that segments written with a different set of Sensors are not misread.
+     *
+     * @return The hash
+     */
+    private static long layoutHash()
+    {
+        long hash = 0xCBF29CE484222325L; //FNV-1a offset basis
+        for (Sensor sensor : Sensor.values())
+        {
+            for (char c : (sensor.name() + ';').toCharArray())
+            {
+                hash = (hash ^ c) * 0x100000001B3L; //FNV-1a prime
+            }
+        }
+
+        return hash;
+    }
+}
@@ -0,0 +1,38 @@
+package src.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for a Sensor changing AlertLevel, whether or not the change was reported or suppressed by the rate limit.
+ */
+@Name("sensorpanel.AlertTransition")
+@Label("Alert Transition")
+@Description("A Sensor changing alert level")
+@Category("SensorPanel")
+@StackTrace(false)
+public final class AlertTransitionEvent extends Event
+{
+    @Label("Sensor")
+    public String sensor;
+
+    @Label("Type")
+    public String type;
+
+    @Label("Previous Level")
+    public String previous;
+
+    @Label("Level")
+    public String level;
+
+    @Label("Value")
+    public double value;
+
+    @Label("Reported")
+    @Description("Whether the change was reported, or was suppressed by the rate limit")
+    public boolean reported;
+}
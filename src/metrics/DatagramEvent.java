@@ -0,0 +1,23 @@
+package src.metrics;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event spanning the handling of a single datagram from a UDP-fed source, see SensorBatchEvent.
+ */
+@Name("sensorpanel.Datagram")
+@Label("Datagram")
+@Description("A datagram parsed from a source of Sensor values and the Sensors it set")
+public final class DatagramEvent extends SensorBatchEvent
+{
+    @Label("Source")
+    public String source;
+
+    @Label("Size")
+    @Description("The size of the datagram's payload, in bytes")
+    @DataAmount
+    public int size;
+}
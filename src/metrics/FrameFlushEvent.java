@@ -0,0 +1,27 @@
+package src.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event spanning a frame flush on the EDT, in which the damaged region of every dirty Figure is repainted.
+ */
+@Name("sensorpanel.FrameFlush")
+@Label("Frame Flush")
+@Description("A frame repainting every Figure whose display changed, and the Sensors they display")
+@Category("SensorPanel")
+@StackTrace(false)
+public final class FrameFlushEvent extends Event
+{
+    @Label("Figures")
+    @Description("The number of Figures repainted")
+    public int figures;
+
+    @Label("Sensors")
+    @Description("The Sensors displayed by the Figures repainted")
+    public String sensors;
+}
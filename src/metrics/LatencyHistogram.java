@@ -0,0 +1,217 @@
+package src.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds with a fixed relative precision, in the manner of an HdrHistogram.
+ *
+ * About the histogram:
+ *      • Latencies are counted in buckets whose width grows with their value: each power of two is split into SUB_BUCKETS
+ *        equal buckets, so any recorded latency is reported within 1/SUB_BUCKETS (6.25%) of its true value
+ *      • Latencies from 0 ns to ~36 minutes are counted in 608 buckets, larger latencies are counted in the last bucket
+ *      • Only recent latencies are reported, so a slow startup doesn't hide how the program performs now. Latencies are
+ *        counted in one of PHASES sets of buckets by the time they are recorded, and the oldest set is cleared and reused as
+ *        each new phase starts, so the histogram slides over the last 45 to 60 seconds.
+ *      • Recording is lock-free and never allocates, so it may be called from any thread on any hot path
+ *      • Percentiles are read without stopping recording, so they may be off by the latencies recorded while reading or while
+ *        a set of buckets is cleared
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; //the buckets each power of two is split into
+    private static final int MAX_EXPONENT = 40; //the largest power of two counted, so latencies up to 2^41 ns (~36 minutes)
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int PHASES = 4; //the sets of buckets the window is split into
+    private static final long PHASE_NANOS = TimeUnit.SECONDS.toNanos(15); //the time each set of buckets counts latencies for
+
+    private final Phase[] phases = new Phase[PHASES]; //the latencies recorded in each phase of the window
+
+    /**
+     * Creates a new LatencyHistogram.
+     */
+    public LatencyHistogram()
+    {
+        for (int i = 0; i < PHASES; i++)
+        {
+            this.phases[i] = new Phase();
+        }
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency, in nanoseconds. Negative latencies are recorded as 0.
+     */
+    public void record(long nanos)
+    {
+        long latency = Math.max(nanos, 0);
+        Phase phase = phase(System.nanoTime() / PHASE_NANOS);
+        phase.counts.incrementAndGet(bucket(latency));
+        phase.count.incrementAndGet();
+        phase.max.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Returns the set of buckets counting the latencies of a phase, clearing it if it last counted an older phase.
+     *
+     * @param number The number of the phase, i.e. the time divided by PHASE_NANOS
+     * @return The set of buckets
+     */
+    private Phase phase(long number)
+    {
+        Phase phase = this.phases[Math.floorMod(number, PHASES)];
+        long previous = phase.number.get();
+
+        //only the thread which claims the set clears it
+        if (previous < number && phase.number.compareAndSet(previous, number))
+        {
+            for (int bucket = 0; bucket < BUCKETS; bucket++)
+            {
+                phase.counts.set(bucket, 0);
+            }
+
+            phase.count.set(0);
+            phase.max.set(0);
+        }
+
+        return phase;
+    }
+
+    /**
+     * Returns whether a set of buckets counts latencies within the window.
+     *
+     * @param phase The set of buckets
+     * @param current The number of the current phase
+     * @return True if the set counts the current phase or one of the phases before it within the window
+     */
+    private static boolean inWindow(Phase phase, long current)
+    {
+        return phase.number.get() > current - PHASES;
+    }
+
+    /**
+     * Returns the bucket a latency is counted in.
+     *
+     * @param nanos The latency, which is not negative
+     * @return The bucket
+     */
+    private static int bucket(long nanos)
+    {
+        if (nanos < SUB_BUCKETS)
+        {
+            return (int)nanos;
+        }
+
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(nanos), MAX_EXPONENT);
+        int subBucket = (int)(Math.min(nanos >>> (exponent - SUB_BUCKET_BITS), 2 * SUB_BUCKETS - 1) - SUB_BUCKETS);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest latency counted in a bucket.
+     *
+     * @param bucket The bucket
+     * @return The latency, in nanoseconds
+     */
+    private static long highestLatency(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Returns the latency at a percentile of the latencies recorded.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The latency in nanoseconds, no larger than the largest latency recorded, or 0 if none were recorded
+     */
+    public long percentile(double percentile)
+    {
+        long current = System.nanoTime() / PHASE_NANOS;
+        long total = count();
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            for (Phase phase : this.phases)
+            {
+                if (inWindow(phase, current))
+                {
+                    seen += phase.counts.get(bucket);
+                }
+            }
+
+            if (seen >= rank)
+            {
+                return Math.min(highestLatency(bucket), max());
+            }
+        }
+
+        return max();
+    }
+
+    /**
+     * Returns the number of latencies recorded within the window.
+     *
+     * @return The count
+     */
+    public long count()
+    {
+        long current = System.nanoTime() / PHASE_NANOS;
+        long count = 0;
+        for (Phase phase : this.phases)
+        {
+            if (inWindow(phase, current))
+            {
+                count += phase.count.get();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the largest latency recorded within the window.
+     *
+     * @return The latency in nanoseconds, or 0 if none were recorded
+     */
+    public long max()
+    {
+        long current = System.nanoTime() / PHASE_NANOS;
+        long max = 0;
+        for (Phase phase : this.phases)
+        {
+            if (inWindow(phase, current))
+            {
+                max = Math.max(max, phase.max.get());
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * The latencies recorded during one phase of the window.
+     */
+    private static final class Phase
+    {
+        private final AtomicLong number = new AtomicLong(Long.MIN_VALUE); //the phase counted, or Long.MIN_VALUE if none
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); //the latencies counted in each bucket
+        private final AtomicLong count = new AtomicLong(); //the latencies recorded
+        private final AtomicLong max = new AtomicLong(); //the largest latency recorded
+    }
+}
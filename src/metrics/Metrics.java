@@ -0,0 +1,138 @@
+package src.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The latency histograms and counters the SensorPanel keeps about itself, by name.
+ *
+ * About the metrics:
+ *      • Each histogram and counter is created on first use and kept for the life of the program, so callers look them up
+ *        once and keep them, and recording never allocates or locks
+ *      • Latencies are recorded in nanoseconds with System.nanoTime(), which costs far less than the work measured
+ *      • Allocated bytes are measured per thread by the JVM, which some JVMs don't support (e.g. for virtual threads), in
+ *        which case their counter is marked unsupported rather than left at 0
+ */
+public final class Metrics
+{
+    /**
+     * Prevents instantiation of this class.
+     */
+    private Metrics() {}
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>(); //sorted by name
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>(); //sorted by name
+    private static final Set<String> UNSUPPORTED = ConcurrentHashMap.newKeySet(); //the names of counters that can't be measured
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean(); //measures allocation, or null if unsupported
+
+    /**
+     * Returns the latency histogram with the given name, creating it if needed.
+     *
+     * @param name The name of the histogram, e.g. "HwInfo poll"
+     * @return The histogram
+     */
+    public static LatencyHistogram histogram(String name)
+    {
+        return HISTOGRAMS.computeIfAbsent(name, _ -> new LatencyHistogram());
+    }
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     *
+     * @param name The name of the counter, e.g. "Figure repaints"
+     * @return The counter
+     */
+    public static LongAdder counter(String name)
+    {
+        return COUNTERS.computeIfAbsent(name, _ -> new LongAdder());
+    }
+
+    /**
+     * Marks a counter as unsupported, e.g. the bytes allocated by a thread the JVM can't measure, so that it is displayed as
+     * such instead of as 0.
+     *
+     * @param name The name of the counter
+     */
+    public static void unsupported(String name)
+    {
+        UNSUPPORTED.add(name);
+    }
+
+    /**
+     * Returns whether a counter was marked as unsupported.
+     *
+     * @param name The name of the counter
+     * @return True if the counter can't be measured
+     */
+    public static boolean isUnsupported(String name)
+    {
+        return UNSUPPORTED.contains(name);
+    }
+
+    /**
+     * Returns every latency histogram, sorted by name.
+     *
+     * @return An unmodifiable view of the histograms, which reflects histograms created later
+     */
+    public static Map<String, LatencyHistogram> histograms()
+    {
+        return Collections.unmodifiableMap(HISTOGRAMS);
+    }
+
+    /**
+     * Returns every counter, sorted by name.
+     *
+     * @return An unmodifiable view of the counters, which reflects counters created later
+     */
+    public static Map<String, LongAdder> counters()
+    {
+        return Collections.unmodifiableMap(COUNTERS);
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread since it started.
+     *
+     * @return The bytes allocated, or -1 if the JVM can't measure them for the current thread
+     */
+    public static long threadAllocatedBytes()
+    {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Counts the bytes allocated by the current thread since an earlier call to threadAllocatedBytes().
+     *
+     * @param counter The counter to add the bytes to
+     * @param startBytes The bytes the current thread had allocated at the start, or -1 if they couldn't be measured
+     */
+    public static void countAllocatedBytes(LongAdder counter, long startBytes)
+    {
+        long endBytes = threadAllocatedBytes();
+        if (startBytes >= 0 && endBytes >= startBytes)
+        {
+            counter.add(endBytes - startBytes);
+        }
+    }
+
+    /**
+     * Returns the JVM's thread bean, if it can measure the bytes allocated by each thread.
+     *
+     * @return The thread bean, or null if allocation can't be measured
+     */
+    private static com.sun.management.ThreadMXBean threadBean()
+    {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads &&
+            threads.isThreadAllocatedMemorySupported())
+        {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+
+        return null;
+    }
+}
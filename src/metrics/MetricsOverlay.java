@@ -0,0 +1,137 @@
+package src.metrics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Displays the Metrics over the frame, for use as its glass pane.
+ *
+ * About the overlay:
+ *      • Each latency histogram is shown as its count and its p50, p99 and max latencies in milliseconds over the last minute,
+ *        followed by each counter (or n/a if it can't be measured), in a translucent box in the top left corner
+ *      • The box is refreshed at a fixed rate while the overlay is visible, and nothing is done while it is hidden
+ *      • Only the box is repainted, along with the part of each Figure beneath it
+ *      • It has no mouse listeners, so mouse events pass through it to the frame
+ */
+public final class MetricsOverlay extends JComponent
+{
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 14);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 200); //a mostly opaque black
+    private static final int MARGIN = 8; //the space around the box and around the text within it
+    private static final String HEADER = String.format("%-40s %9s %9s %9s %9s", "Latency, last minute (ms)", "count", "p50", "p99", "max");
+
+    private final Timer refreshTimer; //repaints the box, fires on the EDT
+    private final Rectangle box = new Rectangle(); //the box last painted
+
+    /**
+     * Creates a new MetricsOverlay, which is hidden until shown with setVisible(true).
+     *
+     * @param refreshMillis The time between each refresh of the metrics displayed
+     */
+    public MetricsOverlay(int refreshMillis)
+    {
+        this.refreshTimer = new Timer(refreshMillis, _ -> repaint(this.box));
+        this.setOpaque(false);
+        this.setVisible(false);
+    }
+
+    /**
+     * Starts refreshing the metrics when shown, and stops when hidden.
+     *
+     * @param visible Whether to show the overlay
+     */
+    @Override
+    public void setVisible(boolean visible)
+    {
+        super.setVisible(visible);
+
+        if (visible)
+        {
+            this.refreshTimer.start();
+        }
+        else
+        {
+            this.refreshTimer.stop();
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        Graphics2D g2d = (Graphics2D)g;
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(FONT);
+        FontMetrics metrics = g2d.getFontMetrics();
+
+        List<String> lines = lines();
+        int width = 0;
+        for (String line : lines)
+        {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+
+        Rectangle painted = new Rectangle(MARGIN, MARGIN, width + 2*MARGIN, lines.size() * metrics.getHeight() + 2*MARGIN);
+
+        //repaint again if the box grew beyond what was repainted, e.g. when a new metric is first recorded
+        if (!this.box.contains(painted))
+        {
+            repaint(painted);
+        }
+
+        this.box.setBounds(painted);
+
+        g2d.setColor(BACKGROUND);
+        g2d.fill(painted);
+        g2d.setColor(Color.WHITE);
+        int y = painted.y + MARGIN + metrics.getAscent();
+        for (String line : lines)
+        {
+            g2d.drawString(line, painted.x + MARGIN, y);
+            y += metrics.getHeight();
+        }
+    }
+
+    /**
+     * Formats every metric as a line of text.
+     *
+     * @return The lines to display
+     */
+    private static List<String> lines()
+    {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (Map.Entry<String, LatencyHistogram> entry : Metrics.histograms().entrySet())
+        {
+            LatencyHistogram histogram = entry.getValue();
+            lines.add(String.format("%-40s %9d %9.2f %9.2f %9.2f", entry.getKey(), histogram.count(),
+                                    histogram.percentile(50) / 1e6, histogram.percentile(99) / 1e6, histogram.max() / 1e6));
+        }
+
+        lines.add("");
+        for (Map.Entry<String, LongAdder> entry : Metrics.counters().entrySet())
+        {
+            if (Metrics.isUnsupported(entry.getKey()))
+            {
+                lines.add(String.format("%-40s %9s", entry.getKey(), "n/a"));
+            }
+            else
+            {
+                lines.add(String.format("%-40s %9d", entry.getKey(), entry.getValue().sum()));
+            }
+        }
+
+        return lines;
+    }
+}
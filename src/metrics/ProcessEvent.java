@@ -0,0 +1,29 @@
+package src.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event spanning the life of an external process spawned to read Sensor values, from its spawn to its exit.
+ */
+@Name("sensorpanel.Process")
+@Label("External Process")
+@Description("An external process spawned to read Sensor values")
+@Category("SensorPanel")
+@StackTrace(false)
+public final class ProcessEvent extends Event
+{
+    @Label("Command")
+    public String command;
+
+    @Label("Process ID")
+    public long pid;
+
+    @Label("Exit Code")
+    @Description("The exit code of the process, or -1 if it was still running when discarded")
+    public int exitCode;
+}
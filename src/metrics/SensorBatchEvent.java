@@ -0,0 +1,126 @@
+package src.metrics;
+
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import src.Sensor;
+
+/**
+ * A JFR event spanning a batch of Sensor updates made by one thread, e.g. a poll of a source, which records the Sensors set.
+ *
+ * About the events:
+ *      • Events are disabled until a recording enables them (e.g. with res/sensorpanel.jfc), and while disabled a batch costs
+ *        a check of whether it is enabled, and each Sensor update costs a read of whether any batch is in progress
+ *      • The Sensors set on a thread between beginBatch() and endBatch() are recorded by name, each at most once
+ *      • A batch within another batch on the same thread also adds its Sensors to the outer batch
+ */
+@Category("SensorPanel")
+@StackTrace(false)
+public abstract class SensorBatchEvent extends Event
+{
+    private static final ThreadLocal<SensorBatchEvent> CURRENT = new ThreadLocal<>(); //the innermost batch of each thread
+    private static final AtomicInteger IN_PROGRESS = new AtomicInteger(); //the batches in progress across all threads
+
+    @Label("Sensors")
+    @Description("The Sensors set during the event")
+    String sensors;
+
+    @Label("Updates")
+    @Description("The number of times a Sensor was set during the event")
+    int updates;
+
+    private transient long sensorMask; //a bit for the ordinal of each Sensor set, as there are fewer than 64 Sensors
+    private transient SensorBatchEvent outer; //the batch this batch is within, or null
+    private transient boolean tracking; //whether this batch is in progress and tracking the Sensors set
+
+    /**
+     * Starts timing this event and tracking the Sensors set on the current thread, if the event is enabled.
+     */
+    public final void beginBatch()
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+
+        begin();
+        this.outer = CURRENT.get();
+        this.tracking = true;
+        CURRENT.set(this);
+        IN_PROGRESS.incrementAndGet();
+    }
+
+    /**
+     * Stops tracking the Sensors set and commits this event, if it was enabled when the batch began. Must be called on the
+     * thread that began the batch.
+     */
+    public final void endBatch()
+    {
+        if (!this.tracking)
+        {
+            return;
+        }
+
+        this.tracking = false;
+        IN_PROGRESS.decrementAndGet();
+        CURRENT.set(this.outer);
+        if (this.outer != null)
+        {
+            this.outer.sensorMask |= this.sensorMask;
+            this.outer.updates += this.updates;
+        }
+
+        end();
+        if (shouldCommit())
+        {
+            this.sensors = sensorNames(this.sensorMask);
+            commit();
+        }
+    }
+
+    /**
+     * Adds a Sensor to the batch in progress on the current thread, if any. Called each time a Sensor is set.
+     *
+     * @param sensor The Sensor set
+     */
+    public static void sensorSet(Sensor sensor)
+    {
+        if (IN_PROGRESS.get() == 0)
+        {
+            return;
+        }
+
+        SensorBatchEvent batch = CURRENT.get();
+        if (batch != null)
+        {
+            batch.sensorMask |= 1L << sensor.ordinal();
+            batch.updates++;
+        }
+    }
+
+    /**
+     * Returns the names of the Sensors in a mask.
+     *
+     * @param sensorMask A bit for the ordinal of each Sensor
+     * @return The names, separated by commas
+     */
+    public static String sensorNames(long sensorMask)
+    {
+        StringJoiner names = new StringJoiner(",");
+        for (Sensor sensor : Sensor.values())
+        {
+            if ((sensorMask & 1L << sensor.ordinal()) != 0)
+            {
+                names.add(sensor.name());
+            }
+        }
+
+        return names.toString();
+    }
+}
@@ -0,0 +1,21 @@
+package src.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event spanning a single poll of a source of Sensor values, see SensorBatchEvent.
+ */
+@Name("sensorpanel.SourcePoll")
+@Label("Source Poll")
+@Description("A poll of a source of Sensor values and the Sensors it set")
+public final class SourcePollEvent extends SensorBatchEvent
+{
+    @Label("Source")
+    public String source;
+
+    @Label("Failed")
+    @Description("Whether the poll threw an exception, after which the source backs off")
+    public boolean failed;
+}
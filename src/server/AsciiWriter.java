@@ -0,0 +1,100 @@
+package src.server;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes numbers as ASCII bytes into a byte array without allocating, for responses which are encoded into reused buffers.
+ */
+final class AsciiWriter
+{
+    static final int MAX_VALUE_LENGTH = 32; //the most bytes written for a single value
+    private static final long FIXED_POINT_SCALE = 1_000_000; //values are written with up to 6 decimal places
+    private static final double MAX_FIXED_POINT = 9e12; //the largest value written in fixed point without overflowing a long
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] POSITIVE_INFINITY = {'+', 'I', 'n', 'f'};
+    private static final byte[] NEGATIVE_INFINITY = {'-', 'I', 'n', 'f'};
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private AsciiWriter() {}
+
+    /**
+     * Writes a value as ASCII text, with up to 6 decimal places.
+     *
+     * @param buffer The buffer to write to, with at least MAX_VALUE_LENGTH bytes after the position
+     * @param position The index to write at
+     * @param value The value
+     * @return The index after the last byte written
+     */
+    static int writeValue(byte[] buffer, int position, double value)
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            byte[] text = Double.isNaN(value) ? NAN : value > 0 ? POSITIVE_INFINITY : NEGATIVE_INFINITY;
+            System.arraycopy(text, 0, buffer, position, text.length);
+            return position + text.length;
+        }
+
+        if (Math.abs(value) >= MAX_FIXED_POINT)
+        {
+            //no Sensor reads this high, so allocating here costs nothing in practice
+            byte[] text = Double.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(text, 0, buffer, position, text.length);
+            return position + text.length;
+        }
+
+        long scaled = Math.round(value * FIXED_POINT_SCALE);
+        if (scaled < 0)
+        {
+            buffer[position++] = '-';
+            scaled = -scaled;
+        }
+
+        position = writeDigits(buffer, position, scaled / FIXED_POINT_SCALE, 1);
+
+        long fraction = scaled % FIXED_POINT_SCALE;
+        if (fraction != 0)
+        {
+            //drop the trailing zeros of the fraction
+            int digits = 6;
+            while (fraction % 10 == 0)
+            {
+                fraction /= 10;
+                digits--;
+            }
+
+            buffer[position++] = '.';
+            position = writeDigits(buffer, position, fraction, digits);
+        }
+
+        return position;
+    }
+
+    /**
+     * Writes a number as ASCII digits.
+     *
+     * @param buffer The buffer to write to
+     * @param position The index to write at
+     * @param number The number, which is not negative
+     * @param minDigits The fewest digits to write, padding the number with leading zeros
+     * @return The index after the last digit written
+     */
+    private static int writeDigits(byte[] buffer, int position, long number, int minDigits)
+    {
+        int digits = 1;
+        for (long remaining = number / 10; remaining > 0; remaining /= 10)
+        {
+            digits++;
+        }
+
+        digits = Math.max(digits, minDigits);
+        for (int i = position + digits - 1; i >= position; i--)
+        {
+            buffer[i] = (byte)('0' + number % 10);
+            number /= 10;
+        }
+
+        return position + digits;
+    }
+}
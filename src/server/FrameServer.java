@@ -0,0 +1,199 @@
+package src.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the frames of a HeadlessRenderer over HTTP, so the panel can be viewed from another device such as a tablet.
+ *
+ * Endpoints:
+ *      • /             A page showing the stream, scaled to fit the browser
+ *      • /frame.png    The latest frame
+ *      • /stream       Every new frame, as a multipart/x-mixed-replace stream of PNGs which browsers show as a live image
+ *
+ * Each frame is encoded once and the same bytes are sent to every client. Each request runs on its own virtual thread, so a
+ * stream blocked on a slow client holds no platform thread.
+ */
+public final class FrameServer implements Closeable
+{
+    private static final String BOUNDARY = "frame"; //separates the frames of a stream
+    private static final long KEEP_ALIVE_MILLIS = 5000; //the longest a stream waits before sending the same frame again
+    private static final byte[] PAGE = """
+        <!DOCTYPE html>
+        <html>
+        <head><title>Sensor Panel</title><meta name="viewport" content="width=device-width, initial-scale=1"></head>
+        <body style="margin:0; background:black">
+        <img src="/stream" style="width:100vw; height:100vh; object-fit:contain">
+        </body>
+        </html>
+        """.getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server; //serves the endpoints
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(); //handles each request
+    private final Object frameLock = new Object(); //guards the latest frame
+    private byte[] frame; //the latest frame, or null if none was rendered yet
+    private long frameNumber; //the number of frames rendered
+
+    /**
+     * Creates and starts a new FrameServer.
+     *
+     * @param host The address to listen on
+     * @param port The port to listen on
+     * @throws IOException If the port could not be bound
+     */
+    public FrameServer(String host, int port) throws IOException
+    {
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.createContext("/", this::handlePage);
+        this.server.createContext("/frame.png", this::handleFrame);
+        this.server.createContext("/stream", this::handleStream);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port, which was chosen by the system if 0 was given
+     */
+    public int port()
+    {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Publishes a new frame to all clients.
+     *
+     * @param png The frame, which must not be modified afterwards
+     */
+    public void publish(byte[] png)
+    {
+        synchronized (this.frameLock)
+        {
+            this.frame = png;
+            this.frameNumber++;
+            this.frameLock.notifyAll();
+        }
+    }
+
+    /**
+     * Sends the page showing the stream.
+     *
+     * @param exchange The request
+     * @throws IOException If the page could not be sent
+     */
+    private void handlePage(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            if (!exchange.getRequestURI().getPath().equals("/"))
+            {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, PAGE.length);
+            exchange.getResponseBody().write(PAGE);
+        }
+    }
+
+    /**
+     * Sends the latest frame.
+     *
+     * @param exchange The request
+     * @throws IOException If the frame could not be sent
+     */
+    private void handleFrame(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            byte[] png;
+            synchronized (this.frameLock)
+            {
+                png = this.frame;
+            }
+
+            if (png == null)
+            {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            exchange.sendResponseHeaders(200, png.length);
+            exchange.getResponseBody().write(png);
+        }
+    }
+
+    /**
+     * Sends every new frame until the client disconnects.
+     *
+     * @param exchange The request
+     */
+    private void handleStream(HttpExchange exchange)
+    {
+        try (exchange)
+        {
+            exchange.getResponseHeaders().set("Content-Type", "multipart/x-mixed-replace; boundary=" + BOUNDARY);
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            exchange.sendResponseHeaders(200, 0);
+
+            OutputStream body = exchange.getResponseBody();
+            long sent = 0;
+            while (true)
+            {
+                byte[] png;
+                synchronized (this.frameLock)
+                {
+                    if (this.frameNumber == sent)
+                    {
+                        this.frameLock.wait(KEEP_ALIVE_MILLIS);
+                    }
+
+                    png = this.frame;
+                    sent = this.frameNumber;
+                }
+
+                if (png == null)
+                {
+                    continue;
+                }
+
+                String header = "--" + BOUNDARY + "\r\nContent-Type: image/png\r\nContent-Length: " + png.length + "\r\n\r\n";
+                body.write(header.getBytes(StandardCharsets.US_ASCII));
+                body.write(png);
+                body.write('\r');
+                body.write('\n');
+                body.flush();
+            }
+        }
+        catch (IOException _)
+        {
+            //the client disconnected
+        }
+        catch (InterruptedException _)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops serving frames, closing all streams.
+     */
+    @Override
+    public void close()
+    {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+}
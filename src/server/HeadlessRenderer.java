@@ -0,0 +1,176 @@
+package src.server;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.swing.JComponent;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import src.figure.Figure;
+import src.figure.FrameScheduler;
+
+/**
+ * Renders a panel into an off-screen image instead of onto a screen, and encodes each changed frame as a PNG.
+ *
+ * About the renderer:
+ *      • The whole panel is rendered once, after which only the damaged regions of the Figures the FrameScheduler marks dirty
+ *        are rendered again
+ *      • Frames are rendered at most a fixed number of times per second, and only when a Figure changed
+ *      • Only the bands of rows covering the rendered regions are compressed again (see PngEncoder)
+ *      • Runs on the EDT, and works with java.awt.headless=true
+ */
+public final class HeadlessRenderer
+{
+    private final JComponent panel; //the panel being rendered
+    private final BufferedImage image; //the rendered frame
+    private final int[] pixels; //the pixels of the rendered frame
+    private final PngEncoder encoder; //encodes each frame
+    private final Consumer<byte[]> frameConsumer; //receives each encoded frame
+    private final List<Figure> dirtyFigures = new ArrayList<>(); //the Figures to render in the next frame
+    private final Rectangle damage = new Rectangle(); //the region of the Figure being rendered that changed
+    private Timer timer; //renders each frame
+
+    /**
+     * Creates a new HeadlessRenderer. Must be called on the EDT.
+     *
+     * @param panel The panel to render, which is laid out at the given size
+     * @param width The width of each frame
+     * @param height The height of each frame
+     * @param bandRows The number of rows the encoder compresses together
+     * @param compressionLevel The compression level of the encoder, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+     * @param frameConsumer Receives each encoded frame, on the EDT
+     */
+    public HeadlessRenderer(JComponent panel, int width, int height, int bandRows, int compressionLevel,
+                            Consumer<byte[]> frameConsumer)
+    {
+        this.panel = panel;
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt)this.image.getRaster().getDataBuffer()).getData();
+        this.encoder = new PngEncoder(width, height, bandRows, compressionLevel);
+        this.frameConsumer = frameConsumer;
+
+        //the panel is never shown, so lay it out by hand
+        panel.setSize(width, height);
+        layout(panel);
+
+        //without a screen there is no back buffer to paint through
+        RepaintManager.currentManager(panel).setDoubleBufferingEnabled(false);
+    }
+
+    /**
+     * Lays out a container and all containers within it.
+     *
+     * @param container The container
+     */
+    private static void layout(Container container)
+    {
+        container.doLayout();
+        for (Component component : container.getComponents())
+        {
+            if (component instanceof Container child)
+            {
+                layout(child);
+            }
+        }
+    }
+
+    /**
+     * Renders the whole panel, then renders the Figures that change from then on. Must be called on the EDT.
+     *
+     * @param fps The most frames to render per second
+     */
+    public void start(int fps)
+    {
+        Graphics2D g2d = this.image.createGraphics();
+        try
+        {
+            this.panel.paint(g2d);
+        }
+        finally
+        {
+            g2d.dispose();
+        }
+
+        this.frameConsumer.accept(this.encoder.encode(this.pixels));
+
+        FrameScheduler.setRepaintHandler(this::markDirty);
+        this.timer = new Timer(1000 / fps, _ -> render());
+        this.timer.start();
+    }
+
+    /**
+     * Marks a Figure to be rendered in the next frame. Called on the EDT.
+     *
+     * @param figure The Figure
+     */
+    private void markDirty(Figure figure)
+    {
+        if (!this.dirtyFigures.contains(figure))
+        {
+            this.dirtyFigures.add(figure);
+        }
+    }
+
+    /**
+     * Renders and encodes the Figures that changed since the last frame, if any.
+     */
+    private void render()
+    {
+        if (this.dirtyFigures.isEmpty())
+        {
+            return;
+        }
+
+        for (Figure figure : this.dirtyFigures)
+        {
+            if (!figure.takeDamage(this.damage))
+            {
+                continue;
+            }
+
+            //figures are opaque, so nothing beneath them needs to be rendered again
+            Point location = SwingUtilities.convertPoint(figure.getParent(), figure.getX(), figure.getY(), this.panel);
+            Graphics2D g2d = this.image.createGraphics();
+            try
+            {
+                g2d.translate(location.x, location.y);
+                g2d.clipRect(0, 0, figure.getWidth(), figure.getHeight());
+                g2d.clipRect(this.damage.x, this.damage.y, this.damage.width, this.damage.height);
+                figure.paint(g2d);
+            }
+            finally
+            {
+                g2d.dispose();
+            }
+
+            this.damage.translate(location.x, location.y);
+            this.encoder.markDirty(this.damage);
+        }
+
+        this.dirtyFigures.clear();
+        this.frameConsumer.accept(this.encoder.encode(this.pixels));
+    }
+
+    /**
+     * Stops rendering frames, and repaints dirty Figures normally again.
+     */
+    public void stop()
+    {
+        if (this.timer != null)
+        {
+            this.timer.stop();
+        }
+
+        FrameScheduler.setRepaintHandler(Figure::repaintDamage);
+    }
+}
@@ -0,0 +1,256 @@
+package src.server;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes frames of a fixed size as PNGs, compressing again only the bands of rows that changed since the previous frame.
+ *
+ * About the encoder:
+ *      • The image data of a PNG is a single zlib stream. Each band of rows is compressed on its own with a full flush, which
+ *        resets the compression state, so the compressed bands can be concatenated into one valid stream in any combination.
+ *      • Rows use the Sub filter, which only depends on the row itself, so a band's compressed bytes never depend on its
+ *        neighbours
+ *      • The checksums of the stream and of each band are combined rather than recomputed over the whole frame
+ *      • The deflater, filtered rows and compressed bands are reused between frames. Only the encoded PNG itself is allocated,
+ *        as it is shared with the clients sending it.
+ *      • Not thread-safe
+ */
+final class PngEncoder
+{
+    private static final byte[] SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] ZLIB_HEADER = {0x78, 0x01}; //deflate with a 32 KB window
+    private static final byte[] FINAL_BLOCK = {0x03, 0x00}; //an empty, final, fixed Huffman block
+    private static final int ADLER_BASE = 65521; //the modulus of Adler-32
+    private static final int BYTES_PER_PIXEL = 3; //8-bit RGB
+    private static final byte FILTER_SUB = 1; //each byte is stored as the difference from the byte one pixel to the left
+
+    private final int width; //the width of each frame
+    private final int height; //the height of each frame
+    private final int bandRows; //the number of rows compressed together
+    private final int rowBytes; //the bytes of each filtered row, including its filter type
+    private final byte[] filtered; //the filtered rows of the band being compressed
+    private final byte[][] compressed; //the compressed bytes of each band
+    private final int[] compressedLengths; //the number of compressed bytes of each band
+    private final int[] checksums; //the Adler-32 checksum of the filtered rows of each band
+    private final boolean[] dirty; //whether each band must be compressed again
+    private final Deflater deflater; //compresses each band
+    private final Adler32 adler = new Adler32(); //checksums each band
+    private final CRC32 crc = new CRC32(); //checksums each chunk
+
+    /**
+     * Creates a new PngEncoder. Every band is compressed for the first frame.
+     *
+     * @param width The width of each frame
+     * @param height The height of each frame
+     * @param bandRows The number of rows compressed together. Smaller bands compress less of an unchanged frame, but larger
+     *                 bands compress better.
+     * @param level The compression level, from Deflater.BEST_SPEED to Deflater.BEST_COMPRESSION
+     */
+    PngEncoder(int width, int height, int bandRows, int level)
+    {
+        this.width = width;
+        this.height = height;
+        this.bandRows = bandRows;
+        this.rowBytes = 1 + width * BYTES_PER_PIXEL;
+        this.filtered = new byte[bandRows * this.rowBytes];
+
+        int bands = (height + bandRows - 1) / bandRows;
+        this.compressed = new byte[bands][];
+        this.compressedLengths = new int[bands];
+        this.checksums = new int[bands];
+        this.dirty = new boolean[bands];
+        this.deflater = new Deflater(level, true);
+
+        for (int band = 0; band < bands; band++)
+        {
+            this.compressed[band] = new byte[this.filtered.length + this.filtered.length / 1000 + 64];
+            this.dirty[band] = true;
+        }
+    }
+
+    /**
+     * Marks a region of the frame as changed, so the bands it covers are compressed again by the next encode.
+     *
+     * @param region The changed region
+     */
+    void markDirty(Rectangle region)
+    {
+        int first = Math.max(region.y, 0) / this.bandRows;
+        int last = Math.min(region.y + region.height - 1, this.height - 1) / this.bandRows;
+        for (int band = first; band <= last; band++)
+        {
+            this.dirty[band] = true;
+        }
+    }
+
+    /**
+     * Encodes a frame.
+     *
+     * @param pixels The RGB pixels of the frame, row by row
+     * @return The PNG
+     */
+    byte[] encode(int[] pixels)
+    {
+        //compress the changed bands and combine the checksums of every band
+        int dataLength = ZLIB_HEADER.length + FINAL_BLOCK.length + Integer.BYTES;
+        int checksum = 1;
+        for (int band = 0; band < this.compressed.length; band++)
+        {
+            if (this.dirty[band])
+            {
+                compress(pixels, band);
+                this.dirty[band] = false;
+            }
+
+            dataLength += this.compressedLengths[band];
+            checksum = combine(checksum, this.checksums[band], (long)rows(band) * this.rowBytes);
+        }
+
+        ByteBuffer png = ByteBuffer.allocate(SIGNATURE.length + 25 + 12 + dataLength + 12);
+        png.put(SIGNATURE);
+
+        //the header: the size, 8 bits per channel, RGB, deflate, adaptive filtering and no interlacing
+        int start = beginChunk(png, "IHDR", 13);
+        png.putInt(this.width).putInt(this.height).put((byte)8).put((byte)2).put((byte)0).put((byte)0).put((byte)0);
+        endChunk(png, start);
+
+        //the image data
+        start = beginChunk(png, "IDAT", dataLength);
+        png.put(ZLIB_HEADER);
+        for (int band = 0; band < this.compressed.length; band++)
+        {
+            png.put(this.compressed[band], 0, this.compressedLengths[band]);
+        }
+
+        png.put(FINAL_BLOCK).putInt(checksum);
+        endChunk(png, start);
+
+        //the end
+        endChunk(png, beginChunk(png, "IEND", 0));
+        return png.array();
+    }
+
+    /**
+     * Filters and compresses a band.
+     *
+     * @param pixels The RGB pixels of the frame
+     * @param band The band
+     */
+    private void compress(int[] pixels, int band)
+    {
+        int rows = rows(band);
+        int length = rows * this.rowBytes;
+        for (int row = 0; row < rows; row++)
+        {
+            int pixel = (band * this.bandRows + row) * this.width;
+            int offset = row * this.rowBytes;
+            this.filtered[offset++] = FILTER_SUB;
+
+            int previous = 0;
+            for (int x = 0; x < this.width; x++)
+            {
+                int rgb = pixels[pixel + x];
+                this.filtered[offset++] = (byte)((rgb >>> 16) - (previous >>> 16));
+                this.filtered[offset++] = (byte)((rgb >>> 8) - (previous >>> 8));
+                this.filtered[offset++] = (byte)(rgb - previous);
+                previous = rgb;
+            }
+        }
+
+        this.adler.reset();
+        this.adler.update(this.filtered, 0, length);
+        this.checksums[band] = (int)this.adler.getValue();
+
+        //a full flush ends the band on a byte boundary with the compression state reset
+        this.deflater.reset();
+        this.deflater.setInput(this.filtered, 0, length);
+        int compressedLength = 0;
+        while (true)
+        {
+            byte[] output = this.compressed[band];
+            compressedLength += this.deflater.deflate(output, compressedLength, output.length - compressedLength,
+                                                      Deflater.FULL_FLUSH);
+            if (compressedLength < output.length)
+            {
+                break;
+            }
+
+            this.compressed[band] = Arrays.copyOf(output, output.length * 2);
+        }
+
+        this.compressedLengths[band] = compressedLength;
+    }
+
+    /**
+     * Returns the number of rows in a band.
+     *
+     * @param band The band
+     * @return The number of rows, which is less than the band size only for the last band
+     */
+    private int rows(int band)
+    {
+        return Math.min(this.bandRows, this.height - band * this.bandRows);
+    }
+
+    /**
+     * Writes the length and type of a chunk.
+     *
+     * @param png The PNG being written
+     * @param type The type of the chunk
+     * @param length The length of the chunk's data
+     * @return The position of the chunk's type, where its CRC starts
+     */
+    private static int beginChunk(ByteBuffer png, String type, int length)
+    {
+        png.putInt(length);
+        int start = png.position();
+        for (int i = 0; i < type.length(); i++)
+        {
+            png.put((byte)type.charAt(i));
+        }
+
+        return start;
+    }
+
+    /**
+     * Writes the CRC of a chunk.
+     *
+     * @param png The PNG being written
+     * @param start The position of the chunk's type
+     */
+    private void endChunk(ByteBuffer png, int start)
+    {
+        this.crc.reset();
+        this.crc.update(png.array(), start, png.position() - start);
+        png.putInt((int)this.crc.getValue());
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two consecutive sequences of bytes, as zlib's adler32_combine does.
+     *
+     * @param first The checksum of the first sequence
+     * @param second The checksum of the second sequence
+     * @param secondLength The length of the second sequence
+     * @return The checksum of both sequences
+     */
+    private static int combine(int first, int second, long secondLength)
+    {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= (ADLER_BASE << 1)) sum2 -= (ADLER_BASE << 1);
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+
+        return (int)(sum1 | (sum2 << 16));
+    }
+}
@@ -0,0 +1,240 @@
+package src.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.ToDoubleFunction;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import src.Sensor;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+
+/**
+ * Serves the value of every Sensor over HTTP in the Prometheus text exposition format, for fleet monitoring to scrape.
+ *
+ * Endpoints:
+ *      • /metrics      The latest value of each Sensor, along with its min, max and warning thresholds
+ *
+ * About the responses:
+ *      • Everything but the Sensor values never changes, so it is encoded once when the server is created. Each scrape copies
+ *        the encoded text into a pooled buffer and writes only the values into it, so a scrape allocates little beyond what
+ *        the HttpServer itself allocates per request
+ *      • Each request runs on its own virtual thread, but at most maxConcurrentScrapes run at once. Further requests wait to be
+ *        dispatched until one finishes, so there are never more buffers than maxConcurrentScrapes.
+ *      • Values are written with up to 6 decimal places (see AsciiWriter)
+ */
+public final class PrometheusServer implements Closeable
+{
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final LatencyHistogram SCRAPE_LATENCY = Metrics.histogram("Prometheus scrape"); //encoding and sending
+
+    private final HttpServer server; //serves the endpoints
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(); //handles each request
+    private final Semaphore scrapePermits; //bounds the requests handled at once
+    private final Queue<byte[]> buffers; //the buffers of finished scrapes, reused by later scrapes
+    private final Sensor[] sensors = Sensor.values(); //the Sensors served
+    private final byte[][] valuePrefixes; //the encoded text before each Sensor's value, including the previous value's newline
+    private final byte[] staticFamilies; //the encoded text after the last value, including its newline
+    private final int bufferSize; //the size of the largest possible response
+
+    /**
+     * Creates and starts a new PrometheusServer.
+     *
+     * @param host The address to listen on
+     * @param port The port to listen on
+     * @param maxConcurrentScrapes The most requests handled at once
+     * @throws IOException If the port could not be bound
+     */
+    public PrometheusServer(String host, int port, int maxConcurrentScrapes) throws IOException
+    {
+        this.scrapePermits = new Semaphore(maxConcurrentScrapes);
+        this.buffers = new ArrayBlockingQueue<>(maxConcurrentScrapes);
+
+        //encode the value family, leaving out the values
+        this.valuePrefixes = new byte[this.sensors.length][];
+        StringBuilder text = new StringBuilder(family("value", "The latest value of each Sensor."));
+        for (int i = 0; i < this.sensors.length; i++)
+        {
+            text.append(series("value", this.sensors[i]));
+            this.valuePrefixes[i] = text.toString().getBytes(StandardCharsets.UTF_8);
+            text.setLength(0);
+            text.append('\n');
+        }
+
+        //encode the families which never change
+        appendStaticFamily(text, "min", "The smallest value each Sensor should reach.", Sensor::min);
+        appendStaticFamily(text, "max", "The largest value each Sensor should reach.", Sensor::max);
+        appendStaticFamily(text, "warning_min", "The value beneath which each Sensor warns.", Sensor::warningMin);
+        appendStaticFamily(text, "warning_max", "The value above which each Sensor warns.", Sensor::warningMax);
+        this.staticFamilies = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        int size = this.staticFamilies.length;
+        for (byte[] prefix : this.valuePrefixes)
+        {
+            size += prefix.length + AsciiWriter.MAX_VALUE_LENGTH;
+        }
+
+        this.bufferSize = size;
+
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.createContext("/metrics", this::handleMetrics);
+        this.server.setExecutor(this::dispatch);
+        this.server.start();
+    }
+
+    /**
+     * Returns the HELP and TYPE lines of a family of gauges.
+     *
+     * @param name The name of the family, after "sensorpanel_sensor_"
+     * @param help The description of the family
+     * @return The lines
+     */
+    private static String family(String name, String help)
+    {
+        return "# HELP sensorpanel_sensor_" + name + " " + help + "\n# TYPE sensorpanel_sensor_" + name + " gauge\n";
+    }
+
+    /**
+     * Returns the name and labels of a Sensor's series in a family, followed by the space before its value.
+     *
+     * @param name The name of the family, after "sensorpanel_sensor_"
+     * @param sensor The Sensor
+     * @return The series
+     */
+    private static String series(String name, Sensor sensor)
+    {
+        return "sensorpanel_sensor_" + name + "{sensor=\"" + sensor.name() + "\",unit=\"" +
+               sensor.unit().name().toLowerCase(Locale.ROOT) + "\"} ";
+    }
+
+    /**
+     * Appends a family of gauges whose values never change.
+     *
+     * @param text The text to append to
+     * @param name The name of the family, after "sensorpanel_sensor_"
+     * @param help The description of the family
+     * @param value Returns the value of each Sensor
+     */
+    private void appendStaticFamily(StringBuilder text, String name, String help, ToDoubleFunction<Sensor> value)
+    {
+        text.append(family(name, help));
+        byte[] encoded = new byte[AsciiWriter.MAX_VALUE_LENGTH];
+        for (Sensor sensor : this.sensors)
+        {
+            int length = AsciiWriter.writeValue(encoded, 0, value.applyAsDouble(sensor));
+            text.append(series(name, sensor)).append(new String(encoded, 0, length, StandardCharsets.US_ASCII)).append('\n');
+        }
+    }
+
+    /**
+     * Runs a request on a new virtual thread once fewer than the maximum requests are running, blocking the HttpServer's
+     * dispatcher until then.
+     *
+     * @param request Handles the request
+     */
+    private void dispatch(Runnable request)
+    {
+        this.scrapePermits.acquireUninterruptibly();
+        try
+        {
+            this.executor.execute(() ->
+            {
+                try
+                {
+                    request.run();
+                }
+                finally
+                {
+                    this.scrapePermits.release();
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            this.scrapePermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the latest value of every Sensor.
+     *
+     * @param exchange The request
+     * @throws IOException If the response could not be sent
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException
+    {
+        long start = System.nanoTime();
+        try (exchange)
+        {
+            if (!exchange.getRequestURI().getPath().equals("/metrics"))
+            {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            //the buffers never outnumber the scrapes running at once, so there is always room to return one
+            byte[] buffer = this.buffers.poll();
+            if (buffer == null)
+            {
+                buffer = new byte[this.bufferSize];
+            }
+
+            try
+            {
+                int length = encode(buffer);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, length);
+                exchange.getResponseBody().write(buffer, 0, length);
+            }
+            finally
+            {
+                this.buffers.offer(buffer);
+            }
+        }
+        finally
+        {
+            SCRAPE_LATENCY.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Encodes the latest value of every Sensor into the exposition text.
+     *
+     * @param buffer The buffer to encode into, of bufferSize bytes
+     * @return The length of the text
+     */
+    private int encode(byte[] buffer)
+    {
+        int position = 0;
+        for (int i = 0; i < this.sensors.length; i++)
+        {
+            System.arraycopy(this.valuePrefixes[i], 0, buffer, position, this.valuePrefixes[i].length);
+            position = AsciiWriter.writeValue(buffer, position + this.valuePrefixes[i].length, this.sensors[i].getData());
+        }
+
+        System.arraycopy(this.staticFamilies, 0, buffer, position, this.staticFamilies.length);
+        return position + this.staticFamilies.length;
+    }
+
+    /**
+     * Stops serving the Sensors.
+     */
+    @Override
+    public void close()
+    {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,325 @@
+package src.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import src.Sensor;
+import src.metrics.Metrics;
+
+/**
+ * Streams the values of the Sensors which changed to any number of remote dashboards, as Server-Sent Events.
+ *
+ * Endpoints:
+ *      • /events       A "snapshot" event with every Sensor's value, then a "delta" event with the Sensors which changed since
+ *                      the last event, e.g. data: {"CPU_TEMPERATURE":45.2,"FPS":144}
+ *
+ * About the stream:
+ *      • Sensors mark themselves changed as they are set to new values, and the changes are published together at a fixed
+ *        interval, so a burst of updates (e.g. a HwInfo poll setting every Sensor) costs a single event
+ *      • Each delta is encoded once and the same bytes are queued for every client
+ *      • Each client has a bounded queue. When a slow client's queue fills, its queued deltas are dropped and replaced by a
+ *        single delta with the latest values of every Sensor they changed, so it catches up instead of falling further behind.
+ *        The replacement is encoded as the queue is coalesced, so every delta queued after it is newer.
+ *      • Each client is served on its own virtual thread, and a comment is sent when nothing changes so that disconnected
+ *        clients are noticed
+ *
+ * Changes are tracked across the program, so only one SensorStreamServer may be running at a time. The deltas published and
+ * the client queues coalesced are counted in the Metrics as "Sensor stream deltas" and "Sensor stream coalesced queues".
+ */
+public final class SensorStreamServer implements Closeable
+{
+    private static final AtomicLong CHANGED_SENSORS = new AtomicLong(); //a bit for the ordinal of each Sensor changed
+    private static final Sensor[] SENSORS = Sensor.values(); //saved to avoid copying each event
+    private static final long ALL_SENSORS = SENSORS.length == 64 ? -1 : (1L << SENSORS.length) - 1;
+    private static final long KEEP_ALIVE_MILLIS = 15_000; //the longest a client waits without being sent anything
+    private static final byte[] KEEP_ALIVE = ": keep-alive\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final LongAdder DELTAS = Metrics.counter("Sensor stream deltas"); //the deltas published
+    private static final LongAdder COALESCED_QUEUES = Metrics.counter("Sensor stream coalesced queues"); //for slow clients
+
+    private final HttpServer server; //serves the endpoints
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(); //handles each request
+    private final ScheduledExecutorService publisher; //publishes the changed Sensors at a fixed interval
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet(); //the connected clients
+    private final int clientQueueSize; //the most deltas queued to each client
+    private final boolean allowAnyOrigin; //whether web pages served from other origins may subscribe
+    private final byte[] encodeBuffer; //encodes each delta on the publisher's thread
+
+    /**
+     * A delta encoded as an event, shared by every client it is queued to.
+     *
+     * @param event The encoded event
+     * @param sensorMask A bit for the ordinal of each Sensor in the event
+     */
+    private record Delta(byte[] event, long sensorMask) {}
+
+    /**
+     * A connected client.
+     *
+     * @param queue The deltas waiting to be sent
+     */
+    private record Client(BlockingQueue<Delta> queue) {}
+
+    /**
+     * Creates and starts a new SensorStreamServer.
+     *
+     * @param host The address to listen on
+     * @param port The port to listen on
+     * @param intervalMillis The time between publishing each delta
+     * @param clientQueueSize The most deltas queued to each client before it is considered too slow
+     * @param allowAnyOrigin Whether web pages served from other origins (e.g. a dashboard hosted elsewhere) may subscribe
+     * @throws IOException If the port could not be bound
+     */
+    public SensorStreamServer(String host, int port, long intervalMillis, int clientQueueSize, boolean allowAnyOrigin)
+        throws IOException
+    {
+        this.clientQueueSize = clientQueueSize;
+        this.allowAnyOrigin = allowAnyOrigin;
+        this.encodeBuffer = new byte[maxEventSize()];
+
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.createContext("/events", this::handleEvents);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+
+        this.publisher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "Sensor Stream Thread"));
+        this.publisher.scheduleAtFixedRate(this::publish, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return The port, which was chosen by the system if 0 was given
+     */
+    public int port()
+    {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Marks a Sensor as changed, to be published in the next delta. Called each time a Sensor is set to a new value.
+     *
+     * @param sensor The Sensor changed
+     */
+    public static void sensorChanged(Sensor sensor)
+    {
+        //most Sensors are set again before the next delta, so avoid contending on the mask when already marked
+        long bit = 1L << sensor.ordinal();
+        if ((CHANGED_SENSORS.get() & bit) == 0)
+        {
+            CHANGED_SENSORS.getAndAccumulate(bit, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * Encodes the Sensors changed since the last delta and queues them to every client. Runs on the publisher's thread.
+     */
+    private void publish()
+    {
+        long sensorMask = CHANGED_SENSORS.getAndSet(0);
+        if (sensorMask == 0 || this.clients.isEmpty())
+        {
+            return;
+        }
+
+        int length = encode(this.encodeBuffer, "delta", sensorMask);
+        Delta delta = new Delta(Arrays.copyOf(this.encodeBuffer, length), sensorMask);
+        DELTAS.increment();
+        for (Client client : this.clients)
+        {
+            if (!client.queue().offer(delta))
+            {
+                coalesce(client, sensorMask);
+            }
+        }
+    }
+
+    /**
+     * Replaces every delta queued to a client which can't keep up with a single delta of the latest values of the Sensors
+     * they changed. Runs on the publisher's thread, so that each delta queued afterwards is newer than the replacement.
+     *
+     * @param client The client
+     * @param sensorMask A bit for the ordinal of each Sensor in the delta which didn't fit in the client's queue
+     */
+    private void coalesce(Client client, long sensorMask)
+    {
+        Delta dropped;
+        while ((dropped = client.queue().poll()) != null)
+        {
+            sensorMask |= dropped.sensorMask();
+        }
+
+        int length = encode(this.encodeBuffer, "delta", sensorMask);
+        client.queue().offer(new Delta(Arrays.copyOf(this.encodeBuffer, length), sensorMask));
+        COALESCED_QUEUES.increment();
+    }
+
+    /**
+     * Returns the size of the largest possible event, which has every Sensor.
+     *
+     * @return The size in bytes
+     */
+    private static int maxEventSize()
+    {
+        int size = "event: snapshot\ndata: {}\n\n".length();
+        for (Sensor sensor : SENSORS)
+        {
+            size += sensor.name().length() + 4 + AsciiWriter.MAX_VALUE_LENGTH; //the quotes, colon and comma
+        }
+
+        return size;
+    }
+
+    /**
+     * Encodes the latest values of some Sensors as an event, e.g. event: delta\ndata: {"FPS":144}\n\n
+     *
+     * @param buffer The buffer to encode into, of at least maxEventSize() bytes
+     * @param type The type of event
+     * @param sensorMask A bit for the ordinal of each Sensor to encode
+     * @return The length of the event
+     */
+    private static int encode(byte[] buffer, String type, long sensorMask)
+    {
+        int position = writeAscii(buffer, 0, "event: ");
+        position = writeAscii(buffer, position, type);
+        position = writeAscii(buffer, position, "\ndata: {");
+
+        boolean first = true;
+        for (Sensor sensor : SENSORS)
+        {
+            if ((sensorMask & 1L << sensor.ordinal()) == 0)
+            {
+                continue;
+            }
+
+            if (!first)
+            {
+                buffer[position++] = ',';
+            }
+
+            first = false;
+            buffer[position++] = '"';
+            position = writeAscii(buffer, position, sensor.name());
+            buffer[position++] = '"';
+            buffer[position++] = ':';
+
+            //JSON has no NaN or infinity
+            double value = sensor.getData();
+            position = Double.isFinite(value) ? AsciiWriter.writeValue(buffer, position, value)
+                                              : writeAscii(buffer, position, "null");
+        }
+
+        return writeAscii(buffer, position, "}\n\n");
+    }
+
+    /**
+     * Writes a string of ASCII characters.
+     *
+     * @param buffer The buffer to write to
+     * @param position The index to write at
+     * @param text The text, which must be ASCII
+     * @return The index after the last byte written
+     */
+    private static int writeAscii(byte[] buffer, int position, String text)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            buffer[position++] = (byte)text.charAt(i);
+        }
+
+        return position;
+    }
+
+    /**
+     * Streams events to a client until it disconnects.
+     *
+     * @param exchange The request
+     */
+    private void handleEvents(HttpExchange exchange)
+    {
+        try (exchange)
+        {
+            if (!exchange.getRequestURI().getPath().equals("/events"))
+            {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            if (this.allowAnyOrigin)
+            {
+                exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*"); //allow dashboards served from elsewhere
+            }
+            exchange.sendResponseHeaders(200, 0);
+
+            stream(exchange.getResponseBody());
+        }
+        catch (IOException _)
+        {
+            //the client disconnected
+        }
+        catch (InterruptedException _)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends a snapshot of every Sensor, then each delta until the stream fails.
+     *
+     * @param body The stream to the client
+     * @throws IOException If the client disconnected
+     * @throws InterruptedException If interrupted while waiting for the next delta
+     */
+    void stream(OutputStream body) throws IOException, InterruptedException
+    {
+        //queue deltas before taking the snapshot, so that no change is missed between them
+        Client client = new Client(new ArrayBlockingQueue<>(this.clientQueueSize));
+        this.clients.add(client);
+        try
+        {
+            byte[] buffer = new byte[this.encodeBuffer.length]; //encodes this client's snapshot
+            body.write(buffer, 0, encode(buffer, "snapshot", ALL_SENSORS));
+            body.flush();
+
+            while (true)
+            {
+                Delta delta = client.queue().poll(KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+                body.write(delta == null ? KEEP_ALIVE : delta.event());
+                body.flush();
+            }
+        }
+        finally
+        {
+            this.clients.remove(client);
+        }
+    }
+
+    /**
+     * Stops streaming, closing all streams.
+     */
+    @Override
+    public void close()
+    {
+        this.publisher.shutdownNow();
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,254 @@
+package src.source;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses numbers in place from ASCII bytes without allocating.
+ *
+ * Numbers may be parsed from either a byte array or a ByteBuffer (including direct buffers) using absolute indices, leaving
+ * the buffer's position untouched. Both are parsed by the same loops, reading each byte from whichever was given.
+ */
+public final class AsciiParser
+{
+    //exactly representable powers of ten, for correctly rounded conversions of short decimals
+    private static final double[] POWERS_OF_TEN =
+    {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    //the largest number of significant digits that fits in a long without overflowing
+    private static final int MAX_DIGITS = 18;
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private AsciiParser() {}
+
+    /**
+     * Parses a non-negative decimal integer.
+     *
+     * @param data The bytes to parse
+     * @param from The index of the first byte, inclusive
+     * @param to The index of the last byte, exclusive
+     * @return The integer, or -1 if the bytes are not a valid non-negative integer
+     */
+    public static int parseInt(byte[] data, int from, int to)
+    {
+        return parseInt(data, null, from, to);
+    }
+
+    /**
+     * Parses a non-negative decimal integer.
+     *
+     * @param data The bytes to parse
+     * @param from The index of the first byte, inclusive
+     * @param to The index of the last byte, exclusive
+     * @return The integer, or -1 if the bytes are not a valid non-negative integer
+     */
+    public static int parseInt(ByteBuffer data, int from, int to)
+    {
+        if (data.hasArray())
+        {
+            return parseInt(data.array(), null, data.arrayOffset() + from, data.arrayOffset() + to);
+        }
+
+        return parseInt(null, data, from, to);
+    }
+
+    /**
+     * Parses a decimal number with an optional sign, fraction and exponent, e.g. "-12.5" or "1.2e3".
+     *
+     * @param data The bytes to parse
+     * @param from The index of the first byte, inclusive
+     * @param to The index of the last byte, exclusive
+     * @return The number, or NaN if the bytes are not a valid number
+     */
+    public static double parseDouble(byte[] data, int from, int to)
+    {
+        return parseDouble(data, null, from, to);
+    }
+
+    /**
+     * Parses a decimal number with an optional sign, fraction and exponent, e.g. "-12.5" or "1.2e3".
+     *
+     * @param data The bytes to parse
+     * @param from The index of the first byte, inclusive
+     * @param to The index of the last byte, exclusive
+     * @return The number, or NaN if the bytes are not a valid number
+     */
+    public static double parseDouble(ByteBuffer data, int from, int to)
+    {
+        if (data.hasArray())
+        {
+            return parseDouble(data.array(), null, data.arrayOffset() + from, data.arrayOffset() + to);
+        }
+
+        return parseDouble(null, data, from, to);
+    }
+
+    /**
+     * Parses a non-negative decimal integer from either a byte array or a ByteBuffer.
+     *
+     * @param array The bytes to parse, or null to parse the buffer
+     * @param buffer The bytes to parse if the array is null
+     * @param from The index of the first byte, inclusive
+     * @param to The index of the last byte, exclusive
+     * @return The integer, or -1 if the bytes are not a valid non-negative integer
+     */
+    private static int parseInt(byte[] array, ByteBuffer buffer, int from, int to)
+    {
+        if (from >= to || to - from > 9)
+        {
+            return -1;
+        }
+
+        int value = 0;
+        for (int i = from; i < to; i++)
+        {
+            int digit = byteAt(array, buffer, i) - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return -1;
+            }
+
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    /**
+     * Parses a decimal number with an optional sign, fraction and exponent from either a byte array or a ByteBuffer.
+     *
+     * @param array The bytes to parse, or null to parse the buffer
+     * @param buffer The bytes to parse if the array is null
+     * @param from The index of the first byte, inclusive
+     * @param to The index of the last byte, exclusive
+     * @return The number, or NaN if the bytes are not a valid number
+     */
+    private static double parseDouble(byte[] array, ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (byteAt(array, buffer, i) == '-' || byteAt(array, buffer, i) == '+'))
+        {
+            negative = byteAt(array, buffer, i++) == '-';
+        }
+
+        //accumulate the significant digits, tracking the decimal exponent
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        boolean fraction = false;
+
+        for (; i < to; i++)
+        {
+            byte b = byteAt(array, buffer, i);
+            if (b == '.' && !fraction)
+            {
+                fraction = true;
+                continue;
+            }
+
+            int digit = b - '0';
+            if (digit < 0 || digit > 9)
+            {
+                break;
+            }
+
+            digits++;
+            if (significantDigits < MAX_DIGITS)
+            {
+                if (mantissa != 0 || digit != 0)
+                {
+                    significantDigits++;
+                }
+
+                mantissa = mantissa * 10 + digit;
+                if (fraction)
+                {
+                    exponent--;
+                }
+            }
+            else if (!fraction)
+            {
+                exponent++; //drop digits beyond the precision of a long
+            }
+        }
+
+        if (digits == 0)
+        {
+            return Double.NaN;
+        }
+
+        //parse the exponent
+        if (i < to && (byteAt(array, buffer, i) == 'e' || byteAt(array, buffer, i) == 'E'))
+        {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (byteAt(array, buffer, i) == '-' || byteAt(array, buffer, i) == '+'))
+            {
+                negativeExponent = byteAt(array, buffer, i++) == '-';
+            }
+
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < to && byteAt(array, buffer, i) >= '0' && byteAt(array, buffer, i) <= '9'; i++)
+            {
+                explicitExponent = Math.min(explicitExponent * 10 + (byteAt(array, buffer, i) - '0'), 10_000);
+            }
+
+            if (i == exponentStart)
+            {
+                return Double.NaN;
+            }
+
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        return i == to ? toDouble(mantissa, exponent, negative) : Double.NaN;
+    }
+
+    /**
+     * Returns a byte from either a byte array or a ByteBuffer. The source never changes within a parse, so the branch is
+     * always predicted.
+     *
+     * @param array The bytes, or null to read the buffer
+     * @param buffer The bytes if the array is null
+     * @param index The index of the byte
+     * @return The byte
+     */
+    private static byte byteAt(byte[] array, ByteBuffer buffer, int index)
+    {
+        return array != null ? array[index] : buffer.get(index);
+    }
+
+    /**
+     * Returns the value of a parsed decimal number.
+     *
+     * @param mantissa The significant digits
+     * @param exponent The power of ten the significant digits are multiplied by
+     * @param negative Whether the number is negative
+     * @return The number
+     */
+    private static double toDouble(long mantissa, int exponent, boolean negative)
+    {
+        double value = mantissa;
+        if (exponent != 0)
+        {
+            //fast path: both the mantissa and the power of ten are exact, so a single operation is correctly rounded
+            if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22)
+            {
+                value = exponent > 0 ? value * POWERS_OF_TEN[exponent] : value / POWERS_OF_TEN[-exponent];
+            }
+            else
+            {
+                value *= Math.pow(10, exponent);
+            }
+        }
+
+        return negative ? -value : value;
+    }
+}
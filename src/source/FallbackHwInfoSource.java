@@ -0,0 +1,87 @@
+package src.source;
+
+import static forge.Logger.logWarning;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Polls a primary HwInfoSource, falling back to a secondary HwInfoSource when the primary fails.
+ *
+ * After too many consecutive failures the primary source is closed and only the fallback source is polled, but the primary
+ * is retried after the retry interval, doubling after each failed retry up to MAX_RETRY_INTERVAL. The primary is used again
+ * as soon as a retry succeeds.
+ */
+public final class FallbackHwInfoSource implements HwInfoSource
+{
+    //the longest the primary source is left unused between retries
+    public static final Duration MAX_RETRY_INTERVAL = Duration.ofMinutes(30);
+
+    private final HwInfoSource primary; //the preferred source
+    private final HwInfoSource fallback; //the source to use if the primary source fails
+    private final int maxFailures; //the number of consecutive failures before falling back to the fallback source
+    private final long retryIntervalNanos; //the time before first retrying the primary source after falling back
+    private int failures; //the current number of consecutive failures of the primary source, including failed retries
+    private long nextRetry; //the earliest time to retry the primary source once fallen back, from System.nanoTime()
+
+    /**
+     * Creates a new FallbackHwInfoSource.
+     *
+     * @param primary The preferred source
+     * @param fallback The source to use if the primary source fails
+     * @param maxFailures The number of consecutive failures before falling back to the fallback source
+     * @param retryInterval The time before first retrying the primary source after falling back
+     */
+    public FallbackHwInfoSource(HwInfoSource primary, HwInfoSource fallback, int maxFailures, Duration retryInterval)
+    {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.maxFailures = maxFailures;
+        this.retryIntervalNanos = retryInterval.toNanos();
+    }
+
+    @Override
+    public int poll(ReusableBuffer output) throws IOException, InterruptedException
+    {
+        if (this.failures < this.maxFailures || System.nanoTime() - this.nextRetry >= 0)
+        {
+            try
+            {
+                int exitCode = this.primary.poll(output);
+                if (this.failures >= this.maxFailures)
+                {
+                    logWarning("The primary HwInfo source recovered after " + this.failures + " consecutive failures");
+                }
+
+                this.failures = 0;
+                return exitCode;
+            }
+            catch (IOException e)
+            {
+                if (++this.failures >= this.maxFailures)
+                {
+                    //each failed retry doubles the time until the next
+                    int failedRetries = this.failures - this.maxFailures;
+                    long backoff = Math.min(MAX_RETRY_INTERVAL.toNanos(), this.retryIntervalNanos << Math.min(failedRetries, 20));
+                    this.nextRetry = System.nanoTime() + backoff;
+                    this.primary.close();
+
+                    if (failedRetries == 0)
+                    {
+                        logWarning("Falling back from the primary HwInfo source after " + this.failures +
+                                   " consecutive failures, retrying it periodically: " + e);
+                    }
+                }
+            }
+        }
+
+        return this.fallback.poll(output);
+    }
+
+    @Override
+    public void close()
+    {
+        this.primary.close();
+        this.fallback.close();
+    }
+}
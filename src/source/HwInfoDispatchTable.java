@@ -0,0 +1,124 @@
+package src.source;
+
+import static forge.Logger.logWarning;
+
+import src.Sensor;
+import src.Unit;
+
+/**
+ * Dispatches each value HwInfo exports to the Sensor with the same HwInfo label (see Sensor.hwInfoLabel()).
+ *
+ * The table is built from HwInfo's `Label` entries and only rebuilt when the set of exported values changes, so dispatching a
+ * value is a single array lookup regardless of the order values are exported in HwInfo.
+ */
+public final class HwInfoDispatchTable implements HwInfoParser.ValueConsumer
+{
+    private long layoutHash; //identifies the layout of the output this table was built from
+    private boolean built; //whether this table has been built at least once
+    private Sensor[] sensors = new Sensor[0]; //the Sensor for each HwInfo index, or null if unused
+    private double[] scales = new double[0]; //the multiplier converting each HwInfo index to its Sensor's unit
+    private long timestampMillis; //the time the values being dispatched were exported
+
+    /**
+     * Rebuilds this table from the given output if the set of values HwInfo exports has changed since the last build. The
+     * values dispatched from the output were exported now.
+     *
+     * @param data The output HwInfo exported
+     * @param length The number of valid bytes of output
+     */
+    public void update(byte[] data, int length)
+    {
+        update(data, length, System.currentTimeMillis());
+    }
+
+    /**
+     * Rebuilds this table from the given output if the set of values HwInfo exports has changed since the last build.
+     *
+     * @param data The output HwInfo exported
+     * @param length The number of valid bytes of output
+     * @param timestampMillis The time the output was exported, in milliseconds since the epoch, which each value dispatched
+     *                        from it is set with
+     */
+    public void update(byte[] data, int length, long timestampMillis)
+    {
+        this.timestampMillis = timestampMillis;
+        long hash = HwInfoParser.layoutHash(data, length);
+        if (this.built && hash == this.layoutHash)
+        {
+            return;
+        }
+
+        String[] labels = HwInfoParser.parseLabels(data, length);
+        Sensor[] newSensors = new Sensor[labels.length];
+        double[] newScales = new double[labels.length];
+
+        for (Sensor sensor : Sensor.values())
+        {
+            if (sensor.hwInfoLabel() == null)
+            {
+                continue;
+            }
+
+            int index = indexOf(labels, sensor.hwInfoLabel());
+            if (index < 0)
+            {
+                //don't warn about an empty table, HwInfo may still be starting up
+                if (labels.length > 0)
+                {
+                    logWarning("No HwInfo value found with the label \"" + sensor.hwInfoLabel() + "\" for " + sensor.name());
+                }
+
+                continue;
+            }
+
+            newSensors[index] = sensor;
+            newScales[index] = scale(sensor);
+        }
+
+        this.sensors = newSensors;
+        this.scales = newScales;
+        this.layoutHash = hash;
+        this.built = labels.length > 0;
+    }
+
+    @Override
+    public void accept(int index, double value)
+    {
+        if (index < this.sensors.length && this.sensors[index] != null)
+        {
+            this.sensors[index].set(value * this.scales[index], this.timestampMillis);
+        }
+    }
+
+    /**
+     * Returns the multiplier converting a HwInfo value to the given Sensor's unit.
+     *
+     * @param sensor The Sensor
+     * @return The multiplier
+     */
+    public static double scale(Sensor sensor)
+    {
+        //HwInfo reports network rates in KB/s, convert to Mb/s
+        return sensor.unit() == Unit.MEGABITS_PER_SECOND ? 0.008 : 1;
+    }
+
+    /**
+     * Returns the index of the given label.
+     *
+     * @param labels The label at each index
+     * @param label The label to find
+     * @return The first index with the label, or -1 if not found
+     */
+    private static int indexOf(String[] labels, String label)
+    {
+        for (int i = 0; i < labels.length; i++)
+        {
+            if (label.equals(labels[i]))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
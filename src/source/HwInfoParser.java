@@ -0,0 +1,267 @@
+package src.source;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses the entries out of HwInfo's registry output in place, without allocating.
+ *
+ * Each entry is a line of the form "    <Name><index>    REG_SZ    <value>", for example:
+ *      Sensor0      REG_SZ    System: ASUS ROG STRIX X670E-E GAMING WIFI
+ *      Label0       REG_SZ    Physical Memory Load
+ *      ValueRaw0    REG_SZ    45.2
+ */
+public final class HwInfoParser
+{
+    private static final byte[] VALUE_RAW = {'V', 'a', 'l', 'u', 'e', 'R', 'a', 'w'};
+    private static final byte[] LABEL = {'L', 'a', 'b', 'e', 'l'};
+    private static final byte[] SENSOR = {'S', 'e', 'n', 's', 'o', 'r'};
+    public static final int MAX_ENTRIES = 1024; //far more values than HwInfo exports, bounds the indices trusted from output
+
+    //FNV-1a constants for hashing the layout of the output
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Receives each value parsed from HwInfo's output.
+     */
+    @FunctionalInterface
+    public interface ValueConsumer
+    {
+        /**
+         * Accepts a single value.
+         *
+         * @param index The index HwInfo exported the value at
+         * @param value The raw value
+         */
+        void accept(int index, double value);
+    }
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private HwInfoParser() {}
+
+    /**
+     * Parses all `ValueRaw` entries from the given output. Entries with an index of MAX_ENTRIES or more are skipped.
+     *
+     * @param data The output to parse
+     * @param length The number of valid bytes of output
+     * @param consumer Receives each parsed value
+     * @return The number of values parsed
+     */
+    public static int parse(byte[] data, int length, ValueConsumer consumer)
+    {
+        int count = 0;
+        for (int lineStart = 0, lineEnd; lineStart < length; lineStart = lineEnd + 1)
+        {
+            lineEnd = lineEnd(data, lineStart, length);
+            int indexStart = indexStart(data, lineStart, lineEnd, VALUE_RAW);
+            if (indexStart < 0)
+            {
+                continue;
+            }
+
+            int indexEnd = skipToken(data, indexStart, lineEnd);
+            int index = AsciiParser.parseInt(data, indexStart, indexEnd);
+
+            int valueStart = valueStart(data, indexEnd, lineEnd);
+            double value = AsciiParser.parseDouble(data, valueStart, skipToken(data, valueStart, lineEnd));
+
+            if (index >= 0 && index < MAX_ENTRIES && !Double.isNaN(value))
+            {
+                consumer.accept(index, value);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns a hash of every `Label` and `Sensor` entry in the given output. The hash changes when the set of values exported
+     * by HwInfo changes, but not when only the values themselves change.
+     *
+     * @param data The output to hash
+     * @param length The number of valid bytes of output
+     * @return The layout hash
+     */
+    public static long layoutHash(byte[] data, int length)
+    {
+        long hash = FNV_OFFSET_BASIS;
+        for (int lineStart = 0, lineEnd; lineStart < length; lineStart = lineEnd + 1)
+        {
+            lineEnd = lineEnd(data, lineStart, length);
+            if (indexStart(data, lineStart, lineEnd, LABEL) < 0 && indexStart(data, lineStart, lineEnd, SENSOR) < 0)
+            {
+                continue;
+            }
+
+            for (int i = lineStart; i < lineEnd; i++)
+            {
+                hash = (hash ^ data[i]) * FNV_PRIME;
+            }
+
+            hash = (hash ^ '\n') * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Parses all `Label` entries from the given output. Entries with an index of MAX_ENTRIES or more are skipped, so a
+     * corrupt index can't size the array returned.
+     *
+     * This allocates and should only be used when the layout of the output changes.
+     *
+     * @param data The output to parse
+     * @param length The number of valid bytes of output
+     * @return The label at each index, with null for any index without a label
+     */
+    public static String[] parseLabels(byte[] data, int length)
+    {
+        String[] labels = new String[0];
+        for (int lineStart = 0, lineEnd; lineStart < length; lineStart = lineEnd + 1)
+        {
+            lineEnd = lineEnd(data, lineStart, length);
+            int indexStart = indexStart(data, lineStart, lineEnd, LABEL);
+            if (indexStart < 0)
+            {
+                continue;
+            }
+
+            int indexEnd = skipToken(data, indexStart, lineEnd);
+            int index = AsciiParser.parseInt(data, indexStart, indexEnd);
+            if (index < 0 || index >= MAX_ENTRIES)
+            {
+                continue;
+            }
+
+            //labels may contain spaces, so the label is the remainder of the line
+            int valueStart = valueStart(data, indexEnd, lineEnd);
+            int valueEnd = lineEnd;
+            while (valueEnd > valueStart && isSpace(data[valueEnd - 1]))
+            {
+                valueEnd--;
+            }
+
+            if (index >= labels.length)
+            {
+                labels = Arrays.copyOf(labels, index + 1);
+            }
+
+            labels[index] = new String(data, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1);
+        }
+
+        return labels;
+    }
+
+    /**
+     * Returns the index of the end of the line starting at the given index.
+     *
+     * @param data The output being parsed
+     * @param from The index of the start of the line
+     * @param length The number of valid bytes of output
+     * @return The index of the line's newline, or length if it is the last line
+     */
+    private static int lineEnd(byte[] data, int from, int length)
+    {
+        while (from < length && data[from] != '\n')
+        {
+            from++;
+        }
+
+        return from;
+    }
+
+    /**
+     * Returns the index of the entry index on the given line if the line is an entry with the given name.
+     *
+     * @param data The output being parsed
+     * @param from The index of the start of the line, inclusive
+     * @param to The index of the end of the line, exclusive
+     * @param name The name of the entry, e.g. "ValueRaw"
+     * @return The index of the first digit of the entry index, or -1 if the line is not an entry with the given name
+     */
+    private static int indexStart(byte[] data, int from, int to, byte[] name)
+    {
+        int i = skipSpaces(data, from, to);
+        if (to - i <= name.length)
+        {
+            return -1;
+        }
+
+        for (int j = 0; j < name.length; j++)
+        {
+            if (data[i + j] != name[j])
+            {
+                return -1;
+            }
+        }
+
+        //the name must be immediately followed by the index, which excludes e.g. "ValueRaw" when looking for "Value"
+        byte next = data[i + name.length];
+        return next >= '0' && next <= '9' ? i + name.length : -1;
+    }
+
+    /**
+     * Returns the index of an entry's value by skipping the entry's type, e.g. "REG_SZ".
+     *
+     * @param data The output being parsed
+     * @param indexEnd The index of the end of the entry's index
+     * @param to The index of the end of the line, exclusive
+     * @return The index of the start of the entry's value
+     */
+    private static int valueStart(byte[] data, int indexEnd, int to)
+    {
+        int typeStart = skipSpaces(data, indexEnd, to);
+        return skipSpaces(data, skipToken(data, typeStart, to), to);
+    }
+
+    /**
+     * Returns the index of the first non-whitespace byte at or after the given index.
+     *
+     * @param data The output being parsed
+     * @param from The index to start at, inclusive
+     * @param to The index to stop at, exclusive
+     * @return The index of the first non-whitespace byte, or to if there is none
+     */
+    private static int skipSpaces(byte[] data, int from, int to)
+    {
+        while (from < to && isSpace(data[from]))
+        {
+            from++;
+        }
+
+        return from;
+    }
+
+    /**
+     * Returns the index of the first whitespace byte at or after the given index.
+     *
+     * @param data The output being parsed
+     * @param from The index to start at, inclusive
+     * @param to The index to stop at, exclusive
+     * @return The index of the first whitespace byte, or to if there is none
+     */
+    private static int skipToken(byte[] data, int from, int to)
+    {
+        while (from < to && !isSpace(data[from]))
+        {
+            from++;
+        }
+
+        return from;
+    }
+
+    /**
+     * Returns whether the given byte is whitespace within a line.
+     *
+     * @param b The byte
+     * @return True if the byte is whitespace
+     */
+    private static boolean isSpace(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,509 @@
+package src.source;
+
+import static forge.Logger.logWarning;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import src.Sensor;
+
+/**
+ * Reads HwInfo values in place from HwInfo's shared memory block (the HWiNFO_SENS_SM2 layout).
+ *
+ * This is much cheaper than querying the registry, so it can be polled at sub-second rates. HwInfo must have "Shared Memory
+ * Support" enabled in its settings.
+ *
+ * Layout of the block (all values little-endian and packed):
+ *      • Header: signature, version, revision, poll time, then the offset, element size and element count of the sensor
+ *        section followed by the same three values for the reading section
+ *      • Reading elements: type, sensor index, reading ID, original label, user label, unit, then the value, min, max and
+ *        average as doubles
+ *
+ * Readings are matched to Sensors by their HwInfo label (see Sensor.hwInfoLabel()). The match is computed once per layout of
+ * the block, after which each poll only reads the matched values directly out of the mapping.
+ */
+public final class HwInfoSharedMemorySource implements Closeable
+{
+    //the name of the shared memory block HwInfo publishes
+    public static final String SHARED_MEMORY_NAME = "Global\\HWiNFO_SENS_SM2";
+
+    //header layout
+    private static final int SIGNATURE = 0x53695748; //"HWiS" when HwInfo is active
+    private static final int HEADER_SIZE = 44;
+    private static final int SIGNATURE_OFFSET = 0;
+    private static final int READING_SECTION_OFFSET = 32;
+    private static final int READING_SIZE_OFFSET = 36;
+    private static final int READING_COUNT_OFFSET = 40;
+
+    //reading element layout
+    private static final int LABEL_LENGTH = 128;
+    private static final int LABEL_ORIGINAL_OFFSET = 12;
+    private static final int LABEL_USER_OFFSET = LABEL_ORIGINAL_OFFSET + LABEL_LENGTH;
+    private static final int VALUE_OFFSET = LABEL_USER_OFFSET + LABEL_LENGTH + 16; //skips the unit
+    private static final int MIN_READING_SIZE = VALUE_OFFSET + Double.BYTES;
+
+    private final Mapper mapper; //maps the shared memory block
+    private ByteBuffer block; //the mapped shared memory block, or null if not mapped
+    private int layoutHash; //identifies the layout the readings were matched against
+    private int[] valueOffsets = new int[0]; //the offset of each matched reading's value within the block
+    private Sensor[] sensors = new Sensor[0]; //the Sensor for each matched reading
+    private double[] scales = new double[0]; //the multiplier converting each matched reading to its Sensor's unit
+    private double[] values = new double[0]; //the value of each matched reading read by the last poll
+    private SourceRecorder recorder; //records the block and the values read from it, or null if not recording
+
+    /**
+     * Creates a new HwInfoSharedMemorySource.
+     *
+     * @param mapper Maps the shared memory block
+     */
+    private HwInfoSharedMemorySource(Mapper mapper)
+    {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Creates a source which reads the shared memory block published by a running HwInfo instance.
+     *
+     * @return The HwInfoSharedMemorySource
+     */
+    public static HwInfoSharedMemorySource openNamed()
+    {
+        return new HwInfoSharedMemorySource(new NamedMapper(SHARED_MEMORY_NAME));
+    }
+
+    /**
+     * Creates a source which reads a recorded dump of the shared memory block from a file.
+     *
+     * @param path The path to the recorded dump
+     * @return The HwInfoSharedMemorySource
+     */
+    public static HwInfoSharedMemorySource openFile(Path path)
+    {
+        return new HwInfoSharedMemorySource(new FileMapper(path));
+    }
+
+    /**
+     * Creates a source which reads a block held in memory, e.g. one replayed by a SourceReplayer. The block may be changed
+     * between polls.
+     *
+     * @param block The block
+     * @return The HwInfoSharedMemorySource
+     */
+    public static HwInfoSharedMemorySource openBuffer(ByteBuffer block)
+    {
+        return new HwInfoSharedMemorySource(new BufferMapper(block));
+    }
+
+    /**
+     * Records the block and the values read from it from now on.
+     *
+     * @param recorder Records the block and values
+     */
+    public void record(SourceRecorder recorder)
+    {
+        this.recorder = recorder;
+        this.layoutHash = 0; //record the block on the next poll
+    }
+
+    /**
+     * Reads the current HwInfo values and sets each matched Sensor.
+     *
+     * @throws IOException If the shared memory block is unavailable or malformed
+     */
+    public void poll() throws IOException
+    {
+        poll(System.currentTimeMillis());
+    }
+
+    /**
+     * Reads the HwInfo values and sets each matched Sensor.
+     *
+     * @param timestampMillis The time the values were read, in milliseconds since the epoch
+     * @throws IOException If the shared memory block is unavailable or malformed
+     */
+    public void poll(long timestampMillis) throws IOException
+    {
+        ByteBuffer buffer = map();
+
+        //HwInfo may have exited, or may have reallocated the block to add readings
+        if (buffer.getInt(SIGNATURE_OFFSET) != SIGNATURE || requiredSize(buffer) > buffer.capacity())
+        {
+            close();
+            buffer = map();
+            if (buffer.getInt(SIGNATURE_OFFSET) != SIGNATURE)
+            {
+                close();
+                throw new IOException("HwInfo shared memory is inactive");
+            }
+        }
+
+        if (layoutHash(buffer) != this.layoutHash)
+        {
+            matchReadings(buffer);
+            if (this.recorder != null)
+            {
+                this.recorder.recordHwInfoSharedMemory(buffer, (int)requiredSize(buffer));
+            }
+        }
+
+        //read each matched value in place, setting every Sensor each poll so that its history has a sample per poll even while
+        //the value holds steady
+        for (int i = 0; i < this.valueOffsets.length; i++)
+        {
+            this.values[i] = buffer.getDouble(this.valueOffsets[i]);
+            this.sensors[i].set(this.values[i] * this.scales[i], timestampMillis);
+        }
+
+        if (this.recorder != null)
+        {
+            this.recorder.recordHwInfoSharedMemoryValues(this.valueOffsets, this.values);
+        }
+    }
+
+    /**
+     * Returns the shared memory block, mapping it if necessary.
+     *
+     * @return The mapped block
+     * @throws IOException If the block could not be mapped
+     */
+    private ByteBuffer map() throws IOException
+    {
+        if (this.block == null)
+        {
+            ByteBuffer buffer = this.mapper.map().order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.capacity() < HEADER_SIZE || requiredSize(buffer) > buffer.capacity())
+            {
+                this.mapper.unmap();
+                throw new IOException("HwInfo shared memory is truncated");
+            }
+
+            this.block = buffer;
+        }
+
+        return this.block;
+    }
+
+    /**
+     * Matches each reading in the block to the Sensor with the same HwInfo label.
+     *
+     * @param buffer The mapped block
+     * @throws IOException If the readings are malformed
+     */
+    private void matchReadings(ByteBuffer buffer) throws IOException
+    {
+        int sectionOffset = buffer.getInt(READING_SECTION_OFFSET);
+        int readingSize = buffer.getInt(READING_SIZE_OFFSET);
+        int readingCount = buffer.getInt(READING_COUNT_OFFSET);
+        if (readingSize < MIN_READING_SIZE)
+        {
+            throw new IOException("Unsupported HwInfo shared memory reading size: " + readingSize);
+        }
+
+        int[] offsets = new int[Sensor.values().length];
+        Sensor[] matches = new Sensor[offsets.length];
+        int count = 0;
+
+        for (Sensor sensor : Sensor.values())
+        {
+            if (sensor.hwInfoLabel() == null)
+            {
+                continue;
+            }
+
+            //prefer a label the user has set within HwInfo over the reading's original label
+            int reading = findReading(buffer, sectionOffset, readingSize, readingCount, LABEL_USER_OFFSET, sensor.hwInfoLabel());
+            if (reading < 0)
+            {
+                reading = findReading(buffer, sectionOffset, readingSize, readingCount, LABEL_ORIGINAL_OFFSET, sensor.hwInfoLabel());
+            }
+
+            if (reading < 0)
+            {
+                logWarning("No HwInfo shared memory reading found with the label \"" + sensor.hwInfoLabel() + "\" for " +
+                           sensor.name());
+                continue;
+            }
+
+            offsets[count] = sectionOffset + reading * readingSize + VALUE_OFFSET;
+            matches[count++] = sensor;
+        }
+
+        this.valueOffsets = Arrays.copyOf(offsets, count);
+        this.sensors = Arrays.copyOf(matches, count);
+        this.scales = new double[count];
+        this.values = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            this.scales[i] = HwInfoDispatchTable.scale(this.sensors[i]);
+        }
+
+        this.layoutHash = layoutHash(buffer);
+    }
+
+    /**
+     * Finds the index of the reading with the given label.
+     *
+     * @param buffer The mapped block
+     * @param sectionOffset The offset of the reading section
+     * @param readingSize The size of each reading element
+     * @param readingCount The number of reading elements
+     * @param labelOffset The offset of the label to compare within each reading element
+     * @param label The label to find
+     * @return The index of the reading, or -1 if there is no reading with the label
+     */
+    private static int findReading(ByteBuffer buffer, int sectionOffset, int readingSize, int readingCount, int labelOffset,
+                                   String label)
+    {
+        byte[] labelBytes = new byte[LABEL_LENGTH];
+        for (int reading = 0; reading < readingCount; reading++)
+        {
+            buffer.get(sectionOffset + reading * readingSize + labelOffset, labelBytes);
+
+            int length = 0;
+            while (length < LABEL_LENGTH && labelBytes[length] != 0)
+            {
+                length++;
+            }
+
+            if (label.equals(new String(labelBytes, 0, length, StandardCharsets.ISO_8859_1)))
+            {
+                return reading;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns a hash identifying the layout of the reading section, which changes when HwInfo adds or removes readings.
+     *
+     * @param buffer The mapped block
+     * @return The layout hash
+     */
+    private static int layoutHash(ByteBuffer buffer)
+    {
+        int hash = buffer.getInt(READING_SECTION_OFFSET);
+        hash = 31 * hash + buffer.getInt(READING_SIZE_OFFSET);
+        return 31 * hash + buffer.getInt(READING_COUNT_OFFSET);
+    }
+
+    /**
+     * Returns the size the block must be to hold all the readings described by its header.
+     *
+     * @param buffer The mapped block
+     * @return The required size in bytes
+     */
+    private static long requiredSize(ByteBuffer buffer)
+    {
+        return buffer.getInt(READING_SECTION_OFFSET) +
+               (long)buffer.getInt(READING_SIZE_OFFSET) * buffer.getInt(READING_COUNT_OFFSET);
+    }
+
+    @Override
+    public void close()
+    {
+        this.block = null;
+        this.layoutHash = 0;
+        this.mapper.unmap();
+    }
+
+    /**
+     * Maps the shared memory block into a buffer.
+     */
+    private sealed interface Mapper permits BufferMapper, FileMapper, NamedMapper
+    {
+        /**
+         * Maps the shared memory block.
+         *
+         * @return A buffer over the block
+         * @throws IOException If the block could not be mapped
+         */
+        ByteBuffer map() throws IOException;
+
+        /**
+         * Releases the current mapping, if any.
+         */
+        void unmap();
+    }
+
+    /**
+     * Provides a block held in memory.
+     *
+     * @param block The block
+     */
+    private record BufferMapper(ByteBuffer block) implements Mapper
+    {
+        @Override
+        public ByteBuffer map()
+        {
+            return this.block;
+        }
+
+        @Override
+        public void unmap()
+        {
+            //the block is owned by whoever created the source
+        }
+    }
+
+    /**
+     * Maps a recorded dump of the shared memory block from a file.
+     *
+     * @param path The path to the recorded dump
+     */
+    private record FileMapper(Path path) implements Mapper
+    {
+        @Override
+        public ByteBuffer map() throws IOException
+        {
+            try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ))
+            {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        @Override
+        public void unmap()
+        {
+            //the mapping is released when the buffer is garbage collected
+        }
+    }
+
+    /**
+     * Maps a named Windows shared memory block.
+     *
+     * The JDK can only produce a MappedByteBuffer from a file, so the block is opened through kernel32 and wrapped as a
+     * direct ByteBuffer instead.
+     */
+    private static final class NamedMapper implements Mapper
+    {
+        private static final int FILE_MAP_READ = 0x0004;
+
+        private final String name; //the name of the shared memory block
+        private MethodHandle openFileMapping; //kernel32 functions, looked up on first use
+        private MethodHandle mapViewOfFile;
+        private MethodHandle unmapViewOfFile;
+        private MethodHandle closeHandle;
+        private MemorySegment view; //the current view of the block, or null if not mapped
+
+        /**
+         * Creates a new NamedMapper.
+         *
+         * @param name The name of the shared memory block
+         */
+        private NamedMapper(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public ByteBuffer map() throws IOException
+        {
+            unmap();
+            lookupFunctions();
+
+            try (Arena arena = Arena.ofConfined())
+            {
+                byte[] nameBytes = (this.name + '\0').getBytes(StandardCharsets.US_ASCII);
+                MemorySegment nameSegment = arena.allocate(nameBytes.length);
+                MemorySegment.copy(nameBytes, 0, nameSegment, ValueLayout.JAVA_BYTE, 0, nameBytes.length);
+
+                MemorySegment handle = (MemorySegment)this.openFileMapping.invokeExact(FILE_MAP_READ, 0, nameSegment);
+                if (handle.address() == 0)
+                {
+                    throw new IOException("HwInfo shared memory is unavailable: " + this.name);
+                }
+
+                try
+                {
+                    MemorySegment mapped = (MemorySegment)this.mapViewOfFile.invokeExact(handle, FILE_MAP_READ, 0, 0, 0L);
+                    if (mapped.address() == 0)
+                    {
+                        throw new IOException("Unable to map HwInfo shared memory: " + this.name);
+                    }
+
+                    //the view is returned without a size, so size it from the header
+                    ByteBuffer header = mapped.reinterpret(HEADER_SIZE).asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+                    this.view = mapped.reinterpret(Math.max(HEADER_SIZE, requiredSize(header)));
+                    return this.view.asByteBuffer();
+                }
+                finally
+                {
+                    int _ = (int)this.closeHandle.invokeExact(handle);
+                }
+            }
+            catch (IOException e)
+            {
+                throw e;
+            }
+            catch (Throwable t)
+            {
+                throw new IOException("Unable to access HwInfo shared memory", t);
+            }
+        }
+
+        /**
+         * Looks up the kernel32 functions required to map the block.
+         *
+         * @throws IOException If kernel32 is unavailable, i.e. when not running on Windows
+         */
+        private void lookupFunctions() throws IOException
+        {
+            if (this.openFileMapping != null)
+            {
+                return;
+            }
+
+            try
+            {
+                Linker linker = Linker.nativeLinker();
+                SymbolLookup kernel32 = SymbolLookup.libraryLookup("kernel32", Arena.global());
+                this.openFileMapping = linker.downcallHandle(kernel32.find("OpenFileMappingA").orElseThrow(),
+                    FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+                this.mapViewOfFile = linker.downcallHandle(kernel32.find("MapViewOfFile").orElseThrow(),
+                    FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT,
+                                          ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG));
+                this.unmapViewOfFile = linker.downcallHandle(kernel32.find("UnmapViewOfFile").orElseThrow(),
+                    FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+                this.closeHandle = linker.downcallHandle(kernel32.find("CloseHandle").orElseThrow(),
+                    FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+            }
+            catch (IllegalArgumentException | java.util.NoSuchElementException e)
+            {
+                throw new IOException("kernel32 is unavailable", e);
+            }
+        }
+
+        @Override
+        public void unmap()
+        {
+            if (this.view != null)
+            {
+                try
+                {
+                    int _ = (int)this.unmapViewOfFile.invokeExact(this.view);
+                }
+                catch (Throwable t)
+                {
+                    logWarning("Unable to unmap HwInfo shared memory: " + t);
+                }
+
+                this.view = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package src.source;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of the sensor values HwInfo exports to the Windows registry.
+ *
+ * Each poll produces a single snapshot of the exported values, one value per line in the same format as `reg query`, e.g.
+ *      ValueRaw0    REG_SZ    45.2
+ *
+ * Snapshots are written as raw bytes into a buffer reused across polls, so that polling does not allocate in steady state.
+ */
+public interface HwInfoSource extends Closeable
+{
+    /**
+     * Reads a single snapshot of the exported HwInfo values.
+     *
+     * @param output Cleared, then filled with the snapshot
+     * @return The exit code of the query - 0 on success, nonzero otherwise
+     * @throws IOException If the source could not be read
+     * @throws InterruptedException If interrupted while waiting on the source
+     */
+    int poll(ReusableBuffer output) throws IOException, InterruptedException;
+
+    /**
+     * Releases any resources held by this source. The source may be polled again afterwards, reacquiring its resources.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,568 @@
+package src.source;
+
+import static forge.Logger.logError;
+import static forge.Logger.logWarning;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+
+/**
+ * Queries the real-time power usage of TP-Link Kasa smart plugs (e.g. the HS110) over their local protocol.
+ *
+ * About the protocol:
+ *      • Plugs listen on TCP port 9999
+ *      • Each message is a 4-byte big-endian length followed by JSON encrypted with an XOR autokey cipher, where each byte is
+ *        XORed with the previous encrypted byte (starting from 171)
+ *      • The response to {"emeter":{"get_realtime":{}}} contains the current power draw, as "power_mw" in milliwatts on newer
+ *        hardware or as "power" in watts on older hardware
+ *
+ * All plugs are queried concurrently from the polling thread through a single Selector, so no thread is needed per plug.
+ * Connections are kept open between polls. Plugs close idle connections, so a query that fails on a connection kept from a
+ * previous poll is retried once on a new connection. A plug that fails otherwise is retried with exponential backoff, and its
+ * last-known power draw is only used until it expires.
+ */
+public final class KasaClient implements Closeable
+{
+    public static final int PORT = 9999;
+
+    //the encrypted request for the real-time energy usage, which never changes
+    private static final byte[] REALTIME_REQUEST = frame("{\"emeter\":{\"get_realtime\":{}}}");
+
+    //the keys holding the power draw within the response
+    private static final byte[] POWER_MILLIWATTS_KEY = "\"power_mw\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] POWER_WATTS_KEY = "\"power\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int INITIAL_KEY = 171;
+    private static final int MAX_RESPONSE_SIZE = 64 * 1024;
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final LatencyHistogram PARSE_LATENCY = Metrics.histogram("Kasa parse"); //decrypting and parsing responses
+
+    private final Selector selector; //multiplexes the connections to all plugs
+    private final Plug[] plugs; //the state of each plug
+    private final long powerExpiryNanos; //how long the power draw of a plug is used after it last responded
+
+    /**
+     * Creates a new KasaClient for the given plugs.
+     *
+     * @param hosts The host name or IP address of each plug
+     * @param port The port the plugs listen on, normally PORT
+     * @param powerExpiryMillis How long the power draw of a plug is used after it last responded
+     * @throws IOException If the Selector could not be opened
+     */
+    public KasaClient(List<String> hosts, int port, long powerExpiryMillis) throws IOException
+    {
+        this.selector = Selector.open();
+        this.plugs = hosts.stream().map(host -> new Plug(host, port)).toArray(Plug[]::new);
+        this.powerExpiryNanos = TimeUnit.MILLISECONDS.toNanos(powerExpiryMillis);
+    }
+
+    /**
+     * Queries every plug that is not backing off from a previous failure, waiting up to the given timeout for all responses.
+     *
+     * @param timeoutMillis The maximum time to wait for the plugs to respond
+     * @return The number of plugs that responded
+     */
+    public int poll(long timeoutMillis)
+    {
+        long now = System.nanoTime();
+        long deadline = now + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int pending = 0;
+
+        //send a request to every plug that is ready
+        for (Plug plug : this.plugs)
+        {
+            plug.responded = false;
+            if (now - plug.nextAttempt >= 0)
+            {
+                if (plug.begin(this.selector))
+                {
+                    pending++;
+                }
+            }
+        }
+
+        //wait for the responses
+        int responded = 0;
+        try
+        {
+            long remaining;
+            while (pending > 0 && (remaining = deadline - System.nanoTime()) > 0)
+            {
+                this.selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    Plug plug = (Plug)key.attachment();
+                    if (plug.handle(key, this.selector))
+                    {
+                        pending--;
+                        responded += plug.responded ? 1 : 0;
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            logError("Unable to query Kasa smart plugs", e);
+        }
+
+        //any plug still waiting has timed out
+        for (Plug plug : this.plugs)
+        {
+            if (plug.inProgress)
+            {
+                plug.fail("timed out");
+            }
+        }
+
+        return responded;
+    }
+
+    /**
+     * Records the response of every plug from now on, before it is decrypted.
+     *
+     * @param recorder Records the responses
+     */
+    public void record(SourceRecorder recorder)
+    {
+        for (Plug plug : this.plugs)
+        {
+            plug.recorder = recorder;
+        }
+    }
+
+    /**
+     * Handles a recorded response as if the plug had just sent it, instead of querying the plug.
+     *
+     * @param host The host name or IP address of the plug
+     * @param response The response including its length prefix, which is decrypted in place
+     * @param length The length of the response
+     * @return True if the response was from one of this client's plugs and contained its power draw
+     */
+    public boolean replay(String host, byte[] response, int length)
+    {
+        for (Plug plug : this.plugs)
+        {
+            if (plug.host.equals(host) && length >= Integer.BYTES)
+            {
+                plug.responded = false;
+                plug.complete(response, Math.clamp(ByteBuffer.wrap(response).getInt(0), 0, length - Integer.BYTES));
+                return plug.responded;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the combined power draw of all plugs, using the last-known power draw of any plug that did not respond.
+     *
+     * A plug that has not responded within the expiry is left out, as its power draw is no longer known. The total then only
+     * covers the plugs which are still responding.
+     *
+     * @return The combined power draw in watts, or NaN if any plug has never responded or every plug's power draw has expired
+     */
+    public double totalPower()
+    {
+        long now = System.nanoTime();
+        double total = 0;
+        boolean known = false;
+        for (Plug plug : this.plugs)
+        {
+            if (Double.isNaN(plug.power))
+            {
+                return Double.NaN;
+            }
+
+            if (now - plug.powerTime <= this.powerExpiryNanos)
+            {
+                total += plug.power;
+                known = true;
+            }
+        }
+
+        return known ? total : Double.NaN;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        for (Plug plug : this.plugs)
+        {
+            plug.disconnect();
+        }
+
+        this.selector.close();
+    }
+
+    /**
+     * Encrypts and frames a request.
+     *
+     * @param json The request
+     * @return The length-prefixed, encrypted request
+     */
+    private static byte[] frame(String json)
+    {
+        byte[] plain = json.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer framed = ByteBuffer.allocate(Integer.BYTES + plain.length).putInt(plain.length);
+
+        int key = INITIAL_KEY;
+        for (byte b : plain)
+        {
+            key = (b ^ key) & 0xFF;
+            framed.put((byte)key);
+        }
+
+        return framed.array();
+    }
+
+    /**
+     * Decrypts a response in place.
+     *
+     * @param data The encrypted response
+     * @param from The index of the first encrypted byte
+     * @param to The index after the last encrypted byte
+     */
+    private static void decrypt(byte[] data, int from, int to)
+    {
+        int key = INITIAL_KEY;
+        for (int i = from; i < to; i++)
+        {
+            int encrypted = data[i] & 0xFF;
+            data[i] = (byte)(encrypted ^ key);
+            key = encrypted;
+        }
+    }
+
+    /**
+     * Parses the power draw from a decrypted response.
+     *
+     * @param data The decrypted response
+     * @param from The index of the start of the response
+     * @param to The index after the end of the response
+     * @return The power draw in watts, or NaN if the response does not contain the power draw
+     */
+    private static double parsePower(byte[] data, int from, int to)
+    {
+        int index = indexOf(data, from, to, POWER_MILLIWATTS_KEY);
+        if (index >= 0)
+        {
+            return parseNumber(data, index, to) / 1000;
+        }
+
+        index = indexOf(data, from, to, POWER_WATTS_KEY);
+        return index >= 0 ? parseNumber(data, index, to) : Double.NaN;
+    }
+
+    /**
+     * Parses the JSON number starting at the given index.
+     *
+     * @param data The decrypted response
+     * @param from The index of the start of the number
+     * @param to The index after the end of the response
+     * @return The number, or NaN if there is no number at the index
+     */
+    private static double parseNumber(byte[] data, int from, int to)
+    {
+        int end = from;
+        while (end < to && data[end] != ',' && data[end] != '}' && data[end] != ' ')
+        {
+            end++;
+        }
+
+        return AsciiParser.parseDouble(data, from, end);
+    }
+
+    /**
+     * Returns the index immediately after the given key.
+     *
+     * @param data The bytes to search
+     * @param from The index to start searching at
+     * @param to The index to stop searching at
+     * @param key The key to find
+     * @return The index after the key, or -1 if the key is not found
+     */
+    private static int indexOf(byte[] data, int from, int to, byte[] key)
+    {
+        outer:
+        for (int i = from; i <= to - key.length; i++)
+        {
+            for (int j = 0; j < key.length; j++)
+            {
+                if (data[i + j] != key[j])
+                {
+                    continue outer;
+                }
+            }
+
+            return i + key.length;
+        }
+
+        return -1;
+    }
+
+    /**
+     * The connection to and state of a single plug.
+     */
+    private static final class Plug
+    {
+        private final String host; //the host name or IP address of the plug
+        private final int port; //the port the plug listens on
+        private final ByteBuffer request = ByteBuffer.wrap(REALTIME_REQUEST); //the request, rewound for each poll
+        private ByteBuffer response = ByteBuffer.allocate(1024); //the response, reused across polls
+        private SocketChannel channel; //the connection to the plug, or null if disconnected
+        private double power = Double.NaN; //the last-known power draw in watts
+        private long powerTime; //the time the power draw was last known
+        private int failures; //the number of consecutive failures
+        private long nextAttempt = System.nanoTime(); //the earliest time to query the plug again
+        private boolean inProgress; //whether a query is in progress
+        private boolean responded; //whether the plug responded to the current poll
+        private boolean reused; //whether the current query is on a connection kept from a previous query
+        private SourceRecorder recorder; //records each response, or null if not recording
+
+        /**
+         * Creates a new Plug.
+         *
+         * @param host The host name or IP address of the plug
+         * @param port The port the plug listens on
+         */
+        private Plug(String host, int port)
+        {
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * Begins a query, connecting to the plug if not already connected.
+         *
+         * @param selector The Selector to register with
+         * @return True if the query was started
+         */
+        private boolean begin(Selector selector)
+        {
+            try
+            {
+                this.request.rewind();
+                this.response.clear();
+
+                this.reused = this.channel != null && this.channel.isOpen();
+                if (!this.reused)
+                {
+                    this.channel = SocketChannel.open();
+                    this.channel.configureBlocking(false);
+                    boolean connected = this.channel.connect(new InetSocketAddress(this.host, this.port));
+                    this.channel.register(selector, connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, this);
+                }
+                else
+                {
+                    this.channel.keyFor(selector).interestOps(SelectionKey.OP_WRITE);
+                }
+
+                this.inProgress = true;
+                return true;
+            }
+            catch (IOException e)
+            {
+                fail(e.toString());
+                return false;
+            }
+        }
+
+        /**
+         * Handles the readiness of this plug's connection.
+         *
+         * @param key The selected key of the connection
+         * @param selector The Selector the connection is registered with
+         * @return True if the query completed, successfully or not
+         */
+        private boolean handle(SelectionKey key, Selector selector)
+        {
+            try
+            {
+                if (key.isConnectable() && this.channel.finishConnect())
+                {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+
+                if (key.isValid() && key.isWritable())
+                {
+                    this.channel.write(this.request);
+                    if (!this.request.hasRemaining())
+                    {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }
+
+                if (key.isValid() && key.isReadable())
+                {
+                    return read(key, selector);
+                }
+
+                return false;
+            }
+            catch (IOException e)
+            {
+                return retryOrFail(e.toString(), selector);
+            }
+        }
+
+        /**
+         * Retries a failed query once on a new connection if it failed on a connection kept from a previous query, as the plug
+         * may have closed or reset the connection while it was idle. Otherwise, fails the query.
+         *
+         * @param reason The reason the query failed
+         * @param selector The Selector the connection is registered with
+         * @return True if the query completed unsuccessfully, false if it was retried
+         */
+        private boolean retryOrFail(String reason, Selector selector)
+        {
+            disconnect();
+            if (this.reused)
+            {
+                //the retry is on a new connection, so it is never retried again
+                return !begin(selector);
+            }
+
+            fail(reason);
+            return true;
+        }
+
+        /**
+         * Reads the response from the plug.
+         *
+         * @param key The selected key of the connection
+         * @param selector The Selector the connection is registered with
+         * @return True if the query completed, successfully or not
+         * @throws IOException If the connection failed
+         */
+        private boolean read(SelectionKey key, Selector selector) throws IOException
+        {
+            if (this.channel.read(this.response) < 0)
+            {
+                return retryOrFail("connection closed", selector);
+            }
+
+            if (this.response.position() < Integer.BYTES)
+            {
+                return false;
+            }
+
+            int length = this.response.getInt(0);
+            if (length < 0 || length > MAX_RESPONSE_SIZE)
+            {
+                fail("invalid response length " + length);
+                return true;
+            }
+
+            //grow the buffer to fit the whole response
+            if (Integer.BYTES + length > this.response.capacity())
+            {
+                this.response = ByteBuffer.wrap(Arrays.copyOf(this.response.array(), Integer.BYTES + length))
+                                          .position(this.response.position());
+            }
+
+            if (this.response.position() < Integer.BYTES + length)
+            {
+                return false;
+            }
+
+            key.interestOps(0);
+            if (this.recorder != null)
+            {
+                this.recorder.recordKasa(this.host, this.response.array(), Integer.BYTES + length);
+            }
+
+            return complete(this.response.array(), length);
+        }
+
+        /**
+         * Decrypts a complete response and updates the power draw of the plug from it.
+         *
+         * @param data The response, including its length prefix
+         * @param length The length of the response, excluding its length prefix
+         * @return True, as the query completed, successfully or not
+         */
+        private boolean complete(byte[] data, int length)
+        {
+            long start = System.nanoTime();
+            decrypt(data, Integer.BYTES, Integer.BYTES + length);
+            double watts = parsePower(data, Integer.BYTES, Integer.BYTES + length);
+            PARSE_LATENCY.record(System.nanoTime() - start);
+
+            if (Double.isNaN(watts))
+            {
+                fail("response missing power: " + new String(data, Integer.BYTES, length, StandardCharsets.US_ASCII));
+                return true;
+            }
+
+            if (this.failures > 0)
+            {
+                logWarning("Kasa smart plug " + this.host + " recovered after " + this.failures + " failed queries");
+            }
+
+            this.power = watts;
+            this.powerTime = System.nanoTime();
+            this.failures = 0;
+            this.inProgress = false;
+            this.responded = true;
+            return true;
+        }
+
+        /**
+         * Records a failed query, disconnecting and backing off exponentially before the next attempt.
+         *
+         * @param reason The reason the query failed
+         */
+        private void fail(String reason)
+        {
+            disconnect();
+            this.inProgress = false;
+
+            long backoff = Math.min(MAX_BACKOFF_NANOS, MIN_BACKOFF_NANOS << Math.min(this.failures, 16));
+            this.nextAttempt = System.nanoTime() + backoff;
+
+            if (this.failures++ == 0)
+            {
+                logError("Unable to query Kasa smart plug " + this.host + ": " + reason);
+            }
+        }
+
+        /**
+         * Closes the connection to the plug, if open.
+         */
+        private void disconnect()
+        {
+            if (this.channel != null)
+            {
+                try
+                {
+                    this.channel.close();
+                }
+                catch (IOException _)
+                {
+                    //the connection is being discarded regardless
+                }
+
+                this.channel = null;
+            }
+        }
+    }
+}
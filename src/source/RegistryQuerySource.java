@@ -0,0 +1,59 @@
+package src.source;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import src.metrics.ProcessEvent;
+
+/**
+ * Reads HwInfo values by spawning a new `reg query` process for every poll.
+ *
+ * This is simple and robust, but spawning a process each poll is expensive. It is kept as a fallback for when a
+ * StreamingRegistrySource cannot be used.
+ */
+public final class RegistryQuerySource implements HwInfoSource
+{
+    private final String[] command; //the command to query the registry with
+
+    /**
+     * Creates a new RegistryQuerySource which queries the given registry key.
+     *
+     * @param registryKey The registry key HwInfo exports values to
+     */
+    public RegistryQuerySource(String registryKey)
+    {
+        this.command = new String[] {"cmd", "/c", "reg query " + registryKey};
+    }
+
+    @Override
+    public int poll(ReusableBuffer output) throws IOException, InterruptedException
+    {
+        ProcessEvent event = new ProcessEvent();
+        event.begin();
+        Process process = new ProcessBuilder(this.command).redirectErrorStream(true).start();
+
+        output.clear();
+        try (InputStream in = process.getInputStream())
+        {
+            output.readFully(in);
+        }
+
+        int exitCode = process.waitFor();
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.command = String.join(" ", this.command);
+            event.pid = process.pid();
+            event.exitCode = exitCode;
+            event.commit();
+        }
+
+        return exitCode;
+    }
+
+    @Override
+    public void close()
+    {
+        //no resources are held between polls
+    }
+}
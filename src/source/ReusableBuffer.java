@@ -0,0 +1,129 @@
+package src.source;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer that is reused across polls so that reading a source does not allocate once the buffer has grown to
+ * fit the source's output.
+ */
+public final class ReusableBuffer
+{
+    private byte[] data; //the buffered bytes
+    private int length; //the number of valid bytes in the buffer
+
+    /**
+     * Creates a new ReusableBuffer.
+     *
+     * @param initialCapacity The initial capacity in bytes
+     */
+    public ReusableBuffer(int initialCapacity)
+    {
+        this.data = new byte[initialCapacity];
+    }
+
+    /**
+     * Empties this buffer without releasing its storage.
+     */
+    public void clear()
+    {
+        this.length = 0;
+    }
+
+    /**
+     * Reads a single chunk from the given stream into this buffer, growing the buffer if it is full.
+     *
+     * @param in The stream to read from
+     * @return The number of bytes read, or -1 at the end of the stream
+     * @throws IOException If the stream could not be read
+     */
+    public int read(InputStream in) throws IOException
+    {
+        if (this.length == this.data.length)
+        {
+            this.data = Arrays.copyOf(this.data, this.data.length * 2);
+        }
+
+        int read = in.read(this.data, this.length, this.data.length - this.length);
+        if (read > 0)
+        {
+            this.length += read;
+        }
+
+        return read;
+    }
+
+    /**
+     * Reads the given stream into this buffer until the end of the stream.
+     *
+     * @param in The stream to read from
+     * @throws IOException If the stream could not be read
+     */
+    public void readFully(InputStream in) throws IOException
+    {
+        while (read(in) >= 0)
+        {
+            //keep reading until the end of the stream
+        }
+    }
+
+    /**
+     * Reads exactly the given number of bytes from the given stream into this buffer, growing the buffer to fit them.
+     *
+     * @param in The stream to read from
+     * @param count The number of bytes to read
+     * @throws IOException If the stream could not be read or ended before all bytes were read
+     */
+    public void readExactly(InputStream in, int count) throws IOException
+    {
+        if (this.length + count > this.data.length)
+        {
+            this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.length + count));
+        }
+
+        if (in.readNBytes(this.data, this.length, count) < count)
+        {
+            throw new EOFException("Expected " + count + " bytes");
+        }
+
+        this.length += count;
+    }
+
+    /**
+     * Truncates this buffer to the given length.
+     *
+     * @param length The new length, which must not exceed the current length
+     */
+    public void truncate(int length)
+    {
+        this.length = length;
+    }
+
+    /**
+     * Returns the backing array of this buffer. Only the first length() bytes are valid.
+     *
+     * @return The backing array
+     */
+    public byte[] array()
+    {
+        return this.data;
+    }
+
+    /**
+     * Returns the number of valid bytes in this buffer.
+     *
+     * @return The number of valid bytes
+     */
+    public int length()
+    {
+        return this.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String(this.data, 0, this.length);
+    }
+}
@@ -0,0 +1,57 @@
+package src.source;
+
+import java.util.function.DoubleUnaryOperator;
+
+import src.Sensor;
+
+/**
+ * Routes the values a source reports on numbered channels to Sensors.
+ */
+public final class SensorChannelMap
+{
+    private final Sensor[] sensors; //the Sensor for each channel, or null if the channel is unused
+    private final DoubleUnaryOperator conversion; //converts each value to its Sensor's unit
+
+    /**
+     * Creates a new SensorChannelMap.
+     *
+     * @param conversion Converts each value to its Sensor's unit
+     * @param sensors The Sensor for each channel, in channel order starting from channel 0
+     */
+    public SensorChannelMap(DoubleUnaryOperator conversion, Sensor... sensors)
+    {
+        this.conversion = conversion;
+        this.sensors = sensors.clone();
+    }
+
+    /**
+     * Sets the Sensor on the given channel to the given value, measured now.
+     *
+     * @param channel The channel the value was reported on
+     * @param value The value, before conversion
+     * @return True if the channel maps to a Sensor
+     */
+    public boolean set(int channel, double value)
+    {
+        return set(channel, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Sets the Sensor on the given channel to the given value.
+     *
+     * @param channel The channel the value was reported on
+     * @param value The value, before conversion
+     * @param timestampMillis The time the value was measured, in milliseconds since the epoch
+     * @return True if the channel maps to a Sensor
+     */
+    public boolean set(int channel, double value, long timestampMillis)
+    {
+        if (channel < 0 || channel >= this.sensors.length || this.sensors[channel] == null)
+        {
+            return false;
+        }
+
+        this.sensors[channel].set(this.conversion.applyAsDouble(value), timestampMillis);
+        return true;
+    }
+}
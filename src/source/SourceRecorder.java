@@ -0,0 +1,280 @@
+package src.source;
+
+import static forge.Logger.logError;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records the raw input each source of sensor values receives, with the time it was received, so that it can be replayed
+ * later by a SourceReplayer (e.g. on a machine without HwInfo, FanControl or the smart plugs).
+ *
+ * A recording is a single file of big-endian values: the MAGIC and VERSION ints and the time recording started in milliseconds
+ * since the epoch as a long, then one record per input, each starting with its type byte and the nanoseconds since recording
+ * started as a long:
+ *      • HWINFO_REGISTRY: the exit code int, then the length int and bytes of a snapshot from an HwInfoSource
+ *      • DATAGRAM: the port int, then the length int and bytes of a datagram's payload
+ *      • KASA: the plug's host as modified UTF-8, then the length int and bytes of its response, still encrypted
+ *      • HWINFO_SHARED_MEMORY: the length int and bytes of HwInfo's shared memory block, recorded whenever the readings in it
+ *        are matched to Sensors, i.e. on the first poll and whenever HwInfo changes its layout
+ *      • HWINFO_SHARED_MEMORY_VALUES: the count int, then the offset int within the last recorded block and the value double
+ *        of each matched reading read by a poll of the shared memory
+ *
+ * Inputs may be recorded from any thread. Each record is flushed as it is written, so a recording survives the program being
+ * killed. If the file can't be written, the error is logged once and nothing more is recorded.
+ */
+public final class SourceRecorder implements Closeable
+{
+    static final int MAGIC = 0x53505243; //"SPRC"
+    static final int VERSION = 2;
+    static final byte HWINFO_REGISTRY = 1;
+    static final byte DATAGRAM = 2;
+    static final byte KASA = 3;
+    static final byte HWINFO_SHARED_MEMORY = 4;
+    static final byte HWINFO_SHARED_MEMORY_VALUES = 5;
+
+    private final DataOutputStream out; //writes the recording
+    private final long startTime = System.nanoTime(); //the time recording started
+    private final long startMillis = System.currentTimeMillis(); //the time recording started, in milliseconds since the epoch
+    private boolean failed; //whether writing failed, after which nothing is recorded
+
+    /**
+     * Creates a new recording, replacing any existing file.
+     *
+     * @param path The file to record to
+     * @throws IOException If the file could not be created
+     */
+    public SourceRecorder(Path path) throws IOException
+    {
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeLong(this.startMillis);
+        this.out.flush();
+    }
+
+    /**
+     * Returns an HwInfoSource which records each snapshot read from the given source.
+     *
+     * @param source The source to record
+     * @return The recording source
+     */
+    public HwInfoSource recording(HwInfoSource source)
+    {
+        return new HwInfoSource()
+        {
+            @Override
+            public int poll(ReusableBuffer output) throws IOException, InterruptedException
+            {
+                int exitCode = source.poll(output);
+                recordHwInfoRegistry(exitCode, output.array(), output.length());
+                return exitCode;
+            }
+
+            @Override
+            public void close()
+            {
+                source.close();
+            }
+        };
+    }
+
+    /**
+     * Returns a DatagramHandler which records each datagram before passing it to the given handler.
+     *
+     * @param port The port the datagrams are received on
+     * @param handler The handler to record the datagrams of
+     * @return The recording handler
+     */
+    public UdpReceiver.DatagramHandler recording(int port, UdpReceiver.DatagramHandler handler)
+    {
+        return (datagram, receivedMillis) ->
+        {
+            recordDatagram(port, datagram);
+            handler.handle(datagram, receivedMillis);
+        };
+    }
+
+    /**
+     * Records a snapshot read from an HwInfoSource.
+     *
+     * @param exitCode The exit code of the query
+     * @param data The snapshot
+     * @param length The length of the snapshot
+     */
+    private synchronized void recordHwInfoRegistry(int exitCode, byte[] data, int length)
+    {
+        if (this.failed)
+        {
+            return;
+        }
+
+        try
+        {
+            writeHeader(HWINFO_REGISTRY);
+            this.out.writeInt(exitCode);
+            this.out.writeInt(length);
+            this.out.write(data, 0, length);
+            this.out.flush();
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a datagram, leaving its position untouched.
+     *
+     * @param port The port the datagram was received on
+     * @param datagram The datagram's payload, from the buffer's position to its limit
+     */
+    private synchronized void recordDatagram(int port, ByteBuffer datagram)
+    {
+        if (this.failed)
+        {
+            return;
+        }
+
+        try
+        {
+            writeHeader(DATAGRAM);
+            this.out.writeInt(port);
+            this.out.writeInt(datagram.remaining());
+            for (int i = datagram.position(); i < datagram.limit(); i++)
+            {
+                this.out.write(datagram.get(i));
+            }
+
+            this.out.flush();
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the response of a Kasa smart plug, before it is decrypted.
+     *
+     * @param host The host name or IP address of the plug
+     * @param data The response
+     * @param length The length of the response, including its length prefix
+     */
+    synchronized void recordKasa(String host, byte[] data, int length)
+    {
+        if (this.failed)
+        {
+            return;
+        }
+
+        try
+        {
+            writeHeader(KASA);
+            this.out.writeUTF(host);
+            this.out.writeInt(length);
+            this.out.write(data, 0, length);
+            this.out.flush();
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records HwInfo's shared memory block, as its readings are matched to Sensors.
+     *
+     * @param block The block, which is left untouched
+     * @param length The length of the block
+     */
+    synchronized void recordHwInfoSharedMemory(ByteBuffer block, int length)
+    {
+        if (this.failed)
+        {
+            return;
+        }
+
+        try
+        {
+            writeHeader(HWINFO_SHARED_MEMORY);
+            this.out.writeInt(length);
+            for (int i = 0; i < length; i++)
+            {
+                this.out.write(block.get(i));
+            }
+
+            this.out.flush();
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the values a poll of HwInfo's shared memory read from the matched readings.
+     *
+     * @param offsets The offset of each value within the block
+     * @param values The value at each offset
+     */
+    synchronized void recordHwInfoSharedMemoryValues(int[] offsets, double[] values)
+    {
+        if (this.failed)
+        {
+            return;
+        }
+
+        try
+        {
+            writeHeader(HWINFO_SHARED_MEMORY_VALUES);
+            this.out.writeInt(offsets.length);
+            for (int i = 0; i < offsets.length; i++)
+            {
+                this.out.writeInt(offsets[i]);
+                this.out.writeDouble(values[i]);
+            }
+
+            this.out.flush();
+        }
+        catch (IOException e)
+        {
+            fail(e);
+        }
+    }
+
+    /**
+     * Writes the type and time of a record.
+     *
+     * @param type The type of the record
+     * @throws IOException If the record could not be written
+     */
+    private void writeHeader(byte type) throws IOException
+    {
+        this.out.writeByte(type);
+        this.out.writeLong(System.nanoTime() - this.startTime);
+    }
+
+    /**
+     * Stops recording after an error.
+     *
+     * @param e The error
+     */
+    private void fail(IOException e)
+    {
+        this.failed = true;
+        logError("Unable to record sensor sources, recording stopped", e);
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        this.failed = true;
+        this.out.close();
+    }
+}
@@ -0,0 +1,210 @@
+package src.source;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a recording made by a SourceRecorder, feeding each recorded input back to the code which parses it at the time it
+ * was recorded, scaled by a speed.
+ *
+ * Replaying at 1× reproduces the original timing, N× compresses it N times, and max speed replays every input back-to-back
+ * for load testing. Inputs are replayed in the order they were recorded on the thread calling replay(), each with the time it
+ * was recorded at, whatever the speed.
+ */
+public final class SourceReplayer implements Closeable
+{
+    /**
+     * Receives each replayed input. Each buffer is only valid for the duration of the call.
+     */
+    public interface Listener
+    {
+        /**
+         * Receives a snapshot read from an HwInfoSource.
+         *
+         * @param output The snapshot
+         * @param exitCode The exit code of the query
+         * @param timestampMillis The time the snapshot was read, in milliseconds since the epoch
+         */
+        void hwInfoRegistry(ReusableBuffer output, int exitCode, long timestampMillis);
+
+        /**
+         * Receives HwInfo's shared memory block as a poll read it. Only the values the poll read are current.
+         *
+         * @param block The block, which is the same buffer until HwInfo's layout of readings changes, and stays valid until then
+         * @param timestampMillis The time the block was read, in milliseconds since the epoch
+         * @throws IOException If the block is malformed
+         */
+        void hwInfoSharedMemory(ByteBuffer block, long timestampMillis) throws IOException;
+
+        /**
+         * Receives a datagram.
+         *
+         * @param port The port the datagram was received on
+         * @param datagram The datagram's payload, from the buffer's position to its limit
+         * @param timestampMillis The time the datagram was received, in milliseconds since the epoch
+         */
+        void datagram(int port, ByteBuffer datagram, long timestampMillis);
+
+        /**
+         * Receives the response of a Kasa smart plug, before it is decrypted.
+         *
+         * @param host The host name or IP address of the plug
+         * @param response The response, including its length prefix, which may be modified
+         * @param length The length of the response
+         * @param timestampMillis The time the response was received, in milliseconds since the epoch
+         */
+        void kasa(String host, byte[] response, int length, long timestampMillis);
+    }
+
+    private final DataInputStream in; //reads the recording
+    private final long startMillis; //the time recording started, in milliseconds since the epoch
+    private final ReusableBuffer buffer = new ReusableBuffer(4096); //holds each input, reused across inputs
+    private ByteBuffer sharedMemory; //HwInfo's shared memory block as of the last input, or null before it is recorded
+
+    /**
+     * Opens a recording.
+     *
+     * @param path The recording
+     * @throws IOException If the file could not be opened or is not a recording
+     */
+    public SourceReplayer(Path path) throws IOException
+    {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        if (this.in.readInt() != SourceRecorder.MAGIC)
+        {
+            this.in.close();
+            throw new IOException(path + " is not a sensor source recording");
+        }
+
+        int version = this.in.readInt();
+        if (version != SourceRecorder.VERSION)
+        {
+            this.in.close();
+            throw new IOException("Unsupported sensor source recording version " + version);
+        }
+
+        this.startMillis = this.in.readLong();
+    }
+
+    /**
+     * Replays every input in the recording.
+     *
+     * @param speed The speed to replay at, e.g. 1 for the original timing, or Double.POSITIVE_INFINITY for max speed
+     * @param listener Receives each input
+     * @return The number of inputs replayed
+     * @throws IOException If the recording could not be read or is truncated mid-input
+     * @throws InterruptedException If interrupted while waiting to replay an input
+     */
+    public long replay(double speed, Listener listener) throws IOException, InterruptedException
+    {
+        long startTime = System.nanoTime();
+        long replayed = 0;
+
+        while (true)
+        {
+            byte type;
+            try
+            {
+                type = this.in.readByte();
+            }
+            catch (EOFException _)
+            {
+                return replayed;
+            }
+
+            //wait until the input is due
+            long time = this.in.readLong();
+            long timestampMillis = this.startMillis + TimeUnit.NANOSECONDS.toMillis(time);
+            long due = startTime + (long)(time / speed);
+            long wait = due - System.nanoTime();
+            if (wait > 0)
+            {
+                Thread.sleep(Duration.ofNanos(wait));
+            }
+
+            switch (type)
+            {
+                case SourceRecorder.HWINFO_REGISTRY ->
+                {
+                    int exitCode = this.in.readInt();
+                    readInput();
+                    listener.hwInfoRegistry(this.buffer, exitCode, timestampMillis);
+                }
+                case SourceRecorder.DATAGRAM ->
+                {
+                    int port = this.in.readInt();
+                    readInput();
+                    listener.datagram(port, ByteBuffer.wrap(this.buffer.array(), 0, this.buffer.length()), timestampMillis);
+                }
+                case SourceRecorder.KASA ->
+                {
+                    String host = this.in.readUTF();
+                    readInput();
+                    listener.kasa(host, this.buffer.array(), this.buffer.length(), timestampMillis);
+                }
+                case SourceRecorder.HWINFO_SHARED_MEMORY ->
+                {
+                    //the values are replayed into a copy of the block, so each layout gets a buffer of its own
+                    byte[] block = new byte[this.in.readInt()];
+                    this.in.readFully(block);
+                    this.sharedMemory = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                case SourceRecorder.HWINFO_SHARED_MEMORY_VALUES ->
+                {
+                    readSharedMemoryValues();
+                    listener.hwInfoSharedMemory(this.sharedMemory, timestampMillis);
+                }
+                default -> throw new IOException("Unknown sensor source recording input type " + type);
+            }
+
+            replayed++;
+        }
+    }
+
+    /**
+     * Reads the values a poll of HwInfo's shared memory read into the block.
+     *
+     * @throws IOException If the values could not be read, or don't fit in the block
+     */
+    private void readSharedMemoryValues() throws IOException
+    {
+        int count = this.in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            int offset = this.in.readInt();
+            double value = this.in.readDouble();
+            if (this.sharedMemory == null || offset < 0 || offset > this.sharedMemory.capacity() - Double.BYTES)
+            {
+                throw new IOException("Recorded HwInfo shared memory value outside of the recorded block at " + offset);
+            }
+
+            this.sharedMemory.putDouble(offset, value);
+        }
+    }
+
+    /**
+     * Reads the length and bytes of an input into the buffer.
+     *
+     * @throws IOException If the input could not be read
+     */
+    private void readInput() throws IOException
+    {
+        this.buffer.clear();
+        this.buffer.readExactly(this.in, this.in.readInt());
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.in.close();
+    }
+}
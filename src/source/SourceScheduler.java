@@ -0,0 +1,229 @@
+package src.source;
+
+import static forge.Logger.logError;
+import static forge.Logger.logWarning;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+import src.metrics.SourcePollEvent;
+
+/**
+ * Polls every source of sensor values at its own interval.
+ *
+ * A single thread keeps time, and each poll runs on its own virtual thread so that blocking I/O (e.g. waiting on a process or
+ * a socket) never delays another source. Scheduling works as follows:
+ *      • Each source has at most one poll in progress. A poll that overruns its interval skips the missed ticks instead of
+ *        running them back-to-back to catch up, and the next poll runs on the following tick.
+ *      • A poll that throws anything, even an Error or an InterruptedException, backs off exponentially, with jitter, up to
+ *        MAX_BACKOFF before polling again. Only closing the scheduler stops polling a source.
+ *      • The first failure and the eventual recovery of a source are logged, but not the failures in between unless they are
+ *        errors or interrupts
+ *
+ * The latency of each poll is recorded in the Metrics as "<name> poll", along with the ticks each source skipped, the polls
+ * that started more than LATE_TICK after they were due, and the bytes each poll allocated where the JVM can measure them. Each
+ * poll is also a SourcePollEvent for JFR recordings.
+ */
+public final class SourceScheduler implements Closeable
+{
+    public static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+    public static final Duration LATE_TICK = Duration.ofMillis(50); //how long after its tick a poll may start before it is late
+
+    private final ScheduledExecutorService timekeeper; //starts each poll when it is due
+    private final AtomicLong skippedTicks = new AtomicLong(); //the ticks skipped across all sources because a poll overran
+
+    /**
+     * Polls a source of sensor values.
+     */
+    @FunctionalInterface
+    public interface PollTask
+    {
+        /**
+         * Polls the source once, updating its sensors.
+         *
+         * @throws Exception If the source failed, in which case it is polled again after a backoff
+         */
+        void poll() throws Exception;
+    }
+
+    /**
+     * Creates a new SourceScheduler.
+     *
+     * @param threadName The name of the thread keeping time
+     */
+    public SourceScheduler(String threadName)
+    {
+        this.timekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, threadName));
+    }
+
+    /**
+     * Starts polling a source immediately and then at the given interval.
+     *
+     * @param name The name of the source, for logging and naming its threads
+     * @param interval The time between the start of each poll
+     * @param task Polls the source
+     */
+    public void schedule(String name, Duration interval, PollTask task)
+    {
+        new Source(name, interval.toNanos(), task).dispatchAt(System.nanoTime());
+    }
+
+    /**
+     * Returns the number of ticks skipped across all sources because a poll was still in progress.
+     *
+     * @return The number of skipped ticks
+     */
+    public long skippedTicks()
+    {
+        return this.skippedTicks.get();
+    }
+
+    /**
+     * Stops polling all sources. Polls already in progress are allowed to finish.
+     */
+    @Override
+    public void close()
+    {
+        this.timekeeper.shutdownNow();
+    }
+
+    /**
+     * A source of sensor values and its scheduling state.
+     */
+    private final class Source
+    {
+        private final String name; //the name of the source
+        private final long intervalNanos; //the time between the start of each poll
+        private final PollTask task; //polls the source
+        private final LatencyHistogram pollLatency; //the time each poll takes
+        private final LongAdder skippedTicks; //the ticks skipped because a poll overran
+        private final LongAdder lateTicks; //the polls started more than LATE_TICK after they were due
+        private final LongAdder allocatedBytes; //the bytes allocated by each poll
+        private boolean allocationUnsupported; //whether the JVM can't measure the bytes allocated on the poll threads
+        private long tick; //the time the current poll was due
+        private int failures; //the number of consecutive failed polls
+
+        /**
+         * Creates a new Source.
+         *
+         * @param name The name of the source
+         * @param intervalNanos The time between the start of each poll
+         * @param task Polls the source
+         */
+        private Source(String name, long intervalNanos, PollTask task)
+        {
+            this.name = name;
+            this.intervalNanos = intervalNanos;
+            this.task = task;
+            this.pollLatency = Metrics.histogram(name + " poll");
+            this.skippedTicks = Metrics.counter(name + " skipped ticks");
+            this.lateTicks = Metrics.counter(name + " late ticks");
+            this.allocatedBytes = Metrics.counter(name + " allocated bytes");
+        }
+
+        /**
+         * Starts the next poll on a virtual thread at the given time.
+         *
+         * @param time The time to poll, in nanoseconds
+         */
+        private void dispatchAt(long time)
+        {
+            this.tick = time;
+
+            try
+            {
+                SourceScheduler.this.timekeeper.schedule(() -> Thread.ofVirtual().name(this.name).start(this::poll),
+                                                         time - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            catch (RejectedExecutionException _)
+            {
+                //the scheduler was closed
+            }
+        }
+
+        /**
+         * Polls the source once and schedules the next poll.
+         */
+        private void poll()
+        {
+            long start = System.nanoTime();
+            long startBytes = Metrics.threadAllocatedBytes();
+            if (startBytes < 0 && !this.allocationUnsupported)
+            {
+                Metrics.unsupported(this.name + " allocated bytes");
+                this.allocationUnsupported = true;
+            }
+
+            if (start - this.tick > LATE_TICK.toNanos())
+            {
+                this.lateTicks.increment();
+            }
+
+            SourcePollEvent event = new SourcePollEvent();
+            event.source = this.name;
+            event.beginBatch();
+
+            try
+            {
+                this.task.poll();
+            }
+            catch (Throwable t)
+            {
+                //the scheduler was closed during the poll, which may have failed because of it
+                if (SourceScheduler.this.timekeeper.isShutdown())
+                {
+                    return;
+                }
+
+                //any failure backs off rather than stopping the source for good, but errors and interrupts are always
+                //reported as neither is an ordinary failure of the source
+                event.failed = true;
+                if (this.failures++ == 0 || t instanceof Error || t instanceof InterruptedException)
+                {
+                    logError("Unable to poll " + this.name + ", backing off", t);
+                }
+
+                dispatchAt(System.nanoTime() + backoff());
+                return;
+            }
+            finally
+            {
+                this.pollLatency.record(System.nanoTime() - start);
+                Metrics.countAllocatedBytes(this.allocatedBytes, startBytes);
+                event.endBatch();
+            }
+
+            if (this.failures > 0)
+            {
+                logWarning(this.name + " recovered after " + this.failures + " failed polls");
+                this.failures = 0;
+            }
+
+            //skip any ticks that passed while polling
+            long elapsedTicks = (System.nanoTime() - this.tick)/this.intervalNanos + 1;
+            SourceScheduler.this.skippedTicks.addAndGet(elapsedTicks - 1);
+            this.skippedTicks.add(elapsedTicks - 1);
+            dispatchAt(this.tick + elapsedTicks * this.intervalNanos);
+        }
+
+        /**
+         * Returns the time to wait before polling again after a failure.
+         *
+         * @return The backoff, in nanoseconds, which is a random time between half and all of an exponential backoff
+         */
+        private long backoff()
+        {
+            long backoff = Math.min(MAX_BACKOFF.toNanos(), this.intervalNanos << Math.min(this.failures, 20));
+            return backoff/2 + ThreadLocalRandom.current().nextLong(backoff/2 + 1);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package src.source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import src.metrics.ProcessEvent;
+
+/**
+ * Reads HwInfo values from a single long-lived worker process over a persistent pipe.
+ *
+ * The worker protocol is line based:
+ *      • Each newline written to the worker's stdin requests a single snapshot
+ *      • The worker replies with the snapshot in `reg query` format, e.g. "    ValueRaw0    REG_SZ    45.2"
+ *      • The snapshot is terminated by the line "END <status>", where a nonzero status indicates the query failed
+ *
+ * The worker is started lazily on the first poll and restarted on the next poll if it dies. A worker that takes longer than the
+ * timeout to reply is assumed to be hung and is killed by a watchdog thread, failing the poll, so that it is restarted on the
+ * next poll. Any worker that speaks this protocol may be used, such as a shell script emitting recorded values.
+ */
+public final class StreamingRegistrySource implements HwInfoSource
+{
+    //the line terminating each snapshot
+    private static final byte[] END_MARKER = {'E', 'N', 'D'};
+
+    /**
+     * A PowerShell worker which reads all values under the HwInfo registry key through .NET, avoiding a new process per poll.
+     */
+    private static final String POWERSHELL_WORKER = """
+        $ErrorActionPreference = 'Stop'
+        $out = [Console]::Out
+        $builder = New-Object System.Text.StringBuilder
+        while ($null -ne [Console]::In.ReadLine())
+        {
+            $status = 0
+            [void]$builder.Clear()
+            try
+            {
+                $key = [Microsoft.Win32.Registry]::CurrentUser.OpenSubKey('%s')
+                if ($null -eq $key) { throw 'Registry key not found' }
+                foreach ($name in $key.GetValueNames())
+                {
+                    [void]$builder.Append('    ').Append($name).Append('    REG_SZ    ').Append($key.GetValue($name)).Append("`n")
+                }
+                $key.Close()
+            }
+            catch
+            {
+                [void]$builder.Append($_.Exception.Message).Append("`n")
+                $status = 1
+            }
+            [void]$builder.Append('END ').Append($status).Append("`n")
+            $out.Write($builder.ToString())
+            $out.Flush()
+        }
+        """;
+
+    private final List<String> command; //the command to launch the worker
+    private final long timeoutNanos; //the longest the worker may take to reply to a request
+    private volatile long deadline; //the time the worker must reply to the request in progress by, or 0 if none is in progress
+    private volatile boolean timedOut; //whether the watchdog killed the current worker
+    private Process worker; //the current worker process, or null if not running
+    private Thread watchdog; //kills the current worker if it misses a deadline
+    private InputStream reader; //reads snapshots from the worker
+    private OutputStream writer; //requests snapshots from the worker
+    private ProcessEvent workerEvent; //spans the life of the current worker, for JFR recordings
+
+    /**
+     * Creates a new StreamingRegistrySource using the given worker command.
+     *
+     * @param command The command to launch a worker which speaks the protocol described above
+     * @param timeout The longest the worker may take to reply to a request before it is killed
+     */
+    public StreamingRegistrySource(List<String> command, Duration timeout)
+    {
+        this.command = List.copyOf(command);
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Creates a new StreamingRegistrySource using a PowerShell worker to read the given registry key.
+     *
+     * @param registrySubKey The registry key HwInfo exports values to, relative to HKEY_CURRENT_USER
+     * @param timeout The longest the worker may take to reply to a request before it is killed
+     * @return The StreamingRegistrySource
+     */
+    public static StreamingRegistrySource powerShell(String registrySubKey, Duration timeout)
+    {
+        String script = POWERSHELL_WORKER.formatted(registrySubKey.replace("'", "''"));
+        String encodedScript = Base64.getEncoder().encodeToString(script.getBytes(StandardCharsets.UTF_16LE));
+        List<String> command = List.of("powershell", "-NoProfile", "-NonInteractive", "-EncodedCommand", encodedScript);
+        return new StreamingRegistrySource(command, timeout);
+    }
+
+    @Override
+    public int poll(ReusableBuffer output) throws IOException
+    {
+        if (this.worker == null || !this.worker.isAlive())
+        {
+            start();
+        }
+
+        //the watchdog kills the worker if it doesn't reply by the deadline, ending the read below
+        this.deadline = Math.max(1, System.nanoTime() + this.timeoutNanos);
+
+        try
+        {
+            //request a snapshot
+            this.writer.write('\n');
+            this.writer.flush();
+
+            //read the snapshot up to its end marker, scanning each line once as it arrives
+            output.clear();
+            int lineStart = 0;
+            int scanned = 0;
+
+            while (output.read(this.reader) >= 0)
+            {
+                byte[] data = output.array();
+                for (; scanned < output.length(); scanned++)
+                {
+                    if (data[scanned] != '\n')
+                    {
+                        continue;
+                    }
+
+                    if (isEndMarker(data, lineStart, scanned))
+                    {
+                        int status = AsciiParser.parseInt(data, lineStart + END_MARKER.length + 1, trimEnd(data, lineStart, scanned));
+                        output.truncate(lineStart);
+                        this.deadline = 0;
+                        if (status < 0)
+                        {
+                            throw new IOException("Malformed HwInfo worker end marker");
+                        }
+
+                        return status;
+                    }
+
+                    lineStart = scanned + 1;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            boolean timedOut = this.timedOut;
+            close();
+            throw new IOException(timedOut ? "HwInfo worker timed out" : "HwInfo worker failed", e);
+        }
+
+        boolean timedOut = this.timedOut;
+        close();
+        throw new IOException(timedOut ? "HwInfo worker timed out" : "HwInfo worker exited unexpectedly");
+    }
+
+    /**
+     * Returns whether the given line is the end marker, "END <status>".
+     *
+     * @param data The bytes read from the worker
+     * @param from The index of the start of the line, inclusive
+     * @param to The index of the end of the line, exclusive
+     * @return True if the line is the end marker
+     */
+    private static boolean isEndMarker(byte[] data, int from, int to)
+    {
+        if (to - from <= END_MARKER.length || data[from + END_MARKER.length] != ' ')
+        {
+            return false;
+        }
+
+        for (int i = 0; i < END_MARKER.length; i++)
+        {
+            if (data[from + i] != END_MARKER[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the end of the given line excluding any trailing carriage return.
+     *
+     * @param data The bytes read from the worker
+     * @param from The index of the start of the line, inclusive
+     * @param to The index of the end of the line, exclusive
+     * @return The index of the end of the line, exclusive
+     */
+    private static int trimEnd(byte[] data, int from, int to)
+    {
+        return to > from && data[to - 1] == '\r' ? to - 1 : to;
+    }
+
+    /**
+     * Starts a new worker process.
+     *
+     * @throws IOException If the worker could not be started
+     */
+    private void start() throws IOException
+    {
+        close();
+        this.workerEvent = new ProcessEvent();
+        this.workerEvent.begin();
+        this.worker = new ProcessBuilder(this.command).redirectErrorStream(true).start();
+        this.reader = this.worker.getInputStream();
+        this.writer = this.worker.getOutputStream();
+        this.deadline = 0;
+        this.timedOut = false;
+
+        Process worker = this.worker;
+        this.watchdog = Thread.ofVirtual().name("HwInfo Worker Watchdog").start(() -> watch(worker));
+    }
+
+    /**
+     * Kills a worker once it misses the deadline of a request, returning when the worker exits. A hung worker is killed
+     * between one and two timeouts after the request was made.
+     *
+     * @param worker The worker to watch
+     */
+    private void watch(Process worker)
+    {
+        try
+        {
+            while (true)
+            {
+                long deadline = this.deadline;
+                long wait = deadline == 0 ? this.timeoutNanos : deadline - System.nanoTime();
+                if (wait <= 0)
+                {
+                    this.timedOut = true;
+                    worker.destroyForcibly();
+                    return;
+                }
+
+                if (worker.waitFor(wait, TimeUnit.NANOSECONDS))
+                {
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException _)
+        {
+            //the watchdog is being discarded
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (this.worker != null)
+        {
+            this.workerEvent.end();
+            if (this.workerEvent.shouldCommit())
+            {
+                this.workerEvent.command = String.join(" ", this.command);
+                this.workerEvent.pid = this.worker.pid();
+                this.workerEvent.exitCode = this.worker.isAlive() ? -1 : this.worker.exitValue();
+                this.workerEvent.commit();
+            }
+
+            this.watchdog.interrupt();
+
+            //closing stdin asks the worker to exit gracefully
+            try
+            {
+                this.writer.close();
+            }
+            catch (IOException _)
+            {
+                //the worker is being discarded regardless
+            }
+
+            this.worker.destroy();
+            this.worker = null;
+            this.watchdog = null;
+            this.reader = null;
+            this.writer = null;
+            this.workerEvent = null;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package src.source;
+
+import static forge.Logger.logWarning;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+import src.metrics.DatagramEvent;
+import src.metrics.LatencyHistogram;
+import src.metrics.Metrics;
+
+/**
+ * Parses telemetry datagrams and routes each value through a SensorChannelMap.
+ *
+ * Both versions of the telemetry protocol are accepted (see TelemetryProtocol):
+ *      • v1: a single ASCII "<channel>:<value>" reading, e.g. "1:31.5"
+ *      • v2: a binary batch of readings with a sequence number, used to count dropped and reordered datagrams
+ *
+ * Datagrams are parsed in place without allocating. The time each takes is recorded in the Metrics as "<source> parse", and
+ * each is a DatagramEvent for JFR recordings. The v2 datagrams received, dropped and reordered are counted in the Metrics as
+ * "<source> datagrams received", "<source> datagrams dropped" and "<source> datagrams reordered". A datagram first counted as
+ * dropped is counted as reordered instead if it arrives late, within the REORDER_WINDOW.
+ */
+public final class TelemetryHandler implements UdpReceiver.DatagramHandler
+{
+    //how far behind the last sequence number a datagram may be before the sender is assumed to have restarted, which is also
+    //the number of sequence numbers tracked to tell a late datagram from a duplicate
+    private static final int REORDER_WINDOW = Long.SIZE;
+
+    private final String sourceName; //the name of the source sending the datagrams, for logging
+    private final SensorChannelMap channels; //routes each value to its Sensor
+    private final LatencyHistogram parseLatency; //the time each datagram takes to parse, including updating its Sensors
+    private final LongAdder received; //the number of v2 datagrams received
+    private final LongAdder dropped; //the number of v2 datagrams sent but not received
+    private final LongAdder reordered; //the number of v2 datagrams received late or more than once
+    private boolean sequenceStarted; //whether a v2 datagram has been received
+    private int lastSequence; //the highest sequence number received
+    private long receivedSequences; //bit i is set if the sequence number i behind the highest was received
+
+    /**
+     * Creates a new TelemetryHandler.
+     *
+     * @param sourceName The name of the source sending the datagrams, for logging
+     * @param channels Routes each value to its Sensor
+     */
+    public TelemetryHandler(String sourceName, SensorChannelMap channels)
+    {
+        this.sourceName = sourceName;
+        this.channels = channels;
+        this.parseLatency = Metrics.histogram(sourceName + " parse");
+        this.received = Metrics.counter(sourceName + " datagrams received");
+        this.dropped = Metrics.counter(sourceName + " datagrams dropped");
+        this.reordered = Metrics.counter(sourceName + " datagrams reordered");
+    }
+
+    @Override
+    public void handle(ByteBuffer datagram, long receivedMillis)
+    {
+        long start = System.nanoTime();
+        DatagramEvent event = new DatagramEvent();
+        event.source = this.sourceName;
+        event.size = datagram.remaining();
+        event.beginBatch();
+
+        if (TelemetryProtocol.isBinary(datagram))
+        {
+            handleBinary(datagram);
+        }
+        else
+        {
+            handleAscii(datagram, receivedMillis);
+        }
+
+        event.endBatch();
+        this.parseLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Handles a v1 datagram, a single ASCII "<channel>:<value>" reading, which was measured when it was received.
+     *
+     * @param datagram The datagram
+     * @param receivedMillis The time the datagram was received, in milliseconds since the epoch
+     */
+    private void handleAscii(ByteBuffer datagram, long receivedMillis)
+    {
+        int start = datagram.position();
+        int end = datagram.limit();
+
+        //ignore any trailing whitespace
+        while (end > start && datagram.get(end - 1) <= ' ')
+        {
+            end--;
+        }
+
+        int separator = start;
+        while (separator < end && datagram.get(separator) != ':')
+        {
+            separator++;
+        }
+
+        int channel = AsciiParser.parseInt(datagram, start, separator);
+        double value = separator < end ? AsciiParser.parseDouble(datagram, separator + 1, end) : Double.NaN;
+
+        if (Double.isNaN(value) || !this.channels.set(channel, value, receivedMillis))
+        {
+            logWarning("Unexpected data received from " + this.sourceName + " UDP socket: " + decode(datagram));
+        }
+    }
+
+    /**
+     * Handles a v2 datagram, a binary batch of readings.
+     *
+     * @param datagram The datagram
+     */
+    private void handleBinary(ByteBuffer datagram)
+    {
+        int start = datagram.position();
+        int count = datagram.remaining() >= TelemetryProtocol.HEADER_SIZE ?
+                    datagram.get(start + TelemetryProtocol.COUNT_OFFSET) & 0xFF : 0;
+
+        if (datagram.get(start + TelemetryProtocol.VERSION_OFFSET) != TelemetryProtocol.VERSION ||
+            datagram.remaining() != TelemetryProtocol.HEADER_SIZE + count * TelemetryProtocol.READING_SIZE)
+        {
+            logWarning("Malformed telemetry datagram of " + datagram.remaining() + " bytes received from " + this.sourceName);
+            return;
+        }
+
+        if (!acceptSequence(datagram.getInt(start + TelemetryProtocol.SEQUENCE_OFFSET)))
+        {
+            return;
+        }
+
+        //readings are in the order they were taken, so later readings of a channel overwrite earlier ones
+        long baseTime = datagram.getLong(start + TelemetryProtocol.BASE_TIME_OFFSET);
+        for (int i = 0; i < count; i++)
+        {
+            int reading = start + TelemetryProtocol.HEADER_SIZE + i * TelemetryProtocol.READING_SIZE;
+            int channel = datagram.get(reading + TelemetryProtocol.CHANNEL_OFFSET) & 0xFF;
+            int timeOffset = datagram.getShort(reading + TelemetryProtocol.TIME_OFFSET_OFFSET) & 0xFFFF;
+            float value = datagram.getFloat(reading + TelemetryProtocol.VALUE_OFFSET);
+
+            if (Float.isNaN(value) || !this.channels.set(channel, value, baseTime + timeOffset))
+            {
+                logWarning("Unexpected reading received from " + this.sourceName + " UDP socket: channel " + channel +
+                           ", value " + value);
+            }
+        }
+    }
+
+    /**
+     * Tracks the given sequence number, counting any datagrams dropped or reordered.
+     *
+     * @param sequence The sequence number of a received datagram
+     * @return True if the datagram is new and should be applied, false if it arrived late or was duplicated
+     */
+    private boolean acceptSequence(int sequence)
+    {
+        this.received.increment();
+        int delta = sequence - this.lastSequence; //wraps correctly on overflow
+
+        if (!this.sequenceStarted || sequence == 0 || delta <= -REORDER_WINDOW)
+        {
+            //the first datagram, or the sender restarted its sequence
+            this.sequenceStarted = true;
+            this.receivedSequences = 1;
+        }
+        else if (delta <= 0)
+        {
+            //a datagram in a gap was counted as dropped, but was only late
+            long bit = 1L << -delta;
+            if ((this.receivedSequences & bit) == 0)
+            {
+                this.receivedSequences |= bit;
+                this.dropped.decrement();
+            }
+
+            //its readings are older than those already applied, so it is ignored either way
+            this.reordered.increment();
+            return false;
+        }
+        else
+        {
+            this.receivedSequences = delta < REORDER_WINDOW ? this.receivedSequences << delta | 1 : 1;
+            if (delta > 1)
+            {
+                this.dropped.add(delta - 1);
+                logWarning("Dropped " + (delta - 1) + " telemetry datagrams from " + this.sourceName + " (" + dropped() +
+                           " dropped of " + (received() + dropped()) + " sent)");
+            }
+        }
+
+        this.lastSequence = sequence;
+        return true;
+    }
+
+    /**
+     * Returns the number of v2 datagrams received.
+     *
+     * @return The number of datagrams received
+     */
+    public long received()
+    {
+        return this.received.sum();
+    }
+
+    /**
+     * Returns the number of v2 datagrams that were sent but not received, not counting those that arrived late.
+     *
+     * @return The number of datagrams dropped
+     */
+    public long dropped()
+    {
+        return this.dropped.sum();
+    }
+
+    /**
+     * Returns the number of v2 datagrams that were received late or more than once, and so were ignored.
+     *
+     * @return The number of datagrams reordered
+     */
+    public long reordered()
+    {
+        return this.reordered.sum();
+    }
+
+    /**
+     * Decodes a datagram for logging.
+     *
+     * @param datagram The datagram
+     * @return The datagram as text
+     */
+    private static String decode(ByteBuffer datagram)
+    {
+        byte[] bytes = new byte[datagram.remaining()];
+        datagram.get(datagram.position(), bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
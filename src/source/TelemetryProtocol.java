@@ -0,0 +1,92 @@
+package src.source;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describes the binary telemetry protocol (v2) sent over UDP, and encodes datagrams in it.
+ *
+ * Version 1 of the protocol is a single ASCII "<channel>:<value>" reading per datagram. Version 2 packs many readings into one
+ * datagram. All values are big-endian:
+ *
+ *      Header (16 bytes)
+ *          • magic           2 bytes   'S', 'P' - never a digit, so it cannot be mistaken for a v1 datagram
+ *          • version         1 byte    2
+ *          • count           1 byte    the number of readings that follow, 1 to 255
+ *          • sequence        4 bytes   incremented by one for every datagram sent, to detect loss and reordering
+ *          • base time       8 bytes   milliseconds since the epoch of the first reading
+ *
+ *      Reading (8 bytes each)
+ *          • channel         1 byte    the channel of the reading
+ *          • flags           1 byte    reserved, 0
+ *          • time offset     2 bytes   unsigned milliseconds after the base time the reading was taken
+ *          • value           4 bytes   the value as a float
+ */
+public final class TelemetryProtocol
+{
+    public static final byte MAGIC_0 = 'S';
+    public static final byte MAGIC_1 = 'P';
+    public static final byte VERSION = 2;
+    public static final int HEADER_SIZE = 16;
+    public static final int READING_SIZE = 8;
+    public static final int MAX_READINGS = 255;
+
+    //offsets within the header
+    static final int VERSION_OFFSET = 2;
+    static final int COUNT_OFFSET = 3;
+    static final int SEQUENCE_OFFSET = 4;
+    static final int BASE_TIME_OFFSET = 8;
+
+    //offsets within each reading
+    static final int CHANNEL_OFFSET = 0;
+    static final int TIME_OFFSET_OFFSET = 2;
+    static final int VALUE_OFFSET = 4;
+
+    /**
+     * Prevents instantiation of this class.
+     */
+    private TelemetryProtocol() {}
+
+    /**
+     * Returns whether the given datagram is a binary (v2 or newer) datagram rather than an ASCII (v1) datagram.
+     *
+     * @param datagram The datagram, from its position to its limit
+     * @return True if the datagram starts with the binary magic
+     */
+    public static boolean isBinary(ByteBuffer datagram)
+    {
+        return datagram.remaining() >= 2 &&
+               datagram.get(datagram.position()) == MAGIC_0 &&
+               datagram.get(datagram.position() + 1) == MAGIC_1;
+    }
+
+    /**
+     * Encodes readings into a v2 datagram.
+     *
+     * @param out The buffer to write the datagram to, starting at its position
+     * @param sequence The sequence number of the datagram
+     * @param count The number of readings to encode
+     * @param channels The channel of each reading
+     * @param timesMillis The time each reading was taken, in milliseconds since the epoch
+     * @param values The value of each reading
+     * @return The size of the datagram in bytes
+     */
+    public static int encode(ByteBuffer out, int sequence, int count, int[] channels, long[] timesMillis, float[] values)
+    {
+        if (count < 1 || count > MAX_READINGS)
+        {
+            throw new IllegalArgumentException("A datagram must contain between 1 and " + MAX_READINGS + " readings: " + count);
+        }
+
+        int start = out.position();
+        long baseTime = timesMillis[0];
+
+        out.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte)count).putInt(sequence).putLong(baseTime);
+        for (int i = 0; i < count; i++)
+        {
+            long offset = Math.clamp(timesMillis[i] - baseTime, 0, 0xFFFF);
+            out.put((byte)channels[i]).put((byte)0).putShort((short)offset).putFloat(values[i]);
+        }
+
+        return out.position() - start;
+    }
+}
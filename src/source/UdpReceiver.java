@@ -0,0 +1,156 @@
+package src.source;
+
+import static forge.Logger.logError;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import src.metrics.Metrics;
+
+/**
+ * Receives datagrams for every UDP-fed source on a single thread.
+ *
+ * Each source registers the port it listens on along with a handler. All ports are multiplexed through one Selector, and each
+ * datagram is received into a single reused direct buffer, so receiving does not allocate. The bytes the receiving thread does
+ * allocate, e.g. in handlers, are counted in the Metrics as "<thread name> allocated bytes".
+ */
+public final class UdpReceiver implements Closeable
+{
+    //the largest possible UDP payload, so that no datagram is ever truncated
+    private static final int MAX_DATAGRAM_SIZE = 65_507;
+
+    /**
+     * Handles the datagrams received on a port.
+     */
+    @FunctionalInterface
+    public interface DatagramHandler
+    {
+        /**
+         * Handles a single datagram. The buffer is only valid for the duration of this call.
+         *
+         * @param datagram The datagram's payload, from the buffer's position to its limit
+         * @param receivedMillis The time the datagram was received, in milliseconds since the epoch
+         */
+        void handle(ByteBuffer datagram, long receivedMillis);
+    }
+
+    private final Selector selector; //multiplexes all registered ports
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE); //receives each datagram
+    private final Consumer<SelectionKey> keyHandler = this::receiveFrom; //saved to avoid allocating each select
+
+    /**
+     * Creates a new UdpReceiver.
+     *
+     * @throws IOException If the Selector could not be opened
+     */
+    public UdpReceiver() throws IOException
+    {
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Listens for datagrams on the given port. Must be called before start().
+     *
+     * @param port The port to listen on, or 0 for any free port
+     * @param handler Handles each datagram received on the port
+     * @return The port listened on
+     * @throws IOException If the port could not be bound
+     */
+    public int register(int port, DatagramHandler handler) throws IOException
+    {
+        DatagramChannel channel = DatagramChannel.open();
+        try
+        {
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            channel.register(this.selector, SelectionKey.OP_READ, handler);
+            return ((InetSocketAddress)channel.getLocalAddress()).getPort();
+        }
+        catch (IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts receiving datagrams on a new thread.
+     *
+     * @param threadName The name of the receiving thread
+     */
+    public void start(String threadName)
+    {
+        new Thread(this::receive, threadName).start();
+    }
+
+    /**
+     * Continually receives datagrams on all registered ports until this receiver is closed.
+     */
+    private void receive()
+    {
+        String allocatedBytesName = Thread.currentThread().getName() + " allocated bytes";
+        LongAdder allocatedBytes = Metrics.counter(allocatedBytesName);
+        if (Metrics.threadAllocatedBytes() < 0)
+        {
+            Metrics.unsupported(allocatedBytesName);
+        }
+
+        try
+        {
+            while (this.selector.isOpen())
+            {
+                long startBytes = Metrics.threadAllocatedBytes();
+                this.selector.select(this.keyHandler);
+                Metrics.countAllocatedBytes(allocatedBytes, startBytes);
+            }
+        }
+        catch (IOException e)
+        {
+            logError("IOException encountered receiving UDP sensor values", e);
+        }
+    }
+
+    /**
+     * Receives all datagrams pending on the given channel.
+     *
+     * @param key The selected key of the channel
+     */
+    private void receiveFrom(SelectionKey key)
+    {
+        DatagramChannel channel = (DatagramChannel)key.channel();
+        DatagramHandler handler = (DatagramHandler)key.attachment();
+
+        try
+        {
+            this.buffer.clear();
+            while (channel.receive(this.buffer) != null)
+            {
+                this.buffer.flip();
+                handler.handle(this.buffer, System.currentTimeMillis());
+                this.buffer.clear();
+            }
+        }
+        catch (IOException e)
+        {
+            logError("Unable to receive UDP sensor values on " + channel.socket().getLocalPort(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        for (SelectionKey key : this.selector.keys())
+        {
+            key.channel().close();
+        }
+
+        this.selector.close();
+    }
+}
@@ -0,0 +1,58 @@
+#!/bin/bash
+#
+# Compiles and runs the JUnit tests in test, headless.
+#
+# Usage: ./test.sh [JUnit console options]
+#
+# Runs every test when no options are given, e.g. ./test.sh --select-class src.source.StreamingRegistrySourceTest
+# Output: the JUnit test tree and a summary of the results
+
+set -eu # add x for debug
+
+junit_version="1.11.3"
+junit_jar="org/junit/platform/junit-platform-console-standalone/$junit_version/junit-platform-console-standalone-$junit_version.jar"
+
+# checkout the Forge if it doesn't exist or it's empty
+if [[ ! -e lib/forge || ! $(ls lib/forge/* 2> /dev/null) ]]; then
+    echo "The Forge is missing from your repository, assuming you forgot to clone with --recursive and fixing up your repo..."
+    git submodule update --init --recursive
+fi
+
+# compile the Forge
+./lib/forge/build.sh
+
+# download JUnit, which is kept out of lib so it isn't packed into the SensorPanel jar
+mkdir -p test/lib
+if [[ ! -e test/lib/$(basename $junit_jar) ]]; then
+    curl -sSfL -o test/lib/$(basename $junit_jar) https://repo1.maven.org/maven2/$junit_jar
+fi
+
+# the classpath separator is ; on Windows and : elsewhere
+separator=":"
+if [[ "$OSTYPE" == msys* || "$OSTYPE" == cygwin* ]]; then
+    separator=";"
+fi
+
+# build the jar file list
+classpath="."
+for jar_file in $(find lib test/lib -type f -name "*.jar"); do
+    classpath+="$separator$jar_file"
+done
+
+# compile all files, placing the tests in the packages of the classes they test
+rm -rf test/classes
+javac -Xlint:all,-serial,-preview \
+      --release 23 --enable-preview \
+      -d test/classes \
+      -cp $classpath \
+      $(find src test -type f -name "*.java")
+
+# run the tests, with res on the classpath for the icons
+args=("$@")
+if [[ ${#args[@]} -eq 0 ]]; then
+    args=(--scan-class-path "test/classes")
+fi
+
+java --enable-preview -Djava.awt.headless=true \
+     -cp "test/classes$separator.$separator$classpath" \
+     org.junit.platform.console.ConsoleLauncher execute --disable-banner "${args[@]}"
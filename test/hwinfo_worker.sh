@@ -0,0 +1,37 @@
+#!/bin/bash
+#
+# A stand-in for the PowerShell HwInfo worker of StreamingRegistrySource, for testing on machines without HwInfo.
+#
+# Usage: ./test/hwinfo_worker.sh [replies] [status] [hang|exit]
+#
+# Replies to each newline read from stdin with the same snapshot of HwInfo values in `reg query` format, followed by
+# "END <status>" (0 by default). After the given number of replies the worker hangs without replying, as a stuck PowerShell
+# worker would, or exits on the next request if "exit" is given, as a crashed one would. It never stops replying when no
+# number is given.
+
+set -u # add x for debug
+
+replies=${1:--1}
+status=${2:-0}
+after=${3:-hang}
+
+while read -r; do
+    if [[ $replies -eq 0 && $after == "exit" ]]; then
+        exit 1
+    fi
+
+    # replace the shell so that killing the worker also closes its output
+    if [[ $replies -eq 0 ]]; then
+        exec sleep infinity
+    fi
+
+    printf '    Label0    REG_SZ    CPU (Tctl/Tdie)\n'
+    printf '    Value0    REG_SZ    45.2 °C\n'
+    printf '    ValueRaw0    REG_SZ    45.2\n'
+    printf '    Label1    REG_SZ    GPU Temperature\n'
+    printf '    Value1    REG_SZ    38.0 °C\n'
+    printf '    ValueRaw1    REG_SZ    38.0\n'
+    printf 'END %d\n' "$status"
+
+    replies=$((replies - 1))
+done
@@ -0,0 +1,66 @@
+package src.alert;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import src.Sensor;
+
+/**
+ * Tests AlertEngine's rate limit on a Sensor no other test sets.
+ */
+class AlertEngineTest
+{
+    private static final Sensor SENSOR = Sensor.WATER_TEMPERATURE; //warns above 105 and is critical above 110
+    private static final long RATE_LIMIT_MILLIS = 60_000; //longer than the test, so every event after the first is rate limited
+
+    private final BlockingQueue<AlertEvent> events = new LinkedBlockingQueue<>(); //the events reported of the Sensor
+    private AlertEngine engine; //checks the Sensor without hysteresis or debounce
+
+    @BeforeEach
+    void start()
+    {
+        this.engine = new AlertEngine(event ->
+        {
+            if (event.sensor() == SENSOR)
+            {
+                this.events.add(event);
+            }
+        },
+        0, 0, RATE_LIMIT_MILLIS, 5);
+        this.engine.start("Alert Engine Test");
+    }
+
+    @AfterEach
+    void stop()
+    {
+        this.engine.close();
+    }
+
+    @Test
+    void reportsAJumpFromNormalToCriticalInsideTheRateLimit() throws InterruptedException
+    {
+        long now = System.currentTimeMillis();
+        SENSOR.set(107, now);
+        AlertEvent raised = this.events.poll(1, TimeUnit.SECONDS);
+        assertNotNull(raised);
+        assertEquals(AlertLevel.HIGH, raised.level());
+
+        //the clear is rate limited, so the jump to critical is raised from normal rather than escalated from a warning, and is
+        //reported as the change from the last reported level
+        SENSOR.set(100, now + 10);
+        SENSOR.set(115, now + 20);
+        AlertEvent critical = this.events.poll(1, TimeUnit.SECONDS);
+        assertNotNull(critical, "a jump from normal to critical was rate limited");
+        assertEquals(AlertLevel.HIGH, critical.previous());
+        assertEquals(AlertLevel.CRITICALLY_HIGH, critical.level());
+        assertEquals(1, critical.suppressed());
+    }
+}
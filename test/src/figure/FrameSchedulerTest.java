@@ -0,0 +1,105 @@
+package src.figure;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import src.Constants;
+import src.Sensor;
+
+/**
+ * Tests FrameScheduler with a repaint handler standing in for painting, so that frames can be made slower than the frame
+ * interval on purpose.
+ */
+class FrameSchedulerTest
+{
+    private static final long FRAME_MILLIS = 1000 / Constants.MAX_FPS; //the time between frames
+
+    private final Figure slow = figure(Sensor.RAM_USAGE); //takes several frame intervals to repaint
+    private final Figure during = figure(Sensor.VRAM_USAGE); //marked dirty while the slow Figure is repainting
+    private final Figure after = figure(Sensor.GPU_USAGE); //marked dirty once the slow frame is done
+    private volatile CountDownLatch slowStarted; //counted down as the slow Figure starts repainting
+    private volatile CountDownLatch duringMarked; //counted down once the next frame is scheduled, to let the slow Figure finish
+    private volatile CountDownLatch duringRepainted; //counted down as the Figure marked during the slow frame is repainted
+    private volatile CountDownLatch afterRepainted; //counted down as the Figure marked after the slow frame is repainted
+
+    @AfterEach
+    void restoreHandler()
+    {
+        FrameScheduler.setRepaintHandler(Figure::repaintDamage);
+    }
+
+    /**
+     * Creates a Figure to mark dirty.
+     *
+     * @param sensor The Sensor the Figure displays
+     * @return The Figure
+     */
+    private static Figure figure(Sensor sensor)
+    {
+        return new SleekBar(sensor, Color.WHITE, new Dimension(100, 20), sensor.name(), 10, 2, 2);
+    }
+
+    /**
+     * Stands in for repainting a Figure, taking several frame intervals to repaint the slow Figure.
+     *
+     * @param figure The Figure to repaint
+     */
+    private void repaint(Figure figure)
+    {
+        if (figure == this.slow)
+        {
+            this.slowStarted.countDown();
+            try
+            {
+                //e.g. the first frame, which loads the classes of its JFR event
+                this.duringMarked.await();
+                Thread.sleep(FRAME_MILLIS * 4);
+            }
+            catch (InterruptedException _)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        else if (figure == this.during)
+        {
+            this.duringRepainted.countDown();
+        }
+        else if (figure == this.after)
+        {
+            this.afterRepainted.countDown();
+        }
+    }
+
+    @Test
+    void repaintsFiguresMarkedDirtyDuringAFrameSlowerThanTheFrameInterval() throws InterruptedException
+    {
+        FrameScheduler.setRepaintHandler(this::repaint);
+
+        //the next frame doesn't always come due while the slow frame is repainting, so repeat the slow frame
+        for (int round = 0; round < 5; round++)
+        {
+            this.slowStarted = new CountDownLatch(1);
+            this.duringMarked = new CountDownLatch(1);
+            this.duringRepainted = new CountDownLatch(1);
+            this.afterRepainted = new CountDownLatch(1);
+
+            FrameScheduler.markDirty(this.slow);
+            assertTrue(this.slowStarted.await(1, TimeUnit.SECONDS), "frames stopped after a slow frame");
+
+            //the next frame comes due while the slow frame is still repainting
+            FrameScheduler.markDirty(this.during);
+            this.duringMarked.countDown();
+            assertTrue(this.duringRepainted.await(1, TimeUnit.SECONDS), "a Figure marked dirty during a slow frame was lost");
+
+            FrameScheduler.markDirty(this.after);
+            assertTrue(this.afterRepainted.await(1, TimeUnit.SECONDS), "frames stopped after a slow frame");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package src.figure;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+import src.SensorPanel;
+
+/**
+ * Tests the memory used by the icons of all Figures packed into the IconAtlas, against loading each icon individually as
+ * Figures did before the atlas.
+ *
+ * The main panel is laid out to request every icon at the size it is drawn at, as when the program starts.
+ */
+class IconAtlasTest
+{
+    private static final int GC_PASSES = 5; //the garbage collections run before measuring the heap
+
+    /**
+     * Returns the heap used by reachable objects.
+     *
+     * @return The bytes used after garbage collection
+     */
+    private static long usedHeap()
+    {
+        for (int i = 0; i < GC_PASSES; i++)
+        {
+            System.gc();
+        }
+
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @Test
+    void retainsLessThanTheIconsLoadedIndividually() throws Exception
+    {
+        //request every icon at the size it is drawn at
+        SwingUtilities.invokeAndWait(SensorPanel::createMainPanel);
+        List<IconAtlas.Icon> icons = IconAtlas.icons();
+        assertFalse(icons.isEmpty(), "the main panel requested no icons");
+
+        //the baseline: each icon's full resolution image, as each Figure kept before the atlas
+        long heap = usedHeap();
+        List<BufferedImage> images = new ArrayList<>();
+        for (IconAtlas.Icon icon : icons)
+        {
+            images.add(ImageIO.read(IconAtlas.class.getResource(icon.path())));
+        }
+
+        long individualHeap = usedHeap() - heap;
+        long individualPixels = 0;
+        long iconPixels = 0;
+        for (int i = 0; i < icons.size(); i++)
+        {
+            individualPixels += (long)images.get(i).getWidth() * images.get(i).getHeight() * 4;
+            iconPixels += (long)(icons.get(i).width() + 1) * (icons.get(i).height() + 1) * 4; //with the padding
+        }
+
+        images = null;
+
+        //pack the icons into the atlas, releasing their full resolution images
+        heap = usedHeap();
+        IconAtlas.pack();
+        long atlasHeap = usedHeap() - heap;
+
+        String footprint = "atlas: " + atlasHeap / 1024 + " KB of heap, " + IconAtlas.sizeBytes() / 1024 + " KB of pixels; " +
+                           "individually: " + individualHeap / 1024 + " KB of heap, " + individualPixels / 1024 + " KB of pixels";
+        assertTrue(atlasHeap < individualHeap / 10, footprint);
+        assertTrue(IconAtlas.sizeBytes() < individualPixels / 10, footprint);
+
+        //the atlas holds the icons at their drawn size, with little space left between shelves
+        assertTrue(IconAtlas.sizeBytes() >= iconPixels && IconAtlas.sizeBytes() < iconPixels * 2, footprint);
+    }
+}
@@ -0,0 +1,147 @@
+package src.history;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests taking snapshots of a SensorHistory, including while its writer wraps the ring.
+ */
+class SensorHistoryTest
+{
+    private static final int CAPACITY = 8; //the samples kept by each history
+
+    /**
+     * Creates a history holding samples with the given times, each with its time as its value.
+     *
+     * @param capacity The samples kept
+     * @param samples The number of samples to add, at times 0, 1, 2...
+     * @return The history
+     */
+    private static SensorHistory history(int capacity, int samples)
+    {
+        SensorHistory history = new SensorHistory(capacity);
+        for (int i = 0; i < samples; i++)
+        {
+            history.add(i, i);
+        }
+
+        return history;
+    }
+
+    /**
+     * Takes a snapshot, returning the times of the samples copied.
+     *
+     * @param history The history
+     * @param fromMillis The time of the oldest sample to copy
+     * @param length The length of the arrays to copy into
+     * @return The times of the samples copied, whose values must be their times
+     */
+    private static long[] snapshot(SensorHistory history, long fromMillis, int length)
+    {
+        long[] timestamps = new long[length];
+        double[] values = new double[length];
+        int copied = history.snapshot(fromMillis, timestamps, values);
+        for (int i = 0; i < copied; i++)
+        {
+            assertEquals(timestamps[i], values[i], "a sample's value was copied from another sample");
+        }
+
+        return Arrays.copyOf(timestamps, copied);
+    }
+
+    @Test
+    void copiesEverySampleOfAHistoryThatHasNotWrapped()
+    {
+        SensorHistory history = history(CAPACITY, 5);
+        assertEquals(5, history.count());
+        assertArrayEquals(new long[] {0, 1, 2, 3, 4}, snapshot(history, Long.MIN_VALUE, CAPACITY));
+        assertArrayEquals(new long[0], snapshot(new SensorHistory(CAPACITY), Long.MIN_VALUE, CAPACITY));
+    }
+
+    @Test
+    void copiesTheMostRecentSamplesOldestFirst()
+    {
+        //once wrapped, the oldest slot may be the one the writer is overwriting, so it is never copied
+        SensorHistory history = history(CAPACITY, 20);
+        assertArrayEquals(new long[] {13, 14, 15, 16, 17, 18, 19}, snapshot(history, Long.MIN_VALUE, CAPACITY));
+        assertArrayEquals(new long[] {13, 14, 15, 16, 17, 18, 19}, snapshot(history, Long.MIN_VALUE, CAPACITY * 2));
+
+        //a shorter array receives only the most recent samples
+        assertArrayEquals(new long[] {17, 18, 19}, snapshot(history, Long.MIN_VALUE, 3));
+    }
+
+    @Test
+    void copiesOnlySamplesTakenAtOrAfterTheGivenTime()
+    {
+        SensorHistory history = history(CAPACITY, 20);
+        assertArrayEquals(new long[] {17, 18, 19}, snapshot(history, 17, CAPACITY));
+        assertArrayEquals(new long[0], snapshot(history, 20, CAPACITY));
+    }
+
+    @Test
+    void rejectsACapacityThatIsNotAPowerOfTwo()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new SensorHistory(0));
+        assertThrows(IllegalArgumentException.class, () -> new SensorHistory(12));
+    }
+
+    @Test
+    void takesConsistentSnapshotsWhileTheWriterWrapsTheRing() throws Exception
+    {
+        SensorHistory history = new SensorHistory(CAPACITY);
+        AtomicReference<String> inconsistent = new AtomicReference<>(); //a snapshot which wasn't a window of samples, if any
+
+        //the writer laps the ring many times over while the reader takes snapshots
+        Thread writer = Thread.ofPlatform().start(() ->
+        {
+            for (int i = 0; i < 20_000_000; i++)
+            {
+                history.add(i, i);
+            }
+        });
+
+        long[] timestamps = new long[CAPACITY];
+        double[] values = new double[CAPACITY];
+        long snapshots = 0;
+        long previousNewest = -1;
+        while (writer.isAlive() && inconsistent.get() == null)
+        {
+            int copied = history.snapshot(Long.MIN_VALUE, timestamps, values);
+            snapshots++;
+
+            //every snapshot must be consecutive samples, each with its own value, no older than the last snapshot's
+            for (int i = 0; i < copied; i++)
+            {
+                if (values[i] != timestamps[i] || (i > 0 && timestamps[i] != timestamps[i - 1] + 1))
+                {
+                    inconsistent.set(Arrays.toString(Arrays.copyOf(timestamps, copied)) + " " +
+                                     Arrays.toString(Arrays.copyOf(values, copied)));
+                }
+            }
+
+            if (copied > 0)
+            {
+                if (timestamps[copied - 1] < previousNewest)
+                {
+                    inconsistent.set("went back from " + previousNewest + " to " + timestamps[copied - 1]);
+                }
+
+                previousNewest = timestamps[copied - 1];
+            }
+        }
+
+        writer.join();
+        assertNull(inconsistent.get());
+        assertTrue(snapshots > 1, "only " + snapshots + " snapshots were taken while writing");
+        assertArrayEquals(new long[] {19_999_993, 19_999_994, 19_999_995, 19_999_996, 19_999_997, 19_999_998, 19_999_999},
+                          snapshot(history, Long.MIN_VALUE, CAPACITY));
+    }
+}
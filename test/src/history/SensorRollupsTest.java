@@ -0,0 +1,155 @@
+package src.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests querying SensorRollups, which must read each range from the finest tier that covers it.
+ *
+ * The rollups have a fine tier of ten 1 second buckets and a coarse tier of ten 10 second buckets. A sample is added every
+ * 100 ms for the first minute, each with its number as its value, so sample 550 is at 55 s and the last is at 59.9 s. The
+ * fine tier then only holds the buckets from 50 s on, while the coarse tier still holds every bucket.
+ */
+class SensorRollupsTest
+{
+    private static final long FINE_WIDTH = 1000; //the time span of each fine bucket
+    private static final long COARSE_WIDTH = 10_000; //the time span of each coarse bucket
+    private static final int BUCKETS = 10; //the buckets kept by each tier
+    private static final long SAMPLE_INTERVAL = 100; //the time between each sample
+    private static final long NOW = 59_900; //the time of the last sample
+
+    /**
+     * Creates the rollups, holding a sample every 100 ms up to NOW.
+     *
+     * @return The rollups
+     */
+    private static SensorRollups rollups()
+    {
+        SensorRollups rollups = new SensorRollups(new RollupTier(FINE_WIDTH, BUCKETS), new RollupTier(COARSE_WIDTH, BUCKETS));
+        for (long time = 0; time <= NOW; time += SAMPLE_INTERVAL)
+        {
+            rollups.add(time, time / SAMPLE_INTERVAL);
+        }
+
+        return rollups;
+    }
+
+    /**
+     * Asserts a bucket of a series holds every sample within its time span.
+     *
+     * @param series The series
+     * @param i The index of the bucket
+     * @param start The expected start of the bucket
+     */
+    private static void assertBucket(RollupSeries series, int i, long start)
+    {
+        double first = start / SAMPLE_INTERVAL;
+        long samples = series.widthMillis() / SAMPLE_INTERVAL;
+        assertEquals(start, series.start(i), "start");
+        assertEquals(first, series.min(i), "min");
+        assertEquals(first + samples - 1, series.max(i), "max");
+        assertEquals(first + (samples - 1) / 2.0, series.average(i), "average");
+        assertEquals(samples, series.count(i), "count");
+    }
+
+    @Test
+    void readsARecentRangeFromTheFineTier()
+    {
+        RollupSeries series = new RollupSeries(BUCKETS);
+        assertEquals(5, rollups().query(55_000, NOW, series));
+        assertEquals(FINE_WIDTH, series.widthMillis());
+        for (int i = 0; i < 5; i++)
+        {
+            assertBucket(series, i, 55_000 + i * FINE_WIDTH);
+        }
+    }
+
+    @Test
+    void switchesToTheCoarseTierAtTheOldestFineBucket()
+    {
+        SensorRollups rollups = rollups();
+        RollupSeries series = new RollupSeries(BUCKETS);
+
+        //the oldest bucket the fine tier holds, starting with the sample exactly on its start
+        assertEquals(BUCKETS, rollups.query(50_000, NOW, series));
+        assertEquals(FINE_WIDTH, series.widthMillis());
+        assertBucket(series, 0, 50_000);
+        assertBucket(series, BUCKETS - 1, 59_000);
+
+        //a millisecond earlier falls in a bucket the fine tier has reused for 59 s
+        assertEquals(2, rollups.query(49_999, NOW, series));
+        assertEquals(COARSE_WIDTH, series.widthMillis());
+        assertBucket(series, 0, 40_000);
+        assertBucket(series, 1, 50_000);
+    }
+
+    @Test
+    void readsFromTheCoarseTierWhenTheFineBucketsDontFit()
+    {
+        RollupSeries series = new RollupSeries(4);
+        assertEquals(1, rollups().query(55_000, NOW, series));
+        assertEquals(COARSE_WIDTH, series.widthMillis());
+        assertBucket(series, 0, 50_000);
+    }
+
+    @Test
+    void readsTheMostRecentCoarseBucketsOfARangeNoTierCovers()
+    {
+        RollupSeries series = new RollupSeries(BUCKETS);
+        assertEquals(6, rollups().query(-100_000, NOW, series));
+        assertEquals(COARSE_WIDTH, series.widthMillis());
+        for (int i = 0; i < 6; i++)
+        {
+            assertBucket(series, i, i * COARSE_WIDTH);
+        }
+    }
+
+    @Test
+    void readsWholeBucketsWhileTheWriterRollsUpSamples() throws Exception
+    {
+        //every sample in a bucket has the bucket's start as its value, so a bucket copied mid-write is noticed
+        RollupTier tier = new RollupTier(1, 4);
+        SensorRollups rollups = new SensorRollups(tier);
+        int samples = 20_000_000;
+        AtomicLong latest = new AtomicLong(); //the time of the latest sample
+        Thread writer = Thread.ofPlatform().start(() ->
+        {
+            for (int i = 0; i < samples; i++)
+            {
+                rollups.add(i / 8, i / 8);
+                latest.lazySet(i / 8);
+            }
+        });
+
+        RollupSeries series = new RollupSeries(4);
+        String torn = null;
+        long reads = 0;
+        long buckets = 0;
+        while (writer.isAlive() && torn == null)
+        {
+            //the bucket being written and those before it
+            long now = latest.get();
+            int size = rollups.query(now - 3, now, series);
+            reads++;
+            buckets += size;
+            for (int i = 0; i < size && torn == null; i++)
+            {
+                if (series.min(i) != series.start(i) || series.max(i) != series.start(i) ||
+                    series.average(i) != series.start(i) || series.count(i) > 8)
+                {
+                    torn = "bucket " + series.start(i) + ": min " + series.min(i) + ", max " + series.max(i) + ", average " +
+                           series.average(i) + ", count " + series.count(i);
+                }
+            }
+        }
+
+        writer.join();
+        assertNull(torn);
+        assertTrue(reads > 1 && buckets > reads, "only " + buckets + " buckets were read in " + reads + " reads while writing");
+    }
+}
@@ -0,0 +1,93 @@
+package src.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import src.Sensor;
+
+/**
+ * Tests reading a TelemetryLog while it is being written.
+ */
+class TelemetryLogTest
+{
+    private static final Sensor SENSOR = Sensor.SECONDARY_POWER_USAGE; //set to the time of each sample
+    private static final int SAMPLES = 40_000; //the samples logged, across several segments
+    private static final int BATCH = 256; //the samples set between each wait for the writer, well within the history ring
+    private static final long FIRST_TIMESTAMP = 1_000_000; //the time of the first sample
+
+    @TempDir
+    Path directory; //holds the segments
+
+    @Test
+    void readsEverySampleIntactWhileTheLogIsWritten() throws Exception
+    {
+        AtomicReference<String> corrupted = new AtomicReference<>(); //a sample which was read wrong, if any
+        long[] samples = new long[1]; //the samples of SENSOR read in the last read
+
+        //each sample's value is its time, so a record mixed with another is noticed
+        TelemetryLog.RecordConsumer consumer = (sensor, timestampMillis, value) ->
+        {
+            if (sensor == SENSOR)
+            {
+                if (value != timestampMillis || timestampMillis != FIRST_TIMESTAMP + samples[0])
+                {
+                    corrupted.compareAndSet(null, "sample " + samples[0] + " read as " + value + " at " + timestampMillis);
+                }
+
+                samples[0]++;
+            }
+        };
+
+        try (TelemetryLog log = new TelemetryLog(this.directory, 4096, 64, 1))
+        {
+            log.start("Telemetry Log Test Thread");
+
+            Thread setter = Thread.ofPlatform().start(() ->
+            {
+                for (int i = 0; i < SAMPLES; i++)
+                {
+                    SENSOR.set(FIRST_TIMESTAMP + i, FIRST_TIMESTAMP + i);
+                    if (i % BATCH == BATCH - 1)
+                    {
+                        try
+                        {
+                            Thread.sleep(10);
+                        }
+                        catch (InterruptedException _)
+                        {
+                            return;
+                        }
+                    }
+                }
+            });
+
+            //read the log repeatedly as it is written, each time seeing at least as many samples as before
+            long previous = 0;
+            int reads = 0;
+            while (setter.isAlive())
+            {
+                samples[0] = 0;
+                log.read(consumer);
+                assertNull(corrupted.get());
+                assertTrue(samples[0] >= previous, "read " + samples[0] + " samples after reading " + previous);
+                previous = samples[0];
+                reads++;
+            }
+
+            setter.join();
+            assertTrue(reads > 1, "the log was only read once while written");
+        }
+
+        samples[0] = 0;
+        new TelemetryLog(this.directory, 4096, 64, 1).read(consumer);
+        assertNull(corrupted.get());
+        assertEquals(SAMPLES, samples[0]);
+    }
+}
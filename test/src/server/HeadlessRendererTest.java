@@ -0,0 +1,122 @@
+package src.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import src.Sensor;
+import src.figure.SleekBar;
+
+/**
+ * Tests rendering a panel headless and serving its frames with a FrameServer on loopback.
+ */
+class HeadlessRendererTest
+{
+    private static final int WIDTH = 200; //the width of each frame
+    private static final int HEIGHT = 100; //the height of each frame
+    private static final Sensor SENSOR = Sensor.SYSTEM_COST_PER_HOUR; //displayed on the panel
+    private static final long TIMEOUT_MILLIS = 5000; //the longest a new frame may take to be served
+
+    private final HttpClient client = HttpClient.newHttpClient(); //fetches the frames
+    private FrameServer server; //serves the frames
+    private HeadlessRenderer renderer; //renders the panel
+
+    @BeforeEach
+    void start() throws Exception
+    {
+        this.server = new FrameServer("127.0.0.1", 0);
+        SwingUtilities.invokeAndWait(() ->
+        {
+            //a black panel with a Figure in its top left corner
+            JPanel panel = new JPanel(null);
+            panel.setBackground(Color.BLACK);
+            SleekBar bar = new SleekBar(SENSOR, Color.RED, new Dimension(100, 20), "COST", 10, 2, 2);
+            bar.setBounds(0, 0, 100, 20);
+            panel.add(bar);
+
+            this.renderer = new HeadlessRenderer(panel, WIDTH, HEIGHT, 16, Deflater.BEST_SPEED, this.server::publish);
+            this.renderer.start(50);
+        });
+    }
+
+    @AfterEach
+    void stop() throws Exception
+    {
+        SwingUtilities.invokeAndWait(this.renderer::stop);
+        this.server.close();
+    }
+
+    /**
+     * Fetches the latest frame.
+     *
+     * @return The frame as a PNG
+     * @throws IOException If the frame could not be fetched
+     * @throws InterruptedException If interrupted while fetching the frame
+     */
+    private byte[] fetchFrame() throws IOException, InterruptedException
+    {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + this.server.port() + "/frame.png")).build();
+        HttpResponse<byte[]> response = this.client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        assertEquals("image/png", response.headers().firstValue("Content-Type").orElse(null));
+        return response.body();
+    }
+
+    /**
+     * Decodes a frame.
+     *
+     * @param png The frame as a PNG
+     * @return The decoded frame
+     * @throws IOException If the frame is not a valid PNG
+     */
+    private static BufferedImage decode(byte[] png) throws IOException
+    {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(image, "the frame is not a PNG");
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        return image;
+    }
+
+    @Test
+    void servesEachRenderedFrameAsAPng() throws Exception
+    {
+        byte[] first = fetchFrame();
+        BufferedImage image = decode(first);
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(WIDTH - 1, HEIGHT - 1)); //the panel beneath the Figure
+
+        //a change to the Sensor renders only the Figure's damage again, which must still decode
+        SENSOR.set(SENSOR.max());
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        byte[] frame = first;
+        while (Arrays.equals(frame, first) && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(20);
+            frame = fetchFrame();
+        }
+
+        assertTrue(!Arrays.equals(frame, first), "no frame was rendered after the Sensor changed");
+        BufferedImage changed = decode(frame);
+        assertEquals(Color.BLACK.getRGB(), changed.getRGB(WIDTH - 1, HEIGHT - 1));
+    }
+}
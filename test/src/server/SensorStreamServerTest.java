@@ -0,0 +1,301 @@
+package src.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import src.Sensor;
+import src.metrics.Metrics;
+
+/**
+ * Tests streaming to hundreds of concurrent clients with a SensorStreamServer on loopback, some of which stop reading.
+ *
+ * Over loopback the system buffers megabytes for a client which stops reading before the server notices, so slow clients
+ * are streamed to directly through a stream which blocks until released, as a full socket would.
+ */
+class SensorStreamServerTest
+{
+    private static final Sensor SENSOR = Sensor.INTERNET_UPLOAD_USAGE; //set to the number of each step
+    private static final Sensor OTHER_SENSOR = Sensor.VRAM_USAGE; //set only once, so only a coalesced delta can carry it
+    private static final int FAST_CLIENTS = 200; //read each event as it is sent
+    private static final int SLOW_CLIENTS = 100; //stop reading after the snapshot until released
+    private static final int QUEUE_SIZE = 16; //the most deltas queued to each client
+    private static final long INTERVAL_MILLIS = 50; //the time between publishing each delta
+    private static final int STEPS = 3 * QUEUE_SIZE; //each publishes one delta, so that each slow client's queue fills
+    private static final long TIMEOUT_MILLIS = 30_000; //the longest any client may take to receive every step
+    private static final LongAdder DELTAS = Metrics.counter("Sensor stream deltas");
+    private static final LongAdder COALESCED_QUEUES = Metrics.counter("Sensor stream coalesced queues");
+
+    private final ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor(); //runs each client
+    private final HttpClient httpClient = HttpClient.newHttpClient(); //connects the fast clients
+    private final CountDownLatch release = new CountDownLatch(1); //lets the slow clients read again
+    private SensorStreamServer server; //the server being tested
+
+    /**
+     * A client which stops reading after the snapshot until released.
+     */
+    private final class SlowClient extends OutputStream
+    {
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream(); //every event written
+        private final CountDownLatch snapshot = new CountDownLatch(1); //counted down once the snapshot is written
+
+        @Override
+        public synchronized void write(int b)
+        {
+            this.received.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException
+        {
+            if (this.snapshot.getCount() == 0)
+            {
+                try
+                {
+                    SensorStreamServerTest.this.release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IOException(e);
+                }
+            }
+
+            synchronized (this)
+            {
+                this.received.write(bytes, offset, length);
+            }
+            this.snapshot.countDown();
+        }
+
+        /**
+         * Returns every event written so far.
+         *
+         * @return The events
+         */
+        synchronized String received()
+        {
+            return this.received.toString(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @BeforeEach
+    void start() throws IOException, InterruptedException
+    {
+        SENSOR.set(0);
+        OTHER_SENSOR.set(0);
+        this.server = new SensorStreamServer("127.0.0.1", 0, INTERVAL_MILLIS, QUEUE_SIZE, false);
+        Thread.sleep(2 * INTERVAL_MILLIS); //publishes any change made before the clients connect
+    }
+
+    @AfterEach
+    void stop()
+    {
+        this.release.countDown();
+        this.server.close();
+        this.clientThreads.shutdownNow();
+        this.httpClient.close();
+    }
+
+    /**
+     * Returns the value of a Sensor in an event's data, e.g. data: {"FPS":144}
+     *
+     * @param data The data line
+     * @param sensor The Sensor
+     * @return The value, or NaN if the Sensor isn't in the event
+     */
+    private static double value(String data, Sensor sensor)
+    {
+        String key = "\"" + sensor.name() + "\":";
+        int start = data.indexOf(key);
+        if (start < 0)
+        {
+            return Double.NaN;
+        }
+
+        start += key.length();
+        int end = start;
+        while (data.charAt(end) != ',' && data.charAt(end) != '}')
+        {
+            end++;
+        }
+
+        return Double.parseDouble(data.substring(start, end));
+    }
+
+    /**
+     * Returns the values of a Sensor in each delta of a stream.
+     *
+     * @param lines The lines of the stream
+     * @param sensor The Sensor
+     * @return The values, in the order they were sent
+     */
+    private static List<Double> deltaValues(List<String> lines, Sensor sensor)
+    {
+        List<Double> values = new ArrayList<>();
+        for (int i = 1; i < lines.size(); i++)
+        {
+            if (lines.get(i - 1).equals("event: delta") && !Double.isNaN(value(lines.get(i), sensor)))
+            {
+                values.add(value(lines.get(i), sensor));
+            }
+        }
+
+        return values;
+    }
+
+    @Test
+    void keepsFastClientsUpToDateAndCoalescesSlowClients() throws Exception
+    {
+        //connect every client and wait for each snapshot
+        CountDownLatch connected = new CountDownLatch(FAST_CLIENTS + SLOW_CLIENTS);
+        CountDownLatch finished = new CountDownLatch(FAST_CLIENTS); //counted down as each fast client receives the last step
+        List<List<String>> fastLines = new ArrayList<>();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + this.server.port() + "/events")).build();
+        for (int i = 0; i < FAST_CLIENTS; i++)
+        {
+            List<String> lines = new ArrayList<>();
+            fastLines.add(lines);
+            this.clientThreads.execute(() ->
+            {
+                try (Stream<String> stream = this.httpClient.send(request, HttpResponse.BodyHandlers.ofLines()).body())
+                {
+                    for (String line : (Iterable<String>)stream::iterator)
+                    {
+                        synchronized (lines)
+                        {
+                            lines.add(line);
+                        }
+
+                        if (line.startsWith("event: snapshot"))
+                        {
+                            connected.countDown();
+                        }
+                        else if (value(line, SENSOR) == STEPS)
+                        {
+                            finished.countDown();
+                            return;
+                        }
+                    }
+                }
+                catch (IOException | InterruptedException _)
+                {
+                    //the test failed or is over
+                }
+            });
+        }
+
+        List<SlowClient> slowClients = new ArrayList<>();
+        for (int i = 0; i < SLOW_CLIENTS; i++)
+        {
+            SlowClient client = new SlowClient();
+            slowClients.add(client);
+            this.clientThreads.execute(() ->
+            {
+                try
+                {
+                    this.server.stream(client);
+                }
+                catch (IOException | InterruptedException _)
+                {
+                    //the test is over
+                }
+            });
+            this.clientThreads.execute(() ->
+            {
+                try
+                {
+                    client.snapshot.await();
+                    connected.countDown();
+                }
+                catch (InterruptedException _)
+                {
+                    //the test is over
+                }
+            });
+        }
+
+        assertTrue(connected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "the clients didn't all connect");
+
+        //publish one delta per step
+        long coalescedBefore = COALESCED_QUEUES.sum();
+        for (int step = 1; step <= STEPS; step++)
+        {
+            long deltas = DELTAS.sum();
+            SENSOR.set(step);
+            if (step == 2)
+            {
+                OTHER_SENSOR.set(1);
+            }
+
+            while (DELTAS.sum() == deltas)
+            {
+                Thread.sleep(1);
+            }
+        }
+
+        //every fast client receives every step in order
+        assertTrue(finished.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "the fast clients didn't all keep up");
+        List<Double> everyStep = new ArrayList<>();
+        for (int step = 1; step <= STEPS; step++)
+        {
+            everyStep.add((double)step);
+        }
+
+        for (List<String> lines : fastLines)
+        {
+            synchronized (lines)
+            {
+                assertEquals(everyStep, deltaValues(lines, SENSOR));
+                assertEquals(List.of(1.0), deltaValues(lines, OTHER_SENSOR));
+            }
+        }
+
+        //every slow client's queue was coalesced at least once as it filled
+        assertTrue(COALESCED_QUEUES.sum() - coalescedBefore >= SLOW_CLIENTS,
+                   "only " + (COALESCED_QUEUES.sum() - coalescedBefore) + " queues were coalesced");
+
+        //once released, each slow client catches up with fewer deltas, none of which are older than the last. A coalesced
+        //delta has the latest values, so it may already have the step published after it
+        this.release.countDown();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (SlowClient client : slowClients)
+        {
+            while (!client.received().contains("\"" + SENSOR.name() + "\":" + STEPS) && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(1);
+            }
+
+            List<String> lines = client.received().lines().toList();
+            List<Double> values = deltaValues(lines, SENSOR);
+            assertEquals(STEPS, values.getLast(), "a slow client didn't catch up");
+            assertTrue(values.size() < STEPS, "a slow client was sent every delta");
+            for (int i = 1; i < values.size(); i++)
+            {
+                assertTrue(values.get(i) >= values.get(i - 1), "a slow client was sent an older delta: " + values);
+            }
+
+            //the change to the other Sensor was dropped from the queue, so must be carried by the coalesced delta
+            assertEquals(List.of(1.0), deltaValues(lines, OTHER_SENSOR));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests falling back from a failing primary HwInfoSource and retrying it with FallbackHwInfoSource.
+ */
+class FallbackHwInfoSourceTest
+{
+    private static final int MAX_FAILURES = 3; //the consecutive failures before falling back
+    private static final long RETRY_MILLIS = 200; //the time before first retrying the primary source
+    private static final int PRIMARY = 0; //the exit code of the primary source's snapshots
+    private static final int FALLBACK = 7; //the exit code of the fallback source's snapshots
+
+    private final ReusableBuffer output = new ReusableBuffer(16); //receives each snapshot
+
+    /**
+     * Stands in for a source which can be made to fail.
+     */
+    private static final class StandInSource implements HwInfoSource
+    {
+        private final int exitCode; //the exit code of each snapshot
+        private boolean failing; //whether each poll fails
+        private int polls; //the number of polls
+        private int closes; //the number of times the source was closed
+
+        /**
+         * Creates a new StandInSource.
+         *
+         * @param exitCode The exit code of each snapshot
+         */
+        private StandInSource(int exitCode)
+        {
+            this.exitCode = exitCode;
+        }
+
+        @Override
+        public int poll(ReusableBuffer output) throws IOException
+        {
+            this.polls++;
+            if (this.failing)
+            {
+                throw new IOException("stand-in failure");
+            }
+
+            output.clear();
+            return this.exitCode;
+        }
+
+        @Override
+        public void close()
+        {
+            this.closes++;
+        }
+    }
+
+    @Test
+    void fallsBackAfterConsecutiveFailuresAndRetriesThePrimary() throws Exception
+    {
+        StandInSource primary = new StandInSource(PRIMARY);
+        StandInSource fallback = new StandInSource(FALLBACK);
+        primary.failing = true;
+
+        try (FallbackHwInfoSource source = new FallbackHwInfoSource(primary, fallback, MAX_FAILURES,
+                                                                    Duration.ofMillis(RETRY_MILLIS)))
+        {
+            //each failure is covered by the fallback source, and the primary is closed after the last
+            for (int i = 0; i < MAX_FAILURES; i++)
+            {
+                assertEquals(FALLBACK, source.poll(this.output));
+            }
+
+            assertEquals(MAX_FAILURES, primary.polls);
+            assertEquals(1, primary.closes);
+
+            //the primary is left alone until the retry interval passes
+            primary.failing = false;
+            assertEquals(FALLBACK, source.poll(this.output));
+            assertEquals(MAX_FAILURES, primary.polls);
+
+            //then used again once a retry succeeds
+            Thread.sleep(RETRY_MILLIS + 50);
+            assertEquals(PRIMARY, source.poll(this.output));
+            assertEquals(PRIMARY, source.poll(this.output));
+            assertEquals(MAX_FAILURES + 2, primary.polls);
+            assertEquals(MAX_FAILURES + 1, fallback.polls);
+        }
+    }
+
+    @Test
+    void doublesTheRetryIntervalAfterEachFailedRetry() throws Exception
+    {
+        StandInSource primary = new StandInSource(PRIMARY);
+        StandInSource fallback = new StandInSource(FALLBACK);
+        primary.failing = true;
+
+        try (FallbackHwInfoSource source = new FallbackHwInfoSource(primary, fallback, MAX_FAILURES,
+                                                                    Duration.ofMillis(RETRY_MILLIS)))
+        {
+            for (int i = 0; i < MAX_FAILURES; i++)
+            {
+                source.poll(this.output);
+            }
+
+            //the first retry fails
+            Thread.sleep(RETRY_MILLIS + 50);
+            assertEquals(FALLBACK, source.poll(this.output));
+            assertEquals(MAX_FAILURES + 1, primary.polls);
+
+            //so the next waits twice as long
+            Thread.sleep(RETRY_MILLIS + 50);
+            assertEquals(FALLBACK, source.poll(this.output));
+            assertEquals(MAX_FAILURES + 1, primary.polls);
+
+            Thread.sleep(RETRY_MILLIS);
+            primary.failing = false;
+            assertEquals(PRIMARY, source.poll(this.output));
+            assertEquals(MAX_FAILURES + 2, primary.polls);
+        }
+    }
+}
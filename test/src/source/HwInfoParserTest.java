@@ -0,0 +1,77 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests parsing the labels and values out of HwInfo's registry output with HwInfoParser.
+ */
+class HwInfoParserTest
+{
+    /**
+     * Parses the values of the given output.
+     *
+     * @param output The output
+     * @return Each value parsed, as "index=value"
+     */
+    private static List<String> values(byte[] output)
+    {
+        List<String> values = new ArrayList<>();
+        HwInfoParser.parse(output, output.length, (index, value) -> values.add(index + "=" + value));
+        return values;
+    }
+
+    /**
+     * Returns the given output as bytes.
+     *
+     * @param output The output
+     * @return The bytes
+     */
+    private static byte[] bytes(String output)
+    {
+        return output.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void parsesTheLabelAndValueAtEachIndex()
+    {
+        byte[] output = bytes("    Sensor0    REG_SZ    CPU [#0]: AMD Ryzen 9 7950X\n" +
+                              "    Label0    REG_SZ    CPU (Tctl/Tdie)   \n" +
+                              "    ValueRaw0    REG_SZ    61.5\n" +
+                              "    Label2    REG_SZ    Physical Memory Load\n" +
+                              "    ValueRaw2    REG_SZ    45.2\n");
+
+        assertArrayEquals(new String[] {"CPU (Tctl/Tdie)", null, "Physical Memory Load"},
+                          HwInfoParser.parseLabels(output, output.length));
+        assertEquals(List.of("0=61.5", "2=45.2"), values(output));
+    }
+
+    @Test
+    void skipsEntriesWithAnIndexOfMaxEntriesOrMore()
+    {
+        int last = HwInfoParser.MAX_ENTRIES - 1;
+        byte[] output = bytes("    Label0    REG_SZ    CPU (Tctl/Tdie)\n" +
+                              "    Label" + HwInfoParser.MAX_ENTRIES + "    REG_SZ    Corrupt\n" +
+                              "    Label999999999    REG_SZ    Corrupt\n" +
+                              "    ValueRaw0    REG_SZ    61.5\n" +
+                              "    ValueRaw" + HwInfoParser.MAX_ENTRIES + "    REG_SZ    1.0\n" +
+                              "    ValueRaw999999999    REG_SZ    1.0\n");
+
+        //a corrupt index must not size the labels, which would take gigabytes for the largest index parsed
+        assertArrayEquals(new String[] {"CPU (Tctl/Tdie)"}, HwInfoParser.parseLabels(output, output.length));
+        assertEquals(List.of("0=61.5"), values(output));
+
+        //the last index allowed is still parsed
+        byte[] lastEntry = bytes("    Label" + last + "    REG_SZ    Last\n    ValueRaw" + last + "    REG_SZ    2.5\n");
+        String[] labels = HwInfoParser.parseLabels(lastEntry, lastEntry.length);
+        assertEquals(HwInfoParser.MAX_ENTRIES, labels.length);
+        assertEquals("Last", labels[last]);
+        assertEquals(List.of(last + "=2.5"), values(lastEntry));
+    }
+}
@@ -0,0 +1,173 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import src.Sensor;
+
+/**
+ * Tests HwInfoSharedMemorySource against dumps of the HWiNFO_SENS_SM2 block mapped from a regular file.
+ *
+ * The dumps are written by each test in the layout HwInfo publishes, with a reading for some of the Sensors read from HwInfo
+ * among readings no Sensor reads.
+ */
+class HwInfoSharedMemorySourceTest
+{
+    private static final int SIGNATURE = 0x53695748; //"HWiS"
+    private static final int HEADER_SIZE = 44;
+    private static final int READING_SIZE = 316; //type, sensor index, ID, both labels, unit, value, min, max and average
+    private static final int LABEL_LENGTH = 128;
+    private static final int VALUE_OFFSET = 12 + 2 * LABEL_LENGTH + 16;
+
+    @TempDir
+    Path directory; //holds the dumps
+
+    /**
+     * A reading in a dump.
+     *
+     * @param originalLabel The label HwInfo gives the reading
+     * @param userLabel The label the user gave the reading, or an empty string
+     * @param value The value of the reading
+     */
+    private record Reading(String originalLabel, String userLabel, double value) {}
+
+    /**
+     * Writes a dump of the block.
+     *
+     * @param signature The signature of the block
+     * @param readings The readings in the block
+     * @return The dump
+     * @throws IOException If the dump could not be written
+     */
+    private Path dump(int signature, Reading... readings) throws IOException
+    {
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + readings.length * READING_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        block.putInt(0, signature);
+        block.putInt(32, HEADER_SIZE);
+        block.putInt(36, READING_SIZE);
+        block.putInt(40, readings.length);
+
+        for (int i = 0; i < readings.length; i++)
+        {
+            int offset = HEADER_SIZE + i * READING_SIZE;
+            block.put(offset + 12, readings[i].originalLabel().getBytes(StandardCharsets.ISO_8859_1));
+            block.put(offset + 12 + LABEL_LENGTH, readings[i].userLabel().getBytes(StandardCharsets.ISO_8859_1));
+            block.putDouble(offset + VALUE_OFFSET, readings[i].value());
+        }
+
+        Path path = this.directory.resolve("HWiNFO_SENS_SM2.bin");
+        Files.write(path, block.array());
+        return path;
+    }
+
+    @Test
+    void setsTheSensorOfEachMatchedReading() throws IOException
+    {
+        Path path = dump(SIGNATURE, new Reading("Core 0 Clock", "", 5000),
+                                    new Reading(Sensor.CPU_TEMPERATURE.hwInfoLabel(), "", 61.5),
+                                    new Reading("Drive Temperature", "", 40),
+                                    new Reading(Sensor.INTERNET_DOWNLOAD_USAGE.hwInfoLabel(), "", 1000));
+
+        try (HwInfoSharedMemorySource source = HwInfoSharedMemorySource.openFile(path))
+        {
+            source.poll();
+            assertEquals(61.5, Sensor.CPU_TEMPERATURE.getData());
+            assertEquals(8, Sensor.INTERNET_DOWNLOAD_USAGE.getData(), 1e-9); //KB/s converted to Mb/s
+        }
+    }
+
+    @Test
+    void prefersTheLabelTheUserGave() throws IOException
+    {
+        Path path = dump(SIGNATURE, new Reading(Sensor.GPU_TEMPERATURE.hwInfoLabel(), "", 30),
+                                    new Reading("GPU Hot Spot", Sensor.GPU_TEMPERATURE.hwInfoLabel(), 72));
+
+        try (HwInfoSharedMemorySource source = HwInfoSharedMemorySource.openFile(path))
+        {
+            source.poll();
+            assertEquals(72, Sensor.GPU_TEMPERATURE.getData());
+        }
+    }
+
+    @Test
+    void readsValuesInPlaceAsTheBlockChanges() throws IOException
+    {
+        Path path = dump(SIGNATURE, new Reading(Sensor.RAM_USAGE.hwInfoLabel(), "", 40));
+
+        try (HwInfoSharedMemorySource source = HwInfoSharedMemorySource.openFile(path);
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+        {
+            source.poll();
+            assertEquals(40, Sensor.RAM_USAGE.getData());
+
+            //HwInfo updates the values within the block it already published
+            ByteBuffer value = ByteBuffer.allocate(Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).putDouble(0, 55);
+            channel.write(value, HEADER_SIZE + VALUE_OFFSET);
+            source.poll();
+            assertEquals(55, Sensor.RAM_USAGE.getData());
+
+            //an unchanged value is still a sample
+            long count = Sensor.RAM_USAGE.history().count();
+            source.poll();
+            assertEquals(count + 1, Sensor.RAM_USAGE.history().count());
+            assertEquals(55, Sensor.RAM_USAGE.getData());
+        }
+    }
+
+    @Test
+    void rematchesReadingsWhenTheLayoutChanges() throws IOException
+    {
+        Path path = dump(SIGNATURE, new Reading(Sensor.GPU_USAGE.hwInfoLabel(), "", 10));
+
+        try (HwInfoSharedMemorySource source = HwInfoSharedMemorySource.openFile(path))
+        {
+            source.poll();
+            assertEquals(10, Sensor.GPU_USAGE.getData());
+
+            //HwInfo reallocates the block when readings are added, moving the existing readings
+            dump(SIGNATURE, new Reading("Fan 1", "", 1200), new Reading(Sensor.GPU_USAGE.hwInfoLabel(), "", 90));
+            source.poll();
+            assertEquals(90, Sensor.GPU_USAGE.getData());
+        }
+    }
+
+    @Test
+    void failsWhenTheBlockIsInactive() throws IOException
+    {
+        Path path = dump(0, new Reading(Sensor.FPS.hwInfoLabel(), "", 144));
+
+        try (HwInfoSharedMemorySource source = HwInfoSharedMemorySource.openFile(path))
+        {
+            IOException e = assertThrows(IOException.class, source::poll);
+            assertEquals("HwInfo shared memory is inactive", e.getMessage());
+        }
+    }
+
+    @Test
+    void failsWhenTheBlockIsTruncated() throws IOException
+    {
+        Path path = dump(SIGNATURE, new Reading(Sensor.FPS.hwInfoLabel(), "", 144));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+        {
+            channel.truncate(HEADER_SIZE + READING_SIZE / 2);
+        }
+
+        try (HwInfoSharedMemorySource source = HwInfoSharedMemorySource.openFile(path))
+        {
+            IOException e = assertThrows(IOException.class, source::poll);
+            assertEquals("HwInfo shared memory is truncated", e.getMessage());
+        }
+    }
+}
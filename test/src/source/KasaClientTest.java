@@ -0,0 +1,128 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests KasaClient against StandInKasaPlugs on loopback addresses.
+ */
+class KasaClientTest
+{
+    private static final long TIMEOUT_MILLIS = 1000; //how long each poll waits for the plugs
+    private static final long EXPIRY_MILLIS = 300; //how long a plug's power draw is used after it last responded
+
+    private StandInKasaPlug first; //a plug on 127.0.0.1
+    private StandInKasaPlug second; //a plug on 127.0.0.2, sharing the first plug's port
+    private KasaClient client; //queries both plugs
+
+    @BeforeEach
+    void start() throws IOException
+    {
+        this.first = new StandInKasaPlug("127.0.0.1", 0, StandInKasaPlug.milliwattResponse(123_456));
+        this.second = new StandInKasaPlug("127.0.0.2", this.first.port(), StandInKasaPlug.wattResponse(76.5));
+        this.client = new KasaClient(List.of("127.0.0.1", "127.0.0.2"), this.first.port(), EXPIRY_MILLIS);
+    }
+
+    @AfterEach
+    void stop() throws IOException
+    {
+        this.client.close();
+        this.first.close();
+        this.second.close();
+    }
+
+    @Test
+    void combinesThePowerDrawOfEveryPlug()
+    {
+        assertEquals(2, this.client.poll(TIMEOUT_MILLIS));
+        assertEquals(123.456 + 76.5, this.client.totalPower(), 1e-9);
+    }
+
+    @Test
+    void keepsConnectionsOpenBetweenPolls()
+    {
+        for (int poll = 0; poll < 5; poll++)
+        {
+            assertEquals(2, this.client.poll(TIMEOUT_MILLIS));
+        }
+
+        assertEquals(1, this.first.connections());
+        assertEquals(1, this.second.connections());
+    }
+
+    @Test
+    void retriesWhenAPlugClosesAnIdleConnection()
+    {
+        this.first.afterResponse(StandInKasaPlug.AfterResponse.CLOSE);
+        for (int poll = 0; poll < 3; poll++)
+        {
+            assertEquals(2, this.client.poll(TIMEOUT_MILLIS));
+        }
+
+        assertEquals(3, this.first.connections());
+        assertEquals(3, this.first.requests());
+    }
+
+    @Test
+    void retriesWhenAPlugResetsAnIdleConnection() throws InterruptedException
+    {
+        this.first.afterResponse(StandInKasaPlug.AfterResponse.RESET);
+        for (int poll = 0; poll < 3; poll++)
+        {
+            assertEquals(2, this.client.poll(TIMEOUT_MILLIS));
+            Thread.sleep(50); //let the reset arrive while the connection is idle
+        }
+
+        assertEquals(3, this.first.connections());
+    }
+
+    @Test
+    void waitsForEveryPlugBeforeReportingAPowerDraw()
+    {
+        this.second.respond(null);
+        assertEquals(1, this.client.poll(100));
+        assertTrue(Double.isNaN(this.client.totalPower()));
+    }
+
+    @Test
+    void leavesOutAPlugOnceItsPowerDrawExpires() throws InterruptedException
+    {
+        assertEquals(2, this.client.poll(TIMEOUT_MILLIS));
+
+        //the second plug stops responding, so its last-known power draw is only used until it expires
+        this.second.respond(null);
+        assertEquals(1, this.client.poll(100));
+        assertEquals(123.456 + 76.5, this.client.totalPower(), 1e-9);
+
+        Thread.sleep(EXPIRY_MILLIS);
+        assertEquals(1, this.client.poll(100));
+        assertEquals(123.456, this.client.totalPower(), 1e-9);
+
+        //once every plug's power draw has expired, the total is no longer known
+        this.first.respond(null);
+        Thread.sleep(EXPIRY_MILLIS);
+        assertTrue(Double.isNaN(this.client.totalPower()));
+    }
+
+    @Test
+    void backsOffFromAPlugThatFails() throws IOException
+    {
+        this.second.close();
+        try (KasaClient client = new KasaClient(List.of("127.0.0.2"), this.first.port(), EXPIRY_MILLIS))
+        {
+            assertEquals(0, client.poll(TIMEOUT_MILLIS));
+
+            //the plug is not queried again until its backoff ends
+            long start = System.nanoTime();
+            assertEquals(0, client.poll(TIMEOUT_MILLIS));
+            assertTrue(System.nanoTime() - start < TIMEOUT_MILLIS * 1_000_000 / 2);
+        }
+    }
+}
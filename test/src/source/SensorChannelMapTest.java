@@ -0,0 +1,65 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import src.Sensor;
+
+/**
+ * Tests routing the values reported on each channel to Sensors with a SensorChannelMap.
+ */
+class SensorChannelMapTest
+{
+    private static final Sensor FIRST = Sensor.MAX_SINGLE_CORE_CPU_USAGE; //on channel 0
+    private static final Sensor SECOND = Sensor.COMBINED_CPU_USAGE; //on channel 2, after an unused channel
+
+    @Test
+    void setsTheSensorOfEachChannelConverted()
+    {
+        SensorChannelMap channels = new SensorChannelMap(value -> value * 2, FIRST, null, SECOND);
+
+        assertTrue(channels.set(0, 10, 1000));
+        assertTrue(channels.set(2, 21.5, 2000));
+        assertEquals(20, FIRST.getData());
+        assertEquals(43, SECOND.getData());
+
+        long[] timestamps = new long[1];
+        double[] values = new double[1];
+        assertEquals(1, SECOND.history().snapshot(Long.MIN_VALUE, timestamps, values));
+        assertEquals(2000, timestamps[0]);
+    }
+
+    @Test
+    void ignoresChannelsWithoutASensor()
+    {
+        SensorChannelMap channels = new SensorChannelMap(value -> value, FIRST, null, SECOND);
+        FIRST.set(1);
+        SECOND.set(2);
+        long firstCount = FIRST.history().count();
+        long secondCount = SECOND.history().count();
+
+        assertFalse(channels.set(1, 50)); //unused
+        assertFalse(channels.set(3, 50)); //past the last channel
+        assertFalse(channels.set(-1, 50));
+        assertFalse(channels.set(Integer.MAX_VALUE, 50));
+
+        assertEquals(1, FIRST.getData());
+        assertEquals(2, SECOND.getData());
+        assertEquals(firstCount, FIRST.history().count());
+        assertEquals(secondCount, SECOND.history().count());
+    }
+
+    @Test
+    void isUnaffectedByChangesToTheSensorsItWasGiven()
+    {
+        Sensor[] sensors = {FIRST};
+        SensorChannelMap channels = new SensorChannelMap(value -> value, sensors);
+        sensors[0] = SECOND;
+
+        assertTrue(channels.set(0, 33));
+        assertEquals(33, FIRST.getData());
+    }
+}
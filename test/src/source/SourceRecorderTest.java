@@ -0,0 +1,167 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import src.Sensor;
+
+/**
+ * Tests recording each kind of input with a SourceRecorder and replaying it with a SourceReplayer.
+ */
+class SourceRecorderTest
+{
+    private static final int HEADER_SIZE = 44; //the size of the header of HwInfo's shared memory block
+    private static final int READING_SIZE = 316; //type, sensor index, ID, both labels, unit, value, min, max and average
+    private static final int VALUE_OFFSET = 12 + 2 * 128 + 16; //the offset of the value within a reading
+    private static final Sensor SHARED_MEMORY_SENSOR = Sensor.GPU_POWER_USAGE; //read from the shared memory block
+
+    @TempDir
+    Path directory; //holds the recording
+
+    /**
+     * An input received by the replay.
+     *
+     * @param type The type of the input
+     * @param value The bytes or value of the input, as text
+     * @param timestampMillis The time the input was recorded at
+     */
+    private record Input(String type, String value, long timestampMillis) {}
+
+    /**
+     * Creates a shared memory block with two readings, the second of which is read by SHARED_MEMORY_SENSOR.
+     *
+     * @param value The value of the second reading
+     * @return The block
+     */
+    private static ByteBuffer sharedMemory(double value)
+    {
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + 2 * READING_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        block.putInt(0, 0x53695748); //"HWiS"
+        block.putInt(32, HEADER_SIZE);
+        block.putInt(36, READING_SIZE);
+        block.putInt(40, 2);
+        block.put(HEADER_SIZE + 12, "Fan 1".getBytes(StandardCharsets.ISO_8859_1));
+        block.put(HEADER_SIZE + READING_SIZE + 12, SHARED_MEMORY_SENSOR.hwInfoLabel().getBytes(StandardCharsets.ISO_8859_1));
+        block.putDouble(HEADER_SIZE + VALUE_OFFSET, 1200);
+        block.putDouble(HEADER_SIZE + READING_SIZE + VALUE_OFFSET, value);
+        return block;
+    }
+
+    @Test
+    void replaysEachInputWithTheTimeItWasRecorded() throws Exception
+    {
+        Path path = this.directory.resolve("recording.bin");
+        byte[] snapshot = "    Label0    REG_SZ    CPU (Tctl/Tdie)\n".getBytes(StandardCharsets.US_ASCII);
+        List<String> handled = new ArrayList<>();
+        ByteBuffer block = sharedMemory(120);
+
+        long recordingStart = System.currentTimeMillis();
+        try (SourceRecorder recorder = new SourceRecorder(path);
+             HwInfoSource registry = recorder.recording(new HwInfoSource()
+             {
+                 @Override
+                 public int poll(ReusableBuffer output) throws IOException
+                 {
+                     output.clear();
+                     output.readFully(new ByteArrayInputStream(snapshot));
+                     return 1;
+                 }
+
+                 @Override
+                 public void close() {}
+             });
+             HwInfoSharedMemorySource sharedMemory = HwInfoSharedMemorySource.openBuffer(block))
+        {
+            assertEquals(1, registry.poll(new ReusableBuffer(16)));
+
+            UdpReceiver.DatagramHandler handler = recorder.recording(9999, (datagram, _) ->
+                handled.add(StandardCharsets.US_ASCII.decode(datagram.duplicate()).toString()));
+            handler.handle(ByteBuffer.wrap("1:31.5".getBytes(StandardCharsets.US_ASCII)), System.currentTimeMillis());
+
+            byte[] response = {0, 0, 0, 2, 42, 43};
+            recorder.recordKasa("192.168.1.50", response, response.length);
+
+            //the block is recorded once, then only the values read from it
+            sharedMemory.record(recorder);
+            sharedMemory.poll();
+            block.putDouble(HEADER_SIZE + READING_SIZE + VALUE_OFFSET, 240);
+            sharedMemory.poll();
+        }
+        long recordingEnd = System.currentTimeMillis();
+        assertEquals(List.of("1:31.5"), handled);
+
+        Thread.sleep(20); //so replayed times can't be mistaken for recorded times
+        List<Input> inputs = new ArrayList<>();
+        try (SourceReplayer replayer = new SourceReplayer(path))
+        {
+            long replayed = replayer.replay(Double.POSITIVE_INFINITY, new SourceReplayer.Listener()
+            {
+                @Override
+                public void hwInfoRegistry(ReusableBuffer output, int exitCode, long timestampMillis)
+                {
+                    inputs.add(new Input("registry " + exitCode, output.toString(), timestampMillis));
+                }
+
+                @Override
+                public void hwInfoSharedMemory(ByteBuffer block, long timestampMillis) throws IOException
+                {
+                    //replay through a source as SensorPanel does, which must set the Sensor at the recorded time
+                    try (HwInfoSharedMemorySource source = HwInfoSharedMemorySource.openBuffer(block))
+                    {
+                        source.poll(timestampMillis);
+                    }
+
+                    long[] timestamps = new long[1];
+                    double[] values = new double[1];
+                    assertEquals(1, SHARED_MEMORY_SENSOR.history().snapshot(Long.MIN_VALUE, timestamps, values));
+                    assertEquals(timestampMillis, timestamps[0]);
+                    inputs.add(new Input("shared memory", Double.toString(values[0]), timestampMillis));
+                }
+
+                @Override
+                public void datagram(int port, ByteBuffer datagram, long timestampMillis)
+                {
+                    inputs.add(new Input("datagram " + port, StandardCharsets.US_ASCII.decode(datagram).toString(),
+                                         timestampMillis));
+                }
+
+                @Override
+                public void kasa(String host, byte[] response, int length, long timestampMillis)
+                {
+                    inputs.add(new Input("kasa " + host, Arrays.toString(Arrays.copyOf(response, length)), timestampMillis));
+                }
+            });
+
+            //the block itself is an input, but is only passed on with the values of each poll
+            assertEquals(6, replayed);
+        }
+
+        assertEquals(List.of("registry 1", "datagram 9999", "kasa 192.168.1.50", "shared memory", "shared memory"),
+                     inputs.stream().map(Input::type).toList());
+        assertEquals(new String(snapshot, StandardCharsets.US_ASCII), inputs.get(0).value());
+        assertEquals("1:31.5", inputs.get(1).value());
+        assertEquals(Arrays.toString(new byte[] {0, 0, 0, 2, 42, 43}), inputs.get(2).value());
+        assertArrayEquals(new String[] {"120.0", "240.0"}, new String[] {inputs.get(3).value(), inputs.get(4).value()});
+
+        long previous = recordingStart;
+        for (Input input : inputs)
+        {
+            assertTrue(input.timestampMillis() >= previous && input.timestampMillis() <= recordingEnd, input.toString());
+            previous = input.timestampMillis();
+        }
+    }
+}
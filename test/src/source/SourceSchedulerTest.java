@@ -0,0 +1,59 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that SourceScheduler keeps polling a source whatever its polls throw.
+ */
+class SourceSchedulerTest
+{
+    @Test
+    void keepsPollingAfterAnErrorOrAnInterrupt() throws InterruptedException
+    {
+        AtomicInteger polls = new AtomicInteger();
+        CountDownLatch recovered = new CountDownLatch(1);
+
+        try (SourceScheduler scheduler = new SourceScheduler("Source Scheduler Test"))
+        {
+            scheduler.schedule("Failing Source", Duration.ofMillis(10), () ->
+            {
+                switch (polls.incrementAndGet())
+                {
+                    case 1 -> throw new AssertionError("a failed assertion in a source");
+                    case 2 -> throw new InterruptedException("an interrupted source");
+                    case 3 -> throw new IllegalStateException("a failed source");
+                    default -> recovered.countDown();
+                }
+            });
+
+            assertTrue(recovered.await(5, TimeUnit.SECONDS), "polling stopped after poll " + polls.get());
+        }
+    }
+
+    @Test
+    void stopsPollingOnceClosed() throws InterruptedException
+    {
+        AtomicInteger polls = new AtomicInteger();
+        CountDownLatch polled = new CountDownLatch(1);
+
+        SourceScheduler scheduler = new SourceScheduler("Source Scheduler Test");
+        scheduler.schedule("Closed Source", Duration.ofMillis(10), () ->
+        {
+            polls.incrementAndGet();
+            polled.countDown();
+        });
+
+        assertTrue(polled.await(5, TimeUnit.SECONDS));
+        scheduler.close();
+        int closedPolls = polls.get();
+        Thread.sleep(100);
+        assertTrue(polls.get() <= closedPolls + 1, "polled " + (polls.get() - closedPolls) + " times after closing");
+    }
+}
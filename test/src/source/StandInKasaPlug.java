@@ -0,0 +1,257 @@
+package src.source;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in for a Kasa smart plug, which speaks the plug's local protocol (see KasaClient) on a loopback address.
+ *
+ * Each request is answered with the configured response. The plug can be told to misbehave as real plugs do: closing or
+ * resetting a connection once it has answered a request, or not answering at all.
+ */
+final class StandInKasaPlug implements Closeable
+{
+    /**
+     * What the plug does after answering a request.
+     */
+    enum AfterResponse
+    {
+        KEEP_OPEN, //keep the connection open for the next request, as a plug does while the connection is in use
+        CLOSE, //close the connection, as a plug does with an idle connection
+        RESET //reset the connection, as a plug or router may do with an idle connection
+    }
+
+    private final ServerSocket server; //accepts connections from the client
+    private final Thread acceptor; //accepts connections until the plug is closed
+    private final AtomicInteger connections = new AtomicInteger(); //the connections accepted
+    private final AtomicInteger requests = new AtomicInteger(); //the requests answered
+    private volatile String response; //the decrypted response to each request, or null to never answer
+    private volatile AfterResponse afterResponse = AfterResponse.KEEP_OPEN; //what to do after answering a request
+
+    /**
+     * Creates and starts a new StandInKasaPlug.
+     *
+     * @param address The loopback address to listen on, e.g. "127.0.0.2" so that several plugs can share a port
+     * @param port The port to listen on, or 0 for any free port
+     * @param response The decrypted response to each request
+     * @throws IOException If the address could not be bound
+     */
+    StandInKasaPlug(String address, int port, String response) throws IOException
+    {
+        this.server = new ServerSocket();
+        this.server.setReuseAddress(true);
+        this.server.bind(new InetSocketAddress(InetAddress.getByName(address), port));
+        this.response = response;
+        this.acceptor = Thread.ofVirtual().name("Stand-In Kasa Plug " + address).start(this::accept);
+    }
+
+    /**
+     * Returns a response with the power draw in milliwatts, as newer plugs report it.
+     *
+     * @param milliwatts The power draw in milliwatts
+     * @return The decrypted response
+     */
+    static String milliwattResponse(long milliwatts)
+    {
+        return "{\"emeter\":{\"get_realtime\":{\"voltage_mv\":120250,\"current_ma\":1450,\"power_mw\":" + milliwatts +
+               ",\"total_wh\":52131,\"err_code\":0}}}";
+    }
+
+    /**
+     * Returns a response with the power draw in watts, as older plugs report it.
+     *
+     * @param watts The power draw in watts
+     * @return The decrypted response
+     */
+    static String wattResponse(double watts)
+    {
+        return "{\"emeter\":{\"get_realtime\":{\"current\":1.45,\"voltage\":120.25,\"power\":" + watts +
+               ",\"total\":52.131,\"err_code\":0}}}";
+    }
+
+    /**
+     * Returns the port the plug listens on.
+     *
+     * @return The port
+     */
+    int port()
+    {
+        return this.server.getLocalPort();
+    }
+
+    /**
+     * Sets the response to each later request.
+     *
+     * @param response The decrypted response, or null to never answer
+     */
+    void respond(String response)
+    {
+        this.response = response;
+    }
+
+    /**
+     * Sets what the plug does after answering each later request.
+     *
+     * @param afterResponse What to do with the connection
+     */
+    void afterResponse(AfterResponse afterResponse)
+    {
+        this.afterResponse = afterResponse;
+    }
+
+    /**
+     * Returns the number of connections the plug accepted.
+     *
+     * @return The number of connections
+     */
+    int connections()
+    {
+        return this.connections.get();
+    }
+
+    /**
+     * Returns the number of requests the plug answered.
+     *
+     * @return The number of requests
+     */
+    int requests()
+    {
+        return this.requests.get();
+    }
+
+    /**
+     * Accepts connections until the plug is closed, serving each on its own virtual thread.
+     */
+    private void accept()
+    {
+        while (!this.server.isClosed())
+        {
+            try
+            {
+                Socket socket = this.server.accept();
+                this.connections.incrementAndGet();
+                Thread.ofVirtual().start(() -> serve(socket));
+            }
+            catch (IOException _)
+            {
+                //the plug was closed
+            }
+        }
+    }
+
+    /**
+     * Answers each request on a connection until it is closed.
+     *
+     * @param socket The connection
+     */
+    private void serve(Socket socket)
+    {
+        try (socket)
+        {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            while (true)
+            {
+                byte[] request = new byte[in.readInt()];
+                in.readFully(request);
+                String json = decrypt(request);
+                if (!json.contains("\"get_realtime\"") || this.response == null)
+                {
+                    continue;
+                }
+
+                byte[] response = encrypt(this.response);
+                out.writeInt(response.length);
+                out.write(response);
+                out.flush();
+                this.requests.incrementAndGet();
+
+                switch (this.afterResponse)
+                {
+                    case KEEP_OPEN -> {}
+                    case CLOSE ->
+                    {
+                        return;
+                    }
+                    case RESET ->
+                    {
+                        socket.setSoLinger(true, 0);
+                        return;
+                    }
+                }
+            }
+        }
+        catch (IOException _)
+        {
+            //the client closed or reset the connection
+        }
+    }
+
+    /**
+     * Encrypts a message with the plug's XOR autokey cipher.
+     *
+     * @param json The message
+     * @return The encrypted message
+     */
+    private static byte[] encrypt(String json)
+    {
+        byte[] data = json.getBytes(StandardCharsets.US_ASCII);
+        int key = 171;
+        for (int i = 0; i < data.length; i++)
+        {
+            key = (data[i] ^ key) & 0xFF;
+            data[i] = (byte)key;
+        }
+
+        return data;
+    }
+
+    /**
+     * Decrypts a message encrypted with the plug's XOR autokey cipher.
+     *
+     * @param data The encrypted message, which is decrypted in place
+     * @return The message
+     */
+    private static String decrypt(byte[] data)
+    {
+        int key = 171;
+        for (int i = 0; i < data.length; i++)
+        {
+            int encrypted = data[i] & 0xFF;
+            data[i] = (byte)(encrypted ^ key);
+            key = encrypted;
+        }
+
+        return new String(data, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Closes the plug, returning once it no longer accepts connections.
+     *
+     * @throws IOException If the plug could not be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.server.close();
+
+        //closing a socket a virtual thread is blocked on is deferred until that thread wakes, so the plug can accept a
+        //connection shortly after being closed
+        try
+        {
+            this.acceptor.join();
+        }
+        catch (InterruptedException _)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package src.source;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stands in for a program sending telemetry datagrams, such as FanControl, with sequence numbers chosen by each test so that
+ * datagrams can be lost, reordered or duplicated on purpose.
+ */
+final class StandInTelemetrySender implements Closeable
+{
+    private final DatagramChannel channel; //sends the datagrams
+    private final InetSocketAddress target; //the address the datagrams are sent to
+
+    /**
+     * Creates a new StandInTelemetrySender.
+     *
+     * @param port The loopback port to send the datagrams to
+     * @throws IOException If the channel could not be opened
+     */
+    StandInTelemetrySender(int port) throws IOException
+    {
+        this.channel = DatagramChannel.open();
+        this.target = new InetSocketAddress("127.0.0.1", port);
+    }
+
+    /**
+     * Encodes a v2 datagram with a single reading.
+     *
+     * @param sequence The sequence number of the datagram
+     * @param channel The channel of the reading
+     * @param value The value of the reading
+     * @param timeMillis The time the reading was taken, in milliseconds since the epoch
+     * @return The datagram, from its position to its limit
+     */
+    static ByteBuffer binary(int sequence, int channel, float value, long timeMillis)
+    {
+        ByteBuffer datagram = ByteBuffer.allocate(TelemetryProtocol.HEADER_SIZE + TelemetryProtocol.READING_SIZE);
+        TelemetryProtocol.encode(datagram, sequence, 1, new int[] {channel}, new long[] {timeMillis}, new float[] {value});
+        return datagram.flip();
+    }
+
+    /**
+     * Encodes a v1 datagram.
+     *
+     * @param text The text of the datagram, e.g. "1:31.5"
+     * @return The datagram, from its position to its limit
+     */
+    static ByteBuffer ascii(String text)
+    {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Sends a datagram.
+     *
+     * @param datagram The datagram, from its position to its limit
+     * @throws IOException If the datagram could not be sent
+     */
+    void send(ByteBuffer datagram) throws IOException
+    {
+        this.channel.send(datagram.duplicate(), this.target);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,132 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import src.Sensor;
+
+/**
+ * Tests StreamingRegistrySource against test/hwinfo_worker.sh, which stands in for the PowerShell worker.
+ */
+class StreamingRegistrySourceTest
+{
+    private static final Duration TIMEOUT = Duration.ofMillis(500); //the longest the worker may take to reply
+
+    /**
+     * Creates a source using the stand-in worker.
+     *
+     * @param arguments The arguments to the worker, see test/hwinfo_worker.sh
+     * @return The source
+     */
+    private static StreamingRegistrySource worker(String... arguments)
+    {
+        List<String> command = new ArrayList<>(List.of("bash", "test/hwinfo_worker.sh"));
+        command.addAll(List.of(arguments));
+        return new StreamingRegistrySource(command, TIMEOUT);
+    }
+
+    @Test
+    void streamsEachSnapshotWithoutItsEndMarker() throws Exception
+    {
+        try (StreamingRegistrySource source = worker())
+        {
+            ReusableBuffer output = new ReusableBuffer(16);
+            for (int poll = 0; poll < 3; poll++)
+            {
+                assertEquals(0, source.poll(output));
+                String snapshot = output.toString();
+                assertTrue(snapshot.startsWith("    Label0    REG_SZ    CPU (Tctl/Tdie)\n"), snapshot);
+                assertTrue(snapshot.endsWith("    ValueRaw1    REG_SZ    38.0\n"), snapshot);
+                assertFalse(snapshot.contains("END"), snapshot);
+            }
+        }
+    }
+
+    @Test
+    void snapshotsParseThroughTheDispatchTable() throws Exception
+    {
+        try (StreamingRegistrySource source = worker())
+        {
+            ReusableBuffer output = new ReusableBuffer(4096);
+            source.poll(output);
+
+            HwInfoDispatchTable table = new HwInfoDispatchTable();
+            table.update(output.array(), output.length());
+            HwInfoParser.parse(output.array(), output.length(), table);
+            assertEquals(45.2, Sensor.CPU_TEMPERATURE.getData());
+            assertEquals(38.0, Sensor.GPU_TEMPERATURE.getData());
+        }
+    }
+
+    @Test
+    void returnsTheStatusOfAFailedQuery() throws Exception
+    {
+        try (StreamingRegistrySource source = worker("-1", "1"))
+        {
+            assertEquals(1, source.poll(new ReusableBuffer(4096)));
+        }
+    }
+
+    @Test
+    void killsAndRestartsAHungWorker()
+    {
+        assertTimeoutPreemptively(TIMEOUT.multipliedBy(10), () ->
+        {
+            try (StreamingRegistrySource source = worker("1"))
+            {
+                ReusableBuffer output = new ReusableBuffer(4096);
+                assertEquals(0, source.poll(output));
+
+                //the worker hangs on its second request, so it is killed and the poll fails
+                IOException e = assertThrows(IOException.class, () -> source.poll(output));
+                assertEquals("HwInfo worker timed out", e.getMessage());
+
+                //the next poll starts a new worker, which replies to its first request
+                assertEquals(0, source.poll(output));
+            }
+        });
+    }
+
+    @Test
+    void restartsAWorkerThatExited() throws Exception
+    {
+        try (StreamingRegistrySource source = worker("1", "0", "exit"))
+        {
+            ReusableBuffer output = new ReusableBuffer(4096);
+            assertEquals(0, source.poll(output));
+
+            //the worker exits on its second request, so the poll fails
+            IOException e = assertThrows(IOException.class, () -> source.poll(output));
+            assertEquals("HwInfo worker exited unexpectedly", e.getMessage());
+
+            //the next poll starts a new worker, which replies to its first request with a snapshot that parses
+            Sensor.CPU_TEMPERATURE.set(0);
+            assertEquals(0, source.poll(output));
+            HwInfoDispatchTable table = new HwInfoDispatchTable();
+            table.update(output.array(), output.length());
+            HwInfoParser.parse(output.array(), output.length(), table);
+            assertEquals(45.2, Sensor.CPU_TEMPERATURE.getData());
+        }
+    }
+
+    @Test
+    void failsEachPollOfAWorkerThatExitsImmediately() throws Exception
+    {
+        try (StreamingRegistrySource source = new StreamingRegistrySource(List.of("true"), TIMEOUT))
+        {
+            ReusableBuffer output = new ReusableBuffer(4096);
+            assertThrows(IOException.class, () -> source.poll(output));
+            assertThrows(IOException.class, () -> source.poll(output));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import src.Sensor;
+import src.metrics.Metrics;
+
+/**
+ * Tests TelemetryHandler's counting of lost, late and duplicated v2 datagrams from a StandInTelemetrySender.
+ */
+class TelemetryHandlerTest
+{
+    private static final Sensor SENSOR = Sensor.AIR_TEMPERATURE; //on channel 0
+
+    /**
+     * Creates a handler with a name of its own, so that its counters in the Metrics are its own.
+     *
+     * @param name The name of the test
+     * @return The handler
+     */
+    private static TelemetryHandler handler(String name)
+    {
+        return new TelemetryHandler("Telemetry Handler Test " + name, new SensorChannelMap(value -> value, SENSOR));
+    }
+
+    /**
+     * Sends v2 datagrams with the given sequence numbers to a handler, each with its sequence number as its value.
+     *
+     * @param handler The handler
+     * @param sequences The sequence number of each datagram, in the order they arrive
+     */
+    private static void receive(TelemetryHandler handler, int... sequences)
+    {
+        long now = System.currentTimeMillis();
+        for (int sequence : sequences)
+        {
+            handler.handle(StandInTelemetrySender.binary(sequence, 0, sequence, now + sequence), now);
+        }
+    }
+
+    /**
+     * Asserts the counts of a handler.
+     *
+     * @param handler The handler
+     * @param received The datagrams received
+     * @param dropped The datagrams dropped
+     * @param reordered The datagrams reordered
+     */
+    private static void assertCounts(TelemetryHandler handler, long received, long dropped, long reordered)
+    {
+        assertEquals(received, handler.received(), "received");
+        assertEquals(dropped, handler.dropped(), "dropped");
+        assertEquals(reordered, handler.reordered(), "reordered");
+    }
+
+    @Test
+    void countsLostDatagramsAsDropped()
+    {
+        TelemetryHandler handler = handler("lost");
+        receive(handler, 1, 2, 5, 6, 9);
+        assertCounts(handler, 5, 4, 0);
+        assertEquals(9, SENSOR.getData());
+    }
+
+    @Test
+    void countsALateDatagramAsReorderedInsteadOfDropped()
+    {
+        TelemetryHandler handler = handler("late");
+        receive(handler, 1, 4, 2);
+        assertCounts(handler, 3, 1, 1);
+
+        //the late readings are older than those applied, so they are ignored
+        receive(handler, 3);
+        assertCounts(handler, 4, 0, 2);
+        assertEquals(4, SENSOR.getData());
+    }
+
+    @Test
+    void countsADuplicateAsReorderedWithoutUndoingADrop()
+    {
+        TelemetryHandler handler = handler("duplicate");
+        receive(handler, 1, 3, 3, 1, 3);
+        assertCounts(handler, 5, 1, 3);
+    }
+
+    @Test
+    void countsADatagramLateByTheWholeWindowAsARestart()
+    {
+        TelemetryHandler handler = handler("restart");
+        receive(handler, 1, 100);
+        assertCounts(handler, 2, 98, 0);
+
+        //too far behind to be late, so the sender restarted its sequence and nothing more was dropped
+        receive(handler, 2, 3);
+        assertCounts(handler, 4, 98, 0);
+        assertEquals(3, SENSOR.getData());
+    }
+
+    @Test
+    void tracksSequenceNumbersAcrossOverflow()
+    {
+        TelemetryHandler handler = handler("overflow");
+        receive(handler, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
+        assertCounts(handler, 3, 1, 1);
+    }
+
+    @Test
+    void exposesItsCountsThroughTheMetrics()
+    {
+        TelemetryHandler handler = handler("metrics");
+        receive(handler, 1, 3, 6, 5);
+
+        String name = "Telemetry Handler Test metrics datagrams ";
+        assertEquals(4, Metrics.counters().get(name + "received").sum());
+        assertEquals(2, Metrics.counters().get(name + "dropped").sum());
+        assertEquals(1, Metrics.counters().get(name + "reordered").sum());
+    }
+}
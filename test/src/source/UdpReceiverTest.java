@@ -0,0 +1,173 @@
+package src.source;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import src.Sensor;
+
+/**
+ * Tests receiving datagrams from a StandInTelemetrySender with a UdpReceiver on loopback, and routing their readings to
+ * Sensors through a TelemetryHandler and SensorChannelMap.
+ *
+ * Datagrams sent to a port are handled in order, so each test sends a marker datagram last and waits for it to be handled,
+ * after which every datagram sent before it was handled too.
+ */
+class UdpReceiverTest
+{
+    private static final Sensor POWER = Sensor.CPU_POWER_USAGE; //on channel 0
+    private static final Sensor SYSTEM_POWER = Sensor.SYSTEM_POWER_USAGE; //on channel 1
+    private static final int MAX_DATAGRAM_SIZE = 65_507; //the largest UDP payload over IPv4
+    private static final long TIMEOUT_MILLIS = 5000; //the longest a datagram may take to be handled
+
+    private final UdpReceiver receiver; //receives the datagrams
+    private final BlockingQueue<byte[]> handled = new LinkedBlockingQueue<>(); //a copy of each datagram handled
+    private TelemetryHandler telemetry; //routes the readings of each datagram handled
+    private StandInTelemetrySender sender; //sends the datagrams
+
+    /**
+     * Creates a new UdpReceiverTest.
+     *
+     * @throws IOException If the receiver could not be created
+     */
+    UdpReceiverTest() throws IOException
+    {
+        this.receiver = new UdpReceiver();
+    }
+
+    @BeforeEach
+    void start() throws IOException
+    {
+        this.telemetry = new TelemetryHandler("Udp Receiver Test " + System.nanoTime(),
+                                              new SensorChannelMap(value -> value, POWER, SYSTEM_POWER));
+        int port = this.receiver.register(0, (datagram, receivedMillis) ->
+        {
+            byte[] bytes = new byte[datagram.remaining()];
+            datagram.get(datagram.position(), bytes);
+            this.telemetry.handle(datagram, receivedMillis);
+            this.handled.add(bytes);
+        });
+
+        this.receiver.start("Udp Receiver Test Thread");
+        this.sender = new StandInTelemetrySender(port);
+    }
+
+    @AfterEach
+    void stop() throws IOException
+    {
+        this.sender.close();
+        this.receiver.close();
+    }
+
+    /**
+     * Waits for the next datagram to be handled.
+     *
+     * @return The datagram
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private byte[] nextHandled() throws InterruptedException
+    {
+        byte[] datagram = this.handled.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull(datagram, "no datagram was handled");
+        return datagram;
+    }
+
+    @Test
+    void routesTheReadingsOfEachVersionToTheirSensors() throws Exception
+    {
+        long before = System.currentTimeMillis();
+        this.sender.send(StandInTelemetrySender.ascii("0:95.5\n"));
+        nextHandled();
+        assertEquals(95.5, POWER.getData());
+
+        long[] timestamps = new long[1];
+        double[] values = new double[1];
+        assertEquals(1, POWER.history().snapshot(Long.MIN_VALUE, timestamps, values));
+        assertTrue(timestamps[0] >= before && timestamps[0] <= System.currentTimeMillis(), "v1 readings are taken as received");
+
+        this.sender.send(StandInTelemetrySender.binary(1, 1, 612.25f, 1_700_000_000_000L));
+        nextHandled();
+        assertEquals(612.25, SYSTEM_POWER.getData());
+        assertEquals(1, SYSTEM_POWER.history().snapshot(Long.MIN_VALUE, timestamps, values));
+        assertEquals(1_700_000_000_000L, timestamps[0]);
+        assertEquals(1, this.telemetry.received());
+    }
+
+    @Test
+    void ignoresReadingsOfUnknownChannels() throws Exception
+    {
+        POWER.set(10);
+        SYSTEM_POWER.set(20);
+
+        this.sender.send(StandInTelemetrySender.ascii("2:50"));
+        this.sender.send(StandInTelemetrySender.ascii("-1:50"));
+        this.sender.send(StandInTelemetrySender.binary(1, 255, 50, System.currentTimeMillis()));
+        this.sender.send(StandInTelemetrySender.ascii("0:11"));
+        for (int i = 0; i < 4; i++)
+        {
+            nextHandled();
+        }
+
+        assertEquals(11, POWER.getData());
+        assertEquals(20, SYSTEM_POWER.getData());
+    }
+
+    @Test
+    void ignoresTruncatedAndOversizedDatagrams() throws Exception
+    {
+        POWER.set(10);
+        ByteBuffer whole = StandInTelemetrySender.binary(1, 0, 50, System.currentTimeMillis());
+
+        //a datagram cut off within its header, and one cut off within its reading
+        this.sender.send(whole.duplicate().limit(TelemetryProtocol.HEADER_SIZE - 1));
+        this.sender.send(whole.duplicate().limit(whole.limit() - 1));
+
+        //a datagram longer than the readings it holds
+        ByteBuffer oversized = ByteBuffer.allocate(whole.remaining() + 1).put(whole.duplicate()).rewind();
+        this.sender.send(oversized);
+
+        //the largest datagram possible, which must be received whole rather than truncated to look valid
+        this.sender.send(ByteBuffer.allocate(MAX_DATAGRAM_SIZE).put(whole.duplicate()).rewind());
+
+        this.sender.send(StandInTelemetrySender.ascii("0:11"));
+        assertEquals(TelemetryProtocol.HEADER_SIZE - 1, nextHandled().length);
+        assertEquals(whole.remaining() - 1, nextHandled().length);
+        assertEquals(whole.remaining() + 1, nextHandled().length);
+        assertEquals(MAX_DATAGRAM_SIZE, nextHandled().length);
+        nextHandled();
+
+        assertEquals(11, POWER.getData());
+        assertEquals(0, this.telemetry.received(), "a malformed datagram was counted");
+    }
+
+    @Test
+    void routesEachPortToItsOwnHandler() throws Exception
+    {
+        BlockingQueue<String> other = new LinkedBlockingQueue<>();
+        try (UdpReceiver receiver = new UdpReceiver())
+        {
+            int first = receiver.register(0, (datagram, _) -> other.add("first " + datagram.remaining()));
+            int second = receiver.register(0, (datagram, _) -> other.add("second " + datagram.remaining()));
+            receiver.start("Udp Receiver Test Ports Thread");
+
+            try (StandInTelemetrySender firstSender = new StandInTelemetrySender(first);
+                 StandInTelemetrySender secondSender = new StandInTelemetrySender(second))
+            {
+                secondSender.send(StandInTelemetrySender.ascii("1:2"));
+                assertEquals("second 3", other.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+                firstSender.send(StandInTelemetrySender.ascii("1:23"));
+                assertEquals("first 4", other.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            }
+        }
+    }
+}